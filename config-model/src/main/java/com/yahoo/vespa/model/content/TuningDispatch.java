@@ -7,7 +7,7 @@ package com.yahoo.vespa.model.content;
 public class TuningDispatch {
 
     private final Integer maxHitsPerPartition;
-    public enum DispatchPolicy { ROUNDROBIN, ADAPTIVE};
+    public enum DispatchPolicy { ROUNDROBIN, ADAPTIVE, LEAST_LOADED};
     private final DispatchPolicy dispatchPolicy;
     private final Boolean useLocalNode;
     private final Double minGroupCoverage;
@@ -52,6 +52,8 @@ public class TuningDispatch {
                 dispatchPolicy = DispatchPolicy.ADAPTIVE;
             } else if ("round-robin".equals(policy.toLowerCase())) {
                 dispatchPolicy = DispatchPolicy.ROUNDROBIN;
+            } else if ("least-loaded".equals(policy.toLowerCase())) {
+                dispatchPolicy = DispatchPolicy.LEAST_LOADED;
             } else {
                 dispatchPolicy = DispatchPolicy.valueOf(policy.toUpperCase());
             }
@@ -432,6 +432,9 @@ public class IndexedSearchCluster extends SearchCluster
                 case ROUNDROBIN:
                     builder.distributionPolicy(DistributionPolicy.ROUNDROBIN);
                     break;
+                case LEAST_LOADED:
+                    builder.distributionPolicy(DistributionPolicy.LEAST_LOADED);
+                    break;
             }
         }
         builder.maxNodesDownPerGroup(rootDispatch.getMaxNodesDownPerFixedRow());
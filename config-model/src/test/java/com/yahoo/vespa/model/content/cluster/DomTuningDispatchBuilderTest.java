@@ -88,6 +88,18 @@ public class DomTuningDispatchBuilderTest {
                         "</content>");
         assertTrue(TuningDispatch.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
     }
+    @Test
+    public void requireThatTuningDispatchPolicyLeastLoaded() throws Exception {
+        TuningDispatch dispatch = newTuningDispatch(
+                "<content>" +
+                        "  <tuning>" +
+                        "    <dispatch>" +
+                        "      <dispatch-policy>least-loaded</dispatch-policy>" +
+                        "    </dispatch>" +
+                        "  </tuning>" +
+                        "</content>");
+        assertTrue(TuningDispatch.DispatchPolicy.LEAST_LOADED == dispatch.getDispatchPolicy());
+    }
 
     private static TuningDispatch newTuningDispatch(String xml) throws Exception {
         return DomTuningDispatchBuilder.build(
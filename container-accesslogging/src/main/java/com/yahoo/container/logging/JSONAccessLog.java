@@ -3,7 +3,8 @@ package com.yahoo.container.logging;
 
 import com.yahoo.container.core.AccessLogConfig;
 
-import java.util.logging.Level;
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Log a message in Vespa JSON access log format.
@@ -21,7 +22,12 @@ public final class JSONAccessLog implements  AccessLogInterface {
 
     @Override
     public void log(AccessLogEntry logEntry) {
-        logHandler.access.log(Level.INFO, new JSONFormatter(logEntry).format() + '\n');
+        logHandler.log(logEntry, JSONAccessLog::format);
+    }
+
+    private static void format(AccessLogEntry logEntry, OutputStream out) throws IOException {
+        new JSONFormatter(logEntry).format(out);
+        out.write('\n');
     }
 
     // TODO: This is never called. We should have a DI provider and call this method from its deconstruct.
@@ -5,9 +5,11 @@ import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.text.Utf8;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.security.Principal;
@@ -24,15 +26,22 @@ import java.util.logging.Logger;
  */
 public class JSONFormatter {
 
+    /** Shared by all instances as creating it is expensive. This is thread safe once configured. */
+    private static final JsonFactory generatorFactory = createGeneratorFactory();
+
     private AccessLogEntry accessLogEntry;
-    private final JsonFactory generatorFactory;
 
     private static Logger logger = Logger.getLogger(JSONFormatter.class.getName());
 
     public JSONFormatter(final AccessLogEntry entry) {
         accessLogEntry = entry;
-        generatorFactory = new JsonFactory();
-        generatorFactory.setCodec(new ObjectMapper());
+    }
+
+    private static JsonFactory createGeneratorFactory() {
+        JsonFactory factory = new JsonFactory();
+        factory.setCodec(new ObjectMapper());
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return factory;
     }
 
     /**
@@ -42,6 +51,15 @@ public class JSONFormatter {
      */
     public String format() {
         ByteArrayOutputStream logLine = new ByteArrayOutputStream();
+        format(logLine);
+        return Utf8.toString(logLine.toByteArray());
+    }
+
+    /**
+     * Writes the associated {@link AccessLogEntry} as a Vespa JSON access log entry without trailing newline,
+     * encoded as UTF-8, to the given stream. The stream is not closed.
+     */
+    public void format(OutputStream logLine) {
         try {
             JsonGenerator generator = generatorFactory.createGenerator(logLine, JsonEncoding.UTF8);
             generator.writeStartObject();
@@ -121,8 +139,6 @@ public class JSONFormatter {
         } catch (IOException e) {
             logger.log(Level.WARNING, "Unable to generate JSON access log entry: " + e.getMessage());
         }
-
-        return logLine.toString();
     }
 
 
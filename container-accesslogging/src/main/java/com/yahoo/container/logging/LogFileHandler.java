@@ -7,17 +7,24 @@ import com.yahoo.io.NativeIO;
 import com.yahoo.log.LogFileDb;
 import com.yahoo.system.ProcessExecuter;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Filter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -29,15 +36,35 @@ import java.util.zip.GZIPOutputStream;
 /**
  * <p>Implements log file naming/rotating logic for container logs.</p>
  *
- * <p>Overridden methods: publish</p>
+ * <p>Overridden methods: publish, flush, close</p>
  *
  * <p>Added methods: setFilePattern, setRotationTimes, rotateNow (+ few others)</p>
  *
+ * <p>Entries are queued to a single thread which writes them to the file in batches. Entries may be published
+ * either as log records, which are formatted by that thread, or be formatted to bytes by the publishing thread
+ * using {@link #publish(Object, EntryFormatter)}. Entries and their buffers are pooled and reused
+ * after they are written.</p>
+ *
  * @author Bob Travis
  */
 public class LogFileHandler extends StreamHandler {
 
     private final static Logger logger = Logger.getLogger(LogFileHandler.class.getName());
+
+    /** The max number of entries written to the file in one batch */
+    private static final int maxBatchSize = 1024;
+
+    /** The max number of entries kept for reuse */
+    private static final int maxPooledEntries = 4096;
+
+    /** The max size in bytes of the buffer of an entry kept for reuse */
+    private static final int maxPooledEntrySize = 64 * 1024;
+
+    /** The max total size in bytes of the buffers of the entries kept for reuse */
+    private static final long maxPooledBytes = 4 * 1024 * 1024;
+
+    private static final int outputBufferSize = 256 * 1024;
+
     private final boolean compressOnRotation;
     private long[] rotationTimes = {0}; //default to one log per day, at midnight
     private String filePattern = "./log.%T";  // default to current directory, ms time stamp
@@ -45,10 +72,16 @@ public class LogFileHandler extends StreamHandler {
     private int numberOfRecords = -1;
     private long nextRotationTime = 0;
     private OutputStream currentOutputStream = null;
+    private boolean closed = false;
     private String fileName;
     private String symlinkName = null;
-    private ArrayBlockingQueue<LogRecord> logQueue = new ArrayBlockingQueue<>(100000);
-    private LogRecord rotateCmd = new LogRecord(Level.SEVERE, "rotateNow");
+    private final ArrayBlockingQueue<Entry> logQueue = new ArrayBlockingQueue<>(100000);
+    private final ArrayBlockingQueue<Entry> freeEntries = new ArrayBlockingQueue<>(maxPooledEntries);
+    /** The total size of the buffers of the entries in freeEntries */
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final Entry rotateCmd = new Entry();
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private volatile long writtenCount = 0; // only written by the log thread
     private ExecutorService executor = Executors.newCachedThreadPool(ThreadFactoryFactory.getDaemonThreadFactory("logfilehandler.compression"));
 
     static private class LogThread extends Thread {
@@ -72,15 +105,15 @@ public class LogFileHandler extends StreamHandler {
         }
 
         private void storeLogRecords() throws InterruptedException {
+            List<Entry> batch = new ArrayList<>(maxBatchSize);
             while (!isInterrupted()) {
-                LogRecord r = logFileHandler.logQueue.poll(100, TimeUnit.MILLISECONDS);
-                if (r != null) {
-                    if (r == logFileHandler.rotateCmd) {
-                        logFileHandler.internalRotateNow();
+                Entry entry = logFileHandler.logQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    batch.add(entry);
+                    logFileHandler.logQueue.drainTo(batch, maxBatchSize - 1);
+                    if (logFileHandler.internalPublish(batch))
                         lastFlush = System.nanoTime();
-                    } else {
-                        logFileHandler.internalPublish(r);
-                    }
+                    batch.clear();
                     flushIfOld(3, TimeUnit.SECONDS);
                 } else {
                     flushIfOld(100, TimeUnit.MILLISECONDS);
@@ -116,13 +149,80 @@ public class LogFileHandler extends StreamHandler {
      * @param r logrecord to publish
      */
     public void publish(LogRecord r) {
+        Entry entry = takeEntry();
+        entry.record = r;
+        enqueue(entry);
+    }
+
+    /**
+     * Formats a value to a log entry in the calling thread and sends it to file, first rotating file if needed.
+     * This avoids creating a log record and a string for each entry.
+     *
+     * @param value the value to log
+     * @param formatter the formatter writing the value, including any line terminator, as bytes
+     */
+    public <T> void publish(T value, EntryFormatter<T> formatter) {
+        Entry entry = takeEntry();
         try {
-            logQueue.put(r);
+            formatter.format(value, entry.bytes);
+        }
+        catch (IOException | RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            recycle(entry);
+            return;
+        }
+        enqueue(entry);
+    }
+
+    private void enqueue(Entry entry) {
+        try {
+            logQueue.put(entry);
+            enqueuedCount.incrementAndGet();
         } catch (InterruptedException e) {
         }
     }
 
-    private void internalPublish(LogRecord r) throws InterruptedException {
+    private Entry takeEntry() {
+        Entry entry = freeEntries.poll();
+        if (entry == null) return new Entry();
+        pooledBytes.addAndGet(- entry.bytes.capacity());
+        return entry;
+    }
+
+    private void recycle(Entry entry) {
+        int size = entry.bytes.capacity();
+        if (size > maxPooledEntrySize) return;
+        if (pooledBytes.addAndGet(size) > maxPooledBytes) {
+            pooledBytes.addAndGet(- size);
+            return;
+        }
+        entry.clear();
+        if ( ! freeEntries.offer(entry))
+            pooledBytes.addAndGet(- size);
+    }
+
+    /**
+     * Writes a batch of entries to file.
+     *
+     * @return whether the file was rotated by a rotation command in this batch
+     */
+    private synchronized boolean internalPublish(List<Entry> batch) throws InterruptedException {
+        boolean rotated = false;
+        for (Entry entry : batch) {
+            if (entry == rotateCmd) {
+                internalRotateNow();
+                rotated = true;
+            } else {
+                internalPublish(entry);
+                recycle(entry);
+            }
+        }
+        writtenCount += batch.size();
+        return rotated;
+    }
+
+    private void internalPublish(Entry entry) throws InterruptedException {
+        if (closed) return;
         // first check to see if new file needed.
         // if so, use this.internalRotateNow() to do it
 
@@ -135,7 +235,59 @@ public class LogFileHandler extends StreamHandler {
         }
         // count records, and publish
         numberOfRecords++;
-        super.publish(r);
+        try {
+            if (entry.record != null) {
+                if ( ! isLoggableRecord(entry.record)) return;
+                entry.bytes.write(getFormatter().format(entry.record).getBytes(charset()));
+            }
+            entry.bytes.writeTo(currentOutputStream);
+        }
+        catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+        catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    /** Returns whether the given record passes the level and filter of this (StreamHandler.isLoggable requires a writer) */
+    private boolean isLoggableRecord(LogRecord record) {
+        int levelValue = getLevel().intValue();
+        if (record.getLevel().intValue() < levelValue || levelValue == Level.OFF.intValue()) return false;
+        Filter filter = getFilter();
+        return filter == null || filter.isLoggable(record);
+    }
+
+    private Charset charset() {
+        return getEncoding() != null ? Charset.forName(getEncoding()) : Charset.defaultCharset();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (currentOutputStream == null || closed) return;
+        try {
+            currentOutputStream.flush();
+        }
+        catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /** Closes the current file. Entries written after this is called are discarded. */
+    @Override
+    public synchronized void close() {
+        closeOutputStream();
+        closed = true;
+    }
+
+    private void closeOutputStream() {
+        if (currentOutputStream == null) return;
+        try {
+            currentOutputStream.close();
+        }
+        catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
     }
 
     /**
@@ -191,13 +343,14 @@ public class LogFileHandler extends StreamHandler {
     }
 
     void waitDrained() {
-        while(! logQueue.isEmpty()) {
+        long enqueued = enqueuedCount.get();
+        while (writtenCount < enqueued) {
             try {
                 Thread.sleep(1);
             } catch (InterruptedException e) {
             }
         }
-        super.flush();
+        flush();
     }
 
     private void checkAndCreateDir(String pathname) {
@@ -215,26 +368,26 @@ public class LogFileHandler extends StreamHandler {
      * Force file rotation now, independent of schedule.
      */
     void rotateNow () {
-        publish(rotateCmd);
+        enqueue(rotateCmd);
     }
 
     // Throw InterruptedException upwards rather than relying on isInterrupted to stop the thread as
     // isInterrupted() returns false after interruption in p.waitFor
     private void internalRotateNow() throws InterruptedException {
+        if (closed) return; // a rotation may have been queued before this was closed
+
         // figure out new file name, then
         // use super.setOutputStream to switch to a new file
 
         String oldFileName = fileName;
         long now = System.currentTimeMillis();
         fileName = LogFormatter.insertDate(filePattern, now);
-        super.flush();
-        super.close();
+        closeOutputStream();
 
         try {
             checkAndCreateDir(fileName);
-            FileOutputStream os = new FileOutputStream(fileName, true); // append mode, for safety
-            super.setOutputStream(os);
-            currentOutputStream = os;
+            // append mode, for safety
+            currentOutputStream = new BufferedOutputStream(new FileOutputStream(fileName, true), outputBufferSize);
             LogFileDb.nowLoggingTo(fileName);
         }
         catch (IOException e) {
@@ -413,4 +566,37 @@ public class LogFileHandler extends StreamHandler {
         return fileName;
     }
 
+    /** Formats values to log entries */
+    @FunctionalInterface
+    public interface EntryFormatter<T> {
+
+        /** Writes the given value as a log entry, including any line terminator, to the given stream */
+        void format(T value, OutputStream out) throws IOException;
+
+    }
+
+    /**
+     * An entry in the queue of this: Either a log record to be formatted by the log thread,
+     * or a value which is already formatted to bytes. Entries are reused after they are written.
+     */
+    private static final class Entry {
+
+        final EntryBuffer bytes = new EntryBuffer();
+        LogRecord record = null;
+
+        void clear() {
+            record = null;
+            bytes.reset();
+        }
+
+    }
+
+    private static final class EntryBuffer extends ByteArrayOutputStream {
+
+        EntryBuffer() { super(512); }
+
+        int capacity() { return buf.length; }
+
+    }
+
 }
@@ -0,0 +1,116 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import com.yahoo.io.IOUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the throughput of writing JSON access log entries from many threads by logging formatted strings
+ * as log records, and by formatting entries directly into the pooled buffers of the log file handler.
+ *
+ * @author agent
+ */
+public class AccessLogBenchmark {
+
+    private static final int entriesPerThread = 100 * 1000;
+    private static final String directory = "./accesslogbenchmark";
+
+    public void run() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            out("Warming up...");
+            for (int i = 0; i < 3; i++) {
+                logRecords(threads);
+                logFormattedEntries(threads);
+            }
+
+            out("Running...");
+            long recordsTime = logRecords(threads);
+            long entriesTime = logFormattedEntries(threads);
+            out("Logging " + threads * entriesPerThread + " entries from " + threads + " threads:");
+            out("  As log records:        " + recordsTime + " ms");
+            out("  As formatted entries:  " + entriesTime + " ms");
+        }
+        finally {
+            IOUtils.recursiveDeleteDir(new File(directory));
+        }
+    }
+
+    /** Logs entries the way this was done before entries could be formatted to bytes by the logging thread */
+    private long logRecords(int threadCount) throws InterruptedException {
+        LogFileHandler handler = createHandler();
+        LogFormatter formatter = new LogFormatter();
+        formatter.messageOnly(true);
+        handler.setFormatter(formatter);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        return run(threadCount, handler, entry -> logger.log(Level.INFO, new JSONFormatter(entry).format() + '\n'));
+    }
+
+    private long logFormattedEntries(int threadCount) throws InterruptedException {
+        LogFileHandler handler = createHandler();
+        return run(threadCount, handler, entry -> handler.publish(entry, (value, out) -> {
+            new JSONFormatter(value).format(out);
+            out.write('\n');
+        }));
+    }
+
+    private long run(int threadCount, LogFileHandler handler, AccessLogInterface log) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            threads.add(new Thread(() -> {
+                AccessLogEntry entry = createEntry();
+                for (int i = 0; i < entriesPerThread; i++)
+                    log.log(entry);
+            }));
+        }
+        long startTime = System.currentTimeMillis();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        handler.waitDrained();
+        long elapsed = System.currentTimeMillis() - startTime;
+        handler.shutdown();
+        handler.close();
+        return elapsed;
+    }
+
+    private LogFileHandler createHandler() {
+        IOUtils.recursiveDeleteDir(new File(directory));
+        LogFileHandler handler = new LogFileHandler();
+        handler.setFilePattern(directory + "/access.%Y%m%d%H%M%S");
+        return handler;
+    }
+
+    private static AccessLogEntry createEntry() {
+        AccessLogEntry entry = new AccessLogEntry();
+        entry.setRawQuery("query=some+benchmark+query&hits=10&ranking=default");
+        entry.setRawPath("/search/");
+        entry.setIpV4Address("152.200.54.243");
+        entry.setHttpMethod("GET");
+        entry.setHttpVersion("HTTP/1.1");
+        entry.setUserAgent("Mozilla/5.0 (X11; Linux x86_64)");
+        entry.setHitCounts(new HitCounts(0, 10, 1234, 0, 10));
+        entry.setHostString("localhost");
+        entry.setStatusCode(200);
+        entry.setTimeStamp(920880005023L);
+        entry.setDurationBetweenRequestResponse(122);
+        entry.setReturnedContentSize(9875);
+        return entry;
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new AccessLogBenchmark().run();
+    }
+
+}
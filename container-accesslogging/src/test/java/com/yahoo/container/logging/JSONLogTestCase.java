@@ -1,11 +1,14 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.container.logging;
 
+import com.yahoo.text.Utf8;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 
 /**
@@ -201,4 +204,14 @@ public class JSONLogTestCase {
         assertEquals(expectedOutput, new JSONFormatter(entry).format());
     }
 
+    @Test
+    public void test_json_log_entry_written_to_stream_is_utf8() throws Exception {
+        AccessLogEntry entry = newAccessLogEntry("blåbær");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JSONFormatter(entry).format(out);
+        assertEquals(new JSONFormatter(entry).format(), Utf8.toString(out.toByteArray()));
+        assertTrue(Utf8.toString(out.toByteArray()).contains("\"uri\":\"?query=blåbær\""));
+    }
+
 }
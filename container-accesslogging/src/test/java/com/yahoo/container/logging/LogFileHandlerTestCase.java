@@ -2,6 +2,7 @@
 package com.yahoo.container.logging;
 
 import com.yahoo.io.IOUtils;
+import com.yahoo.text.Utf8;
 import org.junit.Test;
 
 import java.io.File;
@@ -210,4 +211,45 @@ public class LogFileHandlerTestCase {
         IOUtils.recursiveDeleteDir(new File("./testcompression"));
     }
 
+    @Test
+    public void testRotationQueuedBeforeCloseDoesNotOpenAFile() {
+        IOUtils.recursiveDeleteDir(new File("./testrotationafterclose"));
+        LogFileHandler h = new LogFileHandler();
+        h.setFilePattern("./testrotationafterclose/logfilehandlertest.%Y%m%d%H%M%S%s");
+        h.setFormatter(new SimpleFormatter());
+        h.close();
+        h.rotateNow();
+        h.waitDrained();
+        assertFalse(new File("./testrotationafterclose").exists());
+        h.shutdown();
+    }
+
+    @Test
+    public void testFormattedEntriesAreWrittenInOrderWithRecords() throws IOException {
+        IOUtils.recursiveDeleteDir(new File("./testformattedentries"));
+        LogFileHandler h = new LogFileHandler();
+        h.setFilePattern("./testformattedentries/logfilehandlertest.%Y%m%d%H%M%S%s");
+        h.setFormatter(new Formatter() {
+            public String format(LogRecord r) {
+                return formatMessage(r) + "\n";
+            }
+        } );
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            if (i % 3 == 0) {
+                h.publish(new LogRecord(Level.INFO, "record " + i));
+                expected.append("record ").append(i).append("\n");
+            }
+            else {
+                h.publish(i, (value, out) -> out.write(Utf8.toBytes("entry " + value + "\n")));
+                expected.append("entry ").append(i).append("\n");
+            }
+        }
+        h.waitDrained();
+        assertEquals(expected.toString(), IOUtils.readFile(new File(h.getFileName())));
+        h.shutdown();
+
+        IOUtils.recursiveDeleteDir(new File("./testformattedentries"));
+    }
+
 }
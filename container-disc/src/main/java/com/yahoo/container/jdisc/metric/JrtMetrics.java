@@ -30,6 +30,10 @@ class JrtMetrics {
         increment("jrt.transport.client.tls-connections-established", changesSincePrevious.clientTlsConnectionsEstablished());
         increment("jrt.transport.server.unencrypted-connections-established", changesSincePrevious.serverUnencryptedConnectionsEstablished());
         increment("jrt.transport.client.unencrypted-connections-established", changesSincePrevious.clientUnencryptedConnectionsEstablished());
+        increment("jrt.transport.buffer-pool.allocations", changesSincePrevious.bufferPoolAllocations());
+        increment("jrt.transport.buffer-pool.allocated-bytes", changesSincePrevious.bufferPoolAllocatedBytes());
+        increment("jrt.transport.buffer-pool.reuses", changesSincePrevious.bufferPoolReuses());
+        metric.set("jrt.transport.buffer-pool.idle-bytes", snapshot.bufferPoolIdleBytes(), null);
         previousSnapshot = snapshot;
     }
 
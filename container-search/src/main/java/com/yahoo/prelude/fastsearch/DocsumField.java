@@ -66,7 +66,7 @@ public abstract class DocsumField {
     protected String name;
 
     protected DocsumField(String name) {
-        this.name = name;
+        this.name = name.intern(); // hits store field values by this name, and lookups mostly use literals
     }
 
     public static DocsumField create(String name, String typename) {
@@ -5,11 +5,13 @@ import com.yahoo.data.access.ObjectTraverser;
 import com.yahoo.document.GlobalId;
 import com.yahoo.fs4.QueryPacketData;
 import com.yahoo.net.URI;
+import com.yahoo.search.query.Sorting;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.Relevance;
 import com.yahoo.data.access.Inspector;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -46,6 +48,10 @@ public class FastHit extends Hit {
     private transient QueryPacketData queryPacketData = null;
     private transient CacheKey cacheKey = null;
 
+    /** The sort data returned with this hit by the backend node, which orders hits by the sorting it is for */
+    private transient byte[] sortData = null;
+    private transient Sorting sortDataSorting = null;
+
     /**
      * Summaries added to this hit which are not yet decoded into fields.
      * Fields are resolved by returning the first non-null value found by
@@ -128,6 +134,28 @@ public class FastHit extends Hit {
     /** Sets the index of the node this hit originated at */
     public void setDistributionKey(int distributionKey) { this.distributionKey = distributionKey; }
 
+    /**
+     * Sets the sort data of this hit, as returned by the backend node producing it.
+     * Sort data compares as unsigned bytes in the order given by the sorting it was produced for.
+     *
+     * @param data the sort data of this hit
+     * @param sorting the sorting the data was produced for
+     */
+    public void setSortData(byte[] data, Sorting sorting) {
+        this.sortData = data;
+        this.sortDataSorting = sorting;
+    }
+
+    /** Returns whether this has sort data for the given sorting */
+    public boolean hasSortData(Sorting sorting) {
+        return sortData != null && sortDataSorting == sorting;
+    }
+
+    /** Compares the sort data of two hits which both have sort data for the same sorting */
+    public static int compareSortData(FastHit left, FastHit right) {
+        return Arrays.compareUnsigned(left.sortData, right.sortData);
+    }
+
     /**
      * Add the binary data common for the query packet to a Vespa backend and a
      * summary fetch packet to a Vespa backend. This method can only be called
@@ -195,10 +223,7 @@ public class FastHit extends Hit {
     public Object getField(String name) {
         Object value = super.getField(name);
         if (value != null) return value;
-        value = getSummaryValue(name);
-        if (value != null)
-            super.setField(name, value);
-        return value;
+        return getSummaryValue(name, true);
     }
 
     @Override
@@ -211,7 +236,7 @@ public class FastHit extends Hit {
         }
         Object oldValue = super.setField(name, value);
         if (oldValue != null) return oldValue;
-        return getSummaryValue(name);
+        return getSummaryValue(name, false);
     }
 
     @Override
@@ -276,7 +301,7 @@ public class FastHit extends Hit {
     public Object removeField(String name) {
         Object removedValue = super.removeField(name);
         if (removedValue == null)
-            removedValue = getSummaryValue(name);
+            removedValue = getSummaryValue(name, false);
 
         if (removedValue != null) {
             if (removedFields == null)
@@ -307,13 +332,26 @@ public class FastHit extends Hit {
         return super.hasFields();
     }
 
-    private Object getSummaryValue(String name) {
+    /**
+     * Returns the value of the given field in the last added summary having it, or null if none.
+     *
+     * @param store whether to also store the value in the field map of this, so that it is found faster next time
+     */
+    private Object getSummaryValue(String name, boolean store) {
         if (removedFields != null && removedFields.contains(name))
             return null;
-        // fetch from last added summary with the field
         for (SummaryData summaryData : summaries) {
-            Object value = summaryData.getField(name);
-            if (value != null) return value;
+            DocsumField field = summaryData.type.getField(name);
+            if (field == null) continue;
+            Object value = summaryData.getField(field);
+            if (value == null) continue;
+            if (store) {
+                if ( ! hasFields())
+                    reserve(summaryData.type.getFieldCount());
+                // Store with the interned name of the summary field, which is faster to look up
+                super.setField(field.getName(), value);
+            }
+            return value;
         }
         return null;
     }
@@ -504,8 +542,9 @@ public class FastHit extends Hit {
             this.index = index;
         }
 
-        Object getField(String name) {
-            return type.convert(name, data.field(name));
+        Object getField(DocsumField field) {
+            Inspector value = data.field(field.getName());
+            return value.valid() ? field.convert(value) : null;
         }
 
         void forEachField(BiConsumer<String, Object> consumer) {
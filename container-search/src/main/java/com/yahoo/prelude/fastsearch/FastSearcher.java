@@ -17,6 +17,7 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.Dispatcher;
 import com.yahoo.search.dispatch.FillInvoker;
+import com.yahoo.search.dispatch.RpcInvokerFactory;
 import com.yahoo.search.dispatch.SearchInvoker;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.grouping.GroupingRequest;
@@ -56,6 +57,8 @@ public class FastSearcher extends VespaBackEndSearcher {
 
     private final FS4InvokerFactory fs4InvokerFactory;
 
+    private final RpcInvokerFactory rpcInvokerFactory;
+
     /**
      * Creates a Fastsearcher.
      *
@@ -79,6 +82,7 @@ public class FastSearcher extends VespaBackEndSearcher {
         this.dispatchBackend = dispatchBackend;
         this.dispatcher = dispatcher;
         this.fs4InvokerFactory = new FS4InvokerFactory(fs4ResourcePool, dispatcher.searchCluster(), this);
+        this.rpcInvokerFactory = dispatcher.createRpcInvokerFactory(this);
     }
 
     /**
@@ -210,7 +214,7 @@ public class FastSearcher extends VespaBackEndSearcher {
      * on the same host.
      */
     private SearchInvoker getSearchInvoker(Query query) {
-        Optional<SearchInvoker> invoker = dispatcher.getSearchInvoker(query, fs4InvokerFactory);
+        Optional<SearchInvoker> invoker = dispatcher.getSearchInvoker(query, fs4InvokerFactory, rpcInvokerFactory);
         if (invoker.isPresent()) {
             return invoker.get();
         }
@@ -12,6 +12,9 @@ import com.yahoo.log.LogLevel;
 /**
  * An LRU cache using number of hits cached inside the results as
  * size limiting factor. Directly modelled after com.yahoo.collections.Cache.
+ * <p>
+ * This is superseded by {@link com.yahoo.search.cache.ResultCacheSearcher}, which caches complete
+ * results, including grouping, independently of the backend protocol.
  *
  * @author Steinar Knutsen
  * @author bratseth
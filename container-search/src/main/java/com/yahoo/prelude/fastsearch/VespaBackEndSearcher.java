@@ -77,7 +77,7 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
     private CacheControl cacheControl = null;
 
     public final String getName() { return name; }
-    protected final String getDefaultDocsumClass() { return defaultDocsumClass; }
+    public final String getDefaultDocsumClass() { return defaultDocsumClass; }
 
     /** Sets default document summary class. Default is null */
     private void setDefaultDocsumClass(String docsumClass) { defaultDocsumClass = docsumClass; }
@@ -556,7 +556,7 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
         hit.setPartId(document.getPartId());
     }
 
-    protected DocsumDefinitionSet getDocsumDefinitionSet(Query query) {
+    public DocsumDefinitionSet getDocsumDefinitionSet(Query query) {
         DocumentDatabase db = getDocumentDatabase(query);
         return db.getDocsumDefinitionSet();
     }
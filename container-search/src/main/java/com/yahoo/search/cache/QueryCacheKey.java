@@ -0,0 +1,94 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.query.Ranking;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The key of a cached result: The canonical form of everything in a query which may change the result
+ * a search chain returns for it - the query tree, the document selection, ranking,
+ * grouping, the hit window, the summary class and fields, the trace level,
+ * and the value of every property of the query, whether set in the request, in a query profile
+ * or by a searcher. The only properties left out are those which cannot change the content of a
+ * cacheable result.
+ *
+ * @author agent
+ */
+public final class QueryCacheKey {
+
+    /** Properties which are not included in the key */
+    private static final Set<String> ignoredProperties = Set.of(Query.TIMEOUT.toString(), Query.NO_CACHE.toString());
+
+    private final String key;
+    private final int hashCode;
+
+    private QueryCacheKey(String key) {
+        this.key = key;
+        this.hashCode = key.hashCode();
+    }
+
+    /** Creates the cache key of a query. This causes the query to be parsed if it is not already. */
+    public static QueryCacheKey of(Query query) {
+        StringBuilder b = new StringBuilder();
+        b.append("tree=").append(query.getModel().getQueryTree());
+        b.append("|sources=").append(new TreeSet<>(query.getModel().getSources()));
+        b.append("|restrict=").append(new TreeSet<>(query.getModel().getRestrict()));
+        b.append("|searchpath=").append(query.getModel().getSearchPath());
+        b.append("|documentdb=").append(query.getModel().getDocumentDb());
+        b.append("|offset=").append(query.getOffset());
+        b.append("|hits=").append(query.getHits());
+
+        Ranking ranking = query.getRanking();
+        b.append("|profile=").append(ranking.getProfile());
+        b.append("|sorting=").append(ranking.getSorting());
+        b.append("|location=").append(ranking.getLocation());
+        b.append("|features=").append(new TreeMap<>(ranking.getFeatures().asMap()));
+        b.append("|properties=").append(new TreeMap<>(ranking.getProperties().asMap()));
+        b.append("|matchphase=").append(ranking.getMatchPhase().getAttribute())
+                                .append(',').append(ranking.getMatchPhase().getMaxHits())
+                                .append(',').append(ranking.getMatchPhase().getAscending());
+
+        for (GroupingRequest request : query.getSelect().getGrouping()) {
+            b.append("|grouping=").append(request.getRootOperation())
+                                  .append(',').append(request.continuations())
+                                  .append(',').append(request.getTimeZone().getID());
+        }
+
+        b.append("|summary=").append(query.getPresentation().getSummary());
+        b.append("|summaryfields=").append(new TreeSet<>(query.getPresentation().getSummaryFields()));
+        b.append("|bolding=").append(query.getPresentation().getBolding());
+        b.append("|tracelevel=").append(query.getTraceLevel());
+
+        for (Map.Entry<String, Object> property : new TreeMap<>(query.properties().listProperties()).entrySet()) {
+            if (ignoredProperties.contains(property.getKey())) continue;
+            b.append('|').append(property.getKey()).append('=').append(property.getValue());
+        }
+        return new QueryCacheKey(b.toString());
+    }
+
+    @Override
+    public int hashCode() { return hashCode; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if ( ! (o instanceof QueryCacheKey)) return false;
+        QueryCacheKey other = (QueryCacheKey)o;
+        return this.hashCode == other.hashCode && this.key.equals(other.key);
+    }
+
+    /** Returns the size of this key in bytes, as accounted in the cache */
+    int byteSize() {
+        return 2 * key.length() + 32;
+    }
+
+    @Override
+    public String toString() { return key; }
+
+}
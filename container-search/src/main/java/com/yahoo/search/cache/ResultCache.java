@@ -0,0 +1,172 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Result;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent cache of results bounded by the estimated number of bytes held rather than by the number of entries.
+ * <p>
+ * Entries expire after a given time to live, and all entries can be invalidated at once by moving the cache to
+ * a new generation, which is used when the content the results were created from has changed.
+ * When the cache is full, entries are evicted in approximately least recently used order
+ * (the "clock" algorithm: an entry which has been read since the last time it was considered gets a second chance).
+ * <p>
+ * Lookups and insertions do not block each other. The cached results are owned by the cache and
+ * must not be modified: Callers should clone the results they insert and read.
+ * <p>
+ * This is multithread safe.
+ *
+ * @author agent
+ */
+public class ResultCache {
+
+    private final ConcurrentHashMap<QueryCacheKey, Entry> entries = new ConcurrentHashMap<>();
+
+    /** The eviction order of the entries in this. May contain entries which are already removed */
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong clockSize = new AtomicLong(0);
+
+    private final AtomicLong bytes = new AtomicLong(0);
+    private final AtomicLong generation = new AtomicLong(0);
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long timeToLiveMillis;
+    private final Clock timer;
+
+    /**
+     * Creates a result cache
+     *
+     * @param maxBytes the max estimated total size of the cached results
+     * @param maxEntryBytes the max estimated size of a single result; larger results are not cached
+     * @param timeToLive the time after which an entry should no longer be returned
+     * @param timer the clock used to expire entries
+     */
+    public ResultCache(long maxBytes, long maxEntryBytes, Duration timeToLive, Clock timer) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size must be positive, not " + maxBytes);
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.timer = timer;
+    }
+
+    /** Returns the cached result for this key, or empty if there is no valid entry for it */
+    public Optional<Result> get(QueryCacheKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return Optional.empty();
+        if ( ! isValid(entry)) {
+            remove(entry);
+            return Optional.empty();
+        }
+        entry.used = true;
+        return Optional.of(entry.result);
+    }
+
+    /**
+     * Adds a result to this cache, replacing any previous entry for the same key.
+     *
+     * @return whether the result was added, which it is unless it is larger than the max entry size
+     */
+    public boolean put(QueryCacheKey key, Result result) {
+        long size = key.byteSize() + ResultSizeEstimator.estimate(result);
+        if (size > maxEntryBytes) return false;
+
+        Entry entry = new Entry(key, result, size, timer.millis(), generation.get());
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+            bytes.addAndGet(-previous.size);
+        bytes.addAndGet(size);
+        clock.add(entry);
+        clockSize.incrementAndGet();
+        evict();
+        return true;
+    }
+
+    /**
+     * Invalidates all the entries currently in this cache. They are removed lazily when accessed or
+     * evicted, so this is cheap.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /** Returns the current generation of this. Only results added in this generation are returned */
+    public long generation() { return generation.get(); }
+
+    /** Returns the estimated number of bytes currently held by this cache */
+    public long byteSize() { return bytes.get(); }
+
+    /** Returns the number of entries in this cache, including ones which have expired but are not yet removed */
+    public int size() { return entries.size(); }
+
+    private boolean isValid(Entry entry) {
+        return entry.generation == generation.get() && timer.millis() - entry.createdAt < timeToLiveMillis;
+    }
+
+    /** Removes the given entry if it is still present, that is, has not been replaced or removed */
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key, entry))
+            bytes.addAndGet(-entry.size);
+    }
+
+    private void evict() {
+        if (bytes.get() <= maxBytes && clockSize.get() <= 2L * entries.size() + 64) return;
+        synchronized (clock) { // one evicting thread is enough
+            // Drop replaced and removed entries from the clock when they make up most of it
+            for (long toCheck = clockSize.get(); toCheck > 0 && clockSize.get() > 2L * entries.size() + 64; toCheck--)
+                advance();
+
+            while (bytes.get() > maxBytes && clockSize.get() > 0)
+                advance();
+        }
+    }
+
+    /** Moves the clock past the next entry, either giving it a second chance or removing it */
+    private void advance() {
+        Entry candidate = clock.poll();
+        if (candidate == null) return;
+        clockSize.decrementAndGet();
+        if (entries.get(candidate.key) != candidate) return; // already removed or replaced
+        if (candidate.used && isValid(candidate)) { // second chance
+            candidate.used = false;
+            clock.add(candidate);
+            clockSize.incrementAndGet();
+        }
+        else if (bytes.get() > maxBytes || ! isValid(candidate)) {
+            remove(candidate);
+        }
+        else {
+            clock.add(candidate);
+            clockSize.incrementAndGet();
+        }
+    }
+
+    private static final class Entry {
+
+        final QueryCacheKey key;
+        final Result result;
+        final long size;
+        final long createdAt;
+        final long generation;
+
+        /** Whether this has been read since it was last considered for eviction */
+        volatile boolean used = false;
+
+        Entry(QueryCacheKey key, Result result, long size, long createdAt, long generation) {
+            this.key = key;
+            this.result = result;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.generation = generation;
+        }
+
+    }
+
+}
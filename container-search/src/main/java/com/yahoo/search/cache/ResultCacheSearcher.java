@@ -0,0 +1,138 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.inject.Inject;
+import com.yahoo.component.chain.dependencies.After;
+import com.yahoo.component.chain.dependencies.Before;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches complete results of queries, so that repeated queries are answered without leaving the container.
+ * <p>
+ * Results are cached filled with the summary class requested by the query, and with any grouping results.
+ * Results with errors or incomplete coverage are not cached. Queries setting <code>nocache</code> bypass the cache.
+ * <p>
+ * Results are cached under a key made from every property of the query which may change the result,
+ * see {@link QueryCacheKey}. The hits of a cached result do not refer to the query which produced them,
+ * and the copy returned for a later query refers to that query.
+ * <p>
+ * Cached results expire after the configured time to live, which is thus the max time a result may be stale
+ * after the content it was produced from has changed. When enabled, all cached results are also
+ * invalidated when the number of active documents reported by the content nodes changes, as that means
+ * documents have been added or removed, but updates which leave the number of documents unchanged
+ * are only reflected when the cached results expire.
+ * <p>
+ * Metrics: This emits the counts <code>query_cache.hits</code> and <code>query_cache.misses</code>,
+ * and the gauge <code>query_cache.bytes</code> with the estimated size of the cache.
+ *
+ * @author agent
+ */
+@After(PhaseNames.TRANSFORMED_QUERY)
+@Before(PhaseNames.BLENDED_RESULT)
+public class ResultCacheSearcher extends Searcher {
+
+    private final ResultCache cache;
+    private final boolean invalidateOnContentChange;
+
+    /** The number of active documents last reported in a result with full coverage, or -1 if none */
+    private final AtomicLong activeDocuments = new AtomicLong(-1);
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Gauge bytesGauge;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics) {
+        this(config, metrics, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a timer to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics, Clock clock) {
+        long maxBytes = (long)config.sizeMegaBytes() << 20;
+        this.cache = new ResultCache(maxBytes,
+                                     (long)(maxBytes * config.maxEntryPercentage() / 100.0),
+                                     Duration.ofMillis((long)(config.timeToLiveSeconds() * 1000)),
+                                     clock);
+        this.invalidateOnContentChange = config.invalidateOnContentChange();
+        this.hitCounter = metrics.declareCounter("query_cache.hits");
+        this.missCounter = metrics.declareCounter("query_cache.misses");
+        this.bytesGauge = metrics.declareGauge("query_cache.bytes");
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache()) return execution.search(query);
+
+        QueryCacheKey key = QueryCacheKey.of(query);
+        Optional<Result> cached = cache.get(key);
+        if (cached.isPresent()) {
+            hitCounter.add();
+            query.trace("Returning cached result", false, 3);
+            Result result = cached.get().clone();
+            result.setQuery(query);
+            setQuery(query, result.hits());
+            return result;
+        }
+
+        missCounter.add();
+        Result result = execution.search(query);
+        observeContent(result);
+        if (isCacheable(result)) {
+            execution.fill(result, query.getPresentation().getSummary());
+            if (isCacheable(result)) {
+                Result cacheable = result.clone();
+                setQuery(null, cacheable.hits()); // don't hold on to this query
+                cache.put(key, cacheable);
+            }
+            bytesGauge.sample(cache.byteSize());
+        }
+        return result;
+    }
+
+    /** Returns the cache used by this */
+    public ResultCache cache() { return cache; }
+
+    /** Sets the given query as the query which produced all the hits in the given group, recursively */
+    private void setQuery(Query query, HitGroup hits) {
+        hits.replaceQuery(query);
+        for (Hit hit : hits.asUnorderedHits()) {
+            if (hit instanceof HitGroup)
+                setQuery(query, (HitGroup)hit);
+            else
+                hit.replaceQuery(query);
+        }
+    }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        return coverage == null || coverage.getFull();
+    }
+
+    private void observeContent(Result result) {
+        if ( ! invalidateOnContentChange) return;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage == null || ! coverage.getFull()) return;
+
+        long previous = activeDocuments.getAndSet(coverage.getActive());
+        if (previous >= 0 && previous != coverage.getActive())
+            cache.invalidate();
+    }
+
+}
@@ -0,0 +1,51 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+
+/**
+ * Estimates the number of bytes of heap a result occupies. This is a rough estimate, used to bound
+ * the memory used by a cache, so it favors speed over precision.
+ *
+ * @author agent
+ */
+class ResultSizeEstimator {
+
+    private static final int resultOverhead = 512;
+    private static final int hitOverhead = 256;
+    private static final int fieldOverhead = 48;
+
+    private ResultSizeEstimator() {}
+
+    static long estimate(Result result) {
+        return resultOverhead + estimate(result.hits());
+    }
+
+    private static long estimate(HitGroup group) {
+        long size = estimate((Hit)group); // groups may have fields as well, e.g grouping aggregates
+        for (Hit hit : group.asUnorderedHits()) {
+            if (hit instanceof HitGroup)
+                size += estimate((HitGroup)hit);
+            else
+                size += estimate(hit);
+        }
+        return size;
+    }
+
+    private static long estimate(Hit hit) {
+        long[] size = new long[] { hitOverhead };
+        hit.forEachField((name, value) -> size[0] += fieldOverhead + 2 * name.length() + estimateValue(value));
+        return size[0];
+    }
+
+    private static long estimateValue(Object value) {
+        if (value == null) return 0;
+        if (value instanceof Number || value instanceof Boolean) return 16;
+        if (value instanceof CharSequence) return 2 * ((CharSequence)value).length();
+        if (value instanceof byte[]) return ((byte[])value).length;
+        return 2 * value.toString().length();
+    }
+
+}
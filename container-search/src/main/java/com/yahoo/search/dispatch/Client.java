@@ -15,12 +15,84 @@ import java.util.Optional;
 interface Client {
 
     void getDocsums(List<FastHit> hits, NodeConnection node, CompressionType compression,
-                    int uncompressedLength, byte[] compressedSlime, RpcFillInvoker.GetDocsumsResponseReceiver responseReceiver,
+                    int uncompressedLength, byte[] compressedSlime, DocsumsReceiver responseReceiver,
                     double timeoutSeconds);
 
+    void search(NodeConnection node, CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                ResponseReceiver responseReceiver, double timeoutSeconds);
+
     /** Creates a connection to a particular node in this */
     NodeConnection createConnection(String hostname, int port);
 
+    /** Receiver of the response to a getDocsums request */
+    interface DocsumsReceiver {
+
+        /** Called by a thread belonging to the client when a response or an error becomes available */
+        void receive(GetDocsumsResponseOrError response);
+
+    }
+
+    /** Receiver of the response to a search request */
+    interface ResponseReceiver {
+
+        /** Called by a thread belonging to the client when a response or an error becomes available */
+        void receive(ResponseOrError<SearchResponse> response);
+
+    }
+
+    class ResponseOrError<T> {
+
+        // One of these will be non empty and the other not
+        private final Optional<T> response;
+        private final Optional<String> error;
+
+        public static <T> ResponseOrError<T> fromResponse(T response) {
+            return new ResponseOrError<>(Optional.of(response), Optional.empty());
+        }
+
+        public static <T> ResponseOrError<T> fromError(String error) {
+            return new ResponseOrError<>(Optional.empty(), Optional.of(error));
+        }
+
+        private ResponseOrError(Optional<T> response, Optional<String> error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        /** Returns the response, or empty if there is an error */
+        public Optional<T> response() { return response; }
+
+        /** Returns the error or empty if there is a response */
+        public Optional<String> error() { return error; }
+
+    }
+
+    class SearchResponse {
+
+        private final byte compression;
+        private final int uncompressedSize;
+        private final byte[] compressedPayload;
+
+        public SearchResponse(byte compression, int uncompressedSize, byte[] compressedPayload) {
+            this.compression = compression;
+            this.uncompressedSize = uncompressedSize;
+            this.compressedPayload = compressedPayload;
+        }
+
+        public byte compression() {
+            return compression;
+        }
+
+        public int uncompressedSize() {
+            return uncompressedSize;
+        }
+
+        public byte[] compressedPayload() {
+            return compressedPayload;
+        }
+
+    }
+
     class GetDocsumsResponseOrError {
 
         // One of these will be non empty and the other not
@@ -54,12 +126,25 @@ interface Client {
         private final int uncompressedSize;
         private final byte[] compressedSlimeBytes;
         private final List<FastHit> hitsContext;
+        private final int[] docsumIndexes;
 
         public GetDocsumsResponse(byte compression, int uncompressedSize, byte[] compressedSlimeBytes, List<FastHit> hitsContext) {
+            this(compression, uncompressedSize, compressedSlimeBytes, hitsContext, null);
+        }
+
+        /**
+         * Creates a response to a request which was sent as a part of a larger request
+         *
+         * @param docsumIndexes the index of the docsum of each of the hits in the context in the response,
+         *                      or null if the docsums are in the same order as the hits
+         */
+        public GetDocsumsResponse(byte compression, int uncompressedSize, byte[] compressedSlimeBytes, List<FastHit> hitsContext,
+                                  int[] docsumIndexes) {
             this.compression = compression;
             this.uncompressedSize = uncompressedSize;
             this.compressedSlimeBytes = compressedSlimeBytes;
             this.hitsContext = hitsContext;
+            this.docsumIndexes = docsumIndexes;
         }
 
         public byte compression() {
@@ -78,6 +163,11 @@ interface Client {
             return hitsContext;
         }
 
+        /** Returns the index in the docsums of this response holding the docsum of the hit at the given index */
+        public int docsumIndex(int hitIndex) {
+            return docsumIndexes == null ? hitIndex : docsumIndexes[hitIndex];
+        }
+
     }
 
     interface NodeConnection {
@@ -15,9 +15,11 @@ import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.statistics.Statistics;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -42,6 +44,9 @@ public class Dispatcher extends AbstractComponent {
     /** If enabled, this internal dispatcher will be preferred over fdispatch whenever possible */
     private static final CompoundName dispatchInternal = new CompoundName("dispatch.internal");
 
+    /** The protocol used when dispatching queries internally, "fs4" or "rpc". Overrides the configured default */
+    private static final CompoundName dispatchProtocol = new CompoundName("dispatch.protocol");
+
     /** A model of the search cluster this dispatches to */
     private final SearchCluster searchCluster;
 
@@ -49,18 +54,34 @@ public class Dispatcher extends AbstractComponent {
     private final RpcResourcePool rpcResourcePool;
     private final boolean multilevelDispatch;
     private final boolean internalDispatchByDefault;
+    private final boolean rpcSearchByDefault;
+    /** Hedges requests to slow nodes, or null if requests should not be hedged */
+    private final RequestHedger requestHedger;
 
     public Dispatcher(String clusterId, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize, VipStatus vipStatus) {
-        this(new SearchCluster(clusterId, dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus), dispatchConfig);
+        this(clusterId, dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus, Statistics.nullImplementation);
+    }
+
+    public Dispatcher(String clusterId, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize,
+                      VipStatus vipStatus, Statistics statistics) {
+        this(new SearchCluster(clusterId, dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus), dispatchConfig, statistics);
     }
 
     public Dispatcher(SearchCluster searchCluster, DispatchConfig dispatchConfig) {
+        this(searchCluster, dispatchConfig, Statistics.nullImplementation);
+    }
+
+    public Dispatcher(SearchCluster searchCluster, DispatchConfig dispatchConfig, Statistics statistics) {
         this.searchCluster = searchCluster;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy());
         this.rpcResourcePool = new RpcResourcePool(dispatchConfig);
         this.multilevelDispatch = dispatchConfig.useMultilevelDispatch();
         this.internalDispatchByDefault = !dispatchConfig.useFdispatchByDefault();
+        this.rpcSearchByDefault = dispatchConfig.searchProtocol() == DispatchConfig.SearchProtocol.RPC;
+        this.requestHedger = dispatchConfig.hedgeRequests()
+                             ? new RequestHedger(searchCluster, loadBalancer, dispatchConfig.hedgePercentile(),
+                                                 dispatchConfig.hedgeMinDelayMillis(), dispatchConfig.hedgeMaxPercentage(), statistics)
+                             : null;
     }
 
     /** Returns the search cluster this dispatches to */
@@ -68,6 +89,11 @@ public class Dispatcher extends AbstractComponent {
         return searchCluster;
     }
 
+    /** Returns a factory for invokers searching the nodes of this over RPC on behalf of the given searcher */
+    public RpcInvokerFactory createRpcInvokerFactory(VespaBackEndSearcher searcher) {
+        return new RpcInvokerFactory(rpcResourcePool, searchCluster, searcher);
+    }
+
     @Override
     public void deconstruct() {
         rpcResourcePool.release();
@@ -88,15 +114,25 @@ public class Dispatcher extends AbstractComponent {
         return Optional.empty();
     }
 
-    public Optional<SearchInvoker> getSearchInvoker(Query query, FS4InvokerFactory fs4InvokerFactory) {
+    public Optional<SearchInvoker> getSearchInvoker(Query query, InvokerFactory invokerFactory) {
+        return getSearchInvoker(query, invokerFactory, null);
+    }
+
+    /**
+     * Returns an invoker for the given query, or empty if it should not be dispatched internally.
+     * The rpc invoker factory is used instead of the fs4 one when the rpc protocol is selected for this query,
+     * either by the <code>dispatch.protocol</code> query property or by config, and the query can be served over rpc.
+     */
+    public Optional<SearchInvoker> getSearchInvoker(Query query, InvokerFactory fs4InvokerFactory, RpcInvokerFactory rpcInvokerFactory) {
         if (multilevelDispatch || ! query.properties().getBoolean(dispatchInternal, internalDispatchByDefault)) {
             return Optional.empty();
         }
 
-        Optional<SearchInvoker> invoker = getSearchPathInvoker(query, fs4InvokerFactory::getSearchInvoker);
+        InvokerFactory invokerFactory = useRpcSearch(query, rpcInvokerFactory) ? rpcInvokerFactory : fs4InvokerFactory;
+        Optional<SearchInvoker> invoker = getSearchPathInvoker(query, invokerFactory::getSearchInvoker);
 
         if (!invoker.isPresent()) {
-            invoker = getInternalInvoker(query, fs4InvokerFactory::getSearchInvoker);
+            invoker = getInternalInvoker(query, invokerFactory);
         }
         if (invoker.isPresent() && query.properties().getBoolean(com.yahoo.search.query.Model.ESTIMATE)) {
             query.setHits(0);
@@ -105,6 +141,15 @@ public class Dispatcher extends AbstractComponent {
         return invoker;
     }
 
+    private boolean useRpcSearch(Query query, RpcInvokerFactory rpcInvokerFactory) {
+        if (rpcInvokerFactory == null) {
+            return false;
+        }
+        String protocol = query.properties().getString(dispatchProtocol);
+        boolean rpc = (protocol == null) ? rpcSearchByDefault : "rpc".equalsIgnoreCase(protocol);
+        return rpc && rpcInvokerFactory.supports(query);
+    }
+
     @FunctionalInterface
     private interface SearchInvokerSupplier {
         Optional<SearchInvoker> supply(Query query, OptionalInt groupId, List<Node> nodes, boolean acceptIncompleteCoverage);
@@ -129,12 +174,12 @@ public class Dispatcher extends AbstractComponent {
         }
     }
 
-    private Optional<SearchInvoker> getInternalInvoker(Query query, SearchInvokerSupplier invokerFactory) {
+    private Optional<SearchInvoker> getInternalInvoker(Query query, InvokerFactory invokerFactory) {
         Optional<Node> directNode = searchCluster.directDispatchTarget();
         if (directNode.isPresent()) {
             Node node = directNode.get();
             query.trace(false, 2, "Dispatching directly to ", node);
-            return invokerFactory.supply(query, OptionalInt.empty(), Arrays.asList(node), true);
+            return invokerFactory.getSearchInvoker(query, OptionalInt.empty(), Arrays.asList(node), true);
         }
 
         int covered = searchCluster.groupsWithSufficientCoverage();
@@ -149,10 +194,13 @@ public class Dispatcher extends AbstractComponent {
             }
             Group group = groupInCluster.get();
             boolean acceptIncompleteCoverage = (i == max - 1);
-            Optional<SearchInvoker> invoker = invokerFactory.supply(query, OptionalInt.of(group.id()), group.nodes(),
+            Optional<SearchInvoker> invoker = invokerFactory.getSearchInvoker(query, OptionalInt.of(group.id()), group.nodes(),
                     acceptIncompleteCoverage);
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching internally to search group ", group.id());
+                if (requestHedger != null) {
+                    invoker = Optional.of(hedging(invoker.get(), invokerFactory));
+                }
                 query.getModel().setSearchPath("/" + group.id());
                 invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
                 return invoker;
@@ -167,4 +215,14 @@ public class Dispatcher extends AbstractComponent {
 
         return Optional.empty();
     }
+
+    /** Returns an invoker which hedges the requests made by the given invoker to slow nodes */
+    private SearchInvoker hedging(SearchInvoker invoker, InvokerFactory invokerFactory) {
+        InterleavedSearchInvoker interleaved = (invoker instanceof InterleavedSearchInvoker)
+                                               ? (InterleavedSearchInvoker) invoker
+                                               : new InterleavedSearchInvoker(Collections.singletonList(invoker),
+                                                                              invokerFactory.searcher, searchCluster);
+        interleaved.enableHedging(requestHedger, invokerFactory);
+        return interleaved;
+    }
 }
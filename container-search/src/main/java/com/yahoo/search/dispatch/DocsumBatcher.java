@@ -0,0 +1,280 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.DaemonThreadFactory;
+import com.yahoo.document.GlobalId;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces getDocsums requests to the same node for the same summary class, document type, rank profile
+ * and compression type which arrive within a short time window into a single request. Global ids requested by several queries
+ * are only requested once, and the docsums of the combined response are handed back to each of the
+ * requesters as if they had made their own request.
+ * <p>
+ * The first request for a given node and summary class opens a batch which is sent by a timer thread when
+ * the window has passed, and requests arriving in the meantime join it. A batch is sent right away by the
+ * request making it reach its max size. None of the requesters block. This trades a bounded increase in fill latency for fewer,
+ * larger requests to the content nodes.
+ * <p>
+ * Once this is shut down, requests which are not yet sent, and all later requests, are answered with an error.
+ * <p>
+ * This is multithread safe.
+ *
+ * @author agent
+ */
+class DocsumBatcher {
+
+    private final Client client;
+    private final Compressor compressor;
+    private final long windowNanos;
+    private final int maxHitsPerBatch;
+
+    private final Map<BatchKey, Batch> openBatches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("docsum-batcher-"));
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates a batcher
+     *
+     * @param windowMicros the time a batch waits for requests to join it after it is opened
+     * @param maxHitsPerBatch the number of hits at which a batch is sent without waiting for the window to end
+     */
+    DocsumBatcher(Client client, Compressor compressor, long windowMicros, int maxHitsPerBatch) {
+        this.client = client;
+        this.compressor = compressor;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxHitsPerBatch = maxHitsPerBatch;
+    }
+
+    /** Requests docsums for the given hits as part of a batch. The response is handed to the given receiver */
+    void getDocsums(List<FastHit> hits, Client.NodeConnection node, String summaryClass, String docType, String rankProfile,
+                    CompressionType compression, Client.DocsumsReceiver receiver, double timeoutSeconds) {
+        if (shutdown) {
+            receiver.receive(Client.GetDocsumsResponseOrError.fromError(shutdownMessage()));
+            return;
+        }
+        BatchKey key = new BatchKey(node, summaryClass, docType, rankProfile, compression);
+        Request request = new Request(hits, receiver, timeoutSeconds);
+        while (true) {
+            Batch batch = openBatches.computeIfAbsent(key, Batch::new);
+            Batch.AddResult added = batch.add(request, maxHitsPerBatch);
+            if (added == Batch.AddResult.CLOSED) { // lost a race with the sender of this batch
+                openBatches.remove(key, batch);
+                continue;
+            }
+            if (added == Batch.AddResult.FULL) {
+                send(batch);
+            }
+            else if (added == Batch.AddResult.OPENED) {
+                try {
+                    timer.schedule(() -> send(batch), windowNanos, TimeUnit.NANOSECONDS);
+                }
+                catch (RejectedExecutionException e) { // shut down concurrently with this
+                    fail(batch);
+                }
+            }
+            return;
+        }
+    }
+
+    /** Stops the timer of this. Batches which are not yet sent are answered with an error instead */
+    void shutdown() {
+        shutdown = true;
+        timer.shutdownNow();
+        for (Batch batch : openBatches.values())
+            fail(batch);
+    }
+
+    /** Answers the requests in the given batch with an error unless it has already been sent */
+    private void fail(Batch batch) {
+        openBatches.remove(batch.key, batch);
+        List<Request> requests = batch.close();
+        if (requests == null) return; // already sent
+
+        Client.GetDocsumsResponseOrError error = Client.GetDocsumsResponseOrError.fromError(shutdownMessage());
+        for (Request request : requests)
+            request.receiver.receive(error);
+    }
+
+    private String shutdownMessage() {
+        return "Could not fill hits: The docsum batcher is shut down";
+    }
+
+    /** Sends the given batch unless it has already been sent */
+    private void send(Batch batch) {
+        openBatches.remove(batch.key, batch);
+        List<Request> requests = batch.close();
+        if (requests == null) return; // already sent
+
+        // Assign each distinct global id an index in the combined request
+        Map<GlobalId, Integer> docsumIndexes = new HashMap<>();
+        List<FastHit> distinctHits = new ArrayList<>();
+        double timeoutSeconds = 0;
+        for (Request request : requests) {
+            request.docsumIndexes = new int[request.hits.size()];
+            for (int i = 0; i < request.hits.size(); i++) {
+                FastHit hit = request.hits.get(i);
+                Integer index = docsumIndexes.get(hit.getGlobalId());
+                if (index == null) {
+                    index = distinctHits.size();
+                    docsumIndexes.put(hit.getGlobalId(), index);
+                    distinctHits.add(hit);
+                }
+                request.docsumIndexes[i] = index;
+            }
+            timeoutSeconds = Math.max(timeoutSeconds, request.timeoutSeconds);
+        }
+
+        byte[] serializedSlime = BinaryFormat.encode(toSlime(batch.key, distinctHits));
+        Compressor.Compression compressionResult = compressor.compress(batch.key.compression, serializedSlime);
+        client.getDocsums(distinctHits, batch.key.node, compressionResult.type(), serializedSlime.length, compressionResult.data(),
+                          new FanOutReceiver(requests), timeoutSeconds);
+    }
+
+    private static Slime toSlime(BatchKey key, List<FastHit> hits) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        if (key.summaryClass != null) {
+            root.setString("class", key.summaryClass);
+        }
+        if (key.docType != null) {
+            root.setString("doctype", key.docType);
+        }
+        if (key.rankProfile != null) {
+            root.setString("ranking", key.rankProfile);
+        }
+        Cursor gids = root.setArray("gids");
+        for (FastHit hit : hits) {
+            gids.addData(hit.getGlobalId().getRawId());
+        }
+        return slime;
+    }
+
+    /** Hands the response to a batch to each of the requests in it */
+    private static class FanOutReceiver implements Client.DocsumsReceiver {
+
+        private final List<Request> requests;
+
+        FanOutReceiver(List<Request> requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public void receive(Client.GetDocsumsResponseOrError responseOrError) {
+            if (responseOrError.error().isPresent()) {
+                for (Request request : requests)
+                    request.receiver.receive(responseOrError);
+                return;
+            }
+            Client.GetDocsumsResponse response = responseOrError.response().get();
+            for (Request request : requests) {
+                request.receiver.receive(Client.GetDocsumsResponseOrError.fromResponse(
+                        new Client.GetDocsumsResponse(response.compression(), response.uncompressedSize(),
+                                                      response.compressedSlimeBytes(), request.hits, request.docsumIndexes)));
+            }
+        }
+
+    }
+
+    private static class Request {
+
+        final List<FastHit> hits;
+        final Client.DocsumsReceiver receiver;
+        final double timeoutSeconds;
+
+        /** The index of each hit in the combined request, assigned when the batch is sent */
+        int[] docsumIndexes;
+
+        Request(List<FastHit> hits, Client.DocsumsReceiver receiver, double timeoutSeconds) {
+            this.hits = hits;
+            this.receiver = receiver;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+    }
+
+    private static class Batch {
+
+        enum AddResult { OPENED, ADDED, FULL, CLOSED }
+
+        final BatchKey key;
+
+        private List<Request> requests = new ArrayList<>();
+        private int hitCount = 0;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        synchronized AddResult add(Request request, int maxHits) {
+            if (requests == null) return AddResult.CLOSED;
+            requests.add(request);
+            hitCount += request.hits.size();
+            if (hitCount >= maxHits) return AddResult.FULL; // the timer finds it already sent
+            return requests.size() == 1 ? AddResult.OPENED : AddResult.ADDED;
+        }
+
+        /** Closes this batch and returns its requests, or null if it is already closed */
+        synchronized List<Request> close() {
+            List<Request> closed = requests;
+            requests = null;
+            return closed == null ? null : Collections.unmodifiableList(closed);
+        }
+
+    }
+
+    private static final class BatchKey {
+
+        final Client.NodeConnection node;
+        final String summaryClass;
+        final String docType;
+        final String rankProfile;
+        final CompressionType compression;
+
+        BatchKey(Client.NodeConnection node, String summaryClass, String docType, String rankProfile,
+                 CompressionType compression) {
+            this.node = node;
+            this.summaryClass = summaryClass;
+            this.docType = docType;
+            this.rankProfile = rankProfile;
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof BatchKey)) return false;
+            BatchKey other = (BatchKey)o;
+            return node == other.node &&
+                   Objects.equals(summaryClass, other.summaryClass) &&
+                   Objects.equals(docType, other.docType) &&
+                   Objects.equals(rankProfile, other.rankProfile) &&
+                   compression == other.compression;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(node), summaryClass, docType, rankProfile, compression);
+        }
+
+    }
+
+}
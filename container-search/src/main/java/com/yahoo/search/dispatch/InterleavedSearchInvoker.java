@@ -6,16 +6,23 @@ import com.yahoo.prelude.fastsearch.CacheKey;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitSortOrderer;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -31,6 +38,9 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
  * InterleavedSearchInvoker uses multiple {@link SearchInvoker} objects to interface with content
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
  * collects the results. The user of this class is responsible for merging the results if needed.
+ * <p>
+ * If hedging is enabled, the request to a node which is slow to answer is also sent to a node holding the same
+ * documents in another group, and the response which arrives first is used.
  *
  * @author ollivir
  */
@@ -49,6 +59,10 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private long deadline = 0;
 
     private Result result = null;
+    /** The best concrete hits received so far, or null if hits cannot be ordered before they are filled */
+    private SortedHitsMerger topHits = null;
+    /** Orders the hits in topHits by their sort data, or null if they are in relevance order */
+    private SortDataComparator sortDataOrder = null;
     private long answeredDocs = 0;
     private long answeredActiveDocs = 0;
     private long answeredSoonActiveDocs = 0;
@@ -60,6 +74,18 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
     private boolean trimResult = false;
 
+    /** Decides when and where to hedge requests, or null if requests are not hedged */
+    private RequestHedger hedger = null;
+    private InvokerFactory hedgeInvokerFactory = null;
+    /** The time each request to a node was sent, when hedging */
+    private Map<SearchInvoker, Long> sendTimes = null;
+    /** The time at which each request which is not hedged yet should be hedged */
+    private Map<SearchInvoker, Long> hedgeTimes = null;
+    /** The other invoker of each hedged pair of invokers */
+    private Map<SearchInvoker, SearchInvoker> hedgePartners = null;
+    /** The invokers which are hedges of another invoker and have not answered or been closed yet */
+    private Set<SearchInvoker> hedges = null;
+
     public InterleavedSearchInvoker(Collection<SearchInvoker> invokers, VespaBackEndSearcher searcher, SearchCluster searchCluster) {
         super(Optional.empty());
         this.invokers = Collections.newSetFromMap(new IdentityHashMap<>());
@@ -69,6 +95,22 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         this.availableForProcessing = newQueue();
     }
 
+    /**
+     * Enables hedging of the requests made by this.
+     * This must be called before the search request is sent.
+     *
+     * @param hedger decides when and to which node to hedge requests
+     * @param invokerFactory creates the invokers of the hedge requests
+     */
+    void enableHedging(RequestHedger hedger, InvokerFactory invokerFactory) {
+        this.hedger = hedger;
+        this.hedgeInvokerFactory = invokerFactory;
+        this.sendTimes = new IdentityHashMap<>();
+        this.hedgeTimes = new IdentityHashMap<>();
+        this.hedgePartners = new IdentityHashMap<>();
+        this.hedges = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
     /**
      * Sends search queries to the contained {@link SearchInvoker} sub-invokers. If the search
      * query has an offset other than zero, it will be reset to zero and the expected hit amount
@@ -89,6 +131,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         for (SearchInvoker invoker : invokers) {
             invoker.sendSearchRequest(query, null);
             askedNodes++;
+            if (hedger != null) {
+                scheduleHedge(invoker);
+            }
         }
 
         query.setHits(originalHits);
@@ -100,14 +145,33 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         long nextTimeout = query.getTimeLeft();
         try {
             while (!invokers.isEmpty() && nextTimeout >= 0) {
-                SearchInvoker invoker = availableForProcessing.poll(nextTimeout, TimeUnit.MILLISECONDS);
+                long pollStart = currentTime();
+                long timeout = nextTimeout;
+                boolean hedgeDue = false;
+                long nextHedge = nextHedgeTime();
+                if (nextHedge - pollStart < timeout) {
+                    timeout = Math.max(0, nextHedge - pollStart);
+                    hedgeDue = true;
+                }
+                SearchInvoker invoker = availableForProcessing.poll(timeout, TimeUnit.MILLISECONDS);
                 if (invoker == null) {
-                    log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
-                    break;
-                } else {
-                    mergeResult(invoker.getSearchResult(cacheKey, execution));
-                    ejectInvoker(invoker);
+                    if ( ! hedgeDue) {
+                        log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
+                        break;
+                    }
+                    sendDueHedges();
+                    nextTimeout -= currentTime() - pollStart;
+                    continue;
+                }
+                if ( ! invokers.contains(invoker)) { // the other invoker of a hedged pair has already answered
+                    nextTimeout -= currentTime() - pollStart;
+                    continue;
                 }
+                if (hedger != null) {
+                    hedgeAnswered(invoker);
+                }
+                mergeResult(invoker.getSearchResult(cacheKey, execution));
+                ejectInvoker(invoker);
                 nextTimeout = nextTimeout();
             }
         } catch (InterruptedException e) {
@@ -117,17 +181,27 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         if (result == null) {
             result = new Result(query);
         }
+        boolean orderedBySortData = false;
+        if (topHits != null) {
+            result.hits().addAll(topHits.hits());
+            if (sortDataOrder != null) {
+                result.setHitOrderer(new HitSortOrderer(sortDataOrder));
+                orderedBySortData = true;
+            }
+            topHits = null;
+            sortDataOrder = null;
+        }
         insertTimeoutErrors();
         result.setCoverage(createCoverage());
-        trimResult(execution);
+        trimResult(execution, orderedBySortData);
         Result ret = result;
         result = null;
         return ret;
     }
 
-    private void trimResult(Execution execution) {
+    private void trimResult(Execution execution, boolean orderedBySortData) {
         if (trimResult) {
-            if (result.getHitOrderer() != null) {
+            if (result.getHitOrderer() != null && ! orderedBySortData) {
                 searcher.fill(result, Execution.ATTRIBUTEPREFETCH, execution);
             }
 
@@ -186,11 +260,62 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
         if (result == null) {
             result = partialResult;
+            if (result.getHitOrderer() == null) {
+                // Hits are in relevance order: Keep only the ones which may end up in the final window
+                topHits = new SortedHitsMerger(query.getOffset() + query.getHits());
+                topHits.merge(removeConcreteHits(result));
+            } else if (query.getRanking().getSorting() != null) {
+                SortDataComparator order = new SortDataComparator(query.getRanking().getSorting());
+                if (hasSortData(result, order)) {
+                    // Hits are in the order of their sort data, which is known before they are filled
+                    sortDataOrder = order;
+                    topHits = new SortedHitsMerger(query.getOffset() + query.getHits(), order);
+                    topHits.merge(removeConcreteHits(result));
+                }
+            }
             return;
         }
 
         result.mergeWith(partialResult);
-        result.hits().addAll(partialResult.hits().asUnorderedHits());
+        if (sortDataOrder != null && topHits != null && ! hasSortData(partialResult, sortDataOrder)) {
+            // These hits cannot be ordered with the others before they are filled
+            result.hits().addAll(topHits.hits());
+            topHits = null;
+        }
+        if (topHits != null) {
+            List<Hit> concreteHits = new ArrayList<>(partialResult.hits().size());
+            for (Hit hit : partialResult.hits().asList()) {
+                if (hit.isAuxiliary())
+                    result.hits().add(hit);
+                else
+                    concreteHits.add(hit);
+            }
+            topHits.merge(concreteHits);
+        } else {
+            // The order depends on field values which are not available until the hits are filled
+            result.hits().addAll(partialResult.hits().asUnorderedHits());
+        }
+    }
+
+    /** Returns whether all the concrete hits of the given result can be ordered by their sort data */
+    private static boolean hasSortData(Result result, SortDataComparator order) {
+        for (Hit hit : result.hits().asUnorderedHits()) {
+            if ( ! hit.isAuxiliary() && ! order.hasSortData(hit)) return false;
+        }
+        return true;
+    }
+
+    /** Removes the concrete hits from the given result and returns them in sorted order */
+    private static List<Hit> removeConcreteHits(Result result) {
+        List<Hit> concreteHits = new ArrayList<>(result.hits().size());
+        for (Iterator<Hit> i = result.hits().iterator(); i.hasNext(); ) {
+            Hit hit = i.next();
+            if ( ! hit.isAuxiliary()) {
+                concreteHits.add(hit);
+                i.remove();
+            }
+        }
+        return concreteHits;
     }
 
     private void collectCoverage(Coverage source) {
@@ -241,6 +366,106 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         }
     }
 
+    private void scheduleHedge(SearchInvoker invoker) {
+        Optional<Node> node = invoker.node();
+        if ( ! node.isPresent()) return;
+        long now = currentTime();
+        sendTimes.put(invoker, now);
+        hedger.requestSent();
+        long delay = hedger.hedgeDelay(node.get());
+        if (delay < Long.MAX_VALUE) {
+            hedgeTimes.put(invoker, now + delay);
+        }
+    }
+
+    /** Returns the time at which the next request should be hedged, or Long.MAX_VALUE if none should */
+    private long nextHedgeTime() {
+        if (hedger == null) return Long.MAX_VALUE;
+        long next = Long.MAX_VALUE;
+        for (long hedgeTime : hedgeTimes.values()) {
+            next = Math.min(next, hedgeTime);
+        }
+        return next;
+    }
+
+    private void sendDueHedges() throws IOException {
+        long now = currentTime();
+        List<SearchInvoker> due = new ArrayList<>();
+        for (Map.Entry<SearchInvoker, Long> entry : hedgeTimes.entrySet()) {
+            if (entry.getValue() <= now) {
+                due.add(entry.getKey());
+            }
+        }
+        for (SearchInvoker invoker : due) {
+            hedgeTimes.remove(invoker);
+            Optional<Node> alternative = hedger.alternativeTo(invoker.node().get());
+            if ( ! alternative.isPresent()) continue;
+            if ( ! hedger.tryHedge()) continue;
+            Optional<SearchInvoker> hedge = hedgeInvokerFactory.createNodeSearchInvoker(query, alternative.get());
+            if ( ! hedge.isPresent()) continue;
+            sendHedge(invoker, hedge.get(), alternative.get());
+        }
+    }
+
+    private void sendHedge(SearchInvoker invoker, SearchInvoker hedge, Node hedgeNode) throws IOException {
+        hedge.setMonitor(this);
+        int originalHits = query.getHits();
+        int originalOffset = query.getOffset();
+        query.setHits(query.getHits() + query.getOffset());
+        query.setOffset(0);
+        try {
+            hedge.sendSearchRequest(query, null);
+        } finally {
+            query.setHits(originalHits);
+            query.setOffset(originalOffset);
+        }
+        invokers.add(hedge);
+        hedges.add(hedge);
+        hedgePartners.put(invoker, hedge);
+        hedgePartners.put(hedge, invoker);
+        sendTimes.put(hedge, currentTime());
+        hedger.hedgeSent(hedgeNode);
+        query.trace(false, 3, "Hedged the request to ", invoker.node().get(), " by sending it also to ", hedgeNode);
+    }
+
+    /**
+     * Records the latency of the given invoker, and closes the other invoker of its pair if it is hedged,
+     * recording the time it had been waiting as a latency of its node as well
+     */
+    private void hedgeAnswered(SearchInvoker invoker) {
+        long now = currentTime();
+        hedgeTimes.remove(invoker);
+        Long sendTime = sendTimes.remove(invoker);
+        if (sendTime != null && invoker.node().isPresent()) {
+            if (hedges.remove(invoker))
+                hedger.hedgeAnswered(invoker.node().get(), now - sendTime);
+            else
+                hedger.recordLatency(invoker.node().get(), now - sendTime);
+        }
+        SearchInvoker partner = hedgePartners.remove(invoker);
+        if (partner == null) return;
+
+        hedgePartners.remove(partner);
+        Long partnerSendTime = sendTimes.remove(partner);
+        if (partnerSendTime != null && partner.node().isPresent()) {
+            // The partner would have taken at least this long
+            hedger.recordLatency(partner.node().get(), now - partnerSendTime);
+        }
+        if (hedges.contains(partner)) {
+            cancelHedge(partner);
+        } else {
+            hedger.hedgeWon();
+        }
+        if (invokers.remove(partner)) {
+            partner.close();
+        }
+    }
+
+    private void cancelHedge(SearchInvoker hedge) {
+        hedges.remove(hedge);
+        hedge.node().ifPresent(hedger::hedgeCancelled);
+    }
+
     private void ejectInvoker(SearchInvoker invoker) {
         invokers.remove(invoker);
         invoker.release();
@@ -248,6 +473,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
     @Override
     protected void release() {
+        if (hedges != null && ! hedges.isEmpty()) {
+            new ArrayList<>(hedges).forEach(this::cancelHedge);
+        }
         if (!invokers.isEmpty()) {
             invokers.forEach(SearchInvoker::close);
             invokers.clear();
@@ -0,0 +1,120 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
+import com.yahoo.search.Query;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Base class for factories creating {@link SearchInvoker} objects for a given protocol. Subclasses provide
+ * invokers for single content nodes, while this takes care of combining them and checking coverage.
+ *
+ * @author agent
+ */
+public abstract class InvokerFactory {
+
+    protected final SearchCluster searchCluster;
+    protected final VespaBackEndSearcher searcher;
+
+    protected InvokerFactory(SearchCluster searchCluster, VespaBackEndSearcher searcher) {
+        this.searchCluster = searchCluster;
+        this.searcher = searcher;
+    }
+
+    /**
+     * Creates a {@link SearchInvoker} for a single content node.
+     *
+     * @param query the search query being processed
+     * @param node the content node to search
+     * @return Optional containing the SearchInvoker or <i>empty</i> if the node cannot be reached
+     */
+    protected abstract Optional<SearchInvoker> createNodeSearchInvoker(Query query, Node node);
+
+    /**
+     * Create a {@link SearchInvoker} for a list of content nodes.
+     *
+     * @param query
+     *            the search query being processed
+     * @param groupId
+     *            the id of the node group to which the nodes belong
+     * @param nodes
+     *            pre-selected list of content nodes
+     * @param acceptIncompleteCoverage
+     *            if some of the nodes are unavailable and this parameter is
+     *            <b>false</b>, verify that the remaining set of nodes has enough
+     *            coverage
+     * @return Optional containing the SearchInvoker or <i>empty</i> if some node in the
+     *         list is invalid and the remaining coverage is not sufficient
+     */
+    public Optional<SearchInvoker> getSearchInvoker(Query query, OptionalInt groupId, List<Node> nodes, boolean acceptIncompleteCoverage) {
+        List<SearchInvoker> invokers = new ArrayList<>(nodes.size());
+        Set<Integer> failed = null;
+        for (Node node : nodes) {
+            boolean nodeAdded = false;
+            if (node.isWorking()) {
+                Optional<SearchInvoker> invoker = createNodeSearchInvoker(query, node);
+                if (invoker.isPresent()) {
+                    invokers.add(invoker.get());
+                    nodeAdded = true;
+                }
+            }
+
+            if (!nodeAdded) {
+                if (failed == null) {
+                    failed = new HashSet<>();
+                }
+                failed.add(node.key());
+            }
+        }
+
+        if (failed != null) {
+            List<Node> success = new ArrayList<>(nodes.size() - failed.size());
+            for (Node node : nodes) {
+                if (!failed.contains(node.key())) {
+                    success.add(node);
+                }
+            }
+            if (!searchCluster.isPartialGroupCoverageSufficient(groupId, success)) {
+                if (acceptIncompleteCoverage) {
+                    invokers.add(createCoverageErrorInvoker(nodes, failed));
+                } else {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        if (invokers.size() == 1) {
+            return Optional.of(invokers.get(0));
+        } else {
+            return Optional.of(new InterleavedSearchInvoker(invokers, searcher, searchCluster));
+        }
+    }
+
+    private SearchInvoker createCoverageErrorInvoker(List<Node> nodes, Set<Integer> failed) {
+        StringBuilder down = new StringBuilder("Connection failure on nodes with distribution-keys: ");
+        int count = 0;
+        for (Node node : nodes) {
+            if (failed.contains(node.key())) {
+                if (count > 0) {
+                    down.append(", ");
+                }
+                count++;
+                down.append(node.key());
+            }
+        }
+        Coverage coverage = new Coverage(0, 0, 0);
+        coverage.setNodesTried(count);
+        return new SearchErrorInvoker(ErrorMessage.createBackendCommunicationError(down.toString()), coverage);
+    }
+
+}
@@ -3,12 +3,14 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 
 /**
@@ -26,17 +28,27 @@ public class LoadBalancer {
     private static final long MIN_LATENCY_DECAY_RATE = 42;
     private static final double INITIAL_QUERY_TIME = 0.001;
     private static final double MIN_QUERY_TIME = 0.001;
+    /** The time after which the weight of a latency sample in the decaying search time has dropped to 1/e */
+    private static final long LATENCY_DECAY_TIME_NANOS = 100 * 1000 * 1000;
+    /** The time after which the search time estimate of a group which gets no queries has moved 1-1/e towards the best */
+    private static final long IDLE_DECAY_TIME_NANOS = 1000 * 1000 * 1000;
 
     private final List<GroupStatus> scoreboard;
     private final GroupScheduler scheduler;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? DispatchConfig.DistributionPolicy.ROUNDROBIN : DispatchConfig.DistributionPolicy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
         for (Group group : searchCluster.orderedGroups()) {
             scoreboard.add(new GroupStatus(group));
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        if (policy == DispatchConfig.DistributionPolicy.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.LEAST_LOADED) {
+            this.scheduler = new LeastLoadedScheduler(new Random(), scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -86,12 +98,48 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Allocates the given group for a request which was not given by {@link #takeGroup}, such as a hedged request,
+     * so that it counts towards the load of the group. The allocation must be ended by
+     * either {@link #releaseGroup} or {@link #cancelGroup}.
+     */
+    public void allocateGroup(Group group) {
+        synchronized (this) {
+            for (GroupStatus sched : scoreboard) {
+                if (sched.group.id() == group.id()) {
+                    sched.allocate();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends an allocation of the given group whose request was abandoned before it completed,
+     * without recording a search time for it.
+     */
+    public void cancelGroup(Group group) {
+        synchronized (this) {
+            for (GroupStatus sched : scoreboard) {
+                if (sched.group.id() == group.id()) {
+                    sched.cancel();
+                    break;
+                }
+            }
+        }
+    }
+
     static class GroupStatus {
         private final Group group;
         private int allocations = 0;
         private long queries = 0;
         private double averageSearchTime = INITIAL_QUERY_TIME;
 
+        /** Search time estimate which decays with elapsed time rather than with the number of queries */
+        private double decayingSearchTime = INITIAL_QUERY_TIME;
+        private long lastReleaseNanos;
+        private boolean released = false;
+
         GroupStatus(Group group) {
             this.group = group;
         }
@@ -100,7 +148,19 @@ public class LoadBalancer {
             allocations++;
         }
 
+        void cancel() {
+            allocations--;
+            if (allocations < 0) {
+                log.warning("Double free of query target group detected");
+                allocations = 0;
+            }
+        }
+
         void release(boolean success, double searchTime) {
+            release(success, searchTime, System.nanoTime());
+        }
+
+        void release(boolean success, double searchTime, long nowNanos) {
             allocations--;
             if (allocations < 0) {
                 log.warning("Double free of query target group detected");
@@ -112,6 +172,22 @@ public class LoadBalancer {
                 averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
                 queries++;
             }
+            else { // count a failure as a slow query
+                searchTime = Math.max(searchTime, 2 * decayingSearchTime);
+            }
+            updateDecayingSearchTime(Math.max(searchTime, MIN_QUERY_TIME), nowNanos);
+        }
+
+        private void updateDecayingSearchTime(double searchTime, long nowNanos) {
+            if ( ! released) {
+                decayingSearchTime = searchTime;
+                released = true;
+            }
+            else {
+                double oldWeight = Math.exp(- (double)Math.max(0, nowNanos - lastReleaseNanos) / LATENCY_DECAY_TIME_NANOS);
+                decayingSearchTime = oldWeight * decayingSearchTime + (1 - oldWeight) * searchTime;
+            }
+            lastReleaseNanos = nowNanos;
         }
 
         double averageSearchTime() {
@@ -122,6 +198,25 @@ public class LoadBalancer {
             return 1.0 / averageSearchTime;
         }
 
+        double decayingSearchTime() {
+            return decayingSearchTime;
+        }
+
+        /**
+         * Returns the decaying search time moved towards the given best search time of any group by the time since
+         * the last query to this completed, such that a group which is avoided because it has been slow
+         * is tried again after a while.
+         */
+        double decayingSearchTime(double bestSearchTime, long nowNanos) {
+            if ( ! released) return decayingSearchTime;
+            double ownWeight = Math.exp(- (double)Math.max(0, nowNanos - lastReleaseNanos) / IDLE_DECAY_TIME_NANOS);
+            return ownWeight * decayingSearchTime + (1 - ownWeight) * Math.min(bestSearchTime, decayingSearchTime);
+        }
+
+        int allocations() {
+            return allocations;
+        }
+
         int groupId() {
             return group.id();
         }
@@ -254,4 +349,80 @@ public class LoadBalancer {
             return selectGroup(needle, false, rejectedGroups);
         }
     }
+
+    /**
+     * Picks the better of two randomly chosen groups ("power of two choices"), where better means the one
+     * with the lowest expected wait: The search time estimate times the number of queries in flight, divided
+     * by the fraction of working nodes in the group.
+     * Since the search time estimate decays with time, and queries in flight to a stalled group
+     * do not complete, traffic moves away from slow groups within a few queries.
+     * As a group which is avoided gets no new search times, its estimate instead moves towards the best estimate
+     * of any group with the time since it last completed a query, so it is tried again after a while,
+     * and gets traffic again if it is no longer slow.
+     */
+    static class LeastLoadedScheduler implements GroupScheduler {
+
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+        private final LongSupplier nanoClock;
+
+        /** Reused for each selection. This is safe because the load balancer only calls this while synchronized */
+        private final List<GroupStatus> candidates;
+
+        public LeastLoadedScheduler(Random random, List<GroupStatus> scoreboard) {
+            this(random, scoreboard, System::nanoTime);
+        }
+
+        LeastLoadedScheduler(Random random, List<GroupStatus> scoreboard, LongSupplier nanoClock) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+            this.nanoClock = nanoClock;
+            this.candidates = new ArrayList<>(scoreboard.size());
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            collectCandidates(true, rejectedGroups);
+            if (candidates.isEmpty()) // fallback - any coverage better than none
+                collectCandidates(false, rejectedGroups);
+            if (candidates.isEmpty()) return Optional.empty();
+            if (candidates.size() == 1) return Optional.of(candidates.get(0));
+
+            int firstIndex = random.nextInt(candidates.size());
+            int secondIndex = random.nextInt(candidates.size() - 1);
+            if (secondIndex >= firstIndex)
+                secondIndex++;
+            GroupStatus first = candidates.get(firstIndex);
+            GroupStatus second = candidates.get(secondIndex);
+            double bestSearchTime = bestSearchTime();
+            long nowNanos = nanoClock.getAsLong();
+            return Optional.of(cost(second, bestSearchTime, nowNanos) < cost(first, bestSearchTime, nowNanos) ? second : first);
+        }
+
+        private double bestSearchTime() {
+            double best = Double.MAX_VALUE;
+            for (GroupStatus gs : candidates)
+                best = Math.min(best, gs.decayingSearchTime());
+            return best;
+        }
+
+        private void collectCandidates(boolean requireCoverage, Set<Integer> rejected) {
+            candidates.clear();
+            for (GroupStatus gs : scoreboard) {
+                if (rejected != null && rejected.contains(gs.group.id())) continue;
+                if (requireCoverage && ! gs.group.hasSufficientCoverage()) continue;
+                candidates.add(gs);
+            }
+        }
+
+        static double cost(GroupStatus gs, double bestSearchTime, long nowNanos) {
+            double cost = gs.decayingSearchTime(bestSearchTime, nowNanos) * (gs.allocations() + 1);
+            int nodes = gs.group.nodes().size();
+            if (nodes > 0)
+                cost = cost * nodes / Math.max(1, gs.group.workingNodes());
+            return cost;
+        }
+
+    }
+
 }
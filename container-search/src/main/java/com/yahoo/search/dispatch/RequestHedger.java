@@ -0,0 +1,196 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.dispatch.searchcluster.Group;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.statistics.Counter;
+import com.yahoo.statistics.Statistics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides when and where the part of a query sent to a slow content node should be sent again (hedged),
+ * to the node of another group. The interleaved invoker uses whichever of the two responses arrives first.
+ * <p>
+ * A request to a node is hedged when it has taken longer than a given percentile of the recent latencies
+ * of that node, and fewer than a given percentage of the recent requests have been hedged.
+ * Only requests to groups of a single node are hedged, as that is the only case where a node in another
+ * group is known to hold the same documents. Hedged requests are allocated to their group in the load balancer
+ * like other requests.
+ * <p>
+ * This is multithread safe.
+ *
+ * @author agent
+ */
+class RequestHedger {
+
+    /** The number of latencies kept per node */
+    private static final int windowSize = 128;
+
+    /** The number of latencies needed from a node before requests to it are hedged */
+    private static final int minSamples = 32;
+
+    /** The number of latencies between each time the percentile of a node is recalculated */
+    private static final int recalculationInterval = 16;
+
+    /** The max number of hedges which may be sent in a burst when none have been sent recently */
+    private static final long maxHedgeBurst = 10;
+
+    /** The number of units of the hedge budget making up a single hedge */
+    private static final long unitsPerHedge = 1000 * 1000;
+
+    private final SearchCluster searchCluster;
+    private final LoadBalancer loadBalancer;
+    private final double percentile;
+    private final long minDelayMillis;
+    /** The hedge budget units added by each request */
+    private final long budgetPerRequest;
+    /** The units of hedges which may be sent now, growing by budgetPerRequest per request, up to maxHedgeBurst hedges */
+    private long hedgeBudget = maxHedgeBurst * unitsPerHedge;
+    private final Map<Integer, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+
+    /**
+     * Creates a request hedger
+     *
+     * @param loadBalancer the load balancer to which the groups of hedged requests are allocated
+     * @param percentile the percentile of the latencies of a node after which requests to it are hedged
+     * @param minDelayMillis the minimum time a request is given before it is hedged
+     * @param maxHedgePercentage the max percentage of requests to nodes which are hedged
+     */
+    RequestHedger(SearchCluster searchCluster, LoadBalancer loadBalancer,
+                  double percentile, long minDelayMillis, double maxHedgePercentage, Statistics statistics) {
+        if (percentile <= 0 || percentile >= 100)
+            throw new IllegalArgumentException("Hedging percentile must be between 0 and 100, not " + percentile);
+        if (maxHedgePercentage < 0 || maxHedgePercentage > 100)
+            throw new IllegalArgumentException("Max hedge percentage must be between 0 and 100, not " + maxHedgePercentage);
+        this.searchCluster = searchCluster;
+        this.loadBalancer = loadBalancer;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.budgetPerRequest = Math.round(maxHedgePercentage / 100 * unitsPerHedge);
+        this.hedgesFired = new Counter("dispatch.hedged_requests", statistics, false);
+        this.hedgesWon = new Counter("dispatch.hedged_requests_won", statistics, false);
+    }
+
+    /**
+     * Returns the time in milliseconds a request to the given node should be given before it is hedged,
+     * or Long.MAX_VALUE if not enough is known about the node yet
+     */
+    long hedgeDelay(Node node) {
+        LatencyWindow window = latencies.get(node.key());
+        if (window == null) return Long.MAX_VALUE;
+        long percentileLatency = window.percentileLatency();
+        if (percentileLatency == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(minDelayMillis, percentileLatency);
+    }
+
+    /** Records the time taken by the given node to answer a request */
+    void recordLatency(Node node, long latencyMillis) {
+        latencies.computeIfAbsent(node.key(), key -> new LatencyWindow(percentile)).add(latencyMillis);
+    }
+
+    /** Records that a request which may be hedged is sent to a node */
+    synchronized void requestSent() {
+        hedgeBudget = Math.min(maxHedgeBurst * unitsPerHedge, hedgeBudget + budgetPerRequest);
+    }
+
+    /** Returns whether a request may be hedged now without exceeding the max percentage of hedged requests */
+    synchronized boolean tryHedge() {
+        if (budgetPerRequest == 0 || hedgeBudget < unitsPerHedge) return false;
+        hedgeBudget -= unitsPerHedge;
+        return true;
+    }
+
+    /**
+     * Returns the single node of the first group after the group of the given node which is in service,
+     * or empty if there is none. The group of the given node and the returned node must both consist of a
+     * single node, as the documents of a node in a larger group are not known to be held by any one node of another.
+     */
+    Optional<Node> alternativeTo(Node node) {
+        Group group = searchCluster.groups().get(node.group());
+        if (group == null || group.nodes().size() != 1) return Optional.empty();
+
+        List<Group> groups = searchCluster.orderedGroups();
+        int groupIndex = groups.indexOf(group);
+        for (int i = 1; i < groups.size(); i++) {
+            Group candidate = groups.get((groupIndex + i) % groups.size());
+            if (candidate.nodes().size() != 1) continue;
+            if ( ! candidate.hasSufficientCoverage()) continue;
+            Node alternative = candidate.nodes().get(0);
+            if (alternative.isWorking())
+                return Optional.of(alternative);
+        }
+        return Optional.empty();
+    }
+
+    /** Records that a hedged request is sent to the given node, and allocates its group in the load balancer */
+    void hedgeSent(Node node) {
+        hedgesFired.increment();
+        Group group = searchCluster.groups().get(node.group());
+        if (group != null)
+            loadBalancer.allocateGroup(group);
+    }
+
+    /** Records that the hedged request to the given node was answered, and releases its group in the load balancer */
+    void hedgeAnswered(Node node, long latencyMillis) {
+        recordLatency(node, latencyMillis);
+        Group group = searchCluster.groups().get(node.group());
+        if (group != null)
+            loadBalancer.releaseGroup(group, true, latencyMillis);
+    }
+
+    /** Records that the hedged request to the given node was abandoned, and releases its group in the load balancer */
+    void hedgeCancelled(Node node) {
+        Group group = searchCluster.groups().get(node.group());
+        if (group != null)
+            loadBalancer.cancelGroup(group);
+    }
+
+    void hedgeWon() { hedgesWon.increment(); }
+
+    /** Returns the number of requests hedged by this */
+    long hedgesFired() { return hedgesFired.get(); }
+
+    /** Returns the number of hedged requests where the hedge answered first */
+    long hedgesWon() { return hedgesWon.get(); }
+
+    /** The most recent latencies of a node */
+    private static class LatencyWindow {
+
+        private final double percentile;
+        private final long[] samples = new long[windowSize];
+        private long count = 0;
+        private volatile long percentileLatency = Long.MAX_VALUE;
+
+        LatencyWindow(double percentile) {
+            this.percentile = percentile;
+        }
+
+        synchronized void add(long latencyMillis) {
+            samples[(int)(count % windowSize)] = latencyMillis;
+            count++;
+            if (count >= minSamples && count % recalculationInterval == 0)
+                percentileLatency = calculatePercentile();
+        }
+
+        long percentileLatency() { return percentileLatency; }
+
+        private long calculatePercentile() {
+            int size = (int)Math.min(count, windowSize);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int)Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+
+    }
+
+}
@@ -23,7 +23,11 @@ import java.util.List;
  */
 class RpcClient implements Client {
 
-    private final Supervisor supervisor = new Supervisor(new Transport());
+    private final Supervisor supervisor;
+
+    public RpcClient(int transportThreads) {
+        supervisor = new Supervisor(new Transport(transportThreads));
+    }
 
     @Override
     public NodeConnection createConnection(String hostname, int port) {
@@ -32,7 +36,7 @@ class RpcClient implements Client {
 
     @Override
     public void getDocsums(List<FastHit> hits, NodeConnection node, CompressionType compression, int uncompressedLength,
-                           byte[] compressedSlime, RpcFillInvoker.GetDocsumsResponseReceiver responseReceiver, double timeoutSeconds) {
+                           byte[] compressedSlime, DocsumsReceiver responseReceiver, double timeoutSeconds) {
         Request request = new Request("proton.getDocsums");
         request.parameters().add(new Int8Value(compression.getCode()));
         request.parameters().add(new Int32Value(uncompressedLength));
@@ -43,6 +47,18 @@ class RpcClient implements Client {
         rpcNode.invokeAsync(request, timeoutSeconds, new RpcResponseWaiter(rpcNode, responseReceiver));
     }
 
+    @Override
+    public void search(NodeConnection node, CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                       ResponseReceiver responseReceiver, double timeoutSeconds) {
+        Request request = new Request("vespa.searchprotocol.search");
+        request.parameters().add(new Int8Value(compression.getCode()));
+        request.parameters().add(new Int32Value(uncompressedLength));
+        request.parameters().add(new DataValue(compressedPayload));
+
+        RpcNodeConnection rpcNode = ((RpcNodeConnection) node);
+        rpcNode.invokeAsync(request, timeoutSeconds, new RpcSearchResponseWaiter(rpcNode, responseReceiver));
+    }
+
     private static class RpcNodeConnection implements NodeConnection {
 
         // Information about the connected node
@@ -89,9 +105,9 @@ class RpcClient implements Client {
         private final RpcNodeConnection node;
 
         /** The handler to which the response is forwarded */
-        private final RpcFillInvoker.GetDocsumsResponseReceiver handler;
+        private final DocsumsReceiver handler;
 
-        public RpcResponseWaiter(RpcNodeConnection node, RpcFillInvoker.GetDocsumsResponseReceiver handler) {
+        public RpcResponseWaiter(RpcNodeConnection node, DocsumsReceiver handler) {
             this.node = node;
             this.handler = handler;
         }
@@ -124,4 +140,41 @@ class RpcClient implements Client {
 
     }
 
+    private static class RpcSearchResponseWaiter implements RequestWaiter {
+
+        /** The node to which we made the request we are waiting for - for error messages only */
+        private final RpcNodeConnection node;
+
+        /** The handler to which the response is forwarded */
+        private final ResponseReceiver handler;
+
+        public RpcSearchResponseWaiter(RpcNodeConnection node, ResponseReceiver handler) {
+            this.node = node;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handleRequestDone(Request requestWithResponse) {
+            if (requestWithResponse.isError()) {
+                handler.receive(ResponseOrError.fromError("Error response from " + node + ": " +
+                                                          requestWithResponse.errorMessage()));
+                return;
+            }
+
+            Values returnValues = requestWithResponse.returnValues();
+            if (returnValues.size() < 3) {
+                handler.receive(ResponseOrError.fromError("Invalid search response from " + node +
+                                                          ": Expected 3 return arguments, got " +
+                                                          returnValues.size()));
+                return;
+            }
+
+            byte compression = returnValues.get(0).asInt8();
+            int uncompressedSize = returnValues.get(1).asInt32();
+            byte[] compressedPayload = returnValues.get(2).asData();
+            handler.receive(ResponseOrError.fromResponse(new SearchResponse(compression, uncompressedSize, compressedPayload)));
+        }
+
+    }
+
 }
@@ -109,9 +109,15 @@ public class RpcFillInvoker extends FillInvoker {
 
         Query query = result.getQuery();
         String rankProfile = query.getRanking().getProfile();
+        double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
+        if (resourcePool.docsumBatcher().isPresent() && query.getSessionId() == null) {
+            resourcePool.docsumBatcher().get().getDocsums(hits, node, summaryClass, query.getModel().getDocumentDb(), rankProfile,
+                                                          compression, responseReceiver, timeoutSeconds);
+            return;
+        }
+
         byte[] serializedSlime = BinaryFormat
                 .encode(toSlime(rankProfile, summaryClass, query.getModel().getDocumentDb(), query.getSessionId(), hits));
-        double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
         Compressor.Compression compressionResult = resourcePool.compressor().compress(compression, serializedSlime);
         resourcePool.client().getDocsums(hits, node, compressionResult.type(), serializedSlime.length, compressionResult.data(),
                 responseReceiver, timeoutSeconds);
@@ -140,7 +146,7 @@ public class RpcFillInvoker extends FillInvoker {
     }
 
     /** Receiver of the responses to a set of getDocsums requests */
-    public static class GetDocsumsResponseReceiver {
+    public static class GetDocsumsResponseReceiver implements Client.DocsumsReceiver {
 
         private final BlockingQueue<Client.GetDocsumsResponseOrError> responses;
         private final Compressor compressor;
@@ -160,6 +166,7 @@ public class RpcFillInvoker extends FillInvoker {
         }
 
         /** Called by a thread belonging to the client when a valid response becomes available */
+        @Override
         public void receive(Client.GetDocsumsResponseOrError response) {
             responses.add(response);
         }
@@ -209,7 +216,7 @@ public class RpcFillInvoker extends FillInvoker {
                 Client.GetDocsumsResponse response = responseOrError.response().get();
                 CompressionType compression = CompressionType.valueOf(response.compression());
                 byte[] slimeBytes = compressor.decompress(response.compressedSlimeBytes(), compression, response.uncompressedSize());
-                return fill(response.hitsContext(), summaryClass, documentDb, slimeBytes);
+                return fill(response, summaryClass, documentDb, slimeBytes);
             }
             return 0;
         }
@@ -224,7 +231,8 @@ public class RpcFillInvoker extends FillInvoker {
             });
         }
 
-        private int fill(List<FastHit> hits, String summaryClass, DocumentDatabase documentDb, byte[] slimeBytes) {
+        private int fill(Client.GetDocsumsResponse response, String summaryClass, DocumentDatabase documentDb, byte[] slimeBytes) {
+            List<FastHit> hits = response.hitsContext();
             com.yahoo.slime.Inspector root = BinaryFormat.decode(slimeBytes).get();
             com.yahoo.slime.Inspector errors = root.field("errors");
             boolean hasErrors = errors.valid() && (errors.entries() > 0);
@@ -237,7 +245,7 @@ public class RpcFillInvoker extends FillInvoker {
                 return 0; // No summaries; Perhaps we requested a non-existing summary class
             int skippedHits = 0;
             for (int i = 0; i < hits.size(); i++) {
-                Inspector summary = summaries.entry(i).field("docsum");
+                Inspector summary = summaries.entry(response.docsumIndex(i)).field("docsum");
                 if (summary.fieldCount() != 0) {
                     hits.get(i).setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
                     hits.get(i).addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
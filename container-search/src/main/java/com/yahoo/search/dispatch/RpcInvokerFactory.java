@@ -0,0 +1,39 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
+import com.yahoo.search.Query;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+
+import java.util.Optional;
+
+/**
+ * RpcInvokerFactory constructs {@link SearchInvoker} objects that communicate with content nodes over RPC,
+ * using the connections held by a {@link RpcResourcePool}.
+ *
+ * @author agent
+ */
+public class RpcInvokerFactory extends InvokerFactory {
+
+    private final RpcResourcePool rpcResourcePool;
+
+    public RpcInvokerFactory(RpcResourcePool rpcResourcePool, SearchCluster searchCluster, VespaBackEndSearcher searcher) {
+        super(searchCluster, searcher);
+        this.rpcResourcePool = rpcResourcePool;
+    }
+
+    /** Returns whether the given query can be searched over RPC, which requires its summaries to be fetched over RPC too */
+    public boolean supports(Query query) {
+        return rpcResourcePool.canFillOverRpc(query, searcher);
+    }
+
+    @Override
+    protected Optional<SearchInvoker> createNodeSearchInvoker(Query query, Node node) {
+        if ( ! rpcResourcePool.nodeConnections().containsKey(node.key())) {
+            return Optional.empty();
+        }
+        return Optional.of(new RpcSearchInvoker(searcher, node, rpcResourcePool));
+    }
+
+}
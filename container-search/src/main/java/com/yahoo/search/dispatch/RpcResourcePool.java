@@ -31,13 +31,23 @@ public class RpcResourcePool {
     /** Connections to the search nodes this talks to, indexed by node id ("partid") */
     private final ImmutableMap<Integer, Client.NodeConnection> nodeConnections;
 
+    /** Coalesces concurrent summary requests to the same node, or empty if this is turned off */
+    private final Optional<DocsumBatcher> docsumBatcher;
+
     public RpcResourcePool(Client client, Map<Integer, Client.NodeConnection> nodeConnections) {
+        this(client, nodeConnections, 0, 0);
+    }
+
+    RpcResourcePool(Client client, Map<Integer, Client.NodeConnection> nodeConnections,
+                    int docsumBatchWindowMicros, int docsumBatchMaxHits) {
         this.client = client;
         this.nodeConnections = ImmutableMap.copyOf(nodeConnections);
+        this.docsumBatcher = createDocsumBatcher(docsumBatchWindowMicros, docsumBatchMaxHits);
     }
 
     public RpcResourcePool(DispatchConfig dispatchConfig) {
-        this.client = new RpcClient();
+        this.client = new RpcClient(dispatchConfig.numJrtTransportThreads());
+        this.docsumBatcher = createDocsumBatcher(dispatchConfig.docsumBatchWindowMicros(), dispatchConfig.docsumBatchMaxHits());
 
         // Create node rpc connections, indexed by the node distribution key
         ImmutableMap.Builder<Integer, Client.NodeConnection> nodeConnectionsBuilder = new ImmutableMap.Builder<>();
@@ -47,18 +57,30 @@ public class RpcResourcePool {
         this.nodeConnections = nodeConnectionsBuilder.build();
     }
 
+    private Optional<DocsumBatcher> createDocsumBatcher(int windowMicros, int maxHits) {
+        if (windowMicros <= 0) return Optional.empty();
+        return Optional.of(new DocsumBatcher(client, compressor, windowMicros, maxHits));
+    }
+
     public Optional<FillInvoker> getFillInvoker(Query query, VespaBackEndSearcher searcher, DocumentDatabase documentDb) {
-        if (query.properties().getBoolean(dispatchSummaries, true)
-            && ! searcher.summaryNeedsQuery(query)
-            && query.getRanking().getLocation() == null
-            && ! searcher.getCacheControl().useCache(query))
-        {
+        if (canFillOverRpc(query, searcher)) {
             return Optional.of(new RpcFillInvoker(this, documentDb));
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Returns whether summaries for the given query may be fetched over RPC. Hits produced by an RPC search
+     * carry no FS4 query packet data, so this must hold for a query to be searched over RPC as well.
+     */
+    boolean canFillOverRpc(Query query, VespaBackEndSearcher searcher) {
+        return query.properties().getBoolean(dispatchSummaries, true)
+               && ! searcher.summaryNeedsQuery(query)
+               && query.getRanking().getLocation() == null
+               && ! searcher.getCacheControl().useCache(query);
+    }
+
     // for testing
     public FillInvoker getFillInvoker(DocumentDatabase documentDb) {
         return new RpcFillInvoker(this, documentDb);
@@ -76,7 +98,12 @@ public class RpcResourcePool {
         return nodeConnections;
     }
 
+    Optional<DocsumBatcher> docsumBatcher() {
+        return docsumBatcher;
+    }
+
     public void release() {
+        docsumBatcher.ifPresent(DocsumBatcher::shutdown);
         for (Client.NodeConnection nodeConnection : nodeConnections.values()) {
             nodeConnection.close();
         }
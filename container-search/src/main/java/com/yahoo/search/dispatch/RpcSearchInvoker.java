@@ -0,0 +1,122 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.BinaryFormat;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SearchInvoker} implementation sending the query to a single content node over RPC, using the
+ * Slime based search protocol instead of FS4 query packets.
+ *
+ * @author agent
+ */
+public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseReceiver {
+
+    private final VespaBackEndSearcher searcher;
+    private final Node node;
+    private final RpcResourcePool resourcePool;
+    private final BlockingQueue<Client.ResponseOrError<Client.SearchResponse>> responses;
+
+    private Query query;
+
+    RpcSearchInvoker(VespaBackEndSearcher searcher, Node node, RpcResourcePool resourcePool) {
+        super(Optional.of(node));
+        this.searcher = searcher;
+        this.node = node;
+        this.resourcePool = resourcePool;
+        this.responses = new LinkedBlockingQueue<>(1);
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException {
+        this.query = query;
+
+        Client.NodeConnection nodeConnection = resourcePool.nodeConnections().get(node.key());
+        if (nodeConnection == null) {
+            responses.add(Client.ResponseOrError.fromError("Could not send search to unknown node " + node.key()));
+            responseAvailable();
+            return;
+        }
+
+        CompressionType compression = CompressionType
+                .valueOf(query.properties().getString(RpcResourcePool.dispatchCompression, "LZ4").toUpperCase());
+        byte[] payload = BinaryFormat.encode(SearchProtocol.encodeSearchRequest(query, searcher.getServerId()));
+        Compressor.Compression compressionResult = resourcePool.compressor().compress(compression, payload);
+        double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
+        resourcePool.client().search(nodeConnection, compressionResult.type(), payload.length, compressionResult.data(), this,
+                timeoutSeconds);
+    }
+
+    @Override
+    protected Result getSearchResult(CacheKey cacheKey, Execution execution) throws IOException {
+        long timeLeftMs = query.getTimeLeft();
+        if (timeLeftMs <= 0) {
+            return errorResult(ErrorMessage.createTimeout("Timeout while waiting for " + getName()));
+        }
+        Client.ResponseOrError<Client.SearchResponse> response;
+        try {
+            response = responses.poll(timeLeftMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return errorResult(ErrorMessage.createTimeout("Interrupted while waiting for " + getName()));
+        }
+        if (response == null) {
+            return errorResult(ErrorMessage.createTimeout("Timeout while waiting for " + getName()));
+        }
+        if (response.error().isPresent()) {
+            return errorResult(ErrorMessage.createBackendCommunicationError(response.error().get()));
+        }
+        if ( ! response.response().isPresent()) {
+            return errorResult(ErrorMessage.createInternalServerError("Neither error nor result available"));
+        }
+
+        Client.SearchResponse searchResponse = response.response().get();
+        CompressionType compression = CompressionType.valueOf(searchResponse.compression());
+        byte[] payload = resourcePool.compressor().decompress(searchResponse.compressedPayload(), compression,
+                                                              searchResponse.uncompressedSize());
+
+        if (query.getPresentation().getSummary() == null)
+            query.getPresentation().setSummary(searcher.getDefaultDocsumClass());
+
+        return SearchProtocol.decodeSearchResult(BinaryFormat.decode(payload).get(), query, searcher, node.key());
+    }
+
+    private Result errorResult(ErrorMessage errorMessage) {
+        Result error = new Result(query, errorMessage);
+        Coverage errorCoverage = new Coverage(0, 0, 0);
+        errorCoverage.setNodesTried(1);
+        error.setCoverage(errorCoverage);
+        return error;
+    }
+
+    @Override
+    protected void release() {
+        // nothing to release
+    }
+
+    @Override
+    public void receive(Client.ResponseOrError<Client.SearchResponse> response) {
+        responses.add(response);
+        responseAvailable();
+    }
+
+    private String getName() {
+        return searcher.getName();
+    }
+
+}
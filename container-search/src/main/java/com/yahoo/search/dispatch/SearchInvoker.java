@@ -54,4 +54,9 @@ public abstract class SearchInvoker extends CloseableInvoker {
     protected Optional<Integer> distributionKey() {
         return node.map(Node::key);
     }
+
+    /** Returns the content node this searches, or empty if it does not search a single node */
+    protected Optional<Node> node() {
+        return node;
+    }
 }
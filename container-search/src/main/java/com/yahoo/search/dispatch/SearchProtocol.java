@@ -0,0 +1,227 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.container.protect.Error;
+import com.yahoo.document.GlobalId;
+import com.yahoo.vespa.objects.BufferSerializer;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.GroupingListHit;
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
+import com.yahoo.prelude.query.Highlight;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.grouping.vespa.GroupingExecutor;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.Sorting;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Relevance;
+import com.yahoo.searchlib.aggregation.Grouping;
+import com.yahoo.slime.ArrayTraverser;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import static com.yahoo.container.handler.Coverage.DEGRADED_BY_MATCH_PHASE;
+import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
+
+/**
+ * Conversion between queries/results and the Slime payloads of the rpc search protocol
+ * (<code>vespa.searchprotocol.search</code>). The query tree is sent as the same binary stack
+ * dump the content nodes already understand, while everything else is plain Slime fields.
+ *
+ * @author agent
+ */
+final class SearchProtocol {
+
+    private SearchProtocol() {}
+
+    static Slime encodeSearchRequest(Query query, String serverId) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+
+        root.setLong("offset", query.getOffset());
+        root.setLong("hits", query.getHits());
+        root.setLong("timeout", Math.max(1, query.getTimeLeft())); // Safety to avoid sending down 0 or negative number
+        root.setLong("trace_level", query.getTraceLevel());
+        root.setString("ranking", query.getRanking().getProfile());
+        root.setBool("dump_features", query.properties().getBoolean(Ranking.RANKFEATURES, false));
+        root.setBool("estimate", query.properties().getBoolean(com.yahoo.search.query.Model.ESTIMATE));
+        root.setBool("no_result_cache", query.getNoCache());
+        if (query.getModel().getDocumentDb() != null) {
+            root.setString("document_type", query.getModel().getDocumentDb());
+        }
+        if (query.getModel().getSearchPath() != null) {
+            root.setString("search_path", query.getModel().getSearchPath());
+        }
+
+        if (query.getRanking().getSorting() != null) {
+            root.setData("sorting", encode(buffer -> query.getRanking().getSorting().encode(buffer)));
+        }
+        if (query.getRanking().getLocation() != null) {
+            root.setString("geo_location", query.getRanking().getLocation().toString());
+        }
+        if (GroupingExecutor.hasGroupingList(query)) {
+            root.setData("grouping_blob", encodeGroupings(GroupingExecutor.getGroupingList(query)));
+        }
+
+        boolean cacheGrouping = query.getGroupingSessionCache();
+        boolean cacheQuery = query.getRanking().getQueryCache();
+        if (cacheGrouping || cacheQuery) {
+            root.setBool("cache_grouping", cacheGrouping);
+            root.setBool("cache_query", cacheQuery);
+            root.setString("session_key", query.getSessionId(serverId).toString());
+        }
+
+        encodeMultiMap(root.setObject("rank_properties"), query.getRanking().getProperties().asMap());
+        encodeMap(root.setObject("feature_overrides"), query.getRanking().getFeatures().asMap());
+        if (query.getPresentation().getHighlight() != null) {
+            Cursor highlightTerms = root.setObject(Highlight.HIGHLIGHTTERMS);
+            for (Map.Entry<String, List<String>> entry : query.getPresentation().getHighlight().getHighlightTerms().entrySet()) {
+                Cursor terms = highlightTerms.setArray(entry.getKey());
+                entry.getValue().forEach(terms::addString);
+            }
+        }
+
+        int[] itemCount = new int[1];
+        root.setData("query_tree", encode(buffer -> itemCount[0] = query.encode(buffer)));
+        root.setLong("query_tree_item_count", itemCount[0]);
+
+        return slime;
+    }
+
+    private static void encodeMultiMap(Cursor target, Map<String, List<Object>> map) {
+        for (Map.Entry<String, List<Object>> entry : map.entrySet()) {
+            Cursor values = target.setArray(entry.getKey());
+            for (Object value : entry.getValue()) {
+                encodeValue(values.addObject(), value);
+            }
+        }
+    }
+
+    private static void encodeMap(Cursor target, Map<String, Object> map) {
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            encodeValue(target.setObject(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private static void encodeValue(Cursor target, Object value) {
+        if (value instanceof Tensor) {
+            target.setData("tensor", TypedBinaryFormat.encode((Tensor) value));
+        } else {
+            target.setString("value", value.toString());
+        }
+    }
+
+    private static byte[] encodeGroupings(List<Grouping> groupingList) {
+        BufferSerializer gbuf = new BufferSerializer(new GrowableByteBuffer());
+        gbuf.putInt(null, groupingList.size());
+        for (Grouping g : groupingList) {
+            g.serialize(gbuf);
+        }
+        gbuf.getBuf().flip();
+        byte[] blob = new byte[gbuf.getBuf().limit()];
+        gbuf.getBuf().get(blob);
+        return blob;
+    }
+
+    /** Runs an encoder writing to a byte buffer, growing the buffer until the encoded data fits */
+    private static byte[] encode(ToIntFunction<ByteBuffer> encoder) {
+        int size = 1024;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            try {
+                encoder.applyAsInt(buffer);
+                buffer.flip();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            } catch (BufferOverflowException e) {
+                size *= 2;
+            }
+        }
+    }
+
+    /**
+     * Creates a result from the Slime payload of a search reply.
+     *
+     * @param root the root of the decoded reply
+     * @param query the query the reply is for
+     * @param searcher the searcher owning the invoker, used for hit sources and grouping summaries
+     * @param distributionKey the distribution key of the replying node
+     */
+    static Result decodeSearchResult(Inspector root, Query query, VespaBackEndSearcher searcher, int distributionKey) {
+        Result result = new Result(query);
+        Inspector errors = root.field("errors");
+        if (errors.valid()) {
+            errors.traverse((ArrayTraverser) (int index, Inspector value) -> {
+                int errorCode = ("timeout".equalsIgnoreCase(value.field("type").asString()))
+                        ? Error.TIMEOUT.code
+                        : Error.UNSPECIFIED.code;
+                result.hits().addError(new ErrorMessage(errorCode,
+                                                        value.field("message").asString(),
+                                                        value.field("details").asString()));
+            });
+        }
+
+        result.setTotalHitCount(root.field("total_hit_count").asLong());
+
+        Inspector groupingBlob = root.field("grouping_blob");
+        if (groupingBlob.valid() && groupingBlob.asData().length > 0) {
+            BufferSerializer buf = new BufferSerializer(new GrowableByteBuffer(ByteBuffer.wrap(groupingBlob.asData())));
+            int cnt = buf.getInt(null);
+            ArrayList<Grouping> list = new ArrayList<>(cnt);
+            for (int i = 0; i < cnt; i++) {
+                Grouping g = new Grouping();
+                g.deserialize(buf);
+                list.add(g);
+            }
+            GroupingListHit hit = new GroupingListHit(list, searcher.getDocsumDefinitionSet(query));
+            hit.setQuery(query);
+            hit.setSource(searcher.getName());
+            result.hits().add(hit);
+        }
+
+        Coverage coverage = new Coverage(root.field("coverage_docs").asLong(), root.field("active_docs").asLong(), 1);
+        coverage.setSoonActive(root.field("soon_active_docs").asLong());
+        coverage.setNodesTried(1);
+        int degradedReason = 0;
+        if (root.field("degraded_by_match_phase").asBool()) {
+            degradedReason |= DEGRADED_BY_MATCH_PHASE;
+        }
+        if (root.field("degraded_by_soon_timeout").asBool()) {
+            degradedReason |= DEGRADED_BY_TIMEOUT;
+        }
+        coverage.setDegradedReason(degradedReason);
+        result.setCoverage(coverage);
+
+        Sorting sorting = query.getRanking().getSorting();
+        root.field("hits").traverse((ArrayTraverser) (int index, Inspector value) -> {
+            FastHit hit = new FastHit();
+            hit.setQuery(query);
+            hit.setSource(searcher.getName());
+            hit.setFillable();
+            hit.setGlobalId(new GlobalId(value.field("gid").asData()));
+            hit.setRelevance(new Relevance(value.field("relevance").asDouble()));
+            hit.setPartId((int) value.field("path").asLong());
+            hit.setDistributionKey(distributionKey);
+            Inspector sortData = value.field("sort_data");
+            if (sorting != null && sortData.valid()) {
+                hit.setSortData(sortData.asData(), sorting);
+            }
+            result.hits().add(hit);
+        });
+        return result;
+    }
+
+}
@@ -0,0 +1,41 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.query.Sorting;
+import com.yahoo.search.result.FieldComparator;
+import com.yahoo.search.result.Hit;
+
+import java.util.Comparator;
+
+/**
+ * Orders hits by the sort data returned with them by the content nodes, which allows hits to be
+ * ordered by a sorting before they are filled. Hits without sort data are compared by their field values.
+ *
+ * @author agent
+ */
+class SortDataComparator implements Comparator<Hit> {
+
+    private final Sorting sorting;
+    private final Comparator<Hit> fieldComparator;
+
+    SortDataComparator(Sorting sorting) {
+        this.sorting = sorting;
+        this.fieldComparator = new FieldComparator(sorting);
+    }
+
+    @Override
+    public int compare(Hit first, Hit second) {
+        if (hasSortData(first) && hasSortData(second)) {
+            int comparison = FastHit.compareSortData((FastHit) first, (FastHit) second);
+            return comparison != 0 ? comparison : first.compareTo(second);
+        }
+        return fieldComparator.compare(first, second);
+    }
+
+    /** Returns whether the given hit has sort data for the sorting of this */
+    boolean hasSortData(Hit hit) {
+        return hit instanceof FastHit && ((FastHit) hit).hasSortData(sorting);
+    }
+
+}
@@ -0,0 +1,77 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.result.Hit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Incrementally merges lists of hits which are each sorted in the same order, by default relevance, keeping only
+ * the best hits up to a given count. Each list is merged in as it arrives, in time linear in the size of
+ * the list and the number of kept hits, and hits which cannot make it into the kept window are dropped
+ * at once instead of being collected and sorted with all the others.
+ *
+ * This is not multithread safe.
+ *
+ * @author agent
+ */
+class SortedHitsMerger {
+
+    private final int maxHits;
+    private final Comparator<Hit> order;
+    private List<Hit> hits = Collections.emptyList();
+    private int discarded = 0;
+
+    /** Creates a merger of hits in default order, keeping at most the given number of hits */
+    SortedHitsMerger(int maxHits) {
+        this(maxHits, Hit::compareTo);
+    }
+
+    /** Creates a merger of hits in the order given by the comparator, keeping at most the given number of hits */
+    SortedHitsMerger(int maxHits, Comparator<Hit> order) {
+        this.maxHits = maxHits;
+        this.order = order;
+    }
+
+    /**
+     * Merges the given hits into the hits kept by this.
+     *
+     * @param sortedHits hits sorted in the order of this merger
+     */
+    void merge(List<Hit> sortedHits) {
+        if (sortedHits.isEmpty()) return;
+        if (hits.size() >= maxHits && (maxHits == 0 || order.compare(hits.get(maxHits - 1), sortedHits.get(0)) <= 0)) {
+            discarded += sortedHits.size(); // none of these can make it into the kept window
+            return;
+        }
+
+        int total = hits.size() + sortedHits.size();
+        int keep = Math.min(maxHits, total);
+        List<Hit> merged = new ArrayList<>(keep);
+        int i = 0;
+        int j = 0;
+        while (merged.size() < keep) {
+            if (j >= sortedHits.size() || (i < hits.size() && order.compare(hits.get(i), sortedHits.get(j)) <= 0)) {
+                merged.add(hits.get(i++));
+            } else {
+                merged.add(sortedHits.get(j++));
+            }
+        }
+        discarded += total - keep;
+        hits = merged;
+    }
+
+    /** Returns the hits kept so far, in sorted order */
+    List<Hit> hits() {
+        return Collections.unmodifiableList(hits);
+    }
+
+    /** Returns the number of hits which have been dropped because they fell outside the kept window */
+    int discarded() {
+        return discarded;
+    }
+
+}
@@ -13,6 +13,9 @@ import com.yahoo.component.provider.ComponentRegistry;
 import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.errorhandling.Results;
 import com.yahoo.errorhandling.Results.Builder;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.processing.request.CompoundName;
 import com.yahoo.search.Query;
@@ -38,6 +41,7 @@ import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.ForkingSearcher;
 import com.yahoo.search.searchchain.FutureResult;
 import com.yahoo.search.searchchain.SearchChainRegistry;
+import com.yahoo.search.searchchain.BoundedExecutor;
 import com.yahoo.search.searchchain.model.federation.FederationOptions;
 import org.apache.commons.lang.StringUtils;
 
@@ -92,15 +96,30 @@ public class FederationSearcher extends ForkingSearcher {
     private final boolean strictSearchchain;
     private final TargetSelector<?> targetSelector;
 
+    /** The executor of federated search chains owned by this, or null to use the one shared by all async executions */
+    private final BoundedExecutor executor;
+    private final Counter rejectedCounter;
+    private final Gauge pendingGauge;
+
     private final Clock clock = Clock.systemUTC();
 
     private static final List<CompoundName> queryAndHits = ImmutableList.of(Query.OFFSET, Query.HITS);
 
-    @Inject
     public FederationSearcher(FederationConfig config, StrictContractsConfig strict,
                               ComponentRegistry<TargetSelector> targetSelectors) {
+        this(config, strict, targetSelectors, MetricReceiver.nullImplementation);
+    }
+
+    @Inject
+    public FederationSearcher(FederationConfig config, StrictContractsConfig strict,
+                              ComponentRegistry<TargetSelector> targetSelectors, MetricReceiver metrics) {
         this(createResolver(config), strict.searchchains(), strict.propagateSourceProperties(),
-             resolveSelector(config.targetSelector(), targetSelectors));
+             resolveSelector(config.targetSelector(), targetSelectors), createExecutor(config), metrics);
+    }
+
+    private static BoundedExecutor createExecutor(FederationConfig config) {
+        if (config.executor() != FederationConfig.Executor.BOUNDED) return null;
+        return new BoundedExecutor("federation", config.executorThreads(), config.executorMaxThreads());
     }
 
     private static TargetSelector resolveSelector(String selectorId, 
@@ -112,17 +131,31 @@ public class FederationSearcher extends ForkingSearcher {
 
     // for testing
     public FederationSearcher(ComponentId id, SearchChainResolver searchChainResolver) {
-        this(searchChainResolver, false, PropagateSourceProperties.ALL, null);
+        this(searchChainResolver, false, PropagateSourceProperties.ALL, null, null, MetricReceiver.nullImplementation);
+    }
+
+    // for testing
+    public FederationSearcher(SearchChainResolver searchChainResolver, BoundedExecutor executor, MetricReceiver metrics) {
+        this(searchChainResolver, false, PropagateSourceProperties.ALL, null, executor, metrics);
     }
 
     private FederationSearcher(SearchChainResolver searchChainResolver, boolean strictSearchchain,
                                PropagateSourceProperties.Enum propagateSourceProperties,
-                               TargetSelector targetSelector) {
+                               TargetSelector targetSelector, BoundedExecutor executor, MetricReceiver metrics) {
         this.searchChainResolver = searchChainResolver;
         sourceRefResolver = new SourceRefResolver(searchChainResolver);
         this.strictSearchchain = strictSearchchain;
         this.propagateSourceProperties = propagateSourceProperties;
         this.targetSelector = targetSelector;
+        this.executor = executor;
+        this.rejectedCounter = metrics.declareCounter("federation.rejected_executions");
+        this.pendingGauge = metrics.declareGauge("federation.pending_executions");
+    }
+
+    @Override
+    public void deconstruct() {
+        if (executor != null)
+            executor.close();
     }
 
     private static SearchChainResolver createResolver(FederationConfig config) {
@@ -257,7 +290,17 @@ public class FederationSearcher extends ForkingSearcher {
         if (timeout <= 0)
             return new FutureResult(() -> new Result(query, ErrorMessage.createTimeout("Timed out before federation")), execution, query);
         Query clonedQuery = cloneFederationQuery(query, window, timeout, target);
-        return new AsyncExecution(target.getChain(), execution).search(clonedQuery);
+        FutureResult result = asyncExecution(target.getChain(), execution).search(clonedQuery);
+        if (result.isRejected())
+            rejectedCounter.add(rejectedCounter.builder().set("chain", target.getChain().getId().stringValue()).build());
+        if (executor != null)
+            pendingGauge.sample(executor.pendingTasks());
+        return result;
+    }
+
+    private AsyncExecution asyncExecution(Chain<Searcher> chain, Execution execution) {
+        if (executor == null) return new AsyncExecution(chain, execution);
+        return new AsyncExecution(chain, execution, executor);
     }
 
     private Query cloneFederationQuery(Query query, Window window, long timeout, Target target) {
@@ -435,7 +478,8 @@ public class FederationSearcher extends ForkingSearcher {
                     chainExecution.fill(resultToFill, summaryClass);
                     propagateErrors(resultToFill, result);
                 } else {
-                    AsyncExecution asyncFill = new AsyncExecution(chainExecution);
+                    AsyncExecution asyncFill = executor == null ? new AsyncExecution(chainExecution)
+                                                                : new AsyncExecution(chainExecution, executor);
                     futureFilledResults.add(new Pair<>(resultToFill, asyncFill.fill(resultToFill, summaryClass)));
                 }
             }
@@ -102,6 +102,12 @@ public class Binding implements Comparable<Binding> {
     @Override
     public int hashCode() { return hashCode; }
 
+    /** Returns the dimensions bound by this. The returned array must not be modified. */
+    String[] dimensions() { return dimensions; }
+
+    /** Returns the values of the dimensions bound by this, in the same order. The returned array must not be modified. */
+    String[] dimensionValues() { return dimensionValues; }
+
     /**
      * Returns true if all the dimension values in this have the same values
      * in the given context.
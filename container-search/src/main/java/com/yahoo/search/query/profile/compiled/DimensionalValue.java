@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,11 +19,18 @@ import java.util.Set;
  */
 public class DimensionalValue<VALUE> {
 
+    /** The number of variants above which lookups are done through an index rather than by matching each variant */
+    private static final int minVariantsToIndex = 8;
+
     private final List<Value<VALUE>> values;
 
+    /** An index of the variants of this, or null if there are too few variants to benefit from one */
+    private final VariantIndex index;
+
     /** Create a set of variants which is a single value regardless of dimensions */
     public DimensionalValue(Value<VALUE> value) {
         this.values = Collections.singletonList(value);
+        this.index = null;
     }
 
     public DimensionalValue(List<Value<VALUE>> valueVariants) {
@@ -33,12 +41,17 @@ public class DimensionalValue<VALUE> {
             this.values = new ArrayList<>(valueVariants);
             Collections.sort(this.values);
         }
+        this.index = values.size() > minVariantsToIndex ? new VariantIndex(values) : null;
     }
 
     /** Returns the value matching this context, or null if none */
     public VALUE get(Map<String, String> context) {
         if (context == null)
             context = Collections.emptyMap();
+        if (index != null) {
+            int match = index.firstMatch(context);
+            return match < 0 ? null : values.get(match).value();
+        }
         for (Value<VALUE> value : values) {
             if (value.matches(context))
                 return value.value();
@@ -79,6 +92,78 @@ public class DimensionalValue<VALUE> {
 
     }
 
+    /**
+     * An index of which variants may match each value of each dimension, as bitsets over the variants in the
+     * order they are matched. A lookup then costs a map lookup per dimension and a few bitwise operations,
+     * rather than matching every variant in turn.
+     */
+    private static class VariantIndex {
+
+        /** The dimensions bound by any of the variants */
+        private final String[] dimensions;
+
+        /** For each dimension, the variants which do not bind it and therefore match any value */
+        private final long[][] unbound;
+
+        /** For each dimension, the variants binding it to each value */
+        private final List<Map<String, long[]>> bound;
+
+        /** All the variants, which are the candidates before any dimension is considered */
+        private final long[] all;
+
+        VariantIndex(List<? extends Value<?>> variants) {
+            int variantCount = variants.size();
+            int words = (variantCount + 63) >>> 6;
+            all = new long[words];
+            setAll(all, variantCount);
+
+            Map<String, Integer> dimensionIndexes = new LinkedHashMap<>();
+            for (Value<?> variant : variants)
+                for (String dimension : variant.binding().dimensions())
+                    dimensionIndexes.putIfAbsent(dimension, dimensionIndexes.size());
+            dimensions = dimensionIndexes.keySet().toArray(new String[0]);
+
+            unbound = new long[dimensions.length][words];
+            bound = new ArrayList<>(dimensions.length);
+            for (int d = 0; d < dimensions.length; d++) {
+                System.arraycopy(all, 0, unbound[d], 0, words);
+                bound.add(new HashMap<>());
+            }
+
+            for (int v = 0; v < variantCount; v++) {
+                Binding binding = variants.get(v).binding();
+                for (int i = 0; i < binding.dimensions().length; i++) {
+                    int d = dimensionIndexes.get(binding.dimensions()[i]);
+                    unbound[d][v >>> 6] &= ~(1L << v);
+                    bound.get(d).computeIfAbsent(binding.dimensionValues()[i], value -> new long[words])[v >>> 6] |= 1L << v;
+                }
+            }
+        }
+
+        /** Returns the index of the first variant matching the given context, or -1 if none */
+        int firstMatch(Map<String, String> context) {
+            long[] candidates = all.clone();
+            for (int d = 0; d < dimensions.length; d++) {
+                long[] unboundInDimension = unbound[d];
+                String value = context.get(dimensions[d]);
+                long[] boundToValue = value == null ? null : bound.get(d).get(value);
+                for (int w = 0; w < candidates.length; w++)
+                    candidates[w] &= boundToValue == null ? unboundInDimension[w] : unboundInDimension[w] | boundToValue[w];
+            }
+            for (int w = 0; w < candidates.length; w++) {
+                if (candidates[w] != 0)
+                    return w * 64 + Long.numberOfTrailingZeros(candidates[w]);
+            }
+            return -1;
+        }
+
+        private static void setAll(long[] bitset, int bits) {
+            for (int i = 0; i < bits; i++)
+                bitset[i >>> 6] |= 1L << i;
+        }
+
+    }
+
     /** A value for a particular binding */
     private static class Value<VALUE> implements Comparable<Value> {
 
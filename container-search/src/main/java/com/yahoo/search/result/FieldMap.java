@@ -0,0 +1,255 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.result;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The fields of a hit: An insertion ordered map stored as parallel arrays of names, name hashes and values.
+ * <p>
+ * Hits usually have a few tens of fields and there are many hits, so this avoids allocating an entry object
+ * per field, as a LinkedHashMap does. Small maps are looked up by linear scan. Maps with more than
+ * {@link #maxFieldsWithoutIndex} fields get an index from name hash to array position, so that
+ * building a hit with many fields does not take quadratic time.
+ * Field names are usually interned (summary field names and string literals are), so names are
+ * compared by identity before equality.
+ * <p>
+ * Entries are only allocated when iterating over the entry set. Entries are not live: Changes to the map
+ * after an entry is returned are not reflected in it, but setValue writes through to the map.
+ *
+ * @author agent
+ */
+final class FieldMap extends AbstractMap<String, Object> {
+
+    /** The number of fields above which lookups use a hash index rather than a linear scan */
+    static final int maxFieldsWithoutIndex = 16;
+
+    private String[] names;
+    private int[] hashes;
+    private Object[] values;
+    private int size = 0;
+
+    /**
+     * An open addressing hash table of the array position + 1 of each field (0 marks a free slot),
+     * having a power of two size of at least twice the capacity of the arrays, or null if there are few fields.
+     */
+    private int[] hashIndex = null;
+
+    private Set<Map.Entry<String, Object>> entrySet = null;
+
+    FieldMap(int initialCapacity) {
+        initialCapacity = Math.max(2, initialCapacity);
+        names = new String[initialCapacity];
+        hashes = new int[initialCapacity];
+        values = new Object[initialCapacity];
+    }
+
+    /** Creates a copy of the given map */
+    FieldMap(FieldMap other) {
+        int capacity = Math.max(2, other.size);
+        names = Arrays.copyOf(other.names, capacity);
+        hashes = Arrays.copyOf(other.hashes, capacity);
+        values = Arrays.copyOf(other.values, capacity);
+        size = other.size;
+        if (other.hashIndex != null)
+            buildIndex();
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        if (size == names.length)
+            grow();
+        names[size] = key;
+        hashes[size] = hash(key);
+        values[size] = value;
+        size++;
+        if (hashIndex != null)
+            addToIndex(size - 1);
+        else if (size > maxFieldsWithoutIndex)
+            buildIndex();
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) return null;
+        Object previous = values[index];
+        removeAt(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        hashIndex = null;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> consumer) {
+        for (int i = 0; i < size; i++)
+            consumer.accept(names[i], values[i]);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null)
+            entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    private int indexOf(Object key) {
+        if (key != null && ! (key instanceof String)) return -1;
+        int hash = hash(key);
+        if (hashIndex != null) return indexedIndexOf(key, hash);
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] != hash) continue;
+            if (names[i] == key || (names[i] != null && names[i].equals(key))) return i;
+        }
+        return -1;
+    }
+
+    private int indexedIndexOf(Object key, int hash) {
+        int mask = hashIndex.length - 1;
+        for (int slot = slot(hash, mask); hashIndex[slot] != 0; slot = (slot + 1) & mask) {
+            int i = hashIndex[slot] - 1;
+            if (hashes[i] != hash) continue;
+            if (names[i] == key || (names[i] != null && names[i].equals(key))) return i;
+        }
+        return -1;
+    }
+
+    /** Builds the index from scratch, or removes it if this has become small enough to not need one */
+    private void buildIndex() {
+        if (size <= maxFieldsWithoutIndex) {
+            hashIndex = null;
+            return;
+        }
+        hashIndex = new int[Integer.highestOneBit(names.length * 2 - 1) << 1];
+        for (int i = 0; i < size; i++)
+            addToIndex(i);
+    }
+
+    private void addToIndex(int position) {
+        int mask = hashIndex.length - 1;
+        int slot = slot(hashes[position], mask);
+        while (hashIndex[slot] != 0)
+            slot = (slot + 1) & mask;
+        hashIndex[slot] = position + 1;
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void removeAt(int index) {
+        int toMove = size - index - 1;
+        if (toMove > 0) {
+            System.arraycopy(names, index + 1, names, index, toMove);
+            System.arraycopy(hashes, index + 1, hashes, index, toMove);
+            System.arraycopy(values, index + 1, values, index, toMove);
+        }
+        size--;
+        names[size] = null;
+        values[size] = null;
+        if (hashIndex != null)
+            buildIndex(); // positions have changed
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        values = Arrays.copyOf(values, capacity);
+        if (hashIndex != null)
+            buildIndex();
+    }
+
+    private static int hash(Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public void clear() { FieldMap.this.clear(); }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() { return new EntryIterator(); }
+
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next = 0;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() { return next < size; }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (next >= size) throw new NoSuchElementException();
+            last = next++;
+            return new Entry(names[last], values[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) throw new IllegalStateException();
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+
+    }
+
+    private class Entry extends AbstractMap.SimpleEntry<String, Object> {
+
+        Entry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+
+    }
+
+}
@@ -13,7 +13,6 @@ import com.yahoo.search.Searcher;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -49,7 +48,7 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     private static final String DOCUMENT_ID = "documentid";
 
     /** A collection of string keyed object properties. */
-    private Map<String,Object> fields = null;
+    private FieldMap fields = null;
     private Map<String,Object> unmodifiableFieldMap = null;
 
     /** Meta data describing how a given searcher should treat this hit. */
@@ -476,10 +475,8 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     }
 
     private Map<String, Object> getFieldMap(int minSize) {
-        if (fields == null) {
-            // Compensate for loadfactor and then some, rounded up....
-            fields = new LinkedHashMap<>(2*minSize);
-        }
+        if (fields == null)
+            fields = new FieldMap(minSize);
         return fields;
     }
 
@@ -561,6 +558,14 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    /**
+     * Sets the query which produced this, or null to make this not refer to a query, also if a query is already set.
+     * This is used when a hit is reused in the result of another query than the one which produced it, e.g from a cache.
+     */
+    public final void replaceQuery(Query query) {
+        this.query = query;
+    }
+
     /** Attach some data to this hit for this searcher */
     public void setSearcherSpecificMetaData(Searcher searcher, Object data) {
         if (searcherSpecificMetaData == null) {
@@ -653,7 +658,7 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     public Hit clone() {
         Hit hit = (Hit) super.clone();
 
-        hit.fields = fields != null ? new LinkedHashMap<>(fields) : null;
+        hit.fields = fields != null ? new FieldMap(fields) : null;
         hit.unmodifiableFieldMap = null;
         hit.types = new LinkedHashSet<>(types);
         if (filled != null) {
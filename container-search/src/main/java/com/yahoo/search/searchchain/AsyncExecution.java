@@ -39,6 +39,12 @@ import java.util.concurrent.*;
  * created for each AsyncExecution instance.
  * </p>
  *
+ * <p>
+ * By default, executions run on a thread pool shared by all async executions. An executor may be
+ * passed instead, e.g a {@link BoundedExecutor}. If that executor rejects the execution, the
+ * future result returned contains an error rather than the execution failing.
+ * </p>
+ *
  * @see com.yahoo.search.searchchain.Execution
  * @author Arne Bergene Fossaa
  */
@@ -61,6 +67,9 @@ public class AsyncExecution {
     /** The execution this executes */
     private final Execution execution;
 
+    /** The executor running this */
+    private final Executor executor;
+
     /**
      * Creates an async execution.
      *
@@ -68,7 +77,18 @@ public class AsyncExecution {
      * @param execution the execution holding the context of this
      */
     public AsyncExecution(Chain<? extends Searcher> chain, Execution execution) {
-        this(execution.context(), chain);
+        this(execution.context(), chain, executorMain);
+    }
+
+    /**
+     * Creates an async execution running on the given executor.
+     *
+     * @param chain the chain to execute
+     * @param execution the execution holding the context of this
+     * @param executor the executor running this
+     */
+    public AsyncExecution(Chain<? extends Searcher> chain, Execution execution, Executor executor) {
+        this(execution.context(), chain, executor);
     }
 
     /**
@@ -78,7 +98,7 @@ public class AsyncExecution {
      * @param context the the context of this
      */
     public AsyncExecution(Chain<? extends Searcher> chain, Execution.Context context) {
-        this(context, chain);
+        this(context, chain, executorMain);
     }
 
     /**
@@ -102,11 +122,24 @@ public class AsyncExecution {
      * @see #AsyncExecution(Chain, Execution)
      */
     public AsyncExecution(Execution execution) {
+        this(execution, executorMain);
+    }
+
+    /**
+     * Creates an async execution from an existing execution, running on the given executor.
+     *
+     * @param execution the execution from which the state of this is created
+     * @param executor the executor running this
+     * @see #AsyncExecution(Execution)
+     */
+    public AsyncExecution(Execution execution, Executor executor) {
         this.execution = new Execution(execution);
+        this.executor = executor;
     }
 
-    private AsyncExecution(Execution.Context context, Chain<? extends Searcher> chain) {
+    private AsyncExecution(Execution.Context context, Chain<? extends Searcher> chain, Executor executor) {
         this.execution = new Execution(chain, context);
+        this.executor = executor;
     }
 
     /**
@@ -161,7 +194,12 @@ public class AsyncExecution {
 
     private FutureResult getFutureResult(Callable<Result> callable, Query query) {
         FutureResult future = new FutureResult(callable, execution, query);
-        getExecutor().execute(future);
+        try {
+            executor.execute(future);
+        }
+        catch (RejectedExecutionException e) {
+            future.reject(e);
+        }
         return future;
     }
 
@@ -0,0 +1,87 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor of asynchronous executions with a bounded number of threads, which rejects tasks
+ * when all its threads are busy.
+ * <p>
+ * This is an alternative to the thread pool shared by all {@link AsyncExecution}s by default, which grows
+ * to thousands of threads under load spikes. With this executor, fan-out to many search chains degrades by
+ * rejecting some of them (which then produces a result containing an error) rather than by starting
+ * ever more threads.
+ * <p>
+ * Tasks are never queued: Each task runs on its own thread from the time it is accepted. Search chains
+ * block while waiting for the chains they federate to, so a task queued behind the busy threads of its own
+ * caller could otherwise wait forever.
+ * <p>
+ * This is multithread safe.
+ *
+ * @author agent
+ */
+public class BoundedExecutor implements Executor, AutoCloseable {
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong rejectedTasks = new AtomicLong(0);
+
+    /**
+     * Creates a bounded executor
+     *
+     * @param name the name prefix of the threads of this
+     * @param coreThreads the number of threads kept when idle, or 0 to use four per available processor
+     * @param maxThreads the max number of tasks running at any time
+     */
+    public BoundedExecutor(String name, int coreThreads, int maxThreads) {
+        if (maxThreads < 1)
+            throw new IllegalArgumentException("Max threads must be positive, not " + maxThreads);
+        if (coreThreads <= 0)
+            coreThreads = 4 * Runtime.getRuntime().availableProcessors();
+        coreThreads = Math.min(coreThreads, maxThreads);
+        this.pool = new ThreadPoolExecutor(coreThreads, maxThreads, 60, TimeUnit.SECONDS,
+                                           new SynchronousQueue<>(), ThreadFactoryFactory.getDaemonThreadFactory(name));
+    }
+
+    /**
+     * Executes the given task on a thread of this
+     *
+     * @throws RejectedExecutionException if all the threads of this are busy
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            pool.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException("All " + pool.getMaximumPoolSize() + " threads are busy", e);
+        }
+    }
+
+    /** Returns the number of tasks currently running */
+    public int pendingTasks() { return pool.getActiveCount(); }
+
+    /** Returns the number of tasks rejected by this since it was created */
+    public long rejectedTasks() { return rejectedTasks.get(); }
+
+    /** Stops accepting tasks and waits a short while for the running tasks to complete */
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            // Tasks left behind are stopped by shutdownNow below
+        }
+        pool.shutdownNow();
+    }
+
+}
@@ -27,6 +27,8 @@ public class FutureResult extends FutureTask<Result> {
     /** Only used for generating messages */
     private final Execution execution;
 
+    private volatile boolean rejected = false;
+
     private final static Logger log = Logger.getLogger(FutureResult.class.getName());
 
     public FutureResult(Callable<Result> callable, Execution execution, Query query) {
@@ -85,6 +87,16 @@ public class FutureResult extends FutureTask<Result> {
         }
     }
 
+    /** Completes this with a result containing an error, because the executor did not accept it */
+    void reject(Exception e) {
+        rejected = true;
+        set(new Result(getQuery(), new ErrorMessage(429, "Too many requests",
+                                                    "'" + execution + "' was not executed: " + Exceptions.toMessageString(e))));
+    }
+
+    /** Returns whether this was never executed because the executor was overloaded */
+    public boolean isRejected() { return rejected; }
+
     /** Returns the query used in this execution, never null */
     public Query getQuery() {
         return query;
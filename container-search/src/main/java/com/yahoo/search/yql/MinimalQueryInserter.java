@@ -2,6 +2,8 @@
 package com.yahoo.search.yql;
 
 import com.google.common.annotations.Beta;
+import com.google.inject.Inject;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -36,6 +38,20 @@ public class MinimalQueryInserter extends Searcher {
     private static final CompoundName MAX_HITS = new CompoundName("maxHits");
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
 
+    /** The cache of parsed YQL programs, or null if YQL is parsed on every query */
+    private final ProgramCache programCache;
+
+    public MinimalQueryInserter() {
+        this(new MinimalQueryInserterConfig(new MinimalQueryInserterConfig.Builder()), MetricReceiver.nullImplementation);
+    }
+
+    @Inject
+    public MinimalQueryInserter(MinimalQueryInserterConfig config, MetricReceiver metrics) {
+        this.programCache = config.programCacheSize() > 0
+                            ? new ProgramCache(config.programCacheSize(), config.programCacheMaxYqlLength(), metrics)
+                            : null;
+    }
+
     @Override
     public Result search(Query query, Execution execution) {
         if (query.properties().get(YQL) == null) {
@@ -45,6 +61,7 @@ public class MinimalQueryInserter extends Searcher {
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
         parser.setUserQuery(query);
+        parser.setProgramCache(programCache);
         QueryTree newTree;
         try {
             newTree = parser.parse(Parsable.fromQueryModel(query.getModel())
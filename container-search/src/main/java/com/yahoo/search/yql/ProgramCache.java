@@ -0,0 +1,301 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.MetricReceiver;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded cache of parsed YQL programs, used to avoid parsing the same YQL again when it is sent with many queries.
+ * <p>
+ * Programs are keyed by their YQL with the number and string literals replaced by placeholders, so YQL which
+ * differs only in the values of such literals shares a cached program. A program taken from the cache gets the
+ * literal values of the YQL it is requested for. Literals which are not values in the program, such as annotation
+ * values, must instead be equal to those of the cached program, and programs where substituting literal values
+ * does not give the same result as parsing are only used for identical YQL.
+ * <p>
+ * The cached programs are shared between queries. This is safe because YqlParser only reads the program
+ * when converting it to a query tree, so each query still gets its own items.
+ * <p>
+ * This is multithread safe.
+ *
+ * @author agent
+ */
+class ProgramCache {
+
+    private final int maxSize;
+    private final int maxYqlLength;
+
+    /** The cached programs, by the key of the YQL they are parsed from */
+    private final Cache<String, Template> programs;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * Creates a program cache
+     *
+     * @param maxSize the max number of programs to cache
+     * @param maxYqlLength the max length of YQL strings to cache programs for, to bound the memory used
+     * @param metrics the receiver of the hit and miss counts of this
+     */
+    ProgramCache(int maxSize, int maxYqlLength, MetricReceiver metrics) {
+        this.maxSize = maxSize;
+        this.maxYqlLength = maxYqlLength;
+        this.programs = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        this.hits = metrics.declareCounter("yql.program_cache_hits");
+        this.misses = metrics.declareCounter("yql.program_cache_misses");
+    }
+
+    /** Returns the program parsed from the given YQL, or null if it is not cached */
+    OperatorNode<StatementOperator> get(String yql) {
+        OperatorNode<StatementOperator> program = null;
+        Literals literals = yql.length() > maxYqlLength ? null : Literals.of(yql);
+        if (literals != null) {
+            Template template = programs.getIfPresent(literals.key());
+            if (template != null)
+                program = template.instantiate(literals);
+        }
+        if (program != null)
+            hits.add();
+        else
+            misses.add();
+        return program;
+    }
+
+    /** Caches the program parsed from the given YQL, unless the YQL is too long to be cached */
+    void put(String yql, OperatorNode<StatementOperator> program) {
+        if (yql.length() > maxYqlLength) return;
+        Literals literals = Literals.of(yql);
+        if (literals == null) return;
+        programs.put(literals.key(), Template.of(program, literals));
+    }
+
+    /** Returns the number of programs currently cached */
+    int size() {
+        return (int)programs.size();
+    }
+
+    @Override
+    public String toString() {
+        return "YQL program cache of max size " + maxSize;
+    }
+
+    /** The number and string literal tokens of a YQL string, and the YQL with those literals replaced by placeholders */
+    static final class Literals {
+
+        private final String yql;
+        private final String key;
+        private final List<Token> tokens;
+
+        private Literals(String yql, String key, List<Token> tokens) {
+            this.yql = yql;
+            this.key = key;
+            this.tokens = tokens;
+        }
+
+        String key() { return key; }
+
+        int size() { return tokens.size(); }
+
+        Token token(int i) { return tokens.get(i); }
+
+        String text(int i) { return yql.substring(tokens.get(i).getStartIndex(), tokens.get(i).getStopIndex() + 1); }
+
+        Object value(int i) { return ProgramParser.convertLiteral(tokens.get(i).getType(), text(i)); }
+
+        /** Returns the YQL of these literals with the given literals replaced by the given texts */
+        String replace(Map<Integer, String> texts) {
+            StringBuilder b = new StringBuilder(yql.length());
+            int end = 0;
+            for (Map.Entry<Integer, String> text : texts.entrySet()) {
+                Token token = tokens.get(text.getKey());
+                b.append(yql, end, token.getStartIndex()).append(text.getValue());
+                end = token.getStopIndex() + 1;
+            }
+            return b.append(yql, end, yql.length()).toString();
+        }
+
+        /** Returns the literals of the given YQL, or null if it cannot be tokenized */
+        static Literals of(String yql) {
+            yqlplusLexer lexer;
+            try {
+                lexer = new yqlplusLexer(new CaseInsensitiveInputStream(yql));
+            }
+            catch (IOException e) {
+                return null;
+            }
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+                                        String message, RecognitionException e) {
+                    throw new ProgramCompileException(new Location("query", line, charPositionInLine), message);
+                }
+            });
+
+            List<Token> tokens = new ArrayList<>();
+            StringBuilder key = new StringBuilder(yql.length());
+            int end = 0;
+            try {
+                for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                    if ( ! isValue(token.getType())) continue;
+                    appendEscaped(yql, end, token.getStartIndex(), key);
+                    key.append('\0').append((char)token.getType());
+                    end = token.getStopIndex() + 1;
+                    tokens.add(token);
+                }
+            }
+            catch (ProgramCompileException e) {
+                return null; // Not valid YQL; leave it to the parser to report
+            }
+            appendEscaped(yql, end, yql.length(), key);
+            return new Literals(yql, key.toString(), tokens);
+        }
+
+        private static boolean isValue(int tokenType) {
+            return tokenType == yqlplusLexer.INT || tokenType == yqlplusLexer.LONG_INT ||
+                   tokenType == yqlplusLexer.FLOAT || tokenType == yqlplusLexer.STRING;
+        }
+
+        /** Appends text such that it cannot be mistaken for the placeholders, which start by a null character */
+        private static void appendEscaped(String yql, int start, int end, StringBuilder key) {
+            for (int i = start; i < end; i++) {
+                char c = yql.charAt(i);
+                key.append(c);
+                if (c == '\0')
+                    key.append(c);
+            }
+        }
+
+    }
+
+    /** A program with the literal value nodes which can be replaced by the literals of other YQL with the same key */
+    static final class Template {
+
+        private final OperatorNode<StatementOperator> program;
+
+        /** The index of the literal giving the value of each replaceable node */
+        private final Map<OperatorNode<?>, Integer> parameters;
+
+        /** The text each literal must have for the program to be used, or null for those which are parameters */
+        private final String[] fixedTexts;
+
+        private Template(OperatorNode<StatementOperator> program, Map<OperatorNode<?>, Integer> parameters, String[] fixedTexts) {
+            this.program = program;
+            this.parameters = parameters;
+            this.fixedTexts = fixedTexts;
+        }
+
+        /** Returns this program with the values of the given literals, or null if it cannot be used for them */
+        OperatorNode<StatementOperator> instantiate(Literals literals) {
+            if (literals.size() != fixedTexts.length) return null;
+            Object[] values = new Object[fixedTexts.length];
+            for (int i = 0; i < fixedTexts.length; i++) {
+                if (fixedTexts[i] != null) {
+                    if ( ! fixedTexts[i].equals(literals.text(i))) return null;
+                }
+                else {
+                    try {
+                        values[i] = literals.value(i);
+                    }
+                    catch (RuntimeException e) {
+                        return null; // Not a valid value; leave it to the parser to report
+                    }
+                }
+            }
+            return parameters.isEmpty() ? program : substitute(program, values);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Operator> OperatorNode<T> substitute(OperatorNode<T> node, Object[] values) {
+            Integer literal = parameters.get(node);
+            if (literal != null)
+                return OperatorNode.create(node.getLocation(), node.getAnnotations(), node.getOperator(), values[literal]);
+            return node.transform(argument -> argument instanceof OperatorNode
+                                              ? substitute((OperatorNode<Operator>)argument, values)
+                                              : argument);
+        }
+
+        /**
+         * Returns a template of the given program parsed from YQL with the given literals. The literals which are
+         * the values of literal nodes become parameters if parsing YQL with other values for them gives the same
+         * program as substituting those values.
+         */
+        static Template of(OperatorNode<StatementOperator> program, Literals literals) {
+            String[] fixedTexts = new String[literals.size()];
+            for (int i = 0; i < literals.size(); i++)
+                fixedTexts[i] = literals.text(i);
+            if (literals.size() == 0) return new Template(program, new IdentityHashMap<>(), fixedTexts);
+
+            Map<OperatorNode<?>, Integer> parameters = literalNodesOf(program, literals);
+            if (parameters.isEmpty()) return new Template(program, parameters, fixedTexts);
+
+            Template probe = new Template(program, parameters, fixedTexts);
+            Object[] probeValues = new Object[literals.size()];
+            Map<Integer, String> probeTexts = new TreeMap<>();
+            for (int literal : parameters.values()) {
+                probeTexts.put(literal, probeText(literals.token(literal).getType(), literal));
+                probeValues[literal] = ProgramParser.convertLiteral(literals.token(literal).getType(), probeTexts.get(literal));
+            }
+            try {
+                if ( ! new ProgramParser().parse("query", literals.replace(probeTexts)).equals(probe.substitute(program, probeValues)))
+                    return new Template(program, new IdentityHashMap<>(), fixedTexts);
+            }
+            catch (Exception e) {
+                return new Template(program, new IdentityHashMap<>(), fixedTexts);
+            }
+
+            for (int literal : parameters.values())
+                fixedTexts[literal] = null;
+            return new Template(program, parameters, fixedTexts);
+        }
+
+        /** Returns the literal nodes of the given program which hold the value of a literal at the same location */
+        private static Map<OperatorNode<?>, Integer> literalNodesOf(OperatorNode<StatementOperator> program, Literals literals) {
+            Map<OperatorNode<?>, Integer> literalNodes = new IdentityHashMap<>();
+            program.visit(new OperatorVisitor() {
+                @Override
+                public <T extends Operator> boolean enter(OperatorNode<T> node) {
+                    if (node.getOperator() != ExpressionOperator.LITERAL || node.getLocation() == null) return true;
+                    for (int i = 0; i < literals.size(); i++) {
+                        Token token = literals.token(i);
+                        if (token.getLine() == node.getLocation().getLineNumber()
+                            && token.getCharPositionInLine() == node.getLocation().getCharacterOffset()
+                            && literals.value(i).equals(node.getArgument(0)))
+                            literalNodes.put(node, i);
+                    }
+                    return true;
+                }
+
+                @Override
+                public <T extends Operator> void exit(OperatorNode<T> node) { }
+            });
+            return literalNodes;
+        }
+
+        /** Returns a literal text of the given type which is distinct for each literal */
+        private static String probeText(int tokenType, int literal) {
+            switch (tokenType) {
+                case yqlplusLexer.INT: return String.valueOf(1000 + literal);
+                case yqlplusLexer.LONG_INT: return (1000 + literal) + "L";
+                case yqlplusLexer.FLOAT: return (1000 + literal) + ".5";
+                default: return "\"probe" + literal + "\"";
+            }
+        }
+
+    }
+
+}
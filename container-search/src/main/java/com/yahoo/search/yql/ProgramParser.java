@@ -1365,9 +1365,12 @@ final class ProgramParser {
 	}
 
     public Object convertLiteral(Scalar_literalContext literal) {
-        int parseTreeIndex = getParseTreeIndex(literal.getChild(0));
-        String text = literal.getChild(0).getText();
-        switch(parseTreeIndex) {
+        return convertLiteral(getParseTreeIndex(literal.getChild(0)), literal.getChild(0).getText());
+    }
+
+    /** Returns the value of a literal token of the given type and text */
+    static Object convertLiteral(int tokenType, String text) {
+        switch(tokenType) {
             case yqlplusParser.INT:
                 return Integer.valueOf(text);
             case yqlplusParser.FLOAT:
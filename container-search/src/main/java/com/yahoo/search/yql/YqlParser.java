@@ -199,6 +199,7 @@ public class YqlParser implements Parser {
     private boolean queryParser = true;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
+    private ProgramCache programCache = null;
 
     private static final QueryVisitor noEmptyTerms = new QueryVisitor() {
 
@@ -722,12 +723,7 @@ public class YqlParser implements Parser {
 
     @NonNull
     private OperatorNode<?> parseYqlProgram() {
-        OperatorNode<?> ast;
-        try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-        }
+        OperatorNode<?> ast = parseProgram(currentlyParsing.getQuery());
         assertHasOperator(ast, StatementOperator.PROGRAM);
         Preconditions.checkArgument(ast.getArguments().length == 1,
                                     "Expected only a single argument to the root node, got %s.",
@@ -746,6 +742,20 @@ public class YqlParser implements Parser {
         return ast;
     }
 
+    private OperatorNode<StatementOperator> parseProgram(String yql) {
+        OperatorNode<StatementOperator> program = programCache == null ? null : programCache.get(yql);
+        if (program != null) return program;
+
+        try {
+            program = new ProgramParser().parse("query", yql);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+        if (programCache != null)
+            programCache.put(yql, program);
+        return program;
+    }
+
     @SuppressWarnings("unchecked")
     private OperatorNode<?> fetchPipe(OperatorNode<?> toScan) {
         OperatorNode<?> ast = toScan;
@@ -1475,6 +1485,9 @@ public class YqlParser implements Parser {
     @Beta
     public void setUserQuery(@NonNull Query userQuery) { this.userQuery = userQuery; }
 
+    /** Sets the cache of parsed programs to use, or null (the default) to parse all YQL */
+    void setProgramCache(ProgramCache programCache) { this.programCache = programCache; }
+
     @Beta
     public Set<String> getYqlSummaryFields() { return yqlSummaryFields; }
 
@@ -0,0 +1,193 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.QueryCacheKey;
+import com.yahoo.search.cache.ResultCache;
+import com.yahoo.search.cache.ResultCacheSearcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+
+    @Test
+    public void testCaching() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder(), backend);
+
+        Result first = execute(chain, "?query=foo");
+        Result second = execute(chain, "?query=foo");
+        assertEquals(1, backend.searches);
+        assertEquals(1, second.getConcreteHitCount());
+        assertEquals("foo", second.hits().get(0).getField("title"));
+        assertTrue("A copy is returned", first.hits().get(0) != second.hits().get(0));
+
+        execute(chain, "?query=bar");
+        execute(chain, "?query=foo&hits=5");
+        execute(chain, "?query=foo&ranking=other");
+        assertEquals("Different queries are not answered from cache", 4, backend.searches);
+
+        execute(chain, "?query=foo&nocache=true");
+        assertEquals("nocache bypasses the cache", 5, backend.searches);
+    }
+
+    @Test
+    public void testAllPropertiesArePartOfTheKey() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder(), backend);
+
+        execute(chain, "?query=foo&myProperty=1");
+        execute(chain, "?query=foo&myProperty=1");
+        assertEquals(1, backend.searches);
+        execute(chain, "?query=foo&myProperty=2");
+        execute(chain, "?query=foo&tracelevel=1");
+        assertEquals(3, backend.searches);
+        execute(chain, "?query=foo&myProperty=1&timeout=5s");
+        assertEquals("Timeout is not part of the key", 3, backend.searches);
+    }
+
+    @Test
+    public void testCachedHitsReferToTheCurrentQuery() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder(), backend);
+
+        Result first = execute(chain, "?query=foo");
+        assertSame(first.getQuery(), first.hits().get(0).getQuery());
+        Result second = execute(chain, "?query=foo");
+        assertEquals(1, backend.searches);
+        assertSame(second.getQuery(), second.hits().get(0).getQuery());
+        assertSame(first.getQuery(), first.hits().get(0).getQuery());
+    }
+
+    @Test
+    public void testExpiry() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder().timeToLiveSeconds(10), backend);
+
+        execute(chain, "?query=foo");
+        clock.advance(Duration.ofSeconds(9));
+        execute(chain, "?query=foo");
+        assertEquals(1, backend.searches);
+        clock.advance(Duration.ofSeconds(2));
+        execute(chain, "?query=foo");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void testInvalidationOnContentChange() {
+        BackendSearcher backend = new BackendSearcher();
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder(), backend);
+
+        execute(chain, "?query=foo");
+        execute(chain, "?query=foo");
+        assertEquals(1, backend.searches);
+
+        backend.activeDocs = 1001;
+        execute(chain, "?query=bar"); // observes the new document count
+        execute(chain, "?query=foo");
+        assertEquals(3, backend.searches);
+    }
+
+    @Test
+    public void testErrorsAreNotCached() {
+        BackendSearcher backend = new BackendSearcher();
+        backend.fail = true;
+        Chain<Searcher> chain = chain(new ResultCacheConfig.Builder(), backend);
+
+        execute(chain, "?query=foo");
+        execute(chain, "?query=foo");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void testCacheIsBoundedBySize() {
+        ResultCache cache = new ResultCache(100 * 1024, 100 * 1024, Duration.ofMinutes(1), clock);
+        for (int i = 0; i < 1000; i++) {
+            Query query = new Query("?query=term" + i);
+            cache.put(QueryCacheKey.of(query), resultOfSize(query, 1000));
+        }
+        assertTrue(cache.byteSize() <= 100 * 1024);
+        assertTrue(cache.size() < 1000);
+        assertTrue("The last added is kept", cache.get(QueryCacheKey.of(new Query("?query=term999"))).isPresent());
+
+        Query large = new Query("?query=large");
+        assertFalse("Too large to be cached", cache.put(QueryCacheKey.of(large), resultOfSize(large, 200 * 1024)));
+
+        cache.invalidate();
+        assertFalse(cache.get(QueryCacheKey.of(new Query("?query=term999"))).isPresent());
+    }
+
+    private Result resultOfSize(Query query, int size) {
+        Result result = new Result(query);
+        Hit hit = new Hit("hit");
+        hit.setField("text", new String(new char[size / 2]));
+        result.hits().add(hit);
+        return result;
+    }
+
+    private Chain<Searcher> chain(ResultCacheConfig.Builder config, Searcher backend) {
+        return new Chain<>(new ResultCacheSearcher(new ResultCacheConfig(config), metric, clock), backend);
+    }
+
+    private Result execute(Chain<Searcher> chain, String request) {
+        Query query = new Query(request);
+        Execution execution = new Execution(chain, Execution.Context.createContextStub());
+        Result result = execution.search(query);
+        execution.fill(result);
+        return result;
+    }
+
+    private static class BackendSearcher extends Searcher {
+
+        int searches = 0;
+        long activeDocs = 1000;
+        boolean fail = false;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            Result result = new Result(query);
+            if (fail) {
+                result.hits().addError(ErrorMessage.createBackendCommunicationError("Failed"));
+                return result;
+            }
+            result.setCoverage(new Coverage(activeDocs, activeDocs, 1));
+            Hit hit = new Hit("hit:" + query.getModel().getQueryString(), query);
+            hit.setFillable();
+            result.hits().add(hit);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            for (Hit hit : result.hits()) {
+                hit.setField("title", hit.getId().toString().substring("hit:".length()));
+                hit.setFilled(summaryClass);
+            }
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 
@@ -65,6 +66,56 @@ public class FillTestCase {
         assertEquals(4L, result.hits().get("hit:4").getField("field2"));
     }
 
+    @Test
+    public void testBatchedFilling() throws Exception {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        // The batch is sent when it holds the 4 hits of both results, long before the window passes
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client, nodes, 60 * 1000 * 1000, 4);
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host0", 1, "summaryClass1", map("field1", "s.0.1", "field2", 1));
+        client.setDocsumReponse("host0", 2, "summaryClass1", map("field1", "s.0.2", "field2", 2));
+
+        Result result1 = new Result(new Query());
+        result1.hits().add(createHit(0, 0));
+        result1.hits().add(createHit(0, 1));
+        Result result2 = new Result(new Query());
+        result2.hits().add(createHit(0, 2));
+        result2.hits().add(createHit(0, 1));
+
+        Thread filler = new Thread(() -> rpcResourcePool.getFillInvoker(db()).fill(result1, "summaryClass1"));
+        filler.start();
+        rpcResourcePool.getFillInvoker(db()).fill(result2, "summaryClass1");
+        filler.join();
+        rpcResourcePool.release();
+
+        assertEquals("One request with the distinct hits", Collections.singletonList(3), client.docsumRequestSizes());
+        assertEquals("s.0.0", result1.hits().get("hit:0").getField("field1").toString());
+        assertEquals("s.0.1", result1.hits().get("hit:1").getField("field1").toString());
+        assertEquals("s.0.2", result2.hits().get("hit:2").getField("field1").toString());
+        assertEquals("s.0.1", result2.hits().get("hit:1").getField("field1").toString());
+        assertEquals(2L, result2.hits().get("hit:2").getField("field2"));
+        assertNull(result1.hits().getError());
+        assertNull(result2.hits().getError());
+    }
+
+    @Test
+    public void testBatchedFillingAfterRelease() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client, nodes, 60 * 1000 * 1000, 100);
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        rpcResourcePool.release();
+
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 0));
+        rpcResourcePool.getFillInvoker(db()).fill(result, "summaryClass1");
+
+        assertEquals(Collections.emptyList(), client.docsumRequestSizes());
+        assertNotNull(result.hits().getError());
+    }
+
     @Test
     public void testEmptyHits() {
         Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
@@ -0,0 +1,91 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares merging the sorted hit lists of many content nodes by collecting and sorting all hits
+ * with merging them incrementally into a bounded window of the best hits.
+ *
+ * @author agent
+ */
+public class HitMergingBenchmark {
+
+    private static final int hitsPerNode = 400;
+    private static final int iterations = 2000;
+
+    public void run() {
+        for (int nodes : new int[] { 1, 4, 16, 48, 96 }) {
+            List<List<Hit>> partials = createPartials(nodes);
+
+            // Warm-up
+            long checksum = 0;
+            for (int i = 0; i < iterations; i++) {
+                checksum += addAllAndSort(partials);
+                checksum += mergeIncrementally(partials);
+            }
+
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                checksum += addAllAndSort(partials);
+            long sortTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                checksum += mergeIncrementally(partials);
+            long mergeTime = System.nanoTime() - startTime;
+
+            out(nodes + " nodes: add all and sort " + (sortTime / iterations / 1000) + " us, " +
+                "incremental merge " + (mergeTime / iterations / 1000) + " us (checksum " + checksum + ")");
+        }
+    }
+
+    /** The previous approach: Add every hit to the result, then sort and trim it */
+    private int addAllAndSort(List<List<Hit>> partials) {
+        Result result = new Result(new Query("?hits=" + hitsPerNode));
+        for (List<Hit> partial : partials)
+            result.hits().addAll(partial);
+        result.hits().trim(0, hitsPerNode);
+        return result.getConcreteHitCount();
+    }
+
+    private int mergeIncrementally(List<List<Hit>> partials) {
+        SortedHitsMerger merger = new SortedHitsMerger(hitsPerNode);
+        for (List<Hit> partial : partials)
+            merger.merge(partial);
+        Result result = new Result(new Query("?hits=" + hitsPerNode));
+        result.hits().addAll(merger.hits());
+        return result.getConcreteHitCount();
+    }
+
+    private List<List<Hit>> createPartials(int nodes) {
+        Random random = new Random(nodes);
+        List<List<Hit>> partials = new ArrayList<>(nodes);
+        for (int node = 0; node < nodes; node++) {
+            List<Hit> hits = new ArrayList<>(hitsPerNode);
+            double relevance = 1.0;
+            for (int i = 0; i < hitsPerNode; i++) {
+                relevance -= random.nextDouble() / hitsPerNode;
+                Hit hit = new Hit("node" + node + ":" + i, relevance);
+                hits.add(hit);
+            }
+            partials.add(hits);
+        }
+        return partials;
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) {
+        new HitMergingBenchmark().run();
+    }
+
+}
@@ -1,11 +1,16 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.query.WordItem;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.statistics.Statistics;
 import com.yahoo.test.ManualClock;
 import org.junit.Test;
 
@@ -13,8 +18,11 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -26,6 +34,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -198,6 +207,162 @@ public class InterleavedSearchInvokerTest {
         assertThat(cov.isDegradedByTimeout(), is(true));
     }
 
+    @Test
+    public void requireThatOnlyTheBestHitsAreKeptWhenMerging() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 3);
+        invokers.add(new MockInvoker(0).setHits(hits("a", 9.0, 5.0, 1.0)));
+        invokers.add(new MockInvoker(1).setHits(hits("b", 8.0, 7.0, 6.0)));
+        invokers.add(new MockInvoker(2).setHits(hits("c", 4.0, 3.0, 2.0)));
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 1));
+        expectedEvents.add(new Event(null, 100, 2));
+
+        query.setHits(3);
+        query.setOffset(1);
+        Result result = invoker.search(query, null, null, null);
+
+        assertThat(result.getConcreteHitCount(), is(3));
+        assertThat(result.hits().get(0).getId().toString(), is("b0"));
+        assertThat(result.hits().get(1).getId().toString(), is("b1"));
+        assertThat(result.hits().get(2).getId().toString(), is("b2"));
+    }
+
+    @Test
+    public void requireThatSortedHitsFromMultipleNodesAreMergedBySortData() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 3);
+        MockClient client = new MockClient();
+        // Each node returns its hits in sort data order, which is not relevance order
+        client.addSearchHit("node0", 1, 1.0, new byte[] { 0x10 });
+        client.addSearchHit("node0", 2, 9.0, new byte[] { (byte)0x90 });
+        client.addSearchHit("node1", 3, 2.0, new byte[] { 0x20 });
+        client.addSearchHit("node1", 4, 5.0, new byte[] { (byte)0x80 });
+        client.addSearchHit("node2", 5, 8.0, new byte[] { 0x30 });
+        Map<Integer, Client.NodeConnection> connections = new HashMap<>();
+        for (int key = 0; key < 3; key++)
+            connections.put(key, client.createConnection("node" + key, 123));
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client, connections);
+        for (int key = 0; key < 3; key++)
+            invokers.add(new RpcSearchInvoker(new RpcSearchInvokerTest.MockSearcher(), new Node(key, "node" + key, 0, 0), rpcResourcePool));
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0); // no searcher: Fails if hits are filled to be sorted
+
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 1));
+        expectedEvents.add(new Event(null, 100, 2));
+
+        query.getModel().getQueryTree().setRoot(new WordItem("foo"));
+        query.getRanking().setSorting("-price");
+        query.setHits(3);
+        query.setOffset(1);
+        Result result = invoker.search(query, null, null, null);
+
+        assertThat(result.getConcreteHitCount(), is(3));
+        assertEquals(client.globalIdFrom(3), ((FastHit)result.hits().get(0)).getGlobalId());
+        assertEquals(client.globalIdFrom(5), ((FastHit)result.hits().get(1)).getGlobalId());
+        assertEquals(client.globalIdFrom(4), ((FastHit)result.hits().get(2)).getGlobalId());
+    }
+
+    @Test
+    public void requireThatSlowRequestsAreHedgedToAnotherGroup() throws IOException {
+        MockSearchCluster cluster = new MockSearchCluster("!", 2, 1);
+        Node slowNode = cluster.groups().get(0).nodes().get(0);
+        Node hedgeNode = cluster.groups().get(1).nodes().get(0);
+        RequestHedger hedger = new RequestHedger(cluster, new LoadBalancer(cluster, true), 95.0, 5, 5.0, Statistics.nullImplementation);
+        for (int i = 0; i < 32; i++) {
+            hedger.recordLatency(slowNode, 100);
+        }
+        assertEquals(hedgeNode, hedger.alternativeTo(slowNode).get());
+
+        invokers.add(new MockInvoker(slowNode).setHits(hits("slow", 1.0)));
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+        invoker.enableHedging(hedger, new InvokerFactory(cluster, null) {
+            @Override
+            protected Optional<SearchInvoker> createNodeSearchInvoker(Query query, Node node) {
+                assertEquals(hedgeNode, node);
+                SearchInvoker hedge = new MockInvoker(node).setHits(hits("hedge", 1.0));
+                invokers.add(hedge);
+                return Optional.of(hedge);
+            }
+        });
+
+        expectedEvents.add(new Event(100, 100, null)); // no response within the 95th percentile: Hedge
+        expectedEvents.add(new Event(4900, 20, 1)); // the hedge answers first
+
+        Result result = invoker.search(query, null, null, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertNull(result.hits().getErrorHit());
+        assertThat(result.getConcreteHitCount(), is(1));
+        assertThat(result.hits().get(0).getId().toString(), is("hedge0"));
+        assertThat(result.getCoverage(true).getNodesTried(), is(1));
+        assertEquals(1, hedger.hedgesFired());
+        assertEquals(1, hedger.hedgesWon());
+    }
+
+    @Test
+    public void requireThatRequestsAreNotHedgedWithoutLatencyInformation() throws IOException {
+        MockSearchCluster cluster = new MockSearchCluster("!", 2, 1);
+        Node node = cluster.groups().get(0).nodes().get(0);
+        RequestHedger hedger = new RequestHedger(cluster, new LoadBalancer(cluster, true), 95.0, 5, 5.0, Statistics.nullImplementation);
+
+        invokers.add(new MockInvoker(node));
+        InterleavedSearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+        invoker.enableHedging(hedger, new InvokerFactory(cluster, null) {
+            @Override
+            protected Optional<SearchInvoker> createNodeSearchInvoker(Query query, Node node) {
+                fail("No hedge expected");
+                return Optional.empty();
+            }
+        });
+
+        expectedEvents.add(new Event(5000, 300, 0));
+
+        invoker.search(query, null, null, null);
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(0, hedger.hedgesFired());
+        assertEquals(Long.MAX_VALUE, hedger.hedgeDelay(node));
+    }
+
+    @Test
+    public void requireThatRequestsToMultiNodeGroupsAreNotHedged() {
+        MockSearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        Node node = cluster.groups().get(0).nodes().get(1);
+        RequestHedger hedger = new RequestHedger(cluster, new LoadBalancer(cluster, true), 95.0, 5, 5.0, Statistics.nullImplementation);
+        for (int i = 0; i < 32; i++) {
+            hedger.recordLatency(node, 100);
+        }
+        assertEquals(100, hedger.hedgeDelay(node));
+        assertFalse(hedger.alternativeTo(node).isPresent());
+    }
+
+    @Test
+    public void requireThatHedgingIsLimitedToTheMaxPercentageOfRequests() {
+        MockSearchCluster cluster = new MockSearchCluster("!", 2, 1);
+        RequestHedger hedger = new RequestHedger(cluster, new LoadBalancer(cluster, true), 95.0, 5, 10.0, Statistics.nullImplementation);
+        int burst = 0;
+        while (hedger.tryHedge())
+            burst++;
+        assertEquals(10, burst);
+
+        int hedged = 0;
+        for (int i = 0; i < 1000; i++) {
+            hedger.requestSent();
+            if (hedger.tryHedge())
+                hedged++;
+        }
+        assertEquals(100, hedged);
+    }
+
+    private static List<Hit> hits(String idPrefix, double ... relevances) {
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < relevances.length; i++) {
+            hits.add(new Hit(idPrefix + i, relevances[i]));
+        }
+        return hits;
+    }
+
     private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, int numInvokers) {
         for (int i = 0; i < numInvokers; i++) {
             invokers.add(new MockInvoker(i));
@@ -3,6 +3,7 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
+import com.yahoo.search.dispatch.LoadBalancer.LeastLoadedScheduler;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
@@ -156,6 +157,87 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatDecayingSearchTimeFollowsRecentSearchTimes() {
+        final double SMALL = 0.00001;
+        long ms = 1000 * 1000;
+
+        GroupStatus gs = newGroupStatus(1);
+        gs.allocate();
+        gs.release(true, 0.010, 0);
+        assertThat(gs.decayingSearchTime(), closeTo(0.010, SMALL));
+        gs.allocate();
+        gs.release(true, 0.010, 100 * ms);
+        assertThat(gs.decayingSearchTime(), closeTo(0.010, SMALL));
+
+        // A group which suddenly becomes slow is detected after a few tens of milliseconds
+        for (int i = 1; i <= 5; i++) {
+            gs.allocate();
+            gs.release(true, 1.0, 100 * ms + i * 10 * ms);
+        }
+        assertThat(gs.decayingSearchTime(), closeTo(0.010 + (1.0 - 0.010) * (1 - Math.exp(-0.5)), SMALL));
+
+        // Failures count as slow queries
+        double beforeFailure = gs.decayingSearchTime();
+        gs.allocate();
+        gs.release(false, 0, 10000 * ms);
+        assertThat(gs.decayingSearchTime(), closeTo(2 * beforeFailure, SMALL));
+    }
+
+    @Test
+    public void requireThatLeastLoadedSchedulerAvoidsGroupsWithQueriesInFlight() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 2; i++)
+            scoreboard.add(newGroupStatus(i));
+        LeastLoadedScheduler sched = new LeastLoadedScheduler(new Random(1), scoreboard);
+
+        scoreboard.get(0).allocate();
+        for (int i = 0; i < 10; i++)
+            assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+
+        scoreboard.get(1).allocate();
+        scoreboard.get(1).allocate();
+        for (int i = 0; i < 10; i++)
+            assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0));
+
+        assertThat(sched.takeNextGroup(Collections.singleton(0)).get().groupId(), equalTo(1));
+    }
+
+    @Test
+    public void requireThatLeastLoadedSchedulerAvoidsSlowGroups() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            scoreboard.add(newGroupStatus(i));
+        long ms = 1000 * 1000;
+        long[] nowNanos = new long[] { 0 };
+        LeastLoadedScheduler sched = new LeastLoadedScheduler(new Random(1), scoreboard, () -> nowNanos[0]);
+
+        scoreboard.get(0).allocate();
+        scoreboard.get(0).release(true, 0.5, 0);
+        scoreboard.get(1).allocate();
+        scoreboard.get(1).release(true, 0.01, 0);
+        scoreboard.get(2).allocate();
+        scoreboard.get(2).release(true, 0.01, 0);
+
+        for (int i = 0; i < 100; i++)
+            assertThat(sched.takeNextGroup(null).get().groupId(), not(equalTo(0)));
+
+        // The slow group is tried again when the other groups have been busy for a while since it was last used
+        nowNanos[0] = 10 * 1000 * ms;
+        scoreboard.get(1).allocate();
+        scoreboard.get(1).release(true, 0.01, nowNanos[0]);
+        scoreboard.get(2).allocate();
+        scoreboard.get(2).release(true, 0.01, nowNanos[0]);
+        scoreboard.get(1).allocate();
+        scoreboard.get(2).allocate();
+        int slowGroupSelections = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sched.takeNextGroup(null).get().groupId() == 0)
+                slowGroupSelections++;
+        }
+        assertThat(slowGroupSelections > 0, is(true));
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
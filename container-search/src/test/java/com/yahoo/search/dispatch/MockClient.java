@@ -24,6 +24,9 @@ public class MockClient implements Client {
 
     private final Map<DocsumKey, Map<String, Object>> docsums = new HashMap<>();
     private final Compressor compressor = new Compressor();
+    private final List<SearchHit> searchHits = new ArrayList<>();
+    private Inspector lastSearchRequest = null;
+    private final List<Integer> docsumRequestSizes = new ArrayList<>();
     private boolean malfunctioning = false;
 
     /** Set to true to cause this to produce an error instead of a regular response */
@@ -36,7 +39,7 @@ public class MockClient implements Client {
 
     @Override
     public void getDocsums(List<FastHit> hitsContext, NodeConnection node, CompressionType compression,
-                           int uncompressedSize, byte[] compressedSlime, RpcFillInvoker.GetDocsumsResponseReceiver responseReceiver,
+                           int uncompressedSize, byte[] compressedSlime, DocsumsReceiver responseReceiver,
                            double timeoutSeconds) {
         if (malfunctioning) {
             responseReceiver.receive(GetDocsumsResponseOrError.fromError("Malfunctioning"));
@@ -45,6 +48,9 @@ public class MockClient implements Client {
 
         Inspector request = BinaryFormat.decode(compressor.decompress(compressedSlime, compression, uncompressedSize)).get();
         String docsumClass = request.field("class").asString();
+        synchronized (docsumRequestSizes) {
+            docsumRequestSizes.add(request.field("gids").entries());
+        }
         List<Map<String, Object>> docsumsToReturn = new ArrayList<>();
         request.field("gids").traverse((ArrayTraverser)(index, gid) -> {
             GlobalId docId = new GlobalId(gid.asData());
@@ -72,6 +78,64 @@ public class MockClient implements Client {
         responseReceiver.receive(GetDocsumsResponseOrError.fromResponse(response));
     }
 
+    @Override
+    public void search(NodeConnection node, CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                       ResponseReceiver responseReceiver, double timeoutSeconds) {
+        if (malfunctioning) {
+            responseReceiver.receive(ResponseOrError.fromError("Malfunctioning"));
+            return;
+        }
+
+        lastSearchRequest = BinaryFormat.decode(compressor.decompress(compressedPayload, compression, uncompressedLength)).get();
+        List<SearchHit> hitsToReturn = new ArrayList<>();
+        for (SearchHit searchHit : searchHits) {
+            if (searchHit.hostname == null || searchHit.hostname.equals(node.toString()))
+                hitsToReturn.add(searchHit);
+        }
+        Slime responseSlime = new Slime();
+        Cursor root = responseSlime.setObject();
+        root.setLong("total_hit_count", hitsToReturn.size());
+        root.setLong("coverage_docs", 100);
+        root.setLong("active_docs", 100);
+        Cursor hits = root.setArray("hits");
+        for (SearchHit searchHit : hitsToReturn) {
+            Cursor hit = hits.addObject();
+            hit.setData("gid", searchHit.gid.getRawId());
+            hit.setDouble("relevance", searchHit.relevance);
+            hit.setLong("path", 3); // the partition of all hits returned by this
+            if (searchHit.sortData != null)
+                hit.setData("sort_data", searchHit.sortData);
+        }
+        byte[] slimeBytes = BinaryFormat.encode(responseSlime);
+        Compressor.Compression compressionResult = compressor.compress(compression, slimeBytes);
+        SearchResponse response = new SearchResponse(compressionResult.type().getCode(), slimeBytes.length,
+                                                     compressionResult.data());
+        responseReceiver.receive(ResponseOrError.fromResponse(response));
+    }
+
+    /** Adds a hit to the results returned by all subsequent search requests */
+    public void addSearchHit(int docId, double relevance) {
+        searchHits.add(new SearchHit(null, globalIdFrom(docId), relevance, null));
+    }
+
+    /**
+     * Adds a hit to the results returned by all subsequent search requests to the given node,
+     * which must be added in the order the node would return them
+     */
+    public void addSearchHit(String hostname, int docId, double relevance, byte[] sortData) {
+        searchHits.add(new SearchHit(hostname, globalIdFrom(docId), relevance, sortData));
+    }
+
+    /** Returns the number of global ids in each of the getDocsums requests received */
+    public List<Integer> docsumRequestSizes() {
+        synchronized (docsumRequestSizes) {
+            return new ArrayList<>(docsumRequestSizes);
+        }
+    }
+
+    /** Returns the decoded payload of the last search request received, or null if none */
+    public Inspector lastSearchRequest() { return lastSearchRequest; }
+
     public void setDocsumReponse(String nodeId, int docId, String docsumClass, Map<String, Object> docsumValues) {
         docsums.put(new DocsumKey(nodeId, globalIdFrom(docId), docsumClass), docsumValues);
     }
@@ -96,6 +160,22 @@ public class MockClient implements Client {
 
     }
 
+    private static class SearchHit {
+
+        private final String hostname;
+        private final GlobalId gid;
+        private final double relevance;
+        private final byte[] sortData;
+
+        SearchHit(String hostname, GlobalId gid, double relevance, byte[] sortData) {
+            this.hostname = hostname;
+            this.gid = gid;
+            this.relevance = relevance;
+            this.sortData = sortData;
+        }
+
+    }
+
     private static class DocsumKey {
 
         private final String internalKey;
@@ -7,14 +7,17 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.Execution;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 class MockInvoker extends SearchInvoker {
     private final Coverage coverage;
     private Query query;
+    private List<Hit> hits;
 
     protected MockInvoker(int key, Coverage coverage) {
         super(Optional.of(new Node(key, "?", 0, 0)));
@@ -25,6 +28,16 @@ class MockInvoker extends SearchInvoker {
         this(key, null);
     }
 
+    protected MockInvoker(Node node) {
+        super(Optional.of(node));
+        this.coverage = null;
+    }
+
+    MockInvoker setHits(List<Hit> hits) {
+        this.hits = hits;
+        return this;
+    }
+
     @Override
     protected void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException {
         this.query = query;
@@ -36,6 +49,11 @@ class MockInvoker extends SearchInvoker {
         if (coverage != null) {
             ret.setCoverage(coverage);
         }
+        if (hits != null) {
+            for (Hit h : hits) {
+                ret.hits().add(h);
+            }
+        }
         return ret;
     }
 
@@ -0,0 +1,116 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.searchcluster.Node;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.Inspector;
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class RpcSearchInvokerTest {
+
+    private final MockClient client = new MockClient();
+
+    @Test
+    public void testSearchRequestIsEncodedAndResultDecoded() throws IOException {
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client,
+                                                              Collections.singletonMap(7, client.createConnection("host7", 123)));
+        client.addSearchHit(1, 3.0);
+        client.addSearchHit(2, 2.0);
+
+        Query query = new Query("?query=foo&hits=5&offset=2&ranking=rank1");
+        Result result;
+        try (SearchInvoker invoker = new RpcSearchInvoker(new MockSearcher(), new Node(7, "host7", 0, 0), rpcResourcePool)) {
+            result = invoker.search(query, null, null, new Execution(Execution.Context.createContextStub()));
+        }
+
+        Inspector request = client.lastSearchRequest();
+        assertNotNull(request);
+        assertEquals(5, request.field("hits").asLong());
+        assertEquals(2, request.field("offset").asLong());
+        assertEquals("rank1", request.field("ranking").asString());
+        assertEquals(1, request.field("query_tree_item_count").asLong());
+        assertTrue(request.field("query_tree").asData().length > 0);
+
+        assertEquals(2, result.getTotalHitCount());
+        assertEquals(100, result.getCoverage(false).getDocs());
+        assertEquals(2, result.hits().size());
+        FastHit first = (FastHit)result.hits().get(0);
+        assertEquals(client.globalIdFrom(1), first.getGlobalId());
+        assertEquals(3.0, first.getRelevance().getScore(), 0.0);
+        assertEquals(7, first.getDistributionKey());
+        assertTrue(first.isFillable());
+    }
+
+    @Test
+    public void testSortingAndLocationAreEncodedAndSortDataDecoded() throws IOException {
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client,
+                                                              Collections.singletonMap(7, client.createConnection("host7", 123)));
+        client.addSearchHit("host7", 1, 1.0, new byte[] { 0x01, (byte)0x90 });
+        client.addSearchHit("host7", 2, 2.0, null);
+
+        Query query = new Query("?query=foo");
+        query.getRanking().setSorting("+a -b");
+        query.getRanking().setLocation("(2,10,20,5,0,1,0)");
+        Result result;
+        try (SearchInvoker invoker = new RpcSearchInvoker(new MockSearcher(), new Node(7, "host7", 0, 0), rpcResourcePool)) {
+            result = invoker.search(query, null, null, new Execution(Execution.Context.createContextStub()));
+        }
+
+        Inspector request = client.lastSearchRequest();
+        assertEquals("+a -b", Utf8.toString(request.field("sorting").asData()));
+        assertEquals(query.getRanking().getLocation().toString(), request.field("geo_location").asString());
+
+        assertEquals(2, result.hits().size());
+        FastHit withSortData = (FastHit)result.hits().get(0);
+        assertEquals(client.globalIdFrom(1), withSortData.getGlobalId());
+        assertTrue(withSortData.hasSortData(query.getRanking().getSorting()));
+        assertEquals(3, withSortData.getPartId());
+        assertFalse(((FastHit)result.hits().get(1)).hasSortData(query.getRanking().getSorting()));
+    }
+
+    @Test
+    public void testErrorResponseGivesErrorResult() throws IOException {
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(client,
+                                                              Collections.singletonMap(7, client.createConnection("host7", 123)));
+        client.setMalfunctioning(true);
+
+        Result result;
+        try (SearchInvoker invoker = new RpcSearchInvoker(new MockSearcher(), new Node(7, "host7", 0, 0), rpcResourcePool)) {
+            result = invoker.search(new Query("?query=foo"), null, null, new Execution(Execution.Context.createContextStub()));
+        }
+
+        assertNotNull(result.hits().getError());
+        assertEquals(1, result.getCoverage(false).getNodesTried());
+    }
+
+    static class MockSearcher extends VespaBackEndSearcher {
+
+        @Override
+        protected Result doSearch2(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
+            return new Result(query);
+        }
+
+        @Override
+        protected void doPartialFill(Result result, String summaryClass) { }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.test;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the time to compile a query profile with hundreds of variants over five dimensions,
+ * and the cost of looking up values in the compiled profile.
+ *
+ * @author agent
+ */
+public class QueryProfileVariantsMicroBenchmark {
+
+    private static final String[] dimensions = { "d1", "d2", "d3", "d4", "d5" };
+    private static final int properties = 20;
+    private static final int variants = 500;
+
+    public void benchmark(int count) {
+        QueryProfile profile = createProfile();
+        List<Map<String, String>> contexts = createContexts();
+        CompoundName[] names = new CompoundName[properties];
+        for (int i = 0; i < properties; i++)
+            names[i] = new CompoundName("property" + i);
+
+        compile(profile, 10); // warm-up
+        long compileTime = compile(profile, 10);
+        CompiledQueryProfile cprofile = profile.compile(null);
+        getValues(count / 10, cprofile, names, contexts); // warm-up
+
+        long startTime = System.currentTimeMillis();
+        int found = getValues(count, cprofile, names, contexts);
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("Compiling a profile with " + variants + " variants over " + dimensions.length +
+                           " dimensions took " + compileTime + " ms");
+        System.out.println("Done " + count + " lookups in " + totalTime + " ms (" +
+                           ((float)totalTime * 1000 / count) + " microsecond per get, " + found + " found)");
+    }
+
+    private QueryProfile createProfile() {
+        Random random = new Random(1);
+        QueryProfile profile = new QueryProfile("main");
+        profile.setDimensions(dimensions);
+        for (int i = 0; i < properties; i++)
+            profile.set("property" + i, "default", (String[])null, null);
+        for (int i = 0; i < variants; i++) {
+            String[] binding = new String[dimensions.length];
+            for (int d = 0; d < dimensions.length; d++)
+                binding[d] = random.nextInt(3) == 0 ? null : "v" + random.nextInt(5);
+            profile.set("property" + random.nextInt(properties), "variant" + i, binding, null);
+        }
+        profile.freeze();
+        return profile;
+    }
+
+    private List<Map<String, String>> createContexts() {
+        Random random = new Random(2);
+        List<Map<String, String>> contexts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, String> context = new HashMap<>();
+            for (String dimension : dimensions)
+                context.put(dimension, "v" + random.nextInt(6));
+            contexts.add(context);
+        }
+        return contexts;
+    }
+
+    /** Returns the average time in milliseconds to compile the given profile */
+    private long compile(QueryProfile profile, int times) {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < times; i++)
+            profile.compile(null);
+        return (System.currentTimeMillis() - startTime) / times;
+    }
+
+    private int getValues(int count, CompiledQueryProfile cprofile, CompoundName[] names, List<Map<String, String>> contexts) {
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (cprofile.get(names[i % names.length], contexts.get(i % contexts.size()), null) != null)
+                found++;
+        }
+        return found;
+    }
+
+    public static void main(String[] args) {
+        new QueryProfileVariantsMicroBenchmark().benchmark(10000000);
+    }
+
+}
@@ -67,6 +67,31 @@ public class QueryProfileVariantsTestCase {
         assertGet("a.2.*.*","a",new String[] {"x2","y?","z?"}, profile, cprofile);
     }
 
+    @Test
+    public void testManyVariants() {
+        QueryProfile profile = new QueryProfile("a");
+        profile.setDimensions(new String[] {"x", "y"});
+        profile.set("a", "default", null);
+        for (int i = 0; i < 10; i++) {
+            profile.set("a", "x" + i + ".*", new String[] {"x" + i, null}, null);
+            profile.set("a", "*.y" + i, new String[] {null, "y" + i}, null);
+            for (int j = 0; j < 10; j++) {
+                if (i == j) continue; // leave some holes
+                profile.set("a", "x" + i + ".y" + j, new String[] {"x" + i, "y" + j}, null);
+            }
+        }
+        CompiledQueryProfile cprofile = profile.compile(null);
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++)
+                assertGet(i == j ? "x" + i + ".*" : "x" + i + ".y" + j, "a", new String[] {"x" + i, "y" + j}, profile, cprofile);
+            assertGet("x" + i + ".*", "a", new String[] {"x" + i, "y?"}, profile, cprofile);
+            assertGet("*.y" + i, "a", new String[] {"x?", "y" + i}, profile, cprofile);
+        }
+        assertGet("default", "a", new String[] {"x?", "y?"}, profile, cprofile);
+        assertEquals("default", cprofile.get("a"));
+    }
+
     @Test
     public void testVariantsOfInlineCompound() {
         QueryProfile profile=new QueryProfile("test");
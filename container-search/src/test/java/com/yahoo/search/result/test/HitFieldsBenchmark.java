@@ -0,0 +1,114 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.result.test;
+
+import com.yahoo.search.result.Hit;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the bytes allocated per hit to hold its fields, with the field store of Hit and with
+ * the LinkedHashMap Hit used previously, and the time taken to look the fields up.
+ *
+ * @author agent
+ */
+public class HitFieldsBenchmark {
+
+    private static final int hitsPerResult = 400;
+    private static final int fieldsPerHit = 30;
+
+    private final String[] fieldNames = new String[fieldsPerHit];
+
+    private HitFieldsBenchmark() {
+        for (int i = 0; i < fieldsPerHit; i++)
+            fieldNames[i] = ("field" + i).intern();
+    }
+
+    public void run() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long sum = 0;
+
+        out("Warming up...");
+        for (int i = 0; i < 2000; i++) {
+            sum += createHits().length;
+            sum += createMaps().length;
+        }
+
+        long startBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        Hit[] hits = createHits();
+        long hitBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+
+        startBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        Map<?, ?>[] maps = createMaps();
+        long mapBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+
+        out("Bytes allocated per hit of " + fieldsPerHit + " fields, including the hit itself:");
+        out("  LinkedHashMap (before): " + (mapBytes / hitsPerResult) + " + the hit without fields");
+        out("  Hit (after):            " + (hitBytes / hitsPerResult));
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 2000; i++)
+            sum += lookupAll(hits);
+        long hitTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < 2000; i++)
+            sum += lookupAll(maps);
+        long mapTime = System.nanoTime() - startTime;
+
+        out("Nanoseconds per field lookup:");
+        out("  LinkedHashMap (before): " + (mapTime / (2000L * hitsPerResult * fieldsPerHit)));
+        out("  Hit (after):            " + (hitTime / (2000L * hitsPerResult * fieldsPerHit)));
+        out("(ignore: " + sum + ")");
+    }
+
+    private Hit[] createHits() {
+        Hit[] hits = new Hit[hitsPerResult];
+        for (int i = 0; i < hitsPerResult; i++) {
+            Hit hit = new Hit("hit" + i);
+            for (int j = 0; j < fieldsPerHit; j++)
+                hit.setField(fieldNames[j], j);
+            hits[i] = hit;
+        }
+        return hits;
+    }
+
+    private Map<?, ?>[] createMaps() {
+        Map<?, ?>[] maps = new Map<?, ?>[hitsPerResult];
+        for (int i = 0; i < hitsPerResult; i++) {
+            Map<String, Object> map = new LinkedHashMap<>(4); // as previously allocated by Hit
+            for (int j = 0; j < fieldsPerHit; j++)
+                map.put(fieldNames[j], j);
+            maps[i] = map;
+        }
+        return maps;
+    }
+
+    private int lookupAll(Hit[] hits) {
+        int found = 0;
+        for (Hit hit : hits)
+            for (String fieldName : fieldNames)
+                if (hit.getField(fieldName) != null)
+                    found++;
+        return found;
+    }
+
+    private int lookupAll(Map<?, ?>[] maps) {
+        int found = 0;
+        for (Map<?, ?> map : maps)
+            for (String fieldName : fieldNames)
+                if (map.get(fieldName) != null)
+                    found++;
+        return found;
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) {
+        new HitFieldsBenchmark().run();
+    }
+
+}
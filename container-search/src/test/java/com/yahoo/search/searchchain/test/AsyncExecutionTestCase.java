@@ -8,6 +8,7 @@ import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.AsyncExecution;
+import com.yahoo.search.searchchain.BoundedExecutor;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.FutureResult;
 import org.junit.Test;
@@ -15,9 +16,11 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -165,4 +168,58 @@ public class AsyncExecutionTestCase {
         future.get(1, TimeUnit.MILLISECONDS);
     }
 
+    @Test
+    public void testRejectedExecution() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Chain<Searcher> chain = new Chain<>(new Searcher() {
+            @Override
+            public Result search(Query query, Execution execution) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // return
+                }
+                return new Result(query);
+            }
+        });
+        try (BoundedExecutor executor = new BoundedExecutor("test", 1, 1)) {
+            Execution execution = new Execution(chain, Execution.Context.createContextStub());
+            FutureResult first = new AsyncExecution(execution, executor).search(new Query());
+            FutureResult second = new AsyncExecution(execution, executor).search(new Query());
+
+            assertTrue(second.isRejected());
+            assertTrue(second.isDone());
+            assertEquals(429, second.get().hits().getError().getCode());
+            assertEquals(1, executor.rejectedTasks());
+
+            release.countDown();
+            assertNull(first.get().hits().getError());
+            assertFalse(first.isRejected());
+        }
+    }
+
+    @Test
+    public void testNestedExecutionsAreNotQueuedBehindTheirCaller() {
+        Chain<Searcher> inner = new Chain<>(new Searcher() {
+            @Override
+            public Result search(Query query, Execution execution) {
+                Result result = new Result(query);
+                result.hits().add(new Hit("inner"));
+                return result;
+            }
+        });
+        try (BoundedExecutor executor = new BoundedExecutor("test", 1, 2)) {
+            Chain<Searcher> outer = new Chain<>(new Searcher() {
+                @Override
+                public Result search(Query query, Execution execution) {
+                    return new AsyncExecution(inner, execution, executor).search(query).get(); // blocks a thread
+                }
+            });
+            Execution execution = new Execution(outer, Execution.Context.createContextStub());
+            Result result = new AsyncExecution(execution, executor).search(new Query()).get(10, TimeUnit.SECONDS);
+            assertNull(result.hits().getError());
+            assertEquals("inner", result.hits().get(0).getId().toString());
+        }
+    }
+
 }
@@ -16,6 +16,7 @@ import org.junit.Test;
 import com.yahoo.collections.Tuple2;
 import com.yahoo.component.Version;
 import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -326,6 +327,41 @@ public class MinimalQueryInserterTestCase {
                      query.yqlRepresentation());
     }
 
+    @Test
+    public void testProgramCache() {
+        MinimalQueryInserterConfig config = new MinimalQueryInserterConfig(new MinimalQueryInserterConfig.Builder().programCacheSize(10));
+        Execution execution = new Execution(new Chain<>(new MinimalQueryInserter(config, MetricReceiver.nullImplementation)), context);
+
+        for (String term : new String[] { "madonna", "bamse", "madonna" }) {
+            URIBuilder builder = new URIBuilder();
+            builder.setPath("search/");
+            builder.setParameter("term", term);
+            builder.setParameter("yql", "select * from sources * where title contains @term and userInput(@term);");
+            Query query = new Query(builder.toString());
+            Result result = execution.search(query);
+            assertNull(result.hits().getError());
+            assertEquals("select * from sources * where (title contains \"" + term + "\" AND default contains \"" + term + "\");",
+                         query.yqlRepresentation());
+        }
+    }
+
+    @Test
+    public void testProgramCacheIsSharedByYqlDifferingInLiterals() {
+        MinimalQueryInserterConfig config = new MinimalQueryInserterConfig(new MinimalQueryInserterConfig.Builder().programCacheSize(10));
+        MetricReceiver.MockReceiver metrics = new MetricReceiver.MockReceiver();
+        Execution execution = new Execution(new Chain<>(new MinimalQueryInserter(config, metrics)), context);
+
+        String[][] termsAndLimits = { { "madonna", "5" }, { "bamse", "7" }, { "madonna", "5" } };
+        for (String[] termAndLimit : termsAndLimits) {
+            Query query = new Query("search/?yql=" + encode("select * from sources * where title contains \"" + termAndLimit[0] +
+                                                            "\" limit " + termAndLimit[1] + ";"));
+            Result result = execution.search(query);
+            assertNull(result.hits().getError());
+            assertEquals("select * from sources * where title contains \"" + termAndLimit[0] + "\" limit " + termAndLimit[1] + ";",
+                         query.yqlRepresentation());
+        }
+        assertEquals(2, metrics.getSnapshot().getMapForMetric("yql.program_cache_hits").values().iterator().next().getCount());
+    }
 
     private static void assertGrouping(String expected, Query query) {
         List<String> actual = new ArrayList<>();
@@ -95,7 +95,7 @@ public class DocumentTypeManager {
     }
 
     public boolean hasDataType(String name) {
-        if (name.startsWith("tensor(")) return true; // built-in dynamic: Always present
+        if (name.startsWith("tensor(") || name.startsWith("tensor<")) return true; // built-in dynamic: Always present
         for (DataType type : dataTypes.values()) {
             if (type.getName().equalsIgnoreCase(name)) {
                 return true;
@@ -110,7 +110,7 @@ public class DocumentTypeManager {
     }
 
     public DataType getDataType(String name) {
-        if (name.startsWith("tensor(")) // built-in dynamic
+        if (name.startsWith("tensor(") || name.startsWith("tensor<")) // built-in dynamic
             return new TensorDataType(TensorType.fromSpec(name));
 
         List<DataType> foundTypes = new ArrayList<>();
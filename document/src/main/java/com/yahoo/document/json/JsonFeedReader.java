@@ -2,6 +2,8 @@
 package com.yahoo.document.json;
 
 import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.yahoo.document.DocumentOperation;
@@ -24,18 +26,28 @@ import com.yahoo.vespaxmlparser.VespaXMLFeedReader.Operation;
  */
 public class JsonFeedReader implements FeedReader {
 
-    private final JsonReader reader;
+    private final Supplier<DocumentOperation> reader;
     private InputStream stream;
     private static final JsonFactory jsonFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
 
     public JsonFeedReader(InputStream stream, DocumentTypeManager docMan) {
-        reader = new JsonReader(docMan, stream, jsonFactory);
+        reader = new JsonReader(docMan, stream, jsonFactory)::next;
+        this.stream = stream;
+    }
+
+    /**
+     * Creates a feed reader which creates document operations in parallel using the given executor.
+     *
+     * @see ParallelJsonReader
+     */
+    public JsonFeedReader(InputStream stream, DocumentTypeManager docMan, Executor executor, int maxPending) {
+        reader = new ParallelJsonReader(docMan, stream, jsonFactory, executor, maxPending)::next;
         this.stream = stream;
     }
 
     @Override
     public void read(Operation operation) throws Exception {
-        DocumentOperation documentOperation = reader.next();
+        DocumentOperation documentOperation = reader.get();
 
         if (documentOperation == null) {
             stream.close();
@@ -80,6 +80,18 @@ public class JsonReader {
 
     /** Returns the next document operation, or null if we have reached the end */
     public DocumentOperation next() {
+        Optional<DocumentParseInfo> documentParseInfo = nextDocumentParseInfo(new TokenBuffer());
+        if (! documentParseInfo.isPresent()) return null;
+        return createDocumentOperation(documentParseInfo.get());
+    }
+
+    /**
+     * Reads the next document from the stream without creating its document operation,
+     * buffering its field tokens in the given, empty buffer.
+     *
+     * @return the parse info of the next document, or empty if we have reached the end
+     */
+    Optional<DocumentParseInfo> nextDocumentParseInfo(TokenBuffer fieldsBuffer) {
         switch (state) {
             case AT_START:
                 JsonToken t = nextToken(parser);
@@ -87,13 +99,13 @@ public class JsonReader {
                 state = ReaderState.READING;
                 break;
             case END_OF_FEED:
-                return null;
+                return Optional.empty();
             case READING:
                 break;
         }
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = new DocumentParser(parser).parse(Optional.empty(), fieldsBuffer);
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
@@ -101,17 +113,23 @@ public class JsonReader {
         }
         if (! documentParseInfo.isPresent()) {
             state = END_OF_FEED;
-            return null;
         }
+        return documentParseInfo;
+    }
+
+    /**
+     * Creates the document operation of a document read by {@link #nextDocumentParseInfo}.
+     * This does not access the stream and may be called by multiple threads concurrently.
+     */
+    DocumentOperation createDocumentOperation(DocumentParseInfo documentParseInfo) {
         VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
         DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
-                documentParseInfo.get());
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
+                getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager),
+                documentParseInfo);
+        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
         return operation;
     }
 
-
     public DocumentType readDocumentType(DocumentId docId) {
         return getDocumentTypeFromString(docId.getDocType(), typeManager);
     }
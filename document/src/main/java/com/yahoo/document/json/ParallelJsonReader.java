@@ -0,0 +1,127 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.json.readers.DocumentParseInfo;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Reads Vespa document operations from an InputStream containing a JSON array of operations,
+ * like {@link JsonReader}, but creates the document operations in parallel.
+ * <p>
+ * The stream is split into documents by reading it sequentially in the calling thread, buffering the tokens of
+ * each document. Creating the document operations from these tokens, which is where most of the time is spent,
+ * is then done by the given executor for up to a given number of documents ahead of the one returned.
+ * Operations are returned in the order they are read from the stream, such that the ordering of
+ * operations on the same document is preserved.
+ * <p>
+ * Instances of this are not multithread safe: All calls to {@link #next} must be made by the same thread,
+ * or be externally synchronized.
+ *
+ * @author agent
+ */
+public class ParallelJsonReader {
+
+    private final JsonReader reader;
+    private final Executor executor;
+    private final int maxPending;
+
+    /** The operations which are read from the stream but not yet returned, in stream order */
+    private final Deque<Future<DocumentOperation>> pending = new ArrayDeque<>();
+
+    /** Token buffers which may be reused for reading the next documents */
+    private final ConcurrentLinkedQueue<TokenBuffer> tokenBuffers = new ConcurrentLinkedQueue<>();
+
+    private boolean endOfFeed = false;
+
+    /**
+     * Creates a parallel JSON reader
+     *
+     * @param typeManager the document types of the operations read
+     * @param input the stream to read operations from
+     * @param parserFactory the factory to use to create the parser of the stream
+     * @param executor the executor to use to create operations. This is not shut down by this.
+     * @param maxPending the max number of documents to read ahead of the one last returned,
+     *                   which should be some multiple of the parallelism of the executor
+     */
+    public ParallelJsonReader(DocumentTypeManager typeManager, InputStream input, JsonFactory parserFactory,
+                              Executor executor, int maxPending) {
+        if (maxPending < 1)
+            throw new IllegalArgumentException("maxPending must be positive, not " + maxPending);
+        this.reader = new JsonReader(typeManager, input, parserFactory);
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Returns the next document operation, or null if we have reached the end.
+     *
+     * @throws RuntimeException if the stream or the next document could not be read. Documents read
+     *         before an unreadable part of the stream are returned before this is thrown.
+     */
+    public DocumentOperation next() {
+        readAhead();
+        Future<DocumentOperation> operation = pending.poll();
+        if (operation == null) return null;
+        return get(operation);
+    }
+
+    private void readAhead() {
+        while ( ! endOfFeed && pending.size() < maxPending) {
+            TokenBuffer tokenBuffer = tokenBuffers.poll();
+            Optional<DocumentParseInfo> documentParseInfo;
+            try {
+                documentParseInfo = reader.nextDocumentParseInfo(tokenBuffer != null ? tokenBuffer : new TokenBuffer());
+            }
+            catch (RuntimeException e) {
+                endOfFeed = true;
+                CompletableFuture<DocumentOperation> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                pending.add(failed);
+                return;
+            }
+            if ( ! documentParseInfo.isPresent()) {
+                endOfFeed = true;
+                return;
+            }
+            pending.add(CompletableFuture.supplyAsync(() -> createDocumentOperation(documentParseInfo.get()), executor));
+        }
+    }
+
+    private DocumentOperation createDocumentOperation(DocumentParseInfo documentParseInfo) {
+        try {
+            return reader.createDocumentOperation(documentParseInfo);
+        }
+        finally {
+            documentParseInfo.fieldsBuffer.clear();
+            tokenBuffers.add(documentParseInfo.fieldsBuffer);
+        }
+    }
+
+    private static DocumentOperation get(Future<DocumentOperation> operation) {
+        try {
+            return operation.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a document operation to be read", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+}
@@ -2,9 +2,8 @@
 package com.yahoo.document.json;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
@@ -29,60 +28,81 @@ public class TokenBuffer {
         }
     }
 
-    private Deque<Token> buffer;
+    // The tokens of this are stored in parallel arrays rather than as Token instances to avoid
+    // allocating an object per token. The current token is at position, and the end is exclusive.
+    private JsonToken[] tokens;
+    private String[] names;
+    private String[] texts;
+    private int position = 0;
+    private int end = 0;
     private int nesting = 0;
 
     public TokenBuffer() {
-        this(new ArrayDeque<>());
+        this(16);
     }
 
-    private TokenBuffer(Deque<Token> buffer) {
-        this.buffer = buffer;
-        if (buffer.size() > 0) {
-            updateNesting(buffer.peekFirst().token);
-        }
+    private TokenBuffer(int capacity) {
+        tokens = new JsonToken[capacity];
+        names = new String[capacity];
+        texts = new String[capacity];
     }
 
     /** Returns whether any tokens are available in this */
     public boolean isEmpty() { return size() == 0; }
 
     public JsonToken next() {
-        buffer.removeFirst();
-        Token t = buffer.peekFirst();
-        if (t == null) {
+        if (position == end) throw new NoSuchElementException();
+        position++;
+        if (position == end) {
             return null;
         }
-        updateNesting(t.token);
-        return t.token;
+        updateNesting(tokens[position]);
+        return tokens[position];
     }
 
     /** Returns the current token without changing position, or null if none */
     public JsonToken currentToken() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.token;
+        if (position == end) return null;
+        return tokens[position];
     }
 
     /** Returns the current token name without changing position, or null if none */
     public String currentName() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.name;
+        if (position == end) return null;
+        return names[position];
     }
 
     /** Returns the current token text without changing position, or null if none */
     public String currentText() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.text;
+        if (position == end) return null;
+        return texts[position];
     }
 
     public int size() {
-        return buffer.size();
+        return end - position;
+    }
+
+    /** Removes all tokens from this, such that it can be reused while retaining its capacity */
+    void clear() {
+        Arrays.fill(tokens, 0, end, null);
+        Arrays.fill(names, 0, end, null);
+        Arrays.fill(texts, 0, end, null);
+        position = 0;
+        end = 0;
+        nesting = 0;
     }
 
     private void add(JsonToken token, String name, String text) {
-        buffer.addLast(new Token(token, name, text));
+        if (end == tokens.length) {
+            int capacity = tokens.length * 2;
+            tokens = Arrays.copyOf(tokens, capacity);
+            names = Arrays.copyOf(names, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        tokens[end] = token;
+        names[end] = name;
+        texts[end] = text;
+        end++;
     }
 
     public void bufferObject(JsonToken first, JsonParser tokens) {
@@ -153,8 +173,8 @@ public class TokenBuffer {
     public String dumpContents() {
         StringBuilder b = new StringBuilder();
         b.append("[nesting: ").append(nesting()).append("\n");
-        for (Token t : buffer) {
-            b.append("(").append(t.token).append(", \"").append(t.name).append("\", \"").append(t.text).append("\")\n");
+        for (int i = position; i < end; i++) {
+            b.append("(").append(tokens[i]).append(", \"").append(names[i]).append("\", \"").append(texts[i]).append("\")\n");
         }
         b.append("]\n");
         return b.toString();
@@ -168,49 +188,44 @@ public class TokenBuffer {
     }
 
     public TokenBuffer prefetchCurrentElement() {
-        Deque<Token> copy = new ArrayDeque<>();
-
-        if (currentToken().isScalarValue()) {
-            copy.add(buffer.peekFirst());
-        } else {
+        int elementEnd = position + 1;
+        if ( ! currentToken().isScalarValue()) {
             int localNesting = nesting();
             int nestingBarrier = localNesting;
-            for (Token t : buffer) {
-                copy.add(t);
-                localNesting += nestingOffset(t.token);
+            for (int i = position; i < end; i++) {
+                elementEnd = i + 1;
+                localNesting += nestingOffset(tokens[i]);
                 if (localNesting < nestingBarrier) {
                     break;
                 }
             }
         }
-        return new TokenBuffer(copy);
+        TokenBuffer copy = new TokenBuffer(Math.max(1, elementEnd - position));
+        for (int i = position; i < elementEnd; i++)
+            copy.add(tokens[i], names[i], texts[i]);
+        copy.updateNesting(copy.tokens[0]);
+        return copy;
     }
 
     public Token prefetchScalar(String name) {
         int localNesting = nesting();
         int nestingBarrier = localNesting;
-        Token toReturn = null;
-        Iterator<Token> i;
 
         if (name.equals(currentName()) && currentToken().isScalarValue()) {
-            toReturn = buffer.peekFirst();
-        } else {
-            i = buffer.iterator();
-            i.next(); // just ignore the first value, as we know it's not what
-                      // we're looking for, and it's nesting effect is already
-                      // included
-            while (i.hasNext()) {
-                Token t = i.next();
-                if (localNesting == nestingBarrier && name.equals(t.name) && t.token.isScalarValue()) {
-                    toReturn = t;
-                    break;
-                }
-                localNesting += nestingOffset(t.token);
-                if (localNesting < nestingBarrier) {
-                    break;
-                }
+            return new Token(tokens[position], names[position], texts[position]);
+        }
+        // just ignore the first value, as we know it's not what
+        // we're looking for, and it's nesting effect is already
+        // included
+        for (int i = position + 1; i < end; i++) {
+            if (localNesting == nestingBarrier && name.equals(names[i]) && tokens[i].isScalarValue()) {
+                return new Token(tokens[i], names[i], texts[i]);
+            }
+            localNesting += nestingOffset(tokens[i]);
+            if (localNesting < nestingBarrier) {
+                break;
             }
         }
-        return toReturn;
+        return null;
     }
 }
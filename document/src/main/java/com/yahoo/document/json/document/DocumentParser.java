@@ -4,6 +4,7 @@ package com.yahoo.document.json.document;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.readers.DocumentParseInfo;
 
 import java.io.IOException;
@@ -38,8 +39,16 @@ public class DocumentParser {
      * Returns empty is we have reached the end of the stream.
      */
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
+        return parse(documentIdArg, new TokenBuffer());
+    }
+
+    /**
+     * Parses a single document and returns it, buffering the tokens of its fields in the given, empty buffer.
+     * Returns empty is we have reached the end of the stream.
+     */
+    public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg, TokenBuffer fieldsBuffer) throws IOException {
         indentLevel = 0;
-        DocumentParseInfo documentParseInfo = new DocumentParseInfo();
+        DocumentParseInfo documentParseInfo = new DocumentParseInfo(fieldsBuffer);
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
         boolean foundItems = false;
         do {
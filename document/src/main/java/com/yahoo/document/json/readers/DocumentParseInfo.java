@@ -12,5 +12,15 @@ public class DocumentParseInfo {
     public Optional<Boolean> create = Optional.empty();
     public Optional<String> condition = Optional.empty();
     public DocumentParser.SupportedOperation operationType = null;
-    public TokenBuffer fieldsBuffer = new TokenBuffer();
+    public TokenBuffer fieldsBuffer;
+
+    public DocumentParseInfo() {
+        this(new TokenBuffer());
+    }
+
+    /** Creates a parse info which buffers the tokens of the document fields in the given, empty buffer */
+    public DocumentParseInfo(TokenBuffer fieldsBuffer) {
+        this.fieldsBuffer = fieldsBuffer;
+    }
+
 }
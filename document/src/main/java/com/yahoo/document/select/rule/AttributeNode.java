@@ -17,6 +17,7 @@ public class AttributeNode implements ExpressionNode {
 
     private ExpressionNode value;
     private final List<Item> items = new ArrayList<Item>();
+    private volatile ResolvedFieldPath resolvedFieldPath = null;
 
     public AttributeNode(ExpressionNode value, List items) {
         this.value = value;
@@ -50,13 +51,13 @@ public class AttributeNode implements ExpressionNode {
 
     // Inherit doc from ExpressionNode.
     public Object evaluate(Context context) {
-        String pos = value.toString();
         Object obj = value.evaluate(context);
 
         StringBuilder builder = new StringBuilder();
-        for (Item item : items) {
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
             if (obj == null) {
-                throw new IllegalStateException("Can not invoke '" + item + "' on '" + pos + "' because that term " +
+                throw new IllegalStateException("Can not invoke '" + item + "' on '" + position(i) + "' because that term " +
                                                 "evaluated to null.");
             }
             if (item.getType() != Item.FUNCTION) {
@@ -68,13 +69,11 @@ public class AttributeNode implements ExpressionNode {
             } else {
                 if (builder.length() > 0) {
                     obj = evaluateFieldPath(builder.toString(), obj);
-                    builder = new StringBuilder();
+                    builder.setLength(0);
                 }
 
                 obj = evaluateFunction(item.getName(), obj);
             }
-
-            pos = pos + "." + item;
         }
 
         if (builder.length() > 0) {
@@ -83,6 +82,14 @@ public class AttributeNode implements ExpressionNode {
         return obj;
     }
 
+    /** Returns the textual position of the given item in this, for error messages */
+    private String position(int itemIndex) {
+        StringBuilder position = new StringBuilder(value.toString());
+        for (int i = 0; i < itemIndex; i++)
+            position.append(".").append(items.get(i));
+        return position.toString();
+    }
+
     public static class VariableValueList extends ArrayList<ResultList.VariableValue> {
 
     }
@@ -121,10 +128,10 @@ public class AttributeNode implements ExpressionNode {
         throw new IllegalStateException("Function '" + function + "' is not supported.");
     }
 
-    private static Object evaluateFieldPath(String fieldPth, Object value) {
+    private Object evaluateFieldPath(String fieldPth, Object value) {
         if (value instanceof DocumentPut) {
             final Document doc = ((DocumentPut) value).getDocument();
-            FieldPath fieldPath = doc.getDataType().buildFieldPath(fieldPth);
+            FieldPath fieldPath = resolveFieldPath(doc.getDataType(), fieldPth);
             IteratorHandler handler = new IteratorHandler();
             doc.iterateNested(fieldPath, 0, handler);
             if (handler.values.isEmpty()) {
@@ -141,6 +148,20 @@ public class AttributeNode implements ExpressionNode {
         return Result.FALSE;
     }
 
+    /**
+     * Returns the field path of the given string in the given type. This is resolved on the first evaluation
+     * and reused as long as documents of the same type are evaluated, as parsing a field path is expensive
+     * compared to evaluating it.
+     */
+    private FieldPath resolveFieldPath(DocumentType type, String fieldPathString) {
+        ResolvedFieldPath resolved = resolvedFieldPath;
+        if (resolved == null || resolved.type != type || ! resolved.fieldPathString.equals(fieldPathString)) {
+            resolved = new ResolvedFieldPath(type, fieldPathString, type.buildFieldPath(fieldPathString));
+            resolvedFieldPath = resolved;
+        }
+        return resolved.fieldPath;
+    }
+
     private static Object evaluateFunction(String function, Object value) {
         if (value instanceof VariableValueList) {
             VariableValueList retVal = new VariableValueList();
@@ -175,6 +196,21 @@ public class AttributeNode implements ExpressionNode {
         return null;
     }
 
+    /** A field path resolved in a document type. Document types are compared by identity as they are not changed once in use */
+    private static class ResolvedFieldPath {
+
+        final DocumentType type;
+        final String fieldPathString;
+        final FieldPath fieldPath;
+
+        ResolvedFieldPath(DocumentType type, String fieldPathString, FieldPath fieldPath) {
+            this.type = type;
+            this.fieldPathString = fieldPathString;
+            this.fieldPath = fieldPath;
+        }
+
+    }
+
     public static class Item {
         public static final int ATTRIBUTE = 0;
         public static final int FUNCTION = 1;
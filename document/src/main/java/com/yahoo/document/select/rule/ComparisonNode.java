@@ -23,6 +23,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The last pattern compiled for a regex or glob comparison.
+    private volatile CompiledPattern compiledPattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -386,11 +389,21 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(compilePattern(right, operator.equals("=")).matcher(left).find());
+    }
+
+    /**
+     * Returns the compiled pattern of the given regex or glob. The right hand side is nearly always a literal,
+     * so the last compiled pattern is kept and reused while the same pattern is compared against.
+     */
+    private Pattern compilePattern(String source, boolean isGlob) {
+        CompiledPattern compiled = compiledPattern;
+        if (compiled == null || compiled.isGlob != isGlob || ! compiled.source.equals(source)) {
+            compiled = new CompiledPattern(source, isGlob,
+                                           Pattern.compile(isGlob ? globToRegex(source) : source));
+            compiledPattern = compiled;
         }
+        return compiled.pattern;
     }
 
     /**
@@ -449,4 +462,19 @@ public class ComparisonNode implements ExpressionNode {
     public String toString() {
         return lhs + " " + operator + " " + rhs;
     }
+
+    private static class CompiledPattern {
+
+        final String source;
+        final boolean isGlob;
+        final Pattern pattern;
+
+        CompiledPattern(String source, boolean isGlob, Pattern pattern) {
+            this.source = source;
+            this.isGlob = isGlob;
+            this.pattern = pattern;
+        }
+
+    }
+
 }
@@ -0,0 +1,129 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.WeightedSetDataType;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the speed of reading a large synthetic feed sequentially and in parallel.
+ *
+ * @author agent
+ */
+public class JsonReaderBenchmark {
+
+    private static final int documents = 100 * 1000;
+
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    private final JsonFactory parserFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+
+    public void run() {
+        DocumentType type = new DocumentType("benchmark");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("body", DataType.STRING));
+        type.addField(new Field("popularity", DataType.INT));
+        type.addField(new Field("tags", new WeightedSetDataType(DataType.STRING, false, false)));
+        type.addField(new Field("links", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("embedding", new TensorDataType(TensorType.fromSpec("tensor<float>(x[32])"))));
+        types.registerDocumentType(type);
+        byte[] feed = createFeed();
+        out("Created a feed of " + documents + " documents, " + feed.length / (1024 * 1024) + " Mb");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            out("Warming up...");
+            for (int i = 0; i < 3; i++) {
+                readSequentially(feed);
+                readInParallel(feed, executor, threads);
+            }
+
+            out("Running...");
+            long startTime = System.currentTimeMillis();
+            int result = readSequentially(feed);
+            long sequentialTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            result += readInParallel(feed, executor, threads);
+            long parallelTime = System.currentTimeMillis() - startTime;
+
+            out("Ignore this: " + result); // Make sure we are not fooled by optimization by creating an observable result
+            out("Reading sequentially took " + sequentialTime + " ms");
+            out("Reading with " + threads + " threads took " + parallelTime + " ms");
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private int readSequentially(byte[] feed) {
+        JsonReader reader = new JsonReader(types, new ByteArrayInputStream(feed), parserFactory);
+        int result = 0;
+        for (DocumentOperation operation; (operation = reader.next()) != null; )
+            result += operation.getId().toString().length();
+        return result;
+    }
+
+    private int readInParallel(byte[] feed, ExecutorService executor, int threads) {
+        ParallelJsonReader reader = new ParallelJsonReader(types, new ByteArrayInputStream(feed), parserFactory,
+                                                           executor, threads * 16);
+        int result = 0;
+        for (DocumentOperation operation; (operation = reader.next()) != null; )
+            result += operation.getId().toString().length();
+        return result;
+    }
+
+    private byte[] createFeed() {
+        Random random = new Random(1);
+        StringBuilder b = new StringBuilder("[\n");
+        for (int i = 0; i < documents; i++) {
+            if (i > 0) b.append(",\n");
+            b.append("{\"put\":\"id:benchmark:benchmark::").append(i).append("\",\"fields\":{");
+            b.append("\"title\":\"").append(words(random, 8)).append("\",");
+            b.append("\"body\":\"").append(words(random, 100)).append("\",");
+            b.append("\"popularity\":").append(random.nextInt(1000)).append(",");
+            b.append("\"tags\":{");
+            for (int tag = 0; tag < 10; tag++)
+                b.append(tag > 0 ? "," : "").append("\"tag").append(random.nextInt(100)).append("\":").append(random.nextInt(10));
+            b.append("},\"links\":[");
+            for (int link = 0; link < 5; link++)
+                b.append(link > 0 ? "," : "").append("\"http://example.com/").append(random.nextInt(100000)).append("\"");
+            b.append("],\"embedding\":{\"cells\":[");
+            for (int x = 0; x < 32; x++)
+                b.append(x > 0 ? "," : "").append("{\"address\":{\"x\":\"").append(x).append("\"},\"value\":")
+                 .append(random.nextFloat()).append("}");
+            b.append("]}}}");
+        }
+        b.append("\n]");
+        return Utf8.toBytes(b.toString());
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            b.append(i > 0 ? " " : "").append("word").append(random.nextInt(10000));
+        return b.toString();
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) {
+        new JsonReaderBenchmark().run();
+    }
+
+}
@@ -0,0 +1,165 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class ParallelJsonReaderTestCase {
+
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        DocumentType type = new DocumentType("test");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("count", DataType.INT));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("embedding", new TensorDataType(TensorType.fromSpec("tensor(x[3])"))));
+        types.registerDocumentType(type);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testParallelReadingReturnsOperationsInStreamOrder() {
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) feed.append(",");
+            String id = "id:ns:test::" + (i % 7); // operations on the same ids
+            if (i % 5 == 0)
+                feed.append("{\"update\":\"").append(id).append("\",\"fields\":{\"count\":{\"increment\":").append(i).append("}}}");
+            else if (i % 11 == 0)
+                feed.append("{\"remove\":\"").append(id).append("\"}");
+            else
+                feed.append("{\"put\":\"").append(id).append("\",\"fields\":{\"title\":\"title ").append(i)
+                    .append("\",\"count\":").append(i).append(",\"tags\":[\"a").append(i).append("\",\"b\"]")
+                    .append(",\"embedding\":{\"cells\":[{\"address\":{\"x\":\"0\"},\"value\":").append(i)
+                    .append("},{\"address\":{\"x\":\"2\"},\"value\":3}]}}}");
+        }
+        feed.append("]");
+
+        for (int maxPending : new int[] { 1, 3, 64 }) {
+            List<DocumentOperation> expected = readAll(new JsonReader(types, stream(feed.toString()), new JsonFactory()));
+            List<DocumentOperation> actual = readAll(createReader(feed.toString(), maxPending));
+            assertEquals(500, expected.size());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), actual.get(i).getId());
+                assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+                if (expected.get(i) instanceof DocumentPut)
+                    assertEquals(((DocumentPut)expected.get(i)).getDocument(), ((DocumentPut)actual.get(i)).getDocument());
+                if (expected.get(i) instanceof DocumentUpdate)
+                    assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testOperationsBeforeAnErrorAreReturned() {
+        String feed = "[" +
+                      "{\"put\":\"id:ns:test::1\",\"fields\":{\"title\":\"first\"}}," +
+                      "{\"put\":\"id:ns:unknown::2\",\"fields\":{\"title\":\"second\"}}," +
+                      "{\"put\":\"id:ns:test::3\",\"fields\":{\"title\":\"third\"}}" +
+                      "]";
+        ParallelJsonReader reader = createReader(feed, 10);
+        assertEquals("id:ns:test::1", reader.next().getId().toString());
+        try {
+            reader.next();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Document type unknown does not exist", e.getMessage());
+        }
+        assertEquals("id:ns:test::3", reader.next().getId().toString());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testStructuralErrorsAreThrownAfterPrecedingOperations() {
+        String feed = "[" +
+                      "{\"put\":\"id:ns:test::1\",\"fields\":{\"title\":\"first\"}}," +
+                      "{\"put\":\"id:ns:test::2\",\"fields\":{\"title\":\"second\"}}," +
+                      "{\"put\":\"id:ns:test::3\",\"fields\":{\"title\":";
+        ParallelJsonReader reader = createReader(feed, 10);
+        assertEquals("id:ns:test::1", reader.next().getId().toString());
+        assertEquals("id:ns:test::2", reader.next().getId().toString());
+        try {
+            reader.next();
+            fail("Expected exception");
+        }
+        catch (RuntimeException e) {
+            assertTrue(e.getCause() != null);
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testTokenBufferReuse() {
+        TokenBuffer buffer = new TokenBuffer();
+        JsonReader reader = new JsonReader(types, stream("[{\"put\":\"id:ns:test::1\",\"fields\":{\"title\":\"first\"}}," +
+                                                         " {\"put\":\"id:ns:test::2\",\"fields\":{\"title\":\"second\",\"count\":2}}]"),
+                                           new JsonFactory());
+        DocumentPut first = (DocumentPut)reader.createDocumentOperation(reader.nextDocumentParseInfo(buffer).get());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        DocumentPut second = (DocumentPut)reader.createDocumentOperation(reader.nextDocumentParseInfo(buffer).get());
+        assertEquals("first", first.getDocument().getFieldValue("title").toString());
+        assertEquals("second", second.getDocument().getFieldValue("title").toString());
+        assertEquals("2", second.getDocument().getFieldValue("count").toString());
+    }
+
+    private ParallelJsonReader createReader(String feed, int maxPending) {
+        return new ParallelJsonReader(types, stream(feed), new JsonFactory(), executor, maxPending);
+    }
+
+    private static ByteArrayInputStream stream(String feed) {
+        return new ByteArrayInputStream(Utf8.toBytes(feed));
+    }
+
+    private static List<DocumentOperation> readAll(JsonReader reader) {
+        List<DocumentOperation> operations = new ArrayList<>();
+        for (DocumentOperation operation; (operation = reader.next()) != null; )
+            operations.add(operation);
+        return operations;
+    }
+
+    private static List<DocumentOperation> readAll(ParallelJsonReader reader) {
+        List<DocumentOperation> operations = new ArrayList<>();
+        for (DocumentOperation operation; (operation = reader.next()) != null; )
+            operations.add(operation);
+        return operations;
+    }
+
+}
@@ -0,0 +1,91 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.select.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the number of document operations per second a selector of the kind used to route feed
+ * can evaluate, with field paths, numeric comparisons, and regex and glob matching.
+ *
+ * @author agent
+ */
+public class DocumentSelectorBenchmark {
+
+    private static final int evaluations = 2 * 1000 * 1000;
+
+    public void run() throws ParseException {
+        DocumentType type = new DocumentType("music");
+        type.addField("artist", DataType.STRING);
+        type.addField("title", DataType.STRING);
+        type.addField("year", DataType.INT);
+        List<DocumentOperation> operations = createOperations(type);
+
+        String[] selections = { "music",
+                                "music.year > 1990",
+                                "music.artist = \"*the*\" and music.year > 1990",
+                                "music.title =~ \"^[a-m].*[0-9]$\" or music.artist.lowercase() == \"abba\"" };
+        out("Warming up...");
+        for (String selection : selections)
+            evaluate(new DocumentSelector(selection), operations);
+
+        out("Running...");
+        for (String selection : selections)
+            out(String.format("%10d operations/s: %s", evaluate(new DocumentSelector(selection), operations), selection));
+    }
+
+    /** Evaluates the selector over the given operations and returns the throughput in operations per second */
+    private long evaluate(DocumentSelector selector, List<DocumentOperation> operations) {
+        int accepted = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < evaluations; i++) {
+            if (selector.accepts(operations.get(i % operations.size())) == Result.TRUE)
+                accepted++;
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        if (accepted < 0) out("Ignore this"); // Make sure we are not fooled by optimization by using the result
+        return evaluations * 1000L * 1000 * 1000 / elapsedNanos;
+    }
+
+    private List<DocumentOperation> createOperations(DocumentType type) {
+        List<DocumentOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            DocumentId id = new DocumentId("id:ns:music::" + i);
+            if (i % 10 == 0) {
+                operations.add(new DocumentRemove(id));
+            }
+            else if (i % 10 == 1) {
+                operations.add(new DocumentUpdate(type, id));
+            }
+            else {
+                Document document = new Document(type, id);
+                document.setFieldValue("artist", new StringFieldValue(i % 3 == 0 ? "ABBA" : "the artist " + i));
+                document.setFieldValue("title", new StringFieldValue("title " + i));
+                document.setFieldValue("year", new IntegerFieldValue(1950 + i % 70));
+                operations.add(new DocumentPut(document));
+            }
+        }
+        return operations;
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) throws ParseException {
+        new DocumentSelectorBenchmark().run();
+    }
+
+}
@@ -261,6 +261,24 @@ public class DocumentSelectorTestCase {
         // TODO Fails: assertEquals(Result.TRUE, evaluate("test.hint + 1 > 13", upd));
     }
 
+    @Test
+    public void testSelectorIsReusableAcrossDocuments() throws ParseException {
+        DocumentPut first = createDocument("id:ns:test::1", 1, 1.0f, "alpha", "al");
+        DocumentPut second = createDocument("id:ns:test::2", 2, 2.0f, "beta", "al");
+        DocumentPut third = createDocument("id:ns:test::3", 3, 3.0f, "beta", "et");
+        DocumentSelector regex = new DocumentSelector("test.hstring =~ test.content");
+        DocumentSelector glob = new DocumentSelector("test.hstring = \"b*\" and test.hint > 1");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Result.TRUE, regex.accepts(first));
+            assertEquals(Result.FALSE, regex.accepts(second));
+            assertEquals(Result.TRUE, regex.accepts(third));
+            assertEquals(Result.FALSE, glob.accepts(first));
+            assertEquals(Result.TRUE, glob.accepts(second));
+            assertEquals(Result.TRUE, glob.accepts(third));
+            assertEquals(Result.INVALID, glob.accepts(createRemove("id:ns:test::1")));
+        }
+    }
+
     @Test
     public void testDocumentRemove() throws ParseException {
         assertEquals(Result.TRUE, evaluate("test", createRemove("id:ns:test::1")));
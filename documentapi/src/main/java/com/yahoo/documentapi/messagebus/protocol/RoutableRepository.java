@@ -12,6 +12,7 @@ import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Routable;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -26,8 +27,22 @@ import java.util.stream.Stream;
 final class RoutableRepository {
 
     private static final Logger log = Logger.getLogger(RoutableRepository.class.getName());
+
+    /** The max size of an encoding buffer which is kept for reuse */
+    private static final int maxPooledEncodeBufferSize = 64 * 1024;
+
+    /** The max number of encoding buffers kept for reuse, such that at most 1 Mb is retained in total */
+    private static final int maxPooledEncodeBuffers = 16;
+
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
+
+    /**
+     * Buffers to serialize into, shared by all threads, such that they only need to be allocated and grown
+     * to the size of the routables sent once, rather than for each routable
+     */
+    private final Queue<GrowableByteBuffer> encodeBuffers = new ArrayBlockingQueue<>(maxPooledEncodeBuffers);
+
     private LoadTypeSet loadTypes;
 
     public RoutableRepository(LoadTypeSet set) {
@@ -92,24 +107,37 @@ final class RoutableRepository {
                                     " (version " + version + ").");
             return new byte[0];
         }
-        DocumentSerializer out;
+        GrowableByteBuffer buffer = encodeBuffers.poll();
+        if (buffer == null)
+            buffer = new GrowableByteBuffer(8192);
+        else
+            buffer.clear();
+        try {
+            DocumentSerializer out;
 
-        if (version.getMajor() >= 5) {
-            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
-        } else {
-            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(8192));
-        }
+            if (version.getMajor() >= 5) {
+                out = DocumentSerializerFactory.createHead(buffer);
+            } else {
+                out = DocumentSerializerFactory.create42(buffer);
+            }
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            // The encoded routable is copied out, as it must outlive the buffer which is reused
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        }
+        finally {
+            if (buffer.capacity() <= maxPooledEncodeBufferSize) { // don't let a single large routable hold on to memory
+                encodeBuffers.offer(buffer); // dropped if the pool is full
+            }
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
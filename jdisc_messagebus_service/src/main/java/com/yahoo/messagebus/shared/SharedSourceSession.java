@@ -11,6 +11,7 @@ import com.yahoo.messagebus.Result;
 import com.yahoo.messagebus.SourceSession;
 import com.yahoo.messagebus.SourceSessionParams;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -45,6 +46,11 @@ public class SharedSourceSession extends AbstractResource implements ClientSessi
         return session.sendBlocking(msg);
     }
 
+    /** Sends the given message as soon as the throttle policy allows, without blocking the calling thread */
+    public CompletableFuture<Result> sendMessageWhenReady(Message msg) {
+        return session.sendWhenReady(msg);
+    }
+
     @Override
     public void handleReply(Reply reply) {
         reply.popHandler().handleReply(reply);
@@ -9,6 +9,7 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final BufferPool pool;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -54,18 +55,46 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
+            release(buf);
             buf = tmp;
             readPos = 0;
         }
     }
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.allocate(size) : ByteBuffer.allocate(size);
+    }
+
+    private void release(ByteBuffer old) {
+        if (pool != null) {
+            pool.release(old);
+        }
+    }
+
+    /**
+     * Create a buffer backed by a heap byte buffer of the given size.
+     *
+     * @param size initial buffer size
+     **/
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
+        this(size, null);
+    }
+
+    /**
+     * Create a buffer backed by direct byte buffers obtained from the
+     * given pool. If pool is null, heap byte buffers are used.
+     *
+     * @param size initial buffer size
+     * @param pool where to obtain and release backing buffers
+     **/
+    public Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        buf = allocate(size);
         readPos = 0;
         writePos = 0;
         readMode = false;
@@ -75,14 +104,16 @@ class Buffer {
         int rpos = readMode? buf.position() : readPos;
         int wpos = readMode? writePos : buf.position();
         int used = wpos - rpos;
-        if (used > size || buf.capacity() <= size) {
+        int capacity = (pool != null) ? pool.capacityFor(size) : size;
+        if (used > size || buf.capacity() <= capacity) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
+        release(buf);
         buf = tmp;
         readPos = 0;
         writePos = used;
@@ -91,6 +122,20 @@ class Buffer {
         return true;
     }
 
+    /**
+     * Hand the backing buffer back to the pool. Any buffered data is
+     * discarded. The buffer may still be used after this, but will
+     * then allocate a new backing buffer when needed.
+     **/
+    public void dispose() {
+        ByteBuffer old = buf;
+        buf = ByteBuffer.allocate(0);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+        release(old);
+    }
+
     public int bytes() {
         return (readMode)
             ? (writePos - buf.position())
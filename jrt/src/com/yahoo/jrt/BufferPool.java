@@ -0,0 +1,154 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A pool of direct byte buffers used for connection IO. Buffers are
+ * grouped in size classes (powers of two); a request for a buffer is
+ * rounded up to the nearest size class and served from the pool when
+ * possible. Buffers larger than the largest size class are heap
+ * buffers allocated on demand and dropped when released, so that
+ * growing to a huge packet does not consume direct memory. Each size
+ * class holds at most a bounded number of idle bytes, and all pools
+ * in the JVM together hold at most a bounded number of idle bytes;
+ * buffers released beyond these limits are left for the garbage
+ * collector.
+ *
+ * Using direct buffers lets socket channels read and write straight
+ * into the buffers used for packet encoding and decoding, without the
+ * temporary direct buffer copy done by the JDK for heap buffers.
+ **/
+class BufferPool {
+
+    static final int MIN_SIZE_SHIFT = 12; // 4 KiB
+    static final int MAX_SIZE_SHIFT = 22; // 4 MiB
+    static final long DEFAULT_MAX_IDLE_BYTES_PER_CLASS = 4 * 1024 * 1024;
+    static final long DEFAULT_MAX_TOTAL_IDLE_BYTES = 64 * 1024 * 1024;
+
+    /** The idle bytes held by all pools using the default limits, which share a single limit */
+    private static final AtomicLong globalIdleBytes = new AtomicLong(0);
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] idle;
+    private final AtomicLong[] idleBytes;
+    private final long maxIdleBytesPerClass;
+    private final AtomicLong totalIdleBytes;
+    private final long maxTotalIdleBytes;
+    private final TransportMetrics metrics;
+
+    /**
+     * Create a pool with the given limits.
+     *
+     * @param maxIdleBytesPerClass max idle bytes held in each size class of this pool
+     * @param totalIdleBytes the idle byte count shared by all pools having the same total limit
+     * @param maxTotalIdleBytes max idle bytes held by all pools sharing totalIdleBytes
+     * @param metrics where to report allocations and reuse
+     **/
+    @SuppressWarnings("unchecked")
+    BufferPool(long maxIdleBytesPerClass, AtomicLong totalIdleBytes, long maxTotalIdleBytes, TransportMetrics metrics) {
+        int numClasses = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+        this.idle = new ConcurrentLinkedQueue[numClasses];
+        this.idleBytes = new AtomicLong[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            idle[i] = new ConcurrentLinkedQueue<>();
+            idleBytes[i] = new AtomicLong(0);
+        }
+        this.maxIdleBytesPerClass = maxIdleBytesPerClass;
+        this.totalIdleBytes = totalIdleBytes;
+        this.maxTotalIdleBytes = maxTotalIdleBytes;
+        this.metrics = metrics;
+    }
+
+    BufferPool(long maxIdleBytesPerClass, TransportMetrics metrics) {
+        this(maxIdleBytesPerClass, new AtomicLong(0), Long.MAX_VALUE, metrics);
+    }
+
+    BufferPool(TransportMetrics metrics) {
+        this(DEFAULT_MAX_IDLE_BYTES_PER_CLASS, globalIdleBytes, DEFAULT_MAX_TOTAL_IDLE_BYTES, metrics);
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= (1 << MIN_SIZE_SHIFT)) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    private static boolean isPooledSize(int capacity) {
+        return capacity >= (1 << MIN_SIZE_SHIFT)
+            && capacity <= (1 << MAX_SIZE_SHIFT)
+            && Integer.bitCount(capacity) == 1;
+    }
+
+    /**
+     * Obtain the capacity of the buffer that would be returned when
+     * asking for a buffer of the given size.
+     *
+     * @return actual buffer capacity for the given size
+     * @param size minimum buffer size
+     **/
+    int capacityFor(int size) {
+        if (size > (1 << MAX_SIZE_SHIFT)) {
+            return size;
+        }
+        return 1 << (sizeClass(size) + MIN_SIZE_SHIFT);
+    }
+
+    /**
+     * Obtain a cleared buffer with at least the given capacity. The
+     * buffer is direct unless it is larger than the largest size
+     * class.
+     *
+     * @return a byte buffer
+     * @param size minimum buffer capacity
+     **/
+    ByteBuffer allocate(int size) {
+        int capacity = capacityFor(size);
+        if ( ! isPooledSize(capacity)) {
+            return ByteBuffer.allocate(capacity);
+        }
+        int sc = sizeClass(capacity);
+        ByteBuffer buf = idle[sc].poll();
+        if (buf != null) {
+            idleBytes[sc].addAndGet(-capacity);
+            totalIdleBytes.addAndGet(-capacity);
+            metrics.addBufferPoolIdleBytes(-capacity);
+            metrics.incrementBufferPoolReuses();
+            buf.clear();
+            return buf;
+        }
+        metrics.incrementBufferPoolAllocations();
+        metrics.addBufferPoolAllocatedBytes(capacity);
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Hand a buffer obtained from {@link #allocate} back to the
+     * pool. The buffer must not be used by the caller after this.
+     *
+     * @param buf the buffer to release
+     **/
+    void release(ByteBuffer buf) {
+        int capacity = buf.capacity();
+        if (!buf.isDirect() || !isPooledSize(capacity)) {
+            return;
+        }
+        int sc = sizeClass(capacity);
+        if (idleBytes[sc].addAndGet(capacity) > maxIdleBytesPerClass) {
+            idleBytes[sc].addAndGet(-capacity);
+            return;
+        }
+        if (totalIdleBytes.addAndGet(capacity) > maxTotalIdleBytes) {
+            totalIdleBytes.addAndGet(-capacity);
+            idleBytes[sc].addAndGet(-capacity);
+            return;
+        }
+        metrics.addBufferPoolIdleBytes(capacity);
+        idle[sc].add(buf);
+    }
+}
@@ -33,8 +33,8 @@ class Connection extends Target {
     private int           state      = INITIAL;
     private Queue         queue      = new Queue();
     private Queue         myQueue    = new Queue();
-    private Buffer        input      = new Buffer(READ_SIZE * 2);
-    private Buffer        output     = new Buffer(WRITE_SIZE * 2);
+    private Buffer        input;
+    private Buffer        output;
     private int           maxInputSize  = 64*1024;
     private int           maxOutputSize = 64*1024;
     private Map<Integer, ReplyHandler> replyMap = new HashMap<>();
@@ -42,7 +42,7 @@ class Connection extends Target {
     private int           activeReqs = 0;
     private int           writeWork  = 0;
     private boolean       pendingHandshakeWork = false;
-    private Transport     parent;
+    private TransportThread parent;
     private Supervisor    owner;
     private Spec          spec;
     private CryptoSocket  socket;
@@ -89,20 +89,24 @@ class Connection extends Target {
         }
     }
 
-    public Connection(Transport parent, Supervisor owner,
+    public Connection(TransportThread parent, Supervisor owner,
                       SocketChannel channel) {
 
         this.parent = parent;
         this.owner = owner;
-        this.socket = parent.createCryptoSocket(channel, true);
+        this.input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        this.output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
+        this.socket = parent.transport().createCryptoSocket(channel, true);
         server = true;
         owner.sessionInit(this);
     }
 
-    public Connection(Transport parent, Supervisor owner, Spec spec, Object context) {
+    public Connection(TransportThread parent, Supervisor owner, Spec spec, Object context) {
         super(context);
         this.parent = parent;
         this.owner = owner;
+        this.input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        this.output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
         this.spec = spec;
         server = false;
         owner.sessionInit(this);
@@ -117,6 +121,10 @@ class Connection extends Target {
     }
 
     public Transport transport() {
+        return parent.transport();
+    }
+
+    public TransportThread transportThread() {
         return parent;
     }
 
@@ -171,7 +179,7 @@ class Connection extends Target {
             return this;
         }
         try {
-            socket = parent.createCryptoSocket(SocketChannel.open(spec.address()), false);
+            socket = parent.transport().createCryptoSocket(SocketChannel.open(spec.address()), false);
         } catch (Exception e) {
             setLostReason(e);
         }
@@ -243,7 +251,7 @@ class Connection extends Target {
             disableRead();
             disableWrite();
             pendingHandshakeWork = true;
-            parent.doHandshakeWork(this);
+            parent.transport().doHandshakeWork(this);
             break;
         }
     }
@@ -380,6 +388,8 @@ class Connection extends Target {
         if (selectionKey != null) {
             selectionKey.cancel();
         }
+        input.dispose();
+        output.dispose();
     }
 
     public boolean isClosed() {
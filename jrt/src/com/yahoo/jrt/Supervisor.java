@@ -3,6 +3,7 @@ package com.yahoo.jrt;
 
 
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -22,7 +23,9 @@ public class Supervisor {
             this.method = method;
         }
         public void run() {
-            methodMap.put(method.name(), method);
+            HashMap<String, Method> newMap = new HashMap<>(methodMap.get());
+            newMap.put(method.name(), method);
+            methodMap.set(newMap);
         }
     }
 
@@ -37,16 +40,18 @@ public class Supervisor {
             this.method = method;
         }
         public void run() {
-            Method m = methodMap.remove(methodName);
+            HashMap<String, Method> newMap = new HashMap<>(methodMap.get());
+            Method m = newMap.remove(methodName);
             if (method != null && m != method) {
-                methodMap.put(method.name(), method);
+                newMap.put(method.name(), method);
             }
+            methodMap.set(newMap);
         }
     }
 
     private Transport               transport;
     private SessionHandler          sessionHandler = null;
-    private HashMap<String, Method> methodMap      = new HashMap<>();
+    private AtomicReference<HashMap<String, Method>> methodMap = new AtomicReference<>(new HashMap<>());
     private int                     maxInputBufferSize  = 0;
     private int                     maxOutputBufferSize = 0;
 
@@ -90,12 +95,14 @@ public class Supervisor {
     }
 
     /**
-     * Obtain the method map for this Supervisor
+     * Obtain the method map for this Supervisor. The map is replaced
+     * (not modified) when methods are added or removed, so it may be
+     * read by any transport thread without further synchronization.
      *
      * @return the method map
      **/
     HashMap<String, Method> methodMap() {
-        return methodMap;
+        return methodMap.get();
     }
 
     /**
@@ -312,7 +319,7 @@ public class Supervisor {
         }
         RequestPacket rp = (RequestPacket) packet;
         Request req = new Request(rp.methodName(), rp.parameters());
-        Method method = methodMap.get(req.methodName());
+        Method method = methodMap().get(req.methodName());
         new InvocationServer(conn, req, method,
                              packet.requestId(),
                              packet.noReply()).invoke();
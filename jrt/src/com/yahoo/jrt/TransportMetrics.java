@@ -19,6 +19,10 @@ public class TransportMetrics {
     private final AtomicLong clientTlsConnectionsEstablished = new AtomicLong(0);
     private final AtomicLong serverUnencryptedConnectionsEstablished = new AtomicLong(0);
     private final AtomicLong clientUnencryptedConnectionsEstablished = new AtomicLong(0);
+    private final AtomicLong bufferPoolAllocations = new AtomicLong(0);
+    private final AtomicLong bufferPoolAllocatedBytes = new AtomicLong(0);
+    private final AtomicLong bufferPoolReuses = new AtomicLong(0);
+    private final AtomicLong bufferPoolIdleBytes = new AtomicLong(0);
 
     private TransportMetrics() {}
 
@@ -48,6 +52,26 @@ public class TransportMetrics {
         return clientUnencryptedConnectionsEstablished.get();
     }
 
+    /** Returns the number of direct IO buffers allocated because no pooled buffer was available */
+    public long bufferPoolAllocations() {
+        return bufferPoolAllocations.get();
+    }
+
+    /** Returns the total number of bytes of direct IO buffers allocated */
+    public long bufferPoolAllocatedBytes() {
+        return bufferPoolAllocatedBytes.get();
+    }
+
+    /** Returns the number of IO buffer requests served by a pooled buffer */
+    public long bufferPoolReuses() {
+        return bufferPoolReuses.get();
+    }
+
+    /** Returns the number of bytes currently held by idle buffers in the buffer pools */
+    public long bufferPoolIdleBytes() {
+        return bufferPoolIdleBytes.get();
+    }
+
     public Snapshot snapshot() { return new Snapshot(this); }
 
     void incrementTlsCertificateVerificationFailures() {
@@ -74,6 +98,22 @@ public class TransportMetrics {
         clientUnencryptedConnectionsEstablished.incrementAndGet();
     }
 
+    void incrementBufferPoolAllocations() {
+        bufferPoolAllocations.incrementAndGet();
+    }
+
+    void addBufferPoolAllocatedBytes(long bytes) {
+        bufferPoolAllocatedBytes.addAndGet(bytes);
+    }
+
+    void incrementBufferPoolReuses() {
+        bufferPoolReuses.incrementAndGet();
+    }
+
+    void addBufferPoolIdleBytes(long bytes) {
+        bufferPoolIdleBytes.addAndGet(bytes);
+    }
+
     @Override
     public String toString() {
         return "TransportMetrics{" +
@@ -83,11 +123,15 @@ public class TransportMetrics {
                 ", clientTlsConnectionsEstablished=" + clientTlsConnectionsEstablished +
                 ", serverUnencryptedConnectionsEstablished=" + serverUnencryptedConnectionsEstablished +
                 ", clientUnencryptedConnectionsEstablished=" + clientUnencryptedConnectionsEstablished +
+                ", bufferPoolAllocations=" + bufferPoolAllocations +
+                ", bufferPoolAllocatedBytes=" + bufferPoolAllocatedBytes +
+                ", bufferPoolReuses=" + bufferPoolReuses +
+                ", bufferPoolIdleBytes=" + bufferPoolIdleBytes +
                 '}';
     }
 
     public static class Snapshot {
-        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0);
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
 
         private final long tlsCertificateVerificationFailures;
         private final long peerAuthorizationFailures;
@@ -95,6 +139,10 @@ public class TransportMetrics {
         private final long clientTlsConnectionsEstablished;
         private final long serverUnencryptedConnectionsEstablished;
         private final long clientUnencryptedConnectionsEstablished;
+        private final long bufferPoolAllocations;
+        private final long bufferPoolAllocatedBytes;
+        private final long bufferPoolReuses;
+        private final long bufferPoolIdleBytes;
 
         private Snapshot(TransportMetrics metrics) {
             this(metrics.tlsCertificateVerificationFailures.get(),
@@ -102,7 +150,11 @@ public class TransportMetrics {
                  metrics.serverTlsConnectionsEstablished.get(),
                  metrics.clientTlsConnectionsEstablished.get(),
                  metrics.serverUnencryptedConnectionsEstablished.get(),
-                 metrics.clientUnencryptedConnectionsEstablished.get());
+                 metrics.clientUnencryptedConnectionsEstablished.get(),
+                 metrics.bufferPoolAllocations.get(),
+                 metrics.bufferPoolAllocatedBytes.get(),
+                 metrics.bufferPoolReuses.get(),
+                 metrics.bufferPoolIdleBytes.get());
         }
 
         private Snapshot(long tlsCertificateVerificationFailures,
@@ -110,13 +162,21 @@ public class TransportMetrics {
                         long serverTlsConnectionsEstablished,
                         long clientTlsConnectionsEstablished,
                         long serverUnencryptedConnectionsEstablished,
-                        long clientUnencryptedConnectionsEstablished) {
+                        long clientUnencryptedConnectionsEstablished,
+                        long bufferPoolAllocations,
+                        long bufferPoolAllocatedBytes,
+                        long bufferPoolReuses,
+                        long bufferPoolIdleBytes) {
             this.tlsCertificateVerificationFailures = tlsCertificateVerificationFailures;
             this.peerAuthorizationFailures = peerAuthorizationFailures;
             this.serverTlsConnectionsEstablished = serverTlsConnectionsEstablished;
             this.clientTlsConnectionsEstablished = clientTlsConnectionsEstablished;
             this.serverUnencryptedConnectionsEstablished = serverUnencryptedConnectionsEstablished;
             this.clientUnencryptedConnectionsEstablished = clientUnencryptedConnectionsEstablished;
+            this.bufferPoolAllocations = bufferPoolAllocations;
+            this.bufferPoolAllocatedBytes = bufferPoolAllocatedBytes;
+            this.bufferPoolReuses = bufferPoolReuses;
+            this.bufferPoolIdleBytes = bufferPoolIdleBytes;
         }
 
         public long tlsCertificateVerificationFailures() { return tlsCertificateVerificationFailures; }
@@ -125,6 +185,10 @@ public class TransportMetrics {
         public long clientTlsConnectionsEstablished() { return clientTlsConnectionsEstablished; }
         public long serverUnencryptedConnectionsEstablished() { return serverUnencryptedConnectionsEstablished; }
         public long clientUnencryptedConnectionsEstablished() { return clientUnencryptedConnectionsEstablished; }
+        public long bufferPoolAllocations() { return bufferPoolAllocations; }
+        public long bufferPoolAllocatedBytes() { return bufferPoolAllocatedBytes; }
+        public long bufferPoolReuses() { return bufferPoolReuses; }
+        public long bufferPoolIdleBytes() { return bufferPoolIdleBytes; }
 
         public Snapshot changesSince(Snapshot base) {
             return new Snapshot(
@@ -133,7 +197,11 @@ public class TransportMetrics {
                 changesSince(base, Snapshot::serverTlsConnectionsEstablished),
                 changesSince(base, Snapshot::clientTlsConnectionsEstablished),
                 changesSince(base, Snapshot::serverUnencryptedConnectionsEstablished),
-                changesSince(base, Snapshot::clientUnencryptedConnectionsEstablished));
+                changesSince(base, Snapshot::clientUnencryptedConnectionsEstablished),
+                changesSince(base, Snapshot::bufferPoolAllocations),
+                changesSince(base, Snapshot::bufferPoolAllocatedBytes),
+                changesSince(base, Snapshot::bufferPoolReuses),
+                changesSince(base, Snapshot::bufferPoolIdleBytes));
         }
 
         private long changesSince(Snapshot base, ToLongFunction<Snapshot> metricProperty) {
@@ -149,6 +217,10 @@ public class TransportMetrics {
                     ", clientTlsConnectionsEstablished=" + clientTlsConnectionsEstablished +
                     ", serverUnencryptedConnectionsEstablished=" + serverUnencryptedConnectionsEstablished +
                     ", clientUnencryptedConnectionsEstablished=" + clientUnencryptedConnectionsEstablished +
+                    ", bufferPoolAllocations=" + bufferPoolAllocations +
+                    ", bufferPoolAllocatedBytes=" + bufferPoolAllocatedBytes +
+                    ", bufferPoolReuses=" + bufferPoolReuses +
+                    ", bufferPoolIdleBytes=" + bufferPoolIdleBytes +
                     '}';
         }
     }
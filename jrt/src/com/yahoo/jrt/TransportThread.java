@@ -0,0 +1,366 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A single selector loop owned by a {@link Transport}. Each
+ * TransportThread has its own selector, command queue and task
+ * scheduler, and performs network IO for the connections assigned to
+ * it. All callbacks for a connection are performed by the
+ * TransportThread the connection was assigned to.
+ **/
+class TransportThread {
+
+    private static final int OPEN    = 1;
+    private static final int CLOSING = 2;
+    private static final int CLOSED  = 3;
+
+    private class Run implements Runnable {
+        public void run() {
+            try {
+                TransportThread.this.run();
+            } catch (Throwable problem) {
+                parent.handleFailure(problem, TransportThread.this);
+            }
+        }
+    }
+
+    private class AddConnectionCmd implements Runnable {
+        private Connection conn;
+        AddConnectionCmd(Connection conn) { this.conn = conn; }
+        public void run() { handleAddConnection(conn); }
+    }
+
+    private class CloseConnectionCmd implements Runnable {
+        private Connection conn;
+        CloseConnectionCmd(Connection conn) { this.conn = conn; }
+        public void run() { handleCloseConnection(conn); }
+    }
+
+    private class EnableWriteCmd implements Runnable {
+        private Connection conn;
+        EnableWriteCmd(Connection conn) { this.conn = conn; }
+        public void run() { handleEnableWrite(conn); }
+    }
+
+    private class HandshakeWorkDoneCmd implements Runnable {
+        private Connection conn;
+        HandshakeWorkDoneCmd(Connection conn) { this.conn = conn; }
+        public void run() { handleHandshakeWorkDone(conn); }
+    }
+
+    private class SyncCmd implements Runnable {
+        boolean done = false;
+        public synchronized void waitDone() {
+            while (!done) {
+                try { wait(); } catch (InterruptedException e) {}
+            }
+        }
+        public synchronized void run() {
+            done = true;
+            notify();
+        }
+    }
+
+    private static Logger log = Logger.getLogger(TransportThread.class.getName());
+
+    private Transport parent;
+    private Thread    thread;
+    private Queue     queue;
+    private Queue     myQueue;
+    private Scheduler scheduler;
+    private int       state;
+    private Selector  selector;
+
+    private void handleAddConnection(Connection conn) {
+        if (conn.isClosed()) {
+            if (conn.hasSocket()) {
+                parent.closeLater(conn);
+            }
+            return;
+        }
+        if (!conn.init(selector)) {
+            handleCloseConnection(conn);
+        }
+    }
+
+    private void handleCloseConnection(Connection conn) {
+        if (conn.isClosed()) {
+            return;
+        }
+        conn.fini();
+        if (conn.hasSocket()) {
+            parent.closeLater(conn);
+        }
+    }
+
+    private void handleEnableWrite(Connection conn) {
+        if (conn.isClosed()) {
+            return;
+        }
+        conn.enableWrite();
+    }
+
+    private void handleHandshakeWorkDone(Connection conn) {
+        if (conn.isClosed()) {
+            return;
+        }
+        try {
+            conn.handleHandshakeWorkDone();
+        } catch (IOException e) {
+            conn.setLostReason(e);
+            handleCloseConnection(conn);
+        }
+    }
+
+    private boolean postCommand(Runnable cmd) {
+        boolean wakeup;
+        synchronized (this) {
+            if (state == CLOSED) {
+                return false;
+            }
+            wakeup = queue.isEmpty();
+            queue.enqueue(cmd);
+        }
+        if (wakeup) {
+            selector.wakeup();
+        }
+        return true;
+    }
+
+    private void handleEvents() {
+        synchronized (this) {
+            queue.flush(myQueue);
+        }
+        while (!myQueue.isEmpty()) {
+            ((Runnable)myQueue.dequeue()).run();
+        }
+    }
+
+    private boolean handleIOEvents(Connection conn,
+                                   SelectionKey key) {
+        if (conn.isClosed()) {
+            return true;
+        }
+        if (key.isReadable()) {
+            try {
+                conn.handleReadEvent();
+            } catch (IOException e) {
+                conn.setLostReason(e);
+                return false;
+            }
+        }
+        if (key.isWritable()) {
+            try {
+                conn.handleWriteEvent();
+            } catch (IOException e) {
+                conn.setLostReason(e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a new TransportThread owned by the given Transport. The
+     * thread is not started until {@link #start} is invoked.
+     *
+     * @param parent the owning Transport
+     * @param name the name of the underlying thread
+     **/
+    TransportThread(Transport parent, String name) {
+        synchronized (this) {
+            this.parent = parent; // NB: this must be set first
+        }
+        thread    = new Thread(new Run(), name);
+        queue     = new Queue();
+        myQueue   = new Queue();
+        scheduler = new Scheduler(System.currentTimeMillis());
+        state     = OPEN;
+        try {
+            selector = Selector.open();
+        } catch (Exception e) {
+            throw new Error("Could not open transport selector", e);
+        }
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Obtain the Transport owning this thread.
+     *
+     * @return the owning Transport
+     **/
+    Transport transport() {
+        return parent;
+    }
+
+    /**
+     * Add a connection to the set of connections handled by this
+     * thread.
+     *
+     * @param conn the connection to add
+     **/
+    void addConnection(Connection conn) {
+        if (!postCommand(new AddConnectionCmd(conn))) {
+            perform(new CloseConnectionCmd(conn));
+        }
+    }
+
+    /**
+     * Request an asynchronous close of a connection.
+     *
+     * @param conn the connection to close
+     **/
+    void closeConnection(Connection conn) {
+        postCommand(new CloseConnectionCmd(conn));
+    }
+
+    /**
+     * Request an asynchronous enabling of write events for a
+     * connection.
+     *
+     * @param conn the connection to enable write events for
+     **/
+    void enableWrite(Connection conn) {
+        if (Thread.currentThread() == thread) {
+            handleEnableWrite(conn);
+        } else {
+            postCommand(new EnableWriteCmd(conn));
+        }
+    }
+
+    void handshakeWorkDone(Connection conn) {
+        postCommand(new HandshakeWorkDoneCmd(conn));
+    }
+
+    /**
+     * Create a {@link Task} that can be scheduled for execution in
+     * this thread.
+     *
+     * @return the newly created Task
+     * @param cmd what to run when the task is executed
+     **/
+    Task createTask(Runnable cmd) {
+        return new Task(scheduler, cmd);
+    }
+
+    /**
+     * Perform the given command in such a way that it does not run
+     * concurrently with this thread or other commands performed by
+     * invoking this method. This method will continue to work even
+     * after this thread has been shut down.
+     *
+     * @param cmd the command to perform
+     **/
+    void perform(Runnable cmd) {
+        if (Thread.currentThread() == thread) {
+            cmd.run();
+            return;
+        }
+        if (!postCommand(cmd)) {
+            join();
+            synchronized (thread) {
+                cmd.run();
+            }
+        }
+    }
+
+    /**
+     * Synchronize with this thread. This method will block until all
+     * commands issued before this method was invoked has
+     * completed. If the thread has been shut down (or is in the
+     * progress of being shut down) this method will instead wait for
+     * the thread to complete.
+     **/
+    void sync() {
+        SyncCmd cmd = new SyncCmd();
+        if (postCommand(cmd)) {
+            cmd.waitDone();
+        } else {
+            join();
+        }
+    }
+
+    private void run() {
+        while (state == OPEN) {
+
+            // perform I/O selection
+            try {
+                selector.select(100);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "error during select", e);
+            }
+
+            // handle internal events
+            handleEvents();
+
+            // handle I/O events
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                Connection conn = (Connection) key.attachment();
+                keys.remove();
+                if (!handleIOEvents(conn, key)) {
+                    handleCloseConnection(conn);
+                }
+            }
+
+            // check scheduled tasks
+            scheduler.checkTasks(System.currentTimeMillis());
+        }
+        parent.waitConnectorDone();
+        synchronized (this) {
+            state = CLOSED;
+        }
+        handleEvents();
+        Iterator<SelectionKey> keys = selector.keys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            Connection conn = (Connection) key.attachment();
+            handleCloseConnection(conn);
+        }
+        try { selector.close(); } catch (Exception e) {}
+        parent.notifyDone(this);
+    }
+
+    /**
+     * Initiate controlled shutdown of this thread.
+     **/
+    void shutdown() {
+        synchronized (this) {
+            if (state == OPEN) {
+                state = CLOSING;
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Wait for this thread to finish.
+     **/
+    void join() {
+        while (true) {
+            try {
+                thread.join();
+                return;
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TransportThread{" + thread.getName() + "}";
+    }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void requireThatSizesAreRoundedToSizeClasses() {
+        BufferPool pool = new BufferPool(TransportMetrics.getInstance());
+        assertEquals(4096, pool.capacityFor(1));
+        assertEquals(4096, pool.capacityFor(4096));
+        assertEquals(8192, pool.capacityFor(4097));
+        assertEquals(65536, pool.capacityFor(65000));
+        assertEquals(4 * 1024 * 1024, pool.capacityFor(4 * 1024 * 1024));
+        assertEquals(4 * 1024 * 1024 + 1, pool.capacityFor(4 * 1024 * 1024 + 1));
+    }
+
+    @Test
+    public void requireThatReleasedBuffersAreReused() {
+        BufferPool pool = new BufferPool(TransportMetrics.getInstance());
+        ByteBuffer a = pool.allocate(5000);
+        assertTrue(a.isDirect());
+        assertEquals(8192, a.capacity());
+        a.put((byte)1);
+        pool.release(a);
+        ByteBuffer b = pool.allocate(8000);
+        assertSame(a, b);
+        assertEquals(0, b.position());
+        assertEquals(b.capacity(), b.limit());
+        assertNotSame(a, pool.allocate(8000));
+    }
+
+    @Test
+    public void requireThatIdleBytesAreBounded() {
+        BufferPool pool = new BufferPool(8192, TransportMetrics.getInstance());
+        ByteBuffer a = pool.allocate(4096);
+        ByteBuffer b = pool.allocate(4096);
+        ByteBuffer c = pool.allocate(4096);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        assertSame(a, pool.allocate(4096));
+        assertSame(b, pool.allocate(4096));
+        ByteBuffer d = pool.allocate(4096);
+        assertNotSame(c, d);
+    }
+
+    @Test
+    public void requireThatIdleBytesAreBoundedAcrossPools() {
+        AtomicLong totalIdleBytes = new AtomicLong(0);
+        BufferPool pool1 = new BufferPool(1024 * 1024, totalIdleBytes, 8192, TransportMetrics.getInstance());
+        BufferPool pool2 = new BufferPool(1024 * 1024, totalIdleBytes, 8192, TransportMetrics.getInstance());
+        ByteBuffer a = pool1.allocate(8192);
+        ByteBuffer b = pool2.allocate(8192);
+        pool1.release(a);
+        pool2.release(b);
+        assertEquals(8192, totalIdleBytes.get());
+        assertNotSame(b, pool2.allocate(8192));
+        assertSame(a, pool1.allocate(8192));
+        assertEquals(0, totalIdleBytes.get());
+    }
+
+    @Test
+    public void requireThatHugeAndHeapBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(TransportMetrics.getInstance());
+        ByteBuffer huge = pool.allocate(5 * 1024 * 1024);
+        assertFalse(huge.isDirect());
+        pool.release(huge);
+        assertNotSame(huge, pool.allocate(5 * 1024 * 1024));
+        pool.release(ByteBuffer.allocate(4096));
+        assertTrue(pool.allocate(4096).isDirect());
+    }
+
+}
@@ -263,4 +263,37 @@ public class BufferTest {
         }
     }
 
+    @org.junit.Test
+    public void testPooledBufferGrowAndShrink() {
+        BufferPool pool = new BufferPool(TransportMetrics.getInstance());
+        Buffer     buf  = new Buffer(1000, pool);
+        byte[]     x    = new byte[10000];
+        byte[]     y    = new byte[10000];
+        Arrays.fill(x, (byte) 10);
+
+        ByteBuffer b = buf.getWritable(10);
+        assertTrue(b.isDirect());
+        assertEquals(4096, b.capacity());
+
+        b = buf.getWritable(x.length);
+        assertTrue(b.isDirect());
+        assertEquals(16384, b.capacity());
+        b.put(x);
+
+        assertFalse(buf.shrink(4096));
+        b = buf.getReadable();
+        b.get(y);
+        assertTrue(Arrays.equals(x, y));
+        assertTrue(buf.shrink(4096));
+        assertFalse(buf.shrink(4096));
+        assertEquals(4096, buf.getReadable().capacity());
+        assertTrue(buf.getReadable().isDirect());
+
+        buf.dispose();
+        assertEquals(0, buf.bytes());
+        b = buf.getWritable(x.length);
+        assertTrue(b.isDirect());
+        assertEquals(16384, b.capacity());
+    }
+
 }
@@ -0,0 +1,87 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class MultiThreadedTransportTest {
+
+    private static final int numThreads = 4;
+    private static final int numTargets = 16;
+
+    Supervisor   server;
+    Acceptor     acceptor;
+    Supervisor   client;
+    List<Target> targets = new ArrayList<>();
+    Set<String>  serverThreads = new HashSet<>();
+
+    @Before
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport(new NullCryptoEngine(), numThreads));
+        client   = new Supervisor(new Transport(new NullCryptoEngine(), numThreads));
+        acceptor = server.listen(new Spec(0));
+        server.addMethod(new Method("concat", "ss", "s", this, "rpc_concat"));
+        for (int i = 0; i < numTargets; ++i) {
+            targets.add(client.connect(new Spec("localhost", acceptor.port())));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_concat(Request req) {
+        synchronized (serverThreads) {
+            serverThreads.add(Thread.currentThread().getName());
+        }
+        req.returnValues().add(new StringValue(req.parameters().get(0).asString() +
+                                               req.parameters().get(1).asString()));
+    }
+
+    @org.junit.Test
+    public void requireThatConnectionsAreSpreadAcrossTransportThreads() {
+        assertEquals(numThreads, client.transport().numThreads());
+        for (int i = 0; i < numTargets; ++i) {
+            Request req = new Request("concat");
+            req.parameters().add(new StringValue("abc"));
+            req.parameters().add(new StringValue(String.valueOf(i)));
+            targets.get(i).invokeSync(req, 5.0);
+            assertFalse(req.isError());
+            assertEquals("abc" + i, req.returnValues().get(0).asString());
+        }
+        assertEquals(numThreads, serverThreads.size());
+    }
+
+    @org.junit.Test
+    public void requireThatMethodsCanBeAddedWhileServing() {
+        server.addMethod(new Method("echo", "s", "s", this, "rpc_echo"));
+        for (Target target : targets) {
+            Request req = new Request("echo");
+            req.parameters().add(new StringValue("foo"));
+            target.invokeSync(req, 5.0);
+            assertTrue(!req.isError());
+            assertEquals("foo", req.returnValues().get(0).asString());
+        }
+    }
+
+    public void rpc_echo(Request req) {
+        req.returnValues().add(req.parameters().get(0));
+    }
+
+}
@@ -4,22 +4,27 @@ package com.yahoo.messagebus;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.log.LogLevel;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 
 /**
  * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
+ * tasks. Tasks are enqueued using the thread-safe {@link #enqueue(Task)}
  * method, and are run in the order they were enqueued.</p>
  *
+ * <p>Tasks are passed to the thread through a lock-free queue, and the thread
+ * is only woken up when it has parked itself waiting for new tasks.</p>
+ *
  * @author Simon Thoresen Hult
  */
 public class Messenger implements Runnable {
@@ -28,7 +33,9 @@ public class Messenger implements Runnable {
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
     private final ExecutorService sendExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("messenger.send"));
-    private final Queue<Task> queue = new ArrayDeque<>();
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    /** Whether the messenger thread is parked, or about to park, waiting for new tasks */
+    private volatile boolean idle = false;
 
     private final Thread thread = new Thread(this, "Messenger");
 
@@ -103,11 +110,9 @@ public class Messenger implements Runnable {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
+        queue.offer(task);
+        if (idle) {
+            LockSupport.unpark(thread);
         }
     }
 
@@ -138,15 +143,11 @@ public class Messenger implements Runnable {
         if (!destroyed.getAndSet(true)) {
             sendExecutor.shutdownNow().forEach((Runnable task) -> {((MessageTask) task).msg.discard();});
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
-                }
                 thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
+            destroyQueuedTasks(); // enqueued after the thread stopped but before the destroyed flag was set
             done = true;
         }
         return done;
@@ -155,18 +156,16 @@ public class Messenger implements Runnable {
     @Override
     public void run() {
         while (true) {
-            Task task = null;
-            synchronized (this) {
+            Task task = queue.poll();
+            if (task == null) {
+                idle = true;
+                // Check again after setting the idle flag, so that no task enqueued since polling is missed
                 if (queue.isEmpty()) {
-                    try {
-                        wait(100);
-                    } catch (final InterruptedException e) {
-                        continue;
-                    }
-                }
-                if (queue.size() > 0) {
-                    task = queue.poll();
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                    Thread.interrupted(); // interrupts only wake this up, like spurious wakeups
                 }
+                idle = false;
+                task = queue.poll();
             }
             if (task == Terminate.INSTANCE) {
                 break;
@@ -192,12 +191,12 @@ public class Messenger implements Runnable {
         for (final Task child : children) {
             child.destroy();
         }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
-            }
-            notify();
+        destroyQueuedTasks();
+    }
+
+    private void destroyQueuedTasks() {
+        for (Task task; (task = queue.poll()) != null; ) {
+            task.destroy();
         }
     }
 
@@ -12,14 +12,21 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * linked message handlers. Each message that carries a sequencing id is queued in an internal list of messages for that
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
+ * <p>
+ * The sequencing state is striped by sequence id, such that messages with different ids rarely contend.
  *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    private static final int stripeCount = 64; // must be a power of two
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+
+    /** The sequencing state of each stripe, where each map is guarded by its own monitor */
+    @SuppressWarnings("unchecked")
+    private final Map<Long, Queue<Message>>[] stripes = new Map[stripeCount];
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -28,6 +35,15 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public Sequencer(MessageHandler sender) {
         this.sender = sender;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new HashMap<>();
+        }
+    }
+
+    /** Returns the sequencing state of the stripe of the given sequence id */
+    private Map<Long, Queue<Message>> stripeOf(long seqId) {
+        long hash = seqId * 0x9E3779B97F4A7C15L; // spread ids which differ only in the high bits
+        return stripes[(int)(hash >>> 32) & (stripeCount - 1)];
     }
 
     /**
@@ -38,15 +54,17 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
+            for (Map<Long, Queue<Message>> seqMap : stripes) {
+                synchronized (seqMap) {
+                    for (Queue<Message> queue : seqMap.values()) {
+                        if (queue != null) {
+                            for (Message msg : queue) {
+                                msg.discard();
+                            }
                         }
                     }
+                    seqMap.clear();
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,7 +83,8 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
+        Map<Long, Queue<Message>> seqMap = stripeOf(seqId);
+        synchronized (seqMap) {
             if (seqMap.containsKey(seqId)) {
                 Queue<Message> queue = seqMap.get(seqId);
                 if (queue == null) {
@@ -138,7 +157,8 @@ public class Sequencer implements MessageHandler, ReplyHandler {
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
         Message msg = null;
-        synchronized (this) {
+        Map<Long, Queue<Message>> seqMap = stripeOf(seqId);
+        synchronized (seqMap) {
             Queue<Message> queue = seqMap.get(seqId);
             if (queue == null || queue.isEmpty()) {
                 seqMap.remove(seqId);
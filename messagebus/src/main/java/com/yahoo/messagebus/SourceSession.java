@@ -5,9 +5,11 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingTable;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -27,7 +29,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     private volatile double timeout;
     private volatile int pendingCount = 0;
     private volatile boolean closed = false;
-    private final Queue<BlockedMessage> blockedQ = new LinkedList<>();
+    /** Messages waiting for the throttle policy to allow sending. Modified under lock, but may be read without */
+    private final Queue<BlockedMessage> blockedQ = new ConcurrentLinkedQueue<>();
 
     /**
      * <p>The default constructor requires values for all final member variables
@@ -65,6 +68,10 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         }
         synchronized (lock) {
             closed = true;
+            for (BlockedMessage blocked : blockedQ) {
+                blocked.notifyComplete(new Result(ErrorCode.SEND_QUEUE_CLOSED, "Source session is closed."));
+            }
+            blockedQ.clear();
         }
         sequencer.destroy();
         mbus.sync();
@@ -156,6 +163,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     @Override
     public boolean trySend() {
         if (destroyed.get()) return false;
+        if (blockedQ.isEmpty()) return true; // avoid contending for the lock with senders in the common case
         sendBlockedMessages();
         expireStalledBlockedMessages();
         return true;
@@ -163,16 +171,13 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
 
     private class BlockedMessage {
         private final Message msg;
-        private Result result = null;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
         BlockedMessage(Message msg) {
             this.msg = msg;
         }
 
         private void notifyComplete(Result result) {
-            synchronized (this) {
-                this.result = result;
-                notify();
-            }
+            this.result.complete(result);
         }
 
         Message getMessage() { return msg; }
@@ -199,13 +204,15 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
             return true;
         }
 
+        CompletableFuture<Result> result() { return result; }
+
         Result waitComplete() throws InterruptedException {
-            synchronized (this) {
-                while (result == null) {
-                    this.wait();
-                }
+            try {
+                return result.get();
+            }
+            catch (ExecutionException e) { // never happens: The result is never completed exceptionally
+                throw new IllegalStateException(e.getCause());
             }
-            return result;
         }
     }
 
@@ -244,6 +251,37 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         return res;
     }
 
+    /**
+     * <p>This is a non-blocking alternative to {@link #sendBlocking(Message)}.
+     * If the message cannot be accepted immediately because the send queue is
+     * full, it is queued and sent as soon as the throttle policy allows,
+     * without holding the calling thread. The returned future completes with
+     * the result of initiating send, which is not accepted if the message
+     * expired while queued or this session was closed.</p>
+     *
+     * <p>The future is usually completed by a message bus thread while holding
+     * the lock of this session, so actions depending on it must be cheap and
+     * must not send on this session.</p>
+     *
+     * @param msg The message to send.
+     * @return A future which completes with the result of initiating send.
+     */
+    public CompletableFuture<Result> sendWhenReady(Message msg) {
+        Result res = send(msg);
+        if ( ! isSendQFull(res)) {
+            return CompletableFuture.completedFuture(res);
+        }
+        BlockedMessage blockedMessage = new BlockedMessage(msg);
+        synchronized (lock) {
+            if (closed) {
+                return CompletableFuture.completedFuture(new Result(ErrorCode.SEND_QUEUE_CLOSED,
+                                                                    "Source session is closed."));
+            }
+            blockedQ.add(blockedMessage);
+        }
+        return blockedMessage.result();
+    }
+
     private void expireStalledBlockedMessages() {
         synchronized (lock) {
             Iterator<BlockedMessage> each = blockedQ.iterator();
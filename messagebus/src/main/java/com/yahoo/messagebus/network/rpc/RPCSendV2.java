@@ -73,6 +73,11 @@ public class RPCSendV2 extends RPCSend {
     private static final String BLOB_F = new String("msg");
     private static final String MSG_F = new String("msg");
 
+    /** Returns the expected size of the serialized slime envelope around the given payload */
+    private static int envelopeSize(byte[] payload) {
+        return payload.length + 1024;
+    }
+
     @Override
     protected Request encodeRequest(Version version, Route route, RPCServiceAddress address, Message msg,
                                     long timeRemaining, byte[] payload, int traceLevel)
@@ -98,8 +103,7 @@ public class RPCSendV2 extends RPCSend {
         root.setLong(TRACELEVEL_F, traceLevel);
         root.setData(BLOB_F, payload);
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+        Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor, envelopeSize(payload));
 
         v.add(new Int8Value(compressionResult.type().getCode()));
         v.add(new Int32Value(compressionResult.uncompressedSize()));
@@ -198,8 +202,7 @@ public class RPCSendV2 extends RPCSend {
             }
         }
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+        Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor, envelopeSize(payload));
 
         ret.add(new Int8Value(compressionResult.type().getCode()));
         ret.add(new Int32Value(compressionResult.uncompressedSize()));
@@ -3,9 +3,14 @@ package com.yahoo.messagebus;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +100,53 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatTasksFromEachThreadAreRunInOrder() throws InterruptedException {
+        Messenger msn = new Messenger();
+        msn.start();
+        int threadCount = 8;
+        int tasksPerThread = 10000;
+        int[] lastRun = new int[threadCount];
+        AtomicBoolean outOfOrder = new AtomicBoolean(false);
+        CountDownLatch done = new CountDownLatch(threadCount * tasksPerThread);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= tasksPerThread; i++) {
+                    int task = i;
+                    msn.enqueue(new Messenger.Task() {
+                        @Override
+                        public void run() {
+                            if (lastRun[thread] != task - 1) outOfOrder.set(true);
+                            lastRun[thread] = task;
+                        }
+
+                        @Override
+                        public void destroy() {
+                            done.countDown();
+                        }
+                    });
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertFalse(outOfOrder.get());
+        msn.destroy();
+    }
+
+    @Test
+    public void requireThatTasksAreDestroyedWhenMessengerIsDestroyed() {
+        Messenger msn = new Messenger();
+        msn.start();
+        msn.destroy();
+        MyTask task = new MyTask();
+        msn.enqueue(task);
+        assertEquals(1, task.runLatch.getCount());
+        assertEquals(0, task.destroyLatch.getCount());
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
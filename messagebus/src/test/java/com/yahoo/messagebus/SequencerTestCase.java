@@ -4,10 +4,21 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -104,6 +115,45 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testConcurrentSequencing() throws InterruptedException {
+        int threadCount = 8;
+        int messagesPerThread = 5000;
+        int idCount = 100;
+        ExecutorService replier = Executors.newFixedThreadPool(4);
+        Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicBoolean overlap = new AtomicBoolean(false);
+        CountDownLatch replies = new CountDownLatch(threadCount * messagesPerThread);
+        ReplyHandler source = reply -> replies.countDown();
+        Sequencer seq = new Sequencer(msg -> {
+            if (inFlight.computeIfAbsent(msg.getSequenceId(), id -> new AtomicInteger()).incrementAndGet() > 1)
+                overlap.set(true);
+            replier.execute(() -> {
+                inFlight.get(msg.getSequenceId()).decrementAndGet();
+                Reply reply = new EmptyReply();
+                reply.swapState(msg);
+                reply.setMessage(msg);
+                reply.popHandler().handleReply(reply);
+            });
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    Message msg = new MyMessage(true, (thread * messagesPerThread + i) % idCount);
+                    msg.pushHandler(source);
+                    seq.handleMessage(msg);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTrue(replies.await(60, TimeUnit.SECONDS));
+        assertFalse("At most one message per sequence id is in flight", overlap.get());
+        replier.shutdown();
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
@@ -11,6 +11,7 @@ import com.yahoo.messagebus.test.SimpleReply;
 import org.junit.Test;
 
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
@@ -19,6 +20,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.number.OrderingComparison.lessThan;
 import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -146,6 +148,69 @@ public class LocalNetworkTest {
 
     }
 
+    @Test
+    public void requireThatSendWhenReadyCompletesWhenThrottleWindowOpens() throws Exception {
+        final LocalWire wire = new LocalWire();
+
+        final Server serverA = new Server(wire);
+        final SourceSession source = serverA.newSourceSession(new StaticThrottlePolicy().setMaxPendingCount(1));
+
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        Message msg = new SimpleMessage("foo");
+        msg.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+        assertThat(source.sendWhenReady(msg).get(60, TimeUnit.SECONDS).isAccepted(), is(true));
+
+        Message msg2 = new SimpleMessage("foo2");
+        msg2.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+        CompletableFuture<Result> result = source.sendWhenReady(msg2);
+        assertFalse(result.isDone());
+
+        msg = serverB.messages.poll(60, TimeUnit.SECONDS);
+        assertThat(((SimpleMessage)msg).getValue(), is("foo"));
+        Reply reply = new SimpleReply("bar");
+        reply.swapState(msg);
+        destination.reply(reply);
+
+        assertThat(result.get(60, TimeUnit.SECONDS).isAccepted(), is(true));
+        msg = serverB.messages.poll(60, TimeUnit.SECONDS);
+        assertThat(((SimpleMessage)msg).getValue(), is("foo2"));
+        reply = new SimpleReply("bar2");
+        reply.swapState(msg);
+        destination.reply(reply);
+
+        assertThat(((SimpleReply)serverA.replies.poll(60, TimeUnit.SECONDS)).getValue(), is("bar"));
+        assertThat(((SimpleReply)serverA.replies.poll(60, TimeUnit.SECONDS)).getValue(), is("bar2"));
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
+    @Test
+    public void requireThatSendWhenReadyCompletesWhenSessionIsDestroyed() throws Exception {
+        final LocalWire wire = new LocalWire();
+
+        final Server serverA = new Server(wire);
+        final SourceSession source = serverA.newSourceSession(new StaticThrottlePolicy().setMaxPendingCount(1));
+
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        Message msg = new SimpleMessage("foo");
+        msg.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+        assertThat(source.send(msg).isAccepted(), is(true));
+        Message msg2 = new SimpleMessage("foo2");
+        msg2.setRoute(new Route().addHop(Hop.parse(destination.getConnectionSpec())));
+        CompletableFuture<Result> result = source.sendWhenReady(msg2);
+
+        source.destroy();
+        assertEquals(ErrorCode.SEND_QUEUE_CLOSED, result.get(60, TimeUnit.SECONDS).getError().getCode());
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
     private static class Server implements MessageHandler, ReplyHandler {
 
         final MessageBus mbus;
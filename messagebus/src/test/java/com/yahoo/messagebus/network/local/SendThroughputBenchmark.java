@@ -0,0 +1,129 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.local;
+
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.StaticThrottlePolicy;
+import com.yahoo.messagebus.routing.Hop;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of messages sent through a source session by many threads concurrently,
+ * with and without sequencing, to a destination which replies immediately.
+ *
+ * @author agent
+ */
+public class SendThroughputBenchmark {
+
+    private static final int messagesPerThread = 100 * 1000;
+
+    public void run() throws InterruptedException {
+        int[] threadCounts = { 1, 4, Runtime.getRuntime().availableProcessors() * 2 };
+        out("Warming up...");
+        for (int threads : threadCounts) {
+            send(threads, false);
+            send(threads, true);
+        }
+
+        out("Running...");
+        for (int threads : threadCounts) {
+            out(String.format("%3d threads: %8d messages/s unsequenced, %8d messages/s sequenced",
+                              threads, send(threads, false), send(threads, true)));
+        }
+    }
+
+    /** Sends messages from the given number of threads and returns the throughput in messages per second */
+    private long send(int threadCount, boolean sequenced) throws InterruptedException {
+        LocalWire wire = new LocalWire();
+        MessageBus sourceBus = createMessageBus(wire);
+        MessageBus destinationBus = createMessageBus(wire);
+        try {
+            CountDownLatch replies = new CountDownLatch(threadCount * messagesPerThread);
+            DestinationSession[] destination = new DestinationSession[1];
+            destination[0] = destinationBus.createDestinationSession(new DestinationSessionParams().setMessageHandler(msg -> {
+                Reply reply = new SimpleReply("reply");
+                reply.swapState(msg);
+                destination[0].reply(reply);
+            }));
+            SourceSession source = sourceBus.createSourceSession(new SourceSessionParams()
+                                                                         .setTimeout(600.0)
+                                                                         .setThrottlePolicy(new StaticThrottlePolicy().setMaxPendingCount(1000))
+                                                                         .setReplyHandler(reply -> replies.countDown()));
+            Route route = new Route().addHop(Hop.parse(destination[0].getConnectionSpec()));
+
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        Message msg = new BenchmarkMessage(sequenced, thread * 1000 + i % 1000);
+                        msg.setRoute(route);
+                        source.sendWhenReady(msg);
+                    }
+                }));
+            }
+
+            long startTime = System.nanoTime();
+            threads.forEach(Thread::start);
+            if ( ! replies.await(10, TimeUnit.MINUTES))
+                throw new IllegalStateException("Timed out waiting for replies");
+            long elapsedNanos = System.nanoTime() - startTime;
+            return threadCount * messagesPerThread * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+        finally {
+            sourceBus.destroy();
+            destinationBus.destroy();
+        }
+    }
+
+    private MessageBus createMessageBus(LocalWire wire) {
+        return new MessageBus(new LocalNetwork(wire), new MessageBusParams().addProtocol(new SimpleProtocol())
+                                                                           .setRetryPolicy(null));
+    }
+
+    private static class BenchmarkMessage extends SimpleMessage {
+
+        final boolean hasSeqId;
+        final long seqId;
+
+        BenchmarkMessage(boolean hasSeqId, long seqId) {
+            super("message");
+            this.hasSeqId = hasSeqId;
+            this.seqId = seqId;
+        }
+
+        @Override
+        public boolean hasSequenceId() {
+            return hasSeqId;
+        }
+
+        @Override
+        public long getSequenceId() {
+            return seqId;
+        }
+
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new SendThroughputBenchmark().run();
+    }
+
+}
@@ -0,0 +1,322 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which can be used to evaluate a single function over a batch of argument rows,
+ * e.g to score many candidates in one invocation. A single context is reused for all the rows.
+ * <p>
+ * Arguments are bound in columnar form: Either as one double per row for scalar arguments,
+ * or as a tensor of the argument type with an additional indexed dimension named {@link #batchDimension},
+ * where the label of that dimension is the row number.
+ * The result is likewise a tensor of the return type with the batch dimension added.
+ * <p>
+ * Instances may be evaluated multiple times, and arguments may be rebound between evaluations,
+ * but instances are not multithread safe.
+ *
+ * @author agent
+ */
+@Beta
+public class BatchFunctionEvaluator {
+
+    /** The name of the dimension identifying the row of batch argument and result tensors */
+    public static final String batchDimension = "batch";
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext context;
+
+    /** The values of each bound argument, by row */
+    private final Map<String, Value[]> arguments = new LinkedHashMap<>();
+
+    BatchFunctionEvaluator(ExpressionFunction function, LazyArrayContext context) {
+        this.function = function;
+        this.context = context;
+    }
+
+    /**
+     * Binds the given scalar variable referred in this expression to one value per row.
+     *
+     * @param name the variable to bind
+     * @param values the values this becomes bound to, one per row
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator bind(String name, double ... values) {
+        TensorType requiredType = requireArgumentType(name);
+        if (requiredType.rank() > 0)
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not a double");
+        Value[] rows = new Value[values.length];
+        for (int i = 0; i < values.length; i++)
+            rows[i] = DoubleValue.frozen(values[i]);
+        return bind(name, rows);
+    }
+
+    /**
+     * Binds the given variable referred in this expression to one value per row.
+     *
+     * @param name the variable to bind
+     * @param values a tensor of the type of the variable with the batch dimension added,
+     *               such that the subspace at each batch label is the value of that row
+     * @return this for chaining
+     */
+    public BatchFunctionEvaluator bind(String name, Tensor values) {
+        TensorType requiredType = requireArgumentType(name);
+        TensorType batchType = batchTypeOf(requiredType);
+        if ( ! values.type().isAssignableTo(batchType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + batchType + ", not " + values.type());
+        return bind(name, rows(values, requiredType));
+    }
+
+    private BatchFunctionEvaluator bind(String name, Value[] rows) {
+        for (Map.Entry<String, Value[]> argument : arguments.entrySet()) {
+            if (argument.getKey().equals(name)) continue;
+            if (argument.getValue().length != rows.length)
+                throw new IllegalArgumentException("'" + name + "' has " + rows.length + " rows, but '" +
+                                                   argument.getKey() + "' has " + argument.getValue().length);
+        }
+        arguments.put(name, rows);
+        return this;
+    }
+
+    /**
+     * Evaluates the function once for each row of the bound arguments.
+     *
+     * @return a tensor of the return type of the function with the batch dimension added,
+     *         containing the result of each row
+     * @throws IllegalStateException if a tensor argument is not bound
+     */
+    public Tensor evaluate() {
+        for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
+            if (argument.getValue().rank() == 0) continue; // Scalar arguments can be skipped (defaults to 0)
+            if ( ! arguments.containsKey(argument.getKey()))
+                throw new IllegalStateException("Missing argument '" + argument.getKey() +
+                                                "': Must be bound to a value of type " + batchTypeOf(argument.getValue()));
+        }
+
+        int rowCount = rowCount();
+        String[] names = arguments.keySet().toArray(new String[0]);
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+            indexes[i] = context.getIndex(names[i]);
+
+        Value[] results = new Value[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            for (int i = 0; i < names.length; i++)
+                context.put(indexes[i], arguments.get(names[i])[row]);
+            context.clearComputedValues();
+            results[row] = function.getBody().evaluate(context).freeze();
+        }
+        return batchOf(results);
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    /** Returns the number of rows bound in this */
+    public int rowCount() {
+        return arguments.isEmpty() ? 0 : arguments.values().iterator().next().length;
+    }
+
+    private TensorType requireArgumentType(String name) {
+        TensorType requiredType = function.argumentTypes().get(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
+                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
+                                                                                  .collect(Collectors.joining(", ")));
+        return requiredType;
+    }
+
+    /** Returns the type of a batch of values of the given type */
+    public static TensorType batchTypeOf(TensorType type) {
+        if (type.dimension(batchDimension).isPresent())
+            throw new IllegalArgumentException("Cannot create a batch of " + type + ": It already has a dimension named '" +
+                                               batchDimension + "'");
+        return new TensorType.Builder(type.valueType(), type.dimensions()).indexed(batchDimension).build();
+    }
+
+    /** Splits a batch tensor into the value of each row */
+    private static Value[] rows(Tensor batch, TensorType rowType) {
+        if (batch instanceof IndexedTensor && isBound(rowType)) {
+            BatchLayout layout = new BatchLayout(batch.type(), ((IndexedTensor)batch).dimensionSizes());
+            if (layout.rowSize == sizeOf(rowType)) // otherwise the batch is smaller than the row type
+                return indexedRows((IndexedTensor)batch, rowType, layout);
+        }
+
+        int batchIndex = batch.type().indexOfDimension(batchDimension).get();
+        int rowCount = 0;
+        for (Iterator<Tensor.Cell> i = batch.cellIterator(); i.hasNext(); )
+            rowCount = Math.max(rowCount, (int)i.next().getKey().numericLabel(batchIndex) + 1);
+
+        Tensor.Builder[] builders = new Tensor.Builder[rowCount];
+        for (int row = 0; row < rowCount; row++)
+            builders[row] = Tensor.Builder.of(rowType);
+        for (Iterator<Tensor.Cell> i = batch.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            TensorAddress address = cell.getKey();
+            String[] labels = new String[address.size() - 1];
+            for (int dimension = 0, label = 0; dimension < address.size(); dimension++) {
+                if (dimension != batchIndex)
+                    labels[label++] = address.label(dimension);
+            }
+            builders[(int)address.numericLabel(batchIndex)].cell(TensorAddress.of(labels), cell.getValue());
+        }
+
+        Value[] rows = new Value[rowCount];
+        for (int row = 0; row < rowCount; row++)
+            rows[row] = rowType.rank() == 0 ? DoubleValue.frozen(builders[row].build().asDouble())
+                                            : new TensorValue(builders[row].build()).freeze();
+        return rows;
+    }
+
+    /**
+     * Splits an indexed batch tensor into rows of a bound indexed type by copying each value directly
+     * from the cells of the batch to the cells of its row.
+     */
+    private static Value[] indexedRows(IndexedTensor batch, TensorType rowType, BatchLayout layout) {
+        int rowCount = layout.rowCount;
+        Value[] rows = new Value[rowCount];
+        if (rowType.rank() == 0) {
+            for (int row = 0; row < rowCount; row++)
+                rows[row] = DoubleValue.frozen(batch.get(row));
+            return rows;
+        }
+
+        IndexedTensor.BoundBuilder[] builders = new IndexedTensor.BoundBuilder[rowCount];
+        for (int row = 0; row < rowCount; row++)
+            builders[row] = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(rowType);
+        for (int outer = 0, batchCell = 0; outer < layout.outerSize; outer++) {
+            for (int row = 0; row < rowCount; row++) {
+                for (int inner = 0, rowCell = outer * layout.innerSize; inner < layout.innerSize; inner++)
+                    builders[row].cellByDirectIndex(rowCell++, batch.get(batchCell++));
+            }
+        }
+        for (int row = 0; row < rowCount; row++)
+            rows[row] = new TensorValue(builders[row].build()).freeze();
+        return rows;
+    }
+
+    /** Combines the result of each row into one tensor */
+    private Tensor batchOf(Value[] results) {
+        TensorType resultType = results.length > 0 ? results[0].type()
+                                                   : function.returnType().orElse(TensorType.empty);
+        TensorType batchType = batchTypeOf(resultType);
+        if (isIndexed(results, resultType))
+            return indexedBatchOf(results, resultType, batchType);
+
+        int batchIndex = batchType.indexOfDimension(batchDimension).get();
+        Tensor.Builder builder = Tensor.Builder.of(batchType);
+        for (int row = 0; row < results.length; row++) {
+            String rowLabel = String.valueOf(row);
+            for (Iterator<Tensor.Cell> i = results[row].asTensor().cellIterator(); i.hasNext(); ) {
+                Tensor.Cell cell = i.next();
+                TensorAddress address = cell.getKey();
+                String[] labels = new String[address.size() + 1];
+                for (int dimension = 0, label = 0; dimension < labels.length; dimension++)
+                    labels[dimension] = dimension == batchIndex ? rowLabel : address.label(label++);
+                builder.cell(TensorAddress.of(labels), cell.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Combines results of a bound indexed type into one tensor by writing each value directly
+     * into the preallocated cells of the batch tensor.
+     */
+    private static Tensor indexedBatchOf(Value[] results, TensorType resultType, TensorType batchType) {
+        DimensionSizes.Builder sizesBuilder = new DimensionSizes.Builder(batchType.rank());
+        for (int i = 0; i < batchType.rank(); i++) {
+            TensorType.Dimension dimension = batchType.dimensions().get(i);
+            sizesBuilder.set(i, dimension.name().equals(batchDimension) ? results.length : dimension.size().get());
+        }
+        DimensionSizes sizes = sizesBuilder.build();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(batchType, sizes);
+        BatchLayout layout = new BatchLayout(batchType, sizes);
+        if (resultType.rank() == 0) {
+            for (int row = 0; row < results.length; row++)
+                builder.cellByDirectIndex(row, results[row].asDouble());
+            return builder.build();
+        }
+
+        IndexedTensor[] rows = new IndexedTensor[results.length];
+        for (int row = 0; row < results.length; row++)
+            rows[row] = (IndexedTensor)results[row].asTensor();
+        for (int outer = 0, batchCell = 0; outer < layout.outerSize; outer++) {
+            for (int row = 0; row < results.length; row++) {
+                for (int inner = 0, rowCell = outer * layout.innerSize; inner < layout.innerSize; inner++)
+                    builder.cellByDirectIndex(batchCell++, rows[row].get(rowCell++));
+            }
+        }
+        return builder.build();
+    }
+
+    /** Returns whether all the given results are scalars, or indexed tensors of the given bound type */
+    private static boolean isIndexed(Value[] results, TensorType resultType) {
+        if ( ! isBound(resultType)) return false;
+        if (resultType.rank() == 0) return true;
+        long size = sizeOf(resultType);
+        for (Value result : results) {
+            if ( ! result.type().equals(resultType)) return false;
+            Tensor tensor = result.asTensor();
+            if ( ! (tensor instanceof IndexedTensor) || tensor.size() != size) return false;
+        }
+        return true;
+    }
+
+    /** Returns whether all the dimensions of the given type are indexed and bound */
+    private static boolean isBound(TensorType type) {
+        return type.dimensions().stream().allMatch(d -> d instanceof TensorType.IndexedBoundDimension);
+    }
+
+    /** Returns the number of cells in a tensor of the given bound type */
+    private static long sizeOf(TensorType type) {
+        long size = 1;
+        for (TensorType.Dimension dimension : type.dimensions())
+            size *= dimension.size().get();
+        return size;
+    }
+
+    /**
+     * The position of the rows in the cells of an indexed batch tensor: The cells of the dimensions before
+     * the batch dimension are outermost, then the rows, then the cells of the dimensions after the batch dimension.
+     */
+    private static class BatchLayout {
+
+        final int outerSize;
+        final int rowCount;
+        final int innerSize;
+        final int rowSize;
+
+        BatchLayout(TensorType batchType, DimensionSizes sizes) {
+            int batchIndex = batchType.indexOfDimension(batchDimension).get();
+            long outerSize = 1, innerSize = 1;
+            for (int i = 0; i < sizes.dimensions(); i++) {
+                if (i < batchIndex)
+                    outerSize *= sizes.size(i);
+                else if (i > batchIndex)
+                    innerSize *= sizes.size(i);
+            }
+            this.outerSize = (int)outerSize;
+            this.rowCount = (int)sizes.size(batchIndex);
+            this.innerSize = (int)innerSize;
+            this.rowSize = (int)(outerSize * innerSize);
+        }
+
+    }
+
+}
@@ -103,6 +103,15 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return requireIndexOf(name);
     }
 
+    /** Returns true for the arguments declared to be scalars by the function of this, as they can only be bound to doubles */
+    @Override
+    public boolean isDouble(int index) {
+        String name = indexedBindings.nameOf(index);
+        if ( ! arguments().contains(name)) return false;
+        TensorType type = function.argumentTypes().get(name);
+        return type != null && type.rank() == 0;
+    }
+
     @Override
     public int size() {
         return indexedBindings.names().size();
@@ -121,11 +130,24 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return index;
     }
 
+    /**
+     * Forgets the values computed by the function invocations of this, such that they are computed again
+     * from the currently bound values when next requested.
+     */
+    void clearComputedValues() {
+        indexedBindings.clearComputedValues();
+    }
+
     /**
      * Creates a copy of this context suitable for evaluating against the same ranking expression
      * in a different thread or for re-binding free variables.
      */
     LazyArrayContext copy() {
+        return copy(function);
+    }
+
+    /** Creates a copy of this for the given function, which must have the same body as the function of this */
+    LazyArrayContext copy(ExpressionFunction function) {
         return new LazyArrayContext(function, indexedBindings);
     }
 
@@ -231,6 +253,13 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         Set<String> names() { return nameToIndex.keySet(); }
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
+        String nameOf(int index) { return nameToIndex.keySet().asList().get(index); }
+
+        void clearComputedValues() {
+            for (Value value : values)
+                if (value instanceof LazyValue)
+                    ((LazyValue)value).clear();
+        }
 
         IndexedBindings copy(Context context) {
             Value[] valueCopy = new Value[values.length];
@@ -5,8 +5,11 @@ import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.ExpressionCompiler;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Arrays;
@@ -45,16 +48,35 @@ public class Model {
 
     /** Programmatically create a model containing functions without constant of function references only */
     public Model(String name, Collection<ExpressionFunction> functions) {
+        this(name, functions, false);
+    }
+
+    /**
+     * Programmatically create a model containing functions without constant of function references only
+     *
+     * @param compileExpressions whether to compile the parts of the functions which compute doubles from
+     *                           scalar arguments to bytecode, see {@link ExpressionCompiler}
+     */
+    public Model(String name, Collection<ExpressionFunction> functions, boolean compileExpressions) {
         this(name,
              functions.stream().collect(Collectors.toMap(f -> FunctionReference.fromName(f.getName()), f -> f)),
              Collections.emptyMap(),
-             Collections.emptyList());
+             Collections.emptyList(),
+             compileExpressions);
     }
 
     Model(String name,
           Map<FunctionReference, ExpressionFunction> functions,
           Map<FunctionReference, ExpressionFunction> referencedFunctions,
           List<Constant> constants) {
+        this(name, functions, referencedFunctions, constants, false);
+    }
+
+    Model(String name,
+          Map<FunctionReference, ExpressionFunction> functions,
+          Map<FunctionReference, ExpressionFunction> referencedFunctions,
+          List<Constant> constants,
+          boolean compileExpressions) {
         this.name = name;
 
         // Build context and add missing function arguments (missing because it is legal to omit scalar type arguments)
@@ -62,7 +84,6 @@ public class Model {
         for (Map.Entry<FunctionReference, ExpressionFunction> function : functions.entrySet()) {
             try {
                 LazyArrayContext context = new LazyArrayContext(function.getValue(), referencedFunctions, constants, this);
-                contextBuilder.put(function.getValue().getName(), context);
                 if ( ! function.getValue().returnType().isPresent()) {
                     functions.put(function.getKey(), function.getValue().withReturnType(TensorType.empty));
                 }
@@ -79,12 +100,19 @@ public class Model {
                             functions.put(function.getKey(), function.getValue().withArgument(argument, TensorType.empty));
                     }
                 }
+                // Use the function with all argument types added, which tells the context which arguments are scalars
+                contextBuilder.put(function.getValue().getName(), context.copy(function.getValue()));
             }
             catch (RuntimeException e) {
                 throw new IllegalArgumentException("Could not prepare an evaluation context for " + function, e);
             }
         }
         this.contextPrototypes = contextBuilder.build();
+        if (compileExpressions) {
+            for (Map.Entry<FunctionReference, ExpressionFunction> function : functions.entrySet())
+                functions.put(function.getKey(), compile(function.getValue(),
+                                                         contextPrototypes.get(function.getValue().getName())));
+        }
         this.functions = ImmutableList.copyOf(functions.values());
         this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
                                                                       .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
@@ -107,6 +135,19 @@ public class Model {
         return function;
     }
 
+    /**
+     * Returns a version of the given function where the parts which can be computed from scalar arguments are
+     * compiled to bytecode. Only free functions are compiled, as they are always evaluated in a copy
+     * of the context they are compiled against.
+     */
+    private ExpressionFunction compile(ExpressionFunction function, ContextIndex context) {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        compiler.setEnabled(true);
+        RankingExpression body = new RankingExpression(function.getBody().getName(), function.getBody().getRoot());
+        compiler.optimize(body, context, new OptimizationReport());
+        return function.withBody(body);
+    }
+
     public String name() { return name; }
 
     /**
@@ -171,22 +212,42 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(functionOf(names));
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function over a batch of argument rows
+     * in a single thread. The evaluator reuses the same context for all rows.
+     *
+     * Usage:
+     * <code>Tensor results = model.batchEvaluatorOf("myFunction").bind("foo", values).bind("bar", values).evaluate()</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchFunctionEvaluator batchEvaluatorOf(String ... names) {
+        ExpressionFunction function = functionOf(names);
+        return new BatchFunctionEvaluator(function, requireContextProprotype(function.getName()).copy());
+    }
+
+    /** Returns the function identified by the given names, see evaluatorOf */
+    private ExpressionFunction functionOf(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 0)
                 throwUndeterminedFunction("No function '" + name + "' in " + this);
             else if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             else
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -195,7 +256,7 @@ public class Model {
             String name = names[0] + "." + names[1];
             ExpressionFunction function = function(name);
             if (function == null) throwUndeterminedFunction("No function '" + name + "' in " + this);
-            return evaluatorOf(function);
+            return function;
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
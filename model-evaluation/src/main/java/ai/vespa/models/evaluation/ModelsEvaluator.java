@@ -49,6 +49,18 @@ public class ModelsEvaluator extends AbstractComponent {
         return requireModel(modelName).evaluatorOf(names);
     }
 
+    /**
+     * Returns an evaluator which can be used to evaluate the given function in the given model over a batch of
+     * argument rows
+     *
+     * @param modelName the name of the model
+     * @param names the 0-2 name components identifying the output to compute
+     * @throws IllegalArgumentException if the function or model is not present
+     */
+    public BatchFunctionEvaluator batchEvaluatorOf(String modelName, String ... names) {
+        return requireModel(modelName).batchEvaluatorOf(names);
+    }
+
     /** Returns the given model, or throws a IllegalArgumentException if it does not exist */
     public Model requireModel(String name) {
         Model model = models.get(name);
@@ -1,6 +1,7 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.models.handler;
 
+import ai.vespa.models.evaluation.BatchFunctionEvaluator;
 import ai.vespa.models.evaluation.FunctionEvaluator;
 import ai.vespa.models.evaluation.Model;
 import ai.vespa.models.evaluation.ModelsEvaluator;
@@ -29,6 +30,7 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     public static final String API_ROOT = "model-evaluation";
     public static final String VERSION_V1 = "v1";
     public static final String EVALUATE = "eval";
+    public static final String BATCH_EVALUATE = "batch-eval";
 
     private final ModelsEvaluator modelsEvaluator;
 
@@ -56,6 +58,10 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
             }
             Model model = modelsEvaluator.requireModel(modelName.get());
 
+            Optional<Integer> batchEvalSegment = path.lastIndexOf(BATCH_EVALUATE);
+            if (batchEvalSegment.isPresent()) {
+                return evaluateModelBatch(request, model, path.range(3, batchEvalSegment));
+            }
             Optional<Integer> evalSegment = path.lastIndexOf(EVALUATE);
             String[] function = path.range(3, evalSegment);
             if (evalSegment.isPresent()) {
@@ -80,6 +86,21 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
         return new Response(200, JsonFormat.encode(result));
     }
 
+    /**
+     * Evaluates a function over a batch of argument rows. Each argument is given as a tensor of the argument type
+     * with the batch dimension added, and the result is a tensor of the return type with the batch dimension added.
+     */
+    private HttpResponse evaluateModelBatch(HttpRequest request, Model model, String[] function)  {
+        BatchFunctionEvaluator evaluator = model.batchEvaluatorOf(function);
+        for (Map.Entry<String, TensorType> argument : evaluator.function().argumentTypes().entrySet()) {
+            TensorType batchType = BatchFunctionEvaluator.batchTypeOf(argument.getValue());
+            property(request, argument.getKey()).ifPresent(value -> evaluator.bind(argument.getKey(),
+                                                                                   Tensor.from(batchType, value)));
+        }
+        Tensor result = evaluator.evaluate();
+        return new Response(200, JsonFormat.encode(result));
+    }
+
     private HttpResponse listAllModels(HttpRequest request) {
         Slime slime = new Slime();
         Cursor root = slime.setObject();
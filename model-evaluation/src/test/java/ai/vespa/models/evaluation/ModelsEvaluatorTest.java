@@ -7,6 +7,9 @@ import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
 import com.yahoo.path.Path;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
 import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
@@ -19,6 +22,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -98,6 +104,101 @@ public class ModelsEvaluatorTest {
 
     }
 
+    @Test
+    public void testBatchEvaluationDependingFunctionTakingArguments() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        BatchFunctionEvaluator function = models.batchEvaluatorOf("macros", "secondphase");
+        function.bind("match", 3, 1, 0);
+        function.bind("rankBoost", 5, 1, 2);
+        assertEquals(Tensor.from("tensor(batch[]):{{batch:0}:32.0,{batch:1}:8.0,{batch:2}:8.0}"), function.evaluate());
+
+        // Rebinding and evaluating again
+        function.bind("match", 0, 1, 2);
+        assertEquals(Tensor.from("tensor(batch[]):{{batch:0}:20.0,{batch:1}:8.0,{batch:2}:16.0}"), function.evaluate());
+    }
+
+    @Test
+    public void testBatchEvaluationOfTensors() {
+        List<ExpressionFunction> functions = new ArrayList<>();
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("arg1 * arg2"));
+        function = function.withArgument("arg1", TensorType.fromSpec("tensor(d0[2])"));
+        function = function.withArgument("arg2", TensorType.empty);
+        functions.add(function);
+        Model model = new Model("test-model", functions);
+
+        BatchFunctionEvaluator evaluator = model.batchEvaluatorOf("test");
+        evaluator.bind("arg1", Tensor.from("tensor(batch[],d0[2]):{{batch:0,d0:0}:1,{batch:0,d0:1}:2,{batch:1,d0:0}:3,{batch:1,d0:1}:4}"));
+        evaluator.bind("arg2", 10, 100);
+        assertEquals(Tensor.from("tensor(batch[],d0[2]):{{batch:0,d0:0}:10,{batch:0,d0:1}:20,{batch:1,d0:0}:300,{batch:1,d0:1}:400}"),
+                     evaluator.evaluate());
+
+        try { // Wrong number of rows
+            evaluator.bind("arg2", 10, 100, 1000);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'arg2' has 3 rows, but 'arg1' has 2", Exceptions.toMessageString(e));
+        }
+
+        try { // Missing batch dimension
+            evaluator.bind("arg1", Tensor.from("tensor(d0[2]):{{d0:0}:1,{d0:1}:2}"));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'arg1' must be of type tensor(batch[],d0[2]), not tensor(d0[2])", Exceptions.toMessageString(e));
+        }
+
+        try { // Missing argument
+            model.batchEvaluatorOf("test").bind("arg2", 10, 100).evaluate();
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Missing argument 'arg1': Must be bound to a value of type tensor(batch[],d0[2])",
+                         Exceptions.toMessageString(e));
+        }
+    }
+
+    @Test
+    public void testBatchEvaluationWithTheBatchDimensionBetweenOtherDimensions() {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("arg1 * 2"));
+        function = function.withArgument("arg1", TensorType.fromSpec("tensor(a[2],x[2])"));
+        Model model = new Model("test-model", List.of(function));
+
+        BatchFunctionEvaluator evaluator = model.batchEvaluatorOf("test");
+        evaluator.bind("arg1", Tensor.from("tensor(a[2],batch[],x[2]):{{a:0,batch:0,x:0}:1,{a:0,batch:0,x:1}:2," +
+                                                                    "{a:0,batch:1,x:0}:3,{a:0,batch:1,x:1}:4," +
+                                                                    "{a:1,batch:0,x:0}:5,{a:1,batch:0,x:1}:6," +
+                                                                    "{a:1,batch:1,x:0}:7,{a:1,batch:1,x:1}:8}"));
+        assertEquals(Tensor.from("tensor(a[2],batch[],x[2]):{{a:0,batch:0,x:0}:2,{a:0,batch:0,x:1}:4," +
+                                                            "{a:0,batch:1,x:0}:6,{a:0,batch:1,x:1}:8," +
+                                                            "{a:1,batch:0,x:0}:10,{a:1,batch:0,x:1}:12," +
+                                                            "{a:1,batch:1,x:0}:14,{a:1,batch:1,x:1}:16}"),
+                     evaluator.evaluate());
+    }
+
+    @Test
+    public void testEvaluationOfCompiledFunction() {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("if (a < b, a * 2, b) + sum(t)"));
+        function = function.withArgument("t", TensorType.fromSpec("tensor(d0[2])"));
+        Model model = new Model("test-model", List.of(function), true);
+
+        // The scalar part is compiled, while the tensor part is interpreted
+        ExpressionNode root = model.functions().get(0).getBody().getRoot();
+        assertEquals("if (a < b, a * 2, b) + reduce(t, sum)", root.toString());
+        assertTrue(((CompositeNode)root).children().get(0) instanceof CompiledNode);
+        assertFalse(((CompositeNode)root).children().get(1) instanceof CompiledNode);
+
+        Tensor t = Tensor.from("tensor(d0[2]):{{d0:0}:1,{d0:1}:2}");
+        assertEquals(5.0, model.evaluatorOf("test").bind("a", 1).bind("b", 3).bind("t", t).evaluate().asDouble(), delta);
+        assertEquals(6.0, model.evaluatorOf("test").bind("a", 4).bind("b", 3).bind("t", t).evaluate().asDouble(), delta);
+
+        BatchFunctionEvaluator evaluator = model.batchEvaluatorOf("test");
+        evaluator.bind("a", 1, 4);
+        evaluator.bind("b", 3, 3);
+        evaluator.bind("t", Tensor.from("tensor(batch[],d0[2]):{{batch:0,d0:0}:1,{batch:0,d0:1}:2,{batch:1,d0:0}:3,{batch:1,d0:1}:4}"));
+        assertEquals(Tensor.from("tensor(batch[]):{{batch:0}:5.0,{batch:1}:10.0}"), evaluator.evaluate());
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
@@ -80,6 +80,18 @@ public class ModelsEvaluationHandlerTest {
         assertResponse(url, properties, 200, expected);
     }
 
+    @Test
+    public void testXgBoostBatchEvaluationWithBindings() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("f29", "{{batch:0}:-1.0,{batch:1}:0.0}");
+        properties.put("f56", "{{batch:0}:0.2,{batch:1}:0.0}");
+        properties.put("f60", "{{batch:0}:0.3,{batch:1}:0.0}");
+        properties.put("f109", "{{batch:0}:0.4,{batch:1}:0.0}");
+        String url = "http://localhost/model-evaluation/v1/xgboost_2_2/batch-eval";
+        String expected = "{\"cells\":[{\"address\":{\"batch\":\"0\"},\"value\":-7.936679999999999},{\"address\":{\"batch\":\"1\"},\"value\":-8.17695}]}";
+        assertResponse(url, properties, 200, expected);
+    }
+
     @Test
     public void testMnistSoftmaxDetails() {
         String url = "http://localhost:8080/model-evaluation/v1/mnist_softmax";
@@ -1,5 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 #include <vespa/searchcore/proton/matchengine/matchengine.h>
+#include <vespa/searchcore/proton/matchengine/search_by_slime.h>
+#include <vespa/searchlib/common/transport.h>
+#include <vespa/searchlib/engine/errorcodes.h>
 #include <vespa/vespalib/data/slime/slime.h>
 #include <vespa/searchlib/engine/docsumreply.h>
 #include <vespa/vespalib/testkit/test_kit.h>
@@ -11,6 +14,7 @@ using namespace proton;
 using namespace search::engine;
 using namespace vespalib::slime;
 using vespalib::Slime;
+using vespalib::Memory;
 
 class MySearchHandler : public ISearchHandler {
     size_t _numHits;
@@ -197,4 +201,94 @@ TEST("requireThatStateIsReported")
             slime.toString());
 }
 
+TEST("requireThatSlimeRequestIsConvertedCorrectly")
+{
+    Slime slime;
+    Cursor &root = slime.setObject();
+    root.setLong("offset", 3);
+    root.setLong("hits", 7);
+    root.setLong("timeout", 500);
+    root.setString("ranking", "my-rank-profile");
+    root.setBool("estimate", true);
+    root.setString("document_type", "foo");
+    root.setData("sorting", Memory("+a -b"));
+    root.setString("geo_location", "(2,10,10,0,1,0)");
+    root.setString("session_key", "1.some.key.7");
+    Cursor &rankProperties = root.setObject("rank_properties");
+    Cursor &values = rankProperties.setArray("x");
+    values.addObject().setString("value", "1");
+    values.addObject().setString("value", "2");
+    rankProperties.setArray("t").addObject().setData("tensor", Memory("0x01"));
+    root.setObject("feature_overrides").setObject("f").setString("value", "3.5");
+    root.setObject("highlightterms").setArray("title").addString("bar");
+    root.setData("query_tree", Memory("abc"));
+    root.setLong("query_tree_item_count", 1);
+
+    SearchRequest::UP r = SearchBySlime::slimeToRequest(slime.get());
+    EXPECT_EQUAL(3u, r->offset);
+    EXPECT_EQUAL(7u, r->maxhits);
+    EXPECT_EQUAL(500, r->getTimeout().ms());
+    EXPECT_EQUAL("my-rank-profile", r->ranking);
+    EXPECT_TRUE((r->queryFlags & search::fs4transport::QFLAG_ESTIMATE) != 0);
+    EXPECT_TRUE((r->queryFlags & search::fs4transport::QFLAG_DROP_SORTDATA) == 0);
+    EXPECT_TRUE((r->queryFlags & search::fs4transport::QFLAG_DUMP_FEATURES) == 0);
+    EXPECT_EQUAL("foo", r->propertiesMap.matchProperties().lookup("documentdb.searchdoctype").get());
+    EXPECT_EQUAL("+a -b", r->sortSpec);
+    EXPECT_EQUAL("(2,10,10,0,1,0)", r->location);
+    EXPECT_EQUAL("1.some.key.7", vespalib::string(&r->sessionId[0], r->sessionId.size()));
+    EXPECT_EQUAL(2u, r->propertiesMap.rankProperties().lookup("x").size());
+    EXPECT_EQUAL("2", r->propertiesMap.rankProperties().lookup("x").getAt(1));
+    EXPECT_EQUAL("0x01", r->propertiesMap.rankProperties().lookup("t").get());
+    EXPECT_EQUAL("tensor", r->propertiesMap.rankProperties().lookup("t.type").get());
+    EXPECT_EQUAL("3.5", r->propertiesMap.featureOverrides().lookup("f").get());
+    EXPECT_EQUAL("bar", r->propertiesMap.highlightTerms().lookup("title").get());
+    EXPECT_EQUAL("abc", vespalib::string(&r->stackDump[0], r->stackDump.size()));
+    EXPECT_EQUAL(1u, r->stackItems);
+}
+
+TEST("requireThatSearchReplyIsConvertedToSlimeWithSortData")
+{
+    SearchReply reply;
+    reply.totalHitCount = 9;
+    reply.coverage.setActive(100).setCovered(50).degradeMatchPhase();
+    reply.hits.resize(2);
+    reply.hits[0].gid = document::GlobalId("aaaaaaaaaaaa");
+    reply.hits[0].metric = 2.5;
+    reply.hits[1].gid = document::GlobalId("bbbbbbbbbbbb");
+    reply.hits[1].metric = 1.5;
+    reply.hits[1].path = 3;
+    reply.sortIndex = { 0, 2, 5 };
+    reply.sortData = { 'a', 'b', 'c', 'd', 'e' };
+
+    Slime::UP slime = SearchBySlime::replyToSlime(reply);
+    const Inspector &root = slime->get();
+    EXPECT_FALSE(root["errors"].valid());
+    EXPECT_EQUAL(9, root["total_hit_count"].asLong());
+    EXPECT_EQUAL(50, root["coverage_docs"].asLong());
+    EXPECT_EQUAL(100, root["active_docs"].asLong());
+    EXPECT_TRUE(root["degraded_by_match_phase"].asBool());
+    EXPECT_FALSE(root["degraded_by_soon_timeout"].asBool());
+    EXPECT_EQUAL(2u, root["hits"].entries());
+    EXPECT_EQUAL("aaaaaaaaaaaa", root["hits"][0]["gid"].asData().make_string());
+    EXPECT_EQUAL(2.5, root["hits"][0]["relevance"].asDouble());
+    EXPECT_EQUAL(0, root["hits"][0]["path"].asLong());
+    EXPECT_EQUAL(3, root["hits"][1]["path"].asLong());
+    EXPECT_EQUAL("ab", root["hits"][0]["sort_data"].asData().make_string());
+    EXPECT_EQUAL("cde", root["hits"][1]["sort_data"].asData().make_string());
+}
+
+TEST("requireThatSearchReplyErrorsAreConvertedToSlime")
+{
+    SearchReply reply;
+    reply.errorCode = search::engine::ECODE_TIMEOUT;
+    reply.errorMessage = "too slow";
+
+    Slime::UP slime = SearchBySlime::replyToSlime(reply);
+    const Inspector &root = slime->get();
+    EXPECT_EQUAL(1u, root["errors"].entries());
+    EXPECT_EQUAL("timeout", root["errors"][0]["type"].asString().make_string());
+    EXPECT_EQUAL("too slow", root["errors"][0]["details"].asString().make_string());
+    EXPECT_FALSE(root["hits"][0]["sort_data"].valid());
+}
+
 TEST_MAIN() { TEST_RUN_ALL(); }
@@ -0,0 +1,317 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+#include "search_by_slime.h"
+#include <vespa/vespalib/util/compressor.h>
+#include <vespa/searchlib/util/slime_output_raw_buf_adapter.h>
+#include <vespa/searchlib/common/packets.h>
+#include <vespa/searchlib/common/transport.h>
+#include <vespa/searchlib/common/mapnames.h>
+#include <vespa/searchlib/engine/errorcodes.h>
+#include <vespa/fnet/frt/rpcrequest.h>
+#include <vespa/vespalib/data/databuffer.h>
+
+#include <vespa/log/log.h>
+LOG_SETUP(".proton.matchengine.search_by_slime");
+
+namespace proton {
+
+using search::engine::SearchRequest;
+using search::engine::SearchReply;
+using search::engine::SearchClient;
+using search::MapNames;
+using vespalib::slime::Inspector;
+using vespalib::slime::Cursor;
+using vespalib::slime::ArrayTraverser;
+using vespalib::slime::ObjectTraverser;
+using vespalib::slime::BinaryFormat;
+using vespalib::Memory;
+using vespalib::DataBuffer;
+using vespalib::ConstBufferRef;
+using vespalib::compression::CompressionConfig;
+
+namespace {
+
+Memory OFFSET("offset");
+Memory HITS("hits");
+Memory TIMEOUT("timeout");
+Memory RANKING("ranking");
+Memory DUMP_FEATURES("dump_features");
+Memory ESTIMATE("estimate");
+Memory NO_RESULT_CACHE("no_result_cache");
+Memory DOCUMENT_TYPE("document_type");
+Memory SEARCH_PATH("search_path");
+Memory SORTING("sorting");
+Memory GEO_LOCATION("geo_location");
+Memory GROUPING_BLOB("grouping_blob");
+Memory CACHE_GROUPING("cache_grouping");
+Memory CACHE_QUERY("cache_query");
+Memory SESSION_KEY("session_key");
+Memory RANK_PROPERTIES("rank_properties");
+Memory FEATURE_OVERRIDES("feature_overrides");
+Memory HIGHLIGHT_TERMS("highlightterms");
+Memory QUERY_TREE("query_tree");
+Memory QUERY_TREE_ITEM_COUNT("query_tree_item_count");
+Memory VALUE("value");
+Memory TENSOR("tensor");
+
+Memory ERRORS("errors");
+Memory TYPE("type");
+Memory MESSAGE("message");
+Memory DETAILS("details");
+Memory TOTAL_HIT_COUNT("total_hit_count");
+Memory COVERAGE_DOCS("coverage_docs");
+Memory ACTIVE_DOCS("active_docs");
+Memory SOON_ACTIVE_DOCS("soon_active_docs");
+Memory DEGRADED_BY_MATCH_PHASE("degraded_by_match_phase");
+Memory DEGRADED_BY_SOON_TIMEOUT("degraded_by_soon_timeout");
+Memory GID("gid");
+Memory RELEVANCE("relevance");
+Memory PATH("path");
+Memory SORT_DATA("sort_data");
+
+/**
+ * Adds a property value, which is either a string or a binary tensor.
+ * Tensors are tagged with a type property, as in fs4 query packets.
+ **/
+void
+addValue(search::fef::Properties & properties, const Memory & key, const Inspector & value)
+{
+    if (value[TENSOR].valid()) {
+        Memory tensor = value[TENSOR].asData();
+        properties.add(key.make_stringref(), tensor.make_stringref());
+        properties.add(key.make_string() + ".type", "tensor");
+    } else {
+        Memory string = value[VALUE].asString();
+        properties.add(key.make_stringref(), string.make_stringref());
+    }
+}
+
+class MultiValueTraverser : public ObjectTraverser, public ArrayTraverser
+{
+public:
+    MultiValueTraverser(search::fef::Properties & properties) : _properties(properties), _key() { }
+    void field(const Memory & key, const Inspector & values) override {
+        _key = key;
+        values.traverse(static_cast<ArrayTraverser &>(*this));
+    }
+    void entry(size_t idx, const Inspector & value) override {
+        (void) idx;
+        addValue(_properties, _key, value);
+    }
+private:
+    search::fef::Properties & _properties;
+    Memory                    _key;
+};
+
+class SingleValueTraverser : public ObjectTraverser
+{
+public:
+    SingleValueTraverser(search::fef::Properties & properties) : _properties(properties) { }
+    void field(const Memory & key, const Inspector & value) override {
+        addValue(_properties, key, value);
+    }
+private:
+    search::fef::Properties & _properties;
+};
+
+class StringMultiValueTraverser : public ObjectTraverser, public ArrayTraverser
+{
+public:
+    StringMultiValueTraverser(search::fef::Properties & properties) : _properties(properties), _key() { }
+    void field(const Memory & key, const Inspector & values) override {
+        _key = key;
+        values.traverse(static_cast<ArrayTraverser &>(*this));
+    }
+    void entry(size_t idx, const Inspector & value) override {
+        (void) idx;
+        Memory string = value.asString();
+        _properties.add(_key.make_stringref(), string.make_stringref());
+    }
+private:
+    search::fef::Properties & _properties;
+    Memory                    _key;
+};
+
+void
+assign(std::vector<char> & target, const Memory & data)
+{
+    target.assign(data.data, data.data + data.size);
+}
+
+CompressionConfig
+getCompressionConfig()
+{
+    using search::fs4transport::FS4PersistentPacketStreamer;
+    const FS4PersistentPacketStreamer & streamer = FS4PersistentPacketStreamer::Instance;
+    return CompressionConfig(streamer.getCompressionType(), streamer.getCompressionLevel(), 80, streamer.getCompressionLimit());
+}
+
+}
+
+SearchRequest::UP
+SearchBySlime::slimeToRequest(const Inspector & request)
+{
+    using namespace search::fs4transport;
+    auto searchRequest = std::make_unique<SearchRequest>();
+
+    searchRequest->offset = request[OFFSET].asLong();
+    searchRequest->maxhits = request[HITS].asLong();
+    searchRequest->setTimeout(request[TIMEOUT].asLong() * fastos::TimeStamp::MS);
+    searchRequest->ranking = request[RANKING].asString().make_string();
+
+    searchRequest->queryFlags = QFLAG_EXTENDED_COVERAGE | QFLAG_COVERAGE_NODES;
+    if (request[DUMP_FEATURES].asBool()) {
+        searchRequest->queryFlags |= QFLAG_DUMP_FEATURES;
+    }
+    if (request[ESTIMATE].asBool()) {
+        searchRequest->queryFlags |= QFLAG_ESTIMATE;
+    }
+    if (request[NO_RESULT_CACHE].asBool()) {
+        searchRequest->queryFlags |= QFLAG_NO_RESULTCACHE;
+    }
+
+    search::engine::PropertiesMap & props = searchRequest->propertiesMap;
+    Memory documentType = request[DOCUMENT_TYPE].asString();
+    if (documentType.size > 0) {
+        props.lookupCreate(MapNames::MATCH).add("documentdb.searchdoctype", documentType.make_string());
+    }
+    Memory searchPath = request[SEARCH_PATH].asString();
+    if (searchPath.size > 0) {
+        props.lookupCreate(MapNames::MODEL).add("searchpath", searchPath.make_string());
+    }
+    if (request[CACHE_GROUPING].asBool()) {
+        props.lookupCreate(MapNames::CACHES).add("grouping", "true");
+    }
+    if (request[CACHE_QUERY].asBool()) {
+        props.lookupCreate(MapNames::CACHES).add("query", "true");
+    }
+    Memory sessionKey = request[SESSION_KEY].asString();
+    if (sessionKey.size > 0) {
+        assign(searchRequest->sessionId, sessionKey);
+    }
+
+    if (request[RANK_PROPERTIES].children() > 0) {
+        MultiValueTraverser rankProperties(props.lookupCreate(MapNames::RANK));
+        request[RANK_PROPERTIES].traverse(static_cast<ObjectTraverser &>(rankProperties));
+    }
+    if (request[FEATURE_OVERRIDES].children() > 0) {
+        SingleValueTraverser featureOverrides(props.lookupCreate(MapNames::FEATURE));
+        request[FEATURE_OVERRIDES].traverse(featureOverrides);
+    }
+    if (request[HIGHLIGHT_TERMS].children() > 0) {
+        StringMultiValueTraverser highlightTerms(props.lookupCreate(MapNames::HIGHLIGHTTERMS));
+        request[HIGHLIGHT_TERMS].traverse(static_cast<ObjectTraverser &>(highlightTerms));
+    }
+
+    searchRequest->sortSpec = request[SORTING].asData().make_string();
+    searchRequest->location = request[GEO_LOCATION].asString().make_string();
+    assign(searchRequest->groupSpec, request[GROUPING_BLOB].asData());
+    searchRequest->stackItems = request[QUERY_TREE_ITEM_COUNT].asLong();
+    assign(searchRequest->stackDump, request[QUERY_TREE].asData());
+
+    return searchRequest;
+}
+
+vespalib::Slime::UP
+SearchBySlime::replyToSlime(const SearchReply & reply)
+{
+    auto slime = std::make_unique<vespalib::Slime>();
+    Cursor & root = slime->setObject();
+
+    if (reply.errorCode != search::engine::ECODE_NO_ERROR) {
+        Cursor & error = root.setArray(ERRORS).addObject();
+        error.setString(TYPE, (reply.errorCode == search::engine::ECODE_TIMEOUT) ? "timeout" : "error");
+        error.setString(MESSAGE, search::engine::getStringFromErrorCode(search::engine::ErrorCode(reply.errorCode)));
+        error.setString(DETAILS, reply.errorMessage);
+    }
+
+    root.setLong(TOTAL_HIT_COUNT, reply.totalHitCount);
+    if (reply.groupResult.size() > 0) {
+        root.setData(GROUPING_BLOB, Memory(&reply.groupResult[0], reply.groupResult.size()));
+    }
+
+    root.setLong(COVERAGE_DOCS, reply.coverage.getCovered());
+    root.setLong(ACTIVE_DOCS, reply.coverage.getActive());
+    root.setLong(SOON_ACTIVE_DOCS, reply.coverage.getSoonActive());
+    uint32_t degradeReason = reply.coverage.getDegradeReason();
+    root.setBool(DEGRADED_BY_MATCH_PHASE, (degradeReason & SearchReply::Coverage::MATCH_PHASE) != 0);
+    root.setBool(DEGRADED_BY_SOON_TIMEOUT, (degradeReason & SearchReply::Coverage::TIMEOUT) != 0);
+
+    bool hasSortData = (reply.sortIndex.size() == reply.hits.size() + 1);
+    Cursor & hits = root.setArray(HITS);
+    for (size_t i = 0; i < reply.hits.size(); ++i) {
+        const SearchReply::Hit & hit = reply.hits[i];
+        Cursor & hitObject = hits.addObject();
+        hitObject.setData(GID, Memory(reinterpret_cast<const char *>(hit.gid.get()), document::GlobalId::LENGTH));
+        hitObject.setDouble(RELEVANCE, hit.metric);
+        hitObject.setLong(PATH, hit.path);
+        if (hasSortData) {
+            uint32_t start = reply.sortIndex[i];
+            uint32_t end = reply.sortIndex[i + 1];
+            hitObject.setData(SORT_DATA, Memory(&reply.sortData[0] + start, end - start));
+        }
+    }
+    return slime;
+}
+
+/**
+ * Returns the rpc request with the encoded reply when the search is done,
+ * and then deletes itself.
+ **/
+class SearchByRPC::SearchDone : public SearchClient
+{
+public:
+    SearchDone(FRT_RPCRequest & req) : _req(req) { }
+    void searchDone(SearchReply::UP reply) override;
+private:
+    FRT_RPCRequest & _req;
+};
+
+void
+SearchByRPC::SearchDone::searchDone(SearchReply::UP reply)
+{
+    using vespalib::compression::compress;
+    vespalib::Slime::UP slime = SearchBySlime::replyToSlime(*reply);
+
+    search::RawBuf rbuf(4096);
+    search::SlimeOutputRawBufAdapter output(rbuf);
+    BinaryFormat::encode(*slime, output);
+    ConstBufferRef buf(rbuf.GetDrainPos(), rbuf.GetUsedLen());
+    DataBuffer compressed(rbuf.GetWritableDrainPos(0), rbuf.GetUsedLen());
+    CompressionConfig::Type type = compress(getCompressionConfig(), buf, compressed, true);
+
+    FRT_Values &ret = *_req.GetReturn();
+    ret.AddInt8(type);
+    ret.AddInt32(buf.size());
+    ret.AddData(compressed.getData(), compressed.getDataLen());
+    _req.Return();
+    delete this;
+}
+
+SearchByRPC::SearchByRPC(search::engine::SearchServer & searchServer) :
+    _searchServer(searchServer)
+{
+}
+
+void
+SearchByRPC::search(FRT_RPCRequest & req)
+{
+    using vespalib::compression::decompress;
+    FRT_Values &arg = *req.GetParams();
+    uint8_t encoding = arg[0]._intval8;
+    uint32_t uncompressedSize = arg[1]._intval32;
+    DataBuffer uncompressed(arg[2]._data._buf, arg[2]._data._len);
+    ConstBufferRef blob(arg[2]._data._buf, arg[2]._data._len);
+    decompress(CompressionConfig::toType(encoding), uncompressedSize, blob, uncompressed, true);
+    assert(uncompressedSize == uncompressed.getDataLen());
+    vespalib::Slime request;
+    BinaryFormat::decode(Memory(uncompressed.getData(), uncompressed.getDataLen()), request);
+
+    auto *client = new SearchDone(req);
+    SearchReply::UP reply = _searchServer.search(SearchRequest::Source(SearchBySlime::slimeToRequest(request.get()).release()),
+                                                 *client);
+    if (reply) { // completed synchronously
+        client->searchDone(std::move(reply));
+    }
+}
+
+}
@@ -0,0 +1,39 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+#pragma once
+
+#include <vespa/searchlib/engine/searchapi.h>
+#include <vespa/vespalib/data/slime/slime.h>
+
+class FRT_RPCRequest;
+
+namespace proton {
+
+/**
+ * Conversion between search requests/replies and the slime payloads of
+ * the rpc search protocol (vespa.searchprotocol.search).
+ **/
+class SearchBySlime {
+    using SearchRequest = search::engine::SearchRequest;
+    using SearchReply = search::engine::SearchReply;
+    using Inspector = vespalib::slime::Inspector;
+public:
+    static SearchRequest::UP slimeToRequest(const Inspector & req);
+    static vespalib::Slime::UP replyToSlime(const SearchReply & reply);
+};
+
+/**
+ * Serves vespa.searchprotocol.search by passing the decoded request on to
+ * a search server. The rpc request is returned when the search server
+ * completes the search, which may happen in another thread.
+ **/
+class SearchByRPC
+{
+public:
+    SearchByRPC(search::engine::SearchServer & searchServer);
+    void search(FRT_RPCRequest & req);
+private:
+    class SearchDone;
+    search::engine::SearchServer & _searchServer;
+};
+
+}
@@ -4,6 +4,7 @@
 #include "proton.h"
 #include <vespa/searchcore/proton/summaryengine/docsum_by_slime.h>
 #include <vespa/searchcore/proton/matchengine/matchengine.h>
+#include <vespa/searchcore/proton/matchengine/search_by_slime.h>
 #include <vespa/vespalib/util/closuretask.h>
 #include <vespa/fnet/frt/supervisor.h>
 
@@ -180,6 +181,15 @@ RPCHooksBase::initRPC()
     rb.ReturnDesc("encoding",  "0=raw, 6=lz4");
     rb.ReturnDesc("uncompressedBlobSize", "Uncompressed blob size");
     rb.ReturnDesc("docsums", "Blob with slime encoded summaries.");
+    //-------------------------------------------------------------------------
+    rb.DefineMethod("vespa.searchprotocol.search", "bix", "bix", FRT_METHOD(RPCHooksBase::rpc_search), this);
+    rb.MethodDesc("Search");
+    rb.ParamDesc("encoding", "0=raw, 6=lz4");
+    rb.ParamDesc("uncompressedBlobSize", "Uncompressed blob size");
+    rb.ParamDesc("request", "The search request blob in slime");
+    rb.ReturnDesc("encoding",  "0=raw, 6=lz4");
+    rb.ReturnDesc("uncompressedBlobSize", "Uncompressed blob size");
+    rb.ReturnDesc("reply", "Blob with the slime encoded search reply.");
     
 }
 
@@ -195,6 +205,7 @@ RPCHooksBase::Params::~Params() = default;
 RPCHooksBase::RPCHooksBase(Params &params)
     : _proton(params.proton),
       _docsumByRPC(new DocsumByRPC(_proton.getDocsumBySlime())),
+      _searchByRPC(new SearchByRPC(_proton.getMatchEngine())),
       _orb(std::make_unique<FRT_Supervisor>()),
       _regAPI(*_orb, params.slobrok_config),
       _stateLock(),
@@ -399,6 +410,20 @@ RPCHooksBase::getDocsums(FRT_RPCRequest *req)
     req->Return();
 }
 
+void
+RPCHooksBase::rpc_search(FRT_RPCRequest *req)
+{
+    LOG(debug, "vespa.searchprotocol.search()");
+    req->Detach();
+    _executor.execute(makeTask(makeClosure(this, &RPCHooksBase::search, req)));
+}
+
+void
+RPCHooksBase::search(FRT_RPCRequest *req)
+{
+    _searchByRPC->search(*req); // returns the request when the search is done
+}
+
 const RPCHooksBase::Session::SP &
 RPCHooksBase::getSession(FRT_RPCRequest *req)
 {
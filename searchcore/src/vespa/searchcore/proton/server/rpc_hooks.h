@@ -15,6 +15,7 @@ namespace proton {
 
 class Proton;
 class DocsumByRPC;
+class SearchByRPC;
 
 class RPCHooksBase : public FRT_Invokable
 {
@@ -61,6 +62,7 @@ private:
 
     Proton                         & _proton;
     std::unique_ptr<DocsumByRPC>     _docsumByRPC;
+    std::unique_ptr<SearchByRPC>     _searchByRPC;
     std::unique_ptr<FRT_Supervisor>  _orb;
     slobrok::api::RegisterAPI        _regAPI;
     std::mutex                       _stateLock;
@@ -76,6 +78,7 @@ private:
     void reportState(Session & session, FRT_RPCRequest * req) __attribute__((noinline));
     void getProtonStatus(FRT_RPCRequest * req);
     void getDocsums(FRT_RPCRequest *req);
+    void search(FRT_RPCRequest *req);
 
     static const Session::SP & getSession(FRT_RPCRequest *req);
 public:
@@ -103,6 +106,7 @@ public:
     void rpc_triggerFlush(FRT_RPCRequest *req);
     void rpc_prepareRestart(FRT_RPCRequest *req);
     void rpc_getDocSums(FRT_RPCRequest *req);
+    void rpc_search(FRT_RPCRequest *req);
 
     void initSession(FRT_RPCRequest *req);
     void finiSession(FRT_RPCRequest *req);
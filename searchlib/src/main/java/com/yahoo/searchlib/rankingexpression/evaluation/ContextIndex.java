@@ -24,4 +24,10 @@ public interface ContextIndex {
 
     double getDouble(int index);
 
+    /**
+     * Returns whether the value at the given index is known to always be a double, such that it
+     * can be read by {@link #getDouble}. This returns false unless overridden.
+     */
+    default boolean isDouble(int index) { return false; }
+
 }
@@ -73,6 +73,11 @@ public class DoubleOnlyArrayContext extends AbstractArrayContext {
         return TensorType.empty; // Double only
     }
 
+    @Override
+    public boolean isDouble(int index) {
+        return true; // Double only
+    }
+
     /** Perform a slow lookup by name */
     @Override
     public Value get(String name) {
@@ -0,0 +1,532 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a JVM class computing the value of an expression as a double, reading variables
+ * from the context by index. Decision trees which are already optimized to GBDT nodes are generated
+ * as nested conditionals, one static method per tree.
+ * <p>
+ * Instances of this are used to generate a single class.
+ *
+ * @author agent
+ */
+class BytecodeGenerator {
+
+    private static final AtomicLong classCounter = new AtomicLong();
+
+    private static final String superName = Type.getInternalName(CompiledExpression.class);
+    private static final String contextName = "com/yahoo/searchlib/rankingexpression/evaluation/Context";
+    private static final String contextDescriptor = "L" + contextName + ";";
+    private static final String functionName = "com/yahoo/searchlib/rankingexpression/rule/Function";
+    private static final String truthOperatorName = "com/yahoo/searchlib/rankingexpression/rule/TruthOperator";
+
+    private final ContextIndex contextIndex;
+    private final String className;
+    private final ClassWriter classWriter;
+
+    private int methodCount = 0;
+
+    BytecodeGenerator(ContextIndex contextIndex) {
+        this.contextIndex = contextIndex;
+        this.className = "com/yahoo/searchlib/rankingexpression/evaluation/compilation/GeneratedExpression" +
+                         classCounter.incrementAndGet();
+        this.classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+    }
+
+    /** Returns whether the given node can be compiled to a double computation given the context index of this */
+    boolean canCompile(ExpressionNode node) {
+        if (node instanceof ConstantNode) {
+            Value value = ((ConstantNode)node).getValue();
+            return value instanceof DoubleValue || value instanceof BooleanValue;
+        }
+        if (node instanceof ReferenceNode)
+            return variableIndex((ReferenceNode)node) >= 0;
+        if (node instanceof ArithmeticNode)
+            return ((ArithmeticNode)node).children().stream().allMatch(this::canCompile);
+        if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode)node;
+            return canCompile(ifNode.getCondition()) &&
+                   canCompile(ifNode.getTrueExpression()) &&
+                   canCompile(ifNode.getFalseExpression());
+        }
+        if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode)node;
+            return canCompile(comparison.getLeftCondition()) && canCompile(comparison.getRightCondition());
+        }
+        if (node instanceof SetMembershipNode) {
+            SetMembershipNode membership = (SetMembershipNode)node;
+            return canCompile(membership.getTestValue()) && membership.getSetValues().stream().allMatch(this::canCompile);
+        }
+        if (node instanceof FunctionNode)
+            return ((FunctionNode)node).children().stream().allMatch(this::canCompile);
+        if (node instanceof NegativeNode)
+            return canCompile(((NegativeNode)node).getValue());
+        if (node instanceof NotNode)
+            return canCompile(((NotNode)node).getValue());
+        if (node instanceof EmbracedNode)
+            return canCompile(((EmbracedNode)node).getValue());
+        return node instanceof GBDTNode || node instanceof GBDTForestNode;
+    }
+
+    /**
+     * Generates a class evaluating the given node, which must be compilable, and returns an instance of it
+     *
+     * @throws RuntimeException if the class cannot be generated, e.g because it becomes too large
+     */
+    CompiledExpression generate(ExpressionNode node) {
+        classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, superName, null);
+
+        MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor evaluate = classWriter.visitMethod(ACC_PUBLIC | ACC_FINAL, "evaluate",
+                                                         "(" + contextDescriptor + ")D", null, null);
+        evaluate.visitCode();
+        new MethodGenerator(evaluate, 1).value(node);
+        evaluate.visitInsn(DRETURN);
+        evaluate.visitMaxs(0, 0);
+        evaluate.visitEnd();
+
+        classWriter.visitEnd();
+        return instantiate(classWriter.toByteArray());
+    }
+
+    /** Generates a static method evaluating a single optimized tree, and returns its name */
+    private String generateTreeMethod(double[] values, int startOffset) {
+        String name = "tree" + (methodCount++);
+        MethodVisitor method = classWriter.visitMethod(ACC_PRIVATE | ACC_STATIC, name,
+                                                       "(" + contextDescriptor + ")D", null, null);
+        method.visitCode();
+        new MethodGenerator(method, 0).tree(values, startOffset);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        return name;
+    }
+
+    /**
+     * Returns the index of the value of the given reference in the context, or -1 if it is not available by index
+     * or is not known to always be a double
+     */
+    private int variableIndex(ReferenceNode reference) {
+        if ( ! reference.getArguments().isEmpty()) return -1;
+        try {
+            int index = contextIndex.getIndex(reference.toString());
+            return contextIndex.isDouble(index) ? index : -1;
+        }
+        catch (RuntimeException e) { // not bound in this context
+            return -1;
+        }
+    }
+
+    private CompiledExpression instantiate(byte[] bytecode) {
+        try {
+            Class<?> generatedClass = new GeneratedClassLoader().define(className.replace('/', '.'), bytecode);
+            return (CompiledExpression)generatedClass.getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not instantiate generated expression class", e);
+        }
+    }
+
+    /** Emits the code of one method, whose context argument is at the given local variable slot */
+    private class MethodGenerator {
+
+        private final MethodVisitor method;
+        private final int contextSlot;
+
+        /** The next free local variable slot */
+        private int nextLocal;
+
+        MethodGenerator(MethodVisitor method, int contextSlot) {
+            this.method = method;
+            this.contextSlot = contextSlot;
+            this.nextLocal = contextSlot + 1;
+        }
+
+        /** Emits code which leaves the value of the given node as a double on the stack */
+        void value(ExpressionNode node) {
+            if (node instanceof ConstantNode) {
+                method.visitLdcInsn(((ConstantNode)node).getValue().asDouble());
+            }
+            else if (node instanceof ReferenceNode) {
+                variable(variableIndex((ReferenceNode)node));
+            }
+            else if (node instanceof ArithmeticNode) {
+                arithmetic((ArithmeticNode)node);
+            }
+            else if (node instanceof IfNode) {
+                IfNode ifNode = (IfNode)node;
+                Label falseLabel = new Label();
+                Label endLabel = new Label();
+                condition(ifNode.getCondition(), falseLabel);
+                value(ifNode.getTrueExpression());
+                method.visitJumpInsn(GOTO, endLabel);
+                method.visitLabel(falseLabel);
+                value(ifNode.getFalseExpression());
+                method.visitLabel(endLabel);
+            }
+            else if (node instanceof FunctionNode) {
+                FunctionNode function = (FunctionNode)node;
+                method.visitFieldInsn(GETSTATIC, functionName, function.getFunction().name(), "L" + functionName + ";");
+                for (int i = 0; i < 2; i++) {
+                    if (i < function.children().size())
+                        value(function.children().get(i));
+                    else
+                        method.visitInsn(DCONST_0);
+                }
+                method.visitMethodInsn(INVOKEVIRTUAL, functionName, "evaluate", "(DD)D", false);
+            }
+            else if (node instanceof NegativeNode) {
+                value(((NegativeNode)node).getValue());
+                method.visitInsn(DNEG);
+            }
+            else if (node instanceof EmbracedNode) {
+                value(((EmbracedNode)node).getValue());
+            }
+            else if (node instanceof GBDTNode) {
+                treeCall(generateTreeMethod(((GBDTNode)node).values(), 0));
+            }
+            else if (node instanceof GBDTForestNode) {
+                forest(((GBDTForestNode)node).values());
+            }
+            else { // a boolean node
+                booleanValue(node);
+            }
+        }
+
+        private void booleanValue(ExpressionNode node) {
+            Label falseLabel = new Label();
+            Label endLabel = new Label();
+            condition(node, falseLabel);
+            method.visitInsn(DCONST_1);
+            method.visitJumpInsn(GOTO, endLabel);
+            method.visitLabel(falseLabel);
+            method.visitInsn(DCONST_0);
+            method.visitLabel(endLabel);
+        }
+
+        /** Emits code which jumps to the given label if the given node is false, and continues if it is true */
+        private void condition(ExpressionNode node, Label falseLabel) {
+            if (node instanceof ComparisonNode) {
+                ComparisonNode comparison = (ComparisonNode)node;
+                comparison(comparison.getLeftCondition(), comparison.getOperator(), comparison.getRightCondition(),
+                           falseLabel);
+            }
+            else if (node instanceof NotNode) {
+                value(((NotNode)node).getValue());
+                method.visitInsn(DCONST_0);
+                method.visitInsn(DCMPL);
+                method.visitJumpInsn(IFNE, falseLabel); // NaN is true, so not NaN is false
+            }
+            else if (node instanceof SetMembershipNode) {
+                SetMembershipNode membership = (SetMembershipNode)node;
+                int testValue = newLocal();
+                value(membership.getTestValue());
+                method.visitVarInsn(DSTORE, testValue);
+                Label trueLabel = new Label();
+                for (ExpressionNode setValue : membership.getSetValues()) {
+                    method.visitVarInsn(DLOAD, testValue);
+                    value(setValue);
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(IFEQ, trueLabel);
+                }
+                method.visitJumpInsn(GOTO, falseLabel);
+                method.visitLabel(trueLabel);
+            }
+            else if (node instanceof EmbracedNode) {
+                condition(((EmbracedNode)node).getValue(), falseLabel);
+            }
+            else if (node instanceof ArithmeticNode && ((ArithmeticNode)node).children().size() == 2 &&
+                     isLogical(((ArithmeticNode)node).operators().get(0))) {
+                ArithmeticNode logical = (ArithmeticNode)node;
+                logical(logical.children().get(0), logical.operators().get(0), logical.children().get(1), falseLabel);
+            }
+            else { // any value is true unless it is 0
+                value(node);
+                method.visitInsn(DCONST_0);
+                method.visitInsn(DCMPL);
+                method.visitJumpInsn(IFEQ, falseLabel);
+            }
+        }
+
+        private void comparison(ExpressionNode left, TruthOperator operator, ExpressionNode right, Label falseLabel) {
+            if (operator == TruthOperator.APPROX_EQUAL) {
+                method.visitFieldInsn(GETSTATIC, truthOperatorName, operator.name(), "L" + truthOperatorName + ";");
+                value(left);
+                value(right);
+                method.visitMethodInsn(INVOKEVIRTUAL, truthOperatorName, "evaluate", "(DD)Z", false);
+                method.visitJumpInsn(IFEQ, falseLabel);
+                return;
+            }
+
+            value(left);
+            value(right);
+            // Comparisons involving NaN are false except !=, so choose the compare instruction
+            // which makes NaN take the false branch
+            switch (operator) {
+                case SMALLER:      method.visitInsn(DCMPG); method.visitJumpInsn(IFGE, falseLabel); break;
+                case SMALLEREQUAL: method.visitInsn(DCMPG); method.visitJumpInsn(IFGT, falseLabel); break;
+                case LARGER:       method.visitInsn(DCMPL); method.visitJumpInsn(IFLE, falseLabel); break;
+                case LARGEREQUAL:  method.visitInsn(DCMPL); method.visitJumpInsn(IFLT, falseLabel); break;
+                case EQUAL:        method.visitInsn(DCMPL); method.visitJumpInsn(IFNE, falseLabel); break;
+                case NOTEQUAL:     method.visitInsn(DCMPL); method.visitJumpInsn(IFEQ, falseLabel); break;
+                default: throw new IllegalArgumentException("Unknown operator " + operator);
+            }
+        }
+
+        private void logical(ExpressionNode left, ArithmeticOperator operator, ExpressionNode right, Label falseLabel) {
+            if (operator == ArithmeticOperator.AND) {
+                condition(left, falseLabel);
+                condition(right, falseLabel);
+            }
+            else { // OR
+                Label rightLabel = new Label();
+                Label trueLabel = new Label();
+                condition(left, rightLabel);
+                method.visitJumpInsn(GOTO, trueLabel);
+                method.visitLabel(rightLabel);
+                condition(right, falseLabel);
+                method.visitLabel(trueLabel);
+            }
+        }
+
+        /** Emits the operations of an arithmetic node in the same order of precedence as ArithmeticNode.evaluate */
+        private void arithmetic(ArithmeticNode node) {
+            Iterator<ExpressionNode> child = node.children().iterator();
+            Deque<Operation> stack = new ArrayDeque<>();
+            stack.push(new Operation(ArithmeticOperator.OR, child.next()));
+            for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext(); ) {
+                ArithmeticOperator op = it.next();
+                while (stack.peek().op.hasPrecedenceOver(op))
+                    popStack(stack);
+                stack.push(new Operation(op, child.next()));
+            }
+            while (stack.size() > 1)
+                popStack(stack);
+            operation(stack.getFirst());
+        }
+
+        private void popStack(Deque<Operation> stack) {
+            Operation rhs = stack.pop();
+            Operation lhs = stack.pop();
+            stack.push(new Operation(lhs.op, lhs, rhs.op, rhs));
+        }
+
+        private void operation(Operation operation) {
+            if (operation.node != null) {
+                value(operation.node);
+            }
+            else if (isLogical(operation.combinator)) {
+                Label falseLabel = new Label();
+                Label endLabel = new Label();
+                Operation left = operation.left, right = operation.right;
+                if (operation.combinator == ArithmeticOperator.AND) {
+                    operationCondition(left, falseLabel);
+                    operationCondition(right, falseLabel);
+                }
+                else {
+                    Label rightLabel = new Label();
+                    Label trueLabel = new Label();
+                    operationCondition(left, rightLabel);
+                    method.visitJumpInsn(GOTO, trueLabel);
+                    method.visitLabel(rightLabel);
+                    operationCondition(right, falseLabel);
+                    method.visitLabel(trueLabel);
+                }
+                method.visitInsn(DCONST_1);
+                method.visitJumpInsn(GOTO, endLabel);
+                method.visitLabel(falseLabel);
+                method.visitInsn(DCONST_0);
+                method.visitLabel(endLabel);
+            }
+            else {
+                operation(operation.left);
+                operation(operation.right);
+                switch (operation.combinator) {
+                    case PLUS: method.visitInsn(DADD); break;
+                    case MINUS: method.visitInsn(DSUB); break;
+                    case MULTIPLY: method.visitInsn(DMUL); break;
+                    case DIVIDE: method.visitInsn(DDIV); break;
+                    case MODULO: method.visitInsn(DREM); break;
+                    case POWER: method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false); break;
+                    default: throw new IllegalArgumentException("Unknown operator " + operation.combinator);
+                }
+            }
+        }
+
+        private void operationCondition(Operation operation, Label falseLabel) {
+            if (operation.node != null) {
+                condition(operation.node, falseLabel);
+            }
+            else {
+                operation(operation);
+                method.visitInsn(DCONST_0);
+                method.visitInsn(DCMPL);
+                method.visitJumpInsn(IFEQ, falseLabel);
+            }
+        }
+
+        private boolean isLogical(ArithmeticOperator operator) {
+            return operator == ArithmeticOperator.AND || operator == ArithmeticOperator.OR;
+        }
+
+        /** Emits the sum of the trees of an optimized forest, see GBDTForestNode.evaluate */
+        private void forest(double[] values) {
+            method.visitInsn(DCONST_0);
+            int pc = 0;
+            while (pc < values.length) {
+                int nextTree = (int)values[pc++];
+                treeCall(generateTreeMethod(values, pc));
+                method.visitInsn(DADD);
+                pc += nextTree;
+            }
+        }
+
+        private void treeCall(String treeMethod) {
+            method.visitVarInsn(ALOAD, contextSlot);
+            method.visitMethodInsn(INVOKESTATIC, className, treeMethod, "(" + contextDescriptor + ")D", false);
+        }
+
+        /** Emits a method body returning the value of the optimized tree at the given offset, see GBDTNode.evaluate */
+        void tree(double[] values, int startOffset) {
+            treeNode(values, startOffset);
+        }
+
+        /** Emits code returning the value of the tree node at the given offset and returns the offset after it */
+        private int treeNode(double[] values, int pc) {
+            double nextValue = values[pc++];
+            if (nextValue < GBDTNode.MAX_LEAF_VALUE) { // a leaf
+                method.visitLdcInsn(nextValue);
+                method.visitInsn(DRETURN);
+                return pc;
+            }
+
+            Label falseLabel = new Label();
+            int offset = (int)nextValue - GBDTNode.MAX_LEAF_VALUE;
+            if (offset < GBDTNode.MAX_VARIABLES) {
+                variable(offset);
+                method.visitLdcInsn(values[pc++]);
+                method.visitInsn(DCMPG);
+                method.visitJumpInsn(IFGE, falseLabel);
+            }
+            else if (offset < GBDTNode.MAX_VARIABLES * 2) {
+                variable(offset - GBDTNode.MAX_VARIABLES);
+                method.visitLdcInsn(values[pc++]);
+                method.visitInsn(DCMPL);
+                method.visitJumpInsn(IFNE, falseLabel);
+            }
+            else {
+                int testValue = newLocal();
+                variable(offset - GBDTNode.MAX_VARIABLES * 2);
+                method.visitVarInsn(DSTORE, testValue);
+                int setSize = (int)values[pc++];
+                Label trueLabel = new Label();
+                for (int i = 0; i < setSize; i++) {
+                    method.visitVarInsn(DLOAD, testValue);
+                    method.visitLdcInsn(values[pc++]);
+                    method.visitInsn(DCMPL);
+                    method.visitJumpInsn(IFEQ, trueLabel);
+                }
+                method.visitJumpInsn(GOTO, falseLabel);
+                method.visitLabel(trueLabel);
+            }
+
+            int falseOffset = pc + (int)values[pc];
+            treeNode(values, pc + 1); // true branch
+            method.visitLabel(falseLabel);
+            return treeNode(values, falseOffset);
+        }
+
+        private void variable(int index) {
+            method.visitVarInsn(ALOAD, contextSlot);
+            method.visitLdcInsn(index);
+            method.visitMethodInsn(INVOKEVIRTUAL, contextName, "getDouble", "(I)D", false);
+        }
+
+        /** Returns a new local variable slot for a double */
+        private int newLocal() {
+            int slot = nextLocal;
+            nextLocal += 2;
+            return slot;
+        }
+
+    }
+
+    /** An arithmetic operation combining a left and right operation, or a leaf holding a node */
+    private static class Operation {
+
+        /** The operator combining this with the operation to the left of it */
+        final ArithmeticOperator op;
+
+        final ExpressionNode node;
+        final Operation left, right;
+        final ArithmeticOperator combinator;
+
+        Operation(ArithmeticOperator op, ExpressionNode node) {
+            this.op = op;
+            this.node = node;
+            this.left = null;
+            this.right = null;
+            this.combinator = null;
+        }
+
+        Operation(ArithmeticOperator op, Operation left, ArithmeticOperator combinator, Operation right) {
+            this.op = op;
+            this.node = null;
+            this.left = left;
+            this.right = right;
+            this.combinator = combinator;
+        }
+
+    }
+
+    /** A class loader for a single generated class, such that the class can be unloaded when no longer used */
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+
+/**
+ * Superclass of the classes generated from expressions by the expression compiler.
+ * This must be public as generated classes are defined in their own class loader.
+ *
+ * @author agent
+ */
+public abstract class CompiledExpression {
+
+    /**
+     * Evaluates this expression, reading variables from the given context by index
+     *
+     * @throws UnsupportedOperationException if the context does not support lookup of doubles by index
+     */
+    public abstract double evaluate(Context context);
+
+}
@@ -0,0 +1,64 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.util.Deque;
+
+/**
+ * An expression node evaluated by classes generated from an expression node by the expression compiler.
+ * The value is the sum of the values of the compiled parts. This falls back to evaluating the original node
+ * if the context does not support variable lookup by index.
+ *
+ * @author agent
+ */
+public final class CompiledNode extends ExpressionNode {
+
+    /** The node this was compiled from */
+    private final ExpressionNode original;
+
+    /** The compiled parts of this, or null if this has been deserialized */
+    private final transient CompiledExpression[] parts;
+
+    CompiledNode(ExpressionNode original, CompiledExpression ... parts) {
+        this.original = original;
+        this.parts = parts;
+    }
+
+    /** Returns the node this was compiled from */
+    public ExpressionNode original() { return original; }
+
+    @Override
+    public TensorType type(TypeContext<Reference> context) { return original.type(context); }
+
+    @Override
+    public Value evaluate(Context context) {
+        if (parts == null) return original.evaluate(context);
+        try {
+            if (parts.length == 1) return new DoubleValue(parts[0].evaluate(context));
+
+            double sum = 0;
+            for (CompiledExpression part : parts)
+                sum += part.evaluate(context);
+            return new DoubleValue(sum);
+        }
+        catch (UnsupportedOperationException e) { // not an indexed context
+            return original.evaluate(context);
+        }
+    }
+
+    /** Returns the original expression, as compilation does not change the meaning of it */
+    @Override
+    public StringBuilder toString(StringBuilder string, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return original.toString(string, context, path, parent);
+    }
+
+}
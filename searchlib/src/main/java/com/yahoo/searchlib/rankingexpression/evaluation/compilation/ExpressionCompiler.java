@@ -0,0 +1,122 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles the parts of an expression which computes a double from double variables to JVM bytecode,
+ * which the JIT compiler can then turn into native code without the overhead of interpreting the
+ * expression tree. This should run after the other optimizers, such that GBDT trees and forests are compiled
+ * from their optimized representation.
+ * <p>
+ * Only variables which the context index knows are always doubles (see {@link ContextIndex#isDouble}) are
+ * compiled, such as all the variables of a {@link com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext}.
+ * Compiled nodes look up variables by index and must be evaluated in a context which supports that, such
+ * as the one passed to the optimizer. Evaluation in other contexts falls back to interpreting the original
+ * expression.
+ * <p>
+ * This optimizer is disabled by default.
+ *
+ * @author agent
+ */
+public class ExpressionCompiler extends Optimizer {
+
+    /**
+     * The max number of values of an optimized forest to compile into one class.
+     * Larger forests are split over multiple classes to stay within the class file limits.
+     */
+    private static final int maxForestValuesPerClass = 20000;
+
+    private OptimizationReport report;
+
+    public ExpressionCompiler() {
+        setEnabled(false);
+    }
+
+    /**
+     * Replaces the largest subtrees of the given expression which can be compiled by compiled nodes
+     *
+     * @param expression the expression to destructively optimize
+     * @param context    a fast lookup context created from the given expression
+     * @param report     the optimization report to which actions of this is logged
+     */
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+
+        this.report = report;
+        expression.setRoot(findAndCompile(expression.getRoot(), context));
+        report.note("Expression compilation done");
+    }
+
+    /**
+     * Recursively descend and compile the largest compilable subtrees.
+     *
+     * @return the resulting node, which may be the input node if nothing could be compiled
+     */
+    private ExpressionNode findAndCompile(ExpressionNode node, ContextIndex context) {
+        ExpressionNode compiled = compile(node, context);
+        if (compiled != null) return compiled;
+        if ( ! (node instanceof CompositeNode)) return node;
+
+        CompositeNode composite = (CompositeNode)node;
+        List<ExpressionNode> newChildren = new ArrayList<>();
+        for (ExpressionNode child : composite.children())
+            newChildren.add(findAndCompile(child, context));
+        return composite.setChildren(newChildren);
+    }
+
+    /** Returns a compiled node for the given node, or null if it cannot be compiled */
+    private ExpressionNode compile(ExpressionNode node, ContextIndex context) {
+        if ( ! (node instanceof CompositeNode || node instanceof GBDTForestNode)) return null; // nothing to gain
+        if (node instanceof ReferenceNode) return null; // nothing to gain
+        if ( ! new BytecodeGenerator(context).canCompile(node)) return null;
+
+        try {
+            List<CompiledExpression> parts = new ArrayList<>();
+            if (node instanceof GBDTForestNode) {
+                for (GBDTForestNode forestPart : split((GBDTForestNode)node))
+                    parts.add(new BytecodeGenerator(context).generate(forestPart));
+            }
+            else {
+                parts.add(new BytecodeGenerator(context).generate(node));
+            }
+            report.incMetric("Compiled expressions", 1);
+            return new CompiledNode(node, parts.toArray(new CompiledExpression[0]));
+        }
+        catch (RuntimeException e) { // typically because the generated code exceeds class file limits
+            report.note("Could not compile " + node + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Splits a forest into forests of whole trees which are small enough to be compiled into one class each */
+    private List<GBDTForestNode> split(GBDTForestNode forest) {
+        double[] values = forest.values();
+        List<GBDTForestNode> forests = new ArrayList<>();
+        int start = 0;
+        int pc = 0;
+        while (pc < values.length) {
+            int treeEnd = pc + 1 + (int)values[pc];
+            if (treeEnd - start > maxForestValuesPerClass && pc > start) {
+                forests.add(new GBDTForestNode(Arrays.copyOfRange(values, start, pc)));
+                start = pc;
+            }
+            pc = treeEnd;
+        }
+        forests.add(new GBDTForestNode(start == 0 ? values : Arrays.copyOfRange(values, start, values.length)));
+        return forests;
+    }
+
+}
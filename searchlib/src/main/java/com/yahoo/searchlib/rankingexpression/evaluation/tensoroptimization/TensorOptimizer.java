@@ -5,12 +5,15 @@ import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
 import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
 import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
 import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
 import com.yahoo.searchlib.rankingexpression.rule.TensorFunctionNode;
 import com.yahoo.tensor.functions.Join;
 import com.yahoo.tensor.functions.Reduce;
 import com.yahoo.tensor.functions.ReduceJoin;
+import com.yahoo.tensor.functions.ScalarFunctions;
 import com.yahoo.tensor.functions.TensorFunction;
 
 import java.util.ArrayList;
@@ -54,6 +57,10 @@ public class TensorOptimizer extends Optimizer {
      * two operations together is significantly more efficient than evaluating
      * each on its own, avoiding the cost of a temporary tensor.
      *
+     * This recognizes both explicit joins and products written as arithmetic,
+     * as in reduce(a * b, sum), which covers dot products, matrix products and
+     * sums of squares.
+     *
      * Note that this does not guarantee that the optimization is performed.
      * The ReduceJoin class determines whether or not the arguments are
      * compatible with the optimization.
@@ -72,7 +79,7 @@ public class TensorOptimizer extends Optimizer {
         }
         ExpressionNode child = children.get(0);
         if ( ! (child instanceof TensorFunctionNode)) {
-            return node;
+            return optimizeReduceProduct((Reduce)function, child, node);
         }
         TensorFunction argument = ((TensorFunctionNode) child).function();
         if (argument instanceof Join) {
@@ -82,4 +89,19 @@ public class TensorOptimizer extends Optimizer {
         return node;
     }
 
+    private ExpressionNode optimizeReduceProduct(Reduce reduce, ExpressionNode argument, ExpressionNode node) {
+        if ( ! (argument instanceof ArithmeticNode)) {
+            return node;
+        }
+        ArithmeticNode product = (ArithmeticNode)argument;
+        if (product.operators().size() != 1 || product.operators().get(0) != ArithmeticOperator.MULTIPLY) {
+            return node;
+        }
+        report.incMetric("Replaced reduce->join", 1);
+        Join join = new Join(TensorFunctionNode.wrapArgument(product.children().get(0)),
+                             TensorFunctionNode.wrapArgument(product.children().get(1)),
+                             ScalarFunctions.multiply());
+        return new TensorFunctionNode(new ReduceJoin(reduce, join));
+    }
+
 }
@@ -8,6 +8,7 @@ import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.TypeContext;
+import com.yahoo.tensor.functions.ScalarFunctions;
 
 import java.util.Collections;
 import java.util.Deque;
@@ -101,6 +102,9 @@ public class LambdaFunctionNode extends CompositeNode {
             return Optional.empty();
         }
         ArithmeticNode node = (ArithmeticNode) functionExpression;
+        if (isSquaredDifference(node)) {
+            return Optional.of(new SquaredDifferenceLambda());
+        }
         if ( ! (node.children().get(0) instanceof ReferenceNode) || ! (node.children().get(1) instanceof ReferenceNode)) {
             return Optional.empty();
         }
@@ -113,7 +117,7 @@ public class LambdaFunctionNode extends CompositeNode {
             case AND: return asFunctionExpression((left, right) -> ((left != 0.0) && (right != 0.0)) ? 1.0 : 0.0);
             case PLUS: return asFunctionExpression((left, right) -> left + right);
             case MINUS: return asFunctionExpression((left, right) -> left - right);
-            case MULTIPLY: return asFunctionExpression((left, right) -> left * right);
+            case MULTIPLY: return Optional.of(new MultiplyLambda());
             case DIVIDE: return asFunctionExpression((left, right) -> left / right);
             case MODULO: return asFunctionExpression((left, right) -> left % right);
             case POWER: return asFunctionExpression(Math::pow);
@@ -121,6 +125,20 @@ public class LambdaFunctionNode extends CompositeNode {
         return Optional.empty();
     }
 
+    /** Returns whether the given node is on the form (a - b) * (a - b) */
+    private boolean isSquaredDifference(ArithmeticNode node) {
+        if (node.operators().size() != 1 || node.operators().get(0) != ArithmeticOperator.MULTIPLY) return false;
+        ExpressionNode factor = node.children().get(0);
+        if ( ! (factor instanceof EmbracedNode) || ! factor.toString().equals(node.children().get(1).toString())) return false;
+        ExpressionNode difference = ((EmbracedNode)factor).getValue();
+        if ( ! (difference instanceof ArithmeticNode)) return false;
+        ArithmeticNode differenceNode = (ArithmeticNode)difference;
+        return differenceNode.operators().size() == 1 &&
+               differenceNode.operators().get(0) == ArithmeticOperator.MINUS &&
+               differenceNode.children().get(0) instanceof ReferenceNode &&
+               differenceNode.children().get(1) instanceof ReferenceNode;
+    }
+
     private Optional<DoubleBinaryOperator> asFunctionExpression(DoubleBinaryOperator operator) {
         return Optional.of(new DoubleBinaryOperator() {
             @Override
@@ -134,6 +152,26 @@ public class LambdaFunctionNode extends CompositeNode {
         });
     }
 
+    /** A multiplication lambda, which is recognized by tensor functions having fused implementations of it */
+    private class MultiplyLambda extends ScalarFunctions.Multiply {
+
+        @Override
+        public String toString() {
+            return LambdaFunctionNode.this.toString();
+        }
+
+    }
+
+    /** A squared difference lambda, which is recognized by tensor functions having fused implementations of it */
+    private class SquaredDifferenceLambda extends ScalarFunctions.SquaredDifference {
+
+        @Override
+        public String toString() {
+            return LambdaFunctionNode.this.toString();
+        }
+
+    }
+
     private class DoubleUnaryLambda implements DoubleUnaryOperator {
 
         @Override
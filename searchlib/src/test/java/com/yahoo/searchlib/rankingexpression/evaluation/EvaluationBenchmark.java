@@ -3,6 +3,7 @@ package com.yahoo.searchlib.rankingexpression.evaluation;
 
 import com.yahoo.io.IOUtils;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.ExpressionCompiler;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
 import com.yahoo.searchlib.rankingexpression.parser.ParseException;
 
@@ -152,6 +153,19 @@ public class EvaluationBenchmark {
         double forestTotal=benchmark(forestOptimized,forestContext,iterations,"Forest optimized");
         assertEqualish(total,forestTotal);
         System.out.println("-----------------------------------------------------------------------------------------------------");
+
+        // Compiled...................
+        RankingExpression compiled = new RankingExpression(gbdtString);
+        DoubleOnlyArrayContext compiledContext = new DoubleOnlyArrayContext(compiled, true);
+        ExpressionOptimizer compilingOptimizer = new ExpressionOptimizer();
+        compilingOptimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        System.out.print("Compiling ... ");
+        OptimizationReport compilationReport = compilingOptimizer.optimize(compiled, compiledContext);
+        System.out.println("done");
+        System.out.println(compilationReport);
+        double compiledTotal = benchmark(compiled, compiledContext, iterations, "Compiled");
+        assertEqualish(total, compiledTotal);
+        System.out.println("-----------------------------------------------------------------------------------------------------");
     }
 
     private double benchmark(RankingExpression gbdt, Context context, int iterations, String description) {
@@ -0,0 +1,179 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapTypeContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.searchlib.rankingexpression.rule.Arguments;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ExpressionCompilerTestCase {
+
+    private static final double[][] argumentValues = {
+            { 0, 0, 0 }, { 1, 2, 3 }, { -1.5, 0.5, 2 }, { 3, 3, -3 }, { 0.1, 100, 7 }, { Double.NaN, 1, 0 }
+    };
+
+    @Test
+    public void testArithmetic() throws ParseException {
+        assertCompiled("a + b * c");
+        assertCompiled("a * b + c - a / 2");
+        assertCompiled("a - b - c");
+        assertCompiled("a / b / 2");
+        assertCompiled("2 ^ a + b % 3");
+        assertCompiled("-(a + b) * (c - 1)");
+        assertCompiled("a + b * c ^ 2 - a * b / c");
+    }
+
+    @Test
+    public void testBooleans() throws ParseException {
+        assertCompiled("a && b");
+        assertCompiled("a || b && c");
+        assertCompiled("a + b && c - 3 || 0");
+        assertCompiled("!(a) + !(a < b)");
+        assertCompiled("(a < b) + (a <= b) + (a == b) + (a != b) + (a > b) + (a >= b) + (a ~= b)");
+        assertCompiled("if (a < b && b < c, 1, 2)");
+        assertCompiled("if (a > b || c, a, b)");
+        assertCompiled("if (a, b, c)");
+        assertCompiled("if (a in [0, 1, 3], b, c) + if (!(b in [2]), 5, 6)");
+    }
+
+    @Test
+    public void testFunctions() throws ParseException {
+        assertCompiled("max(a, b) + min(b, c) + pow(a, 2) + fmod(c, 2)");
+        assertCompiled("sigmoid(a) + exp(b) + abs(c) + sqrt(b) + isNan(a)");
+        assertCompiled("atan2(a, b) * cos(c) + relu(a - b)");
+    }
+
+    @Test
+    public void testGBDTForest() throws ParseException {
+        String gbdt =
+                "if (a < 1.72971, 0.0697159, if (b < 0.10496, if (c < 0.0329127, 0.151257, 0.117501), if (a < 18.5, 0.0897622, 0.0756903))) + \n" +
+                "if (a < 1.73156, if (b == 2, -0.00481646, 0.00110018), if (c < 0.0844616, 0.0488919, if (b < 32.5, 0.0136917, 9.85328E-4))) + \n" +
+                "if (b in [0, 1, 2], -0.00298257, if (c < 0.116207, if (a < 0.0329127, 0.0676105, 0.0340198), 0.0112406))";
+        OptimizationReport report = assertCompiled(gbdt);
+        assertEquals(1, report.getMetric("Number of forests"));
+        assertEquals(1, report.getMetric("Compiled expressions"));
+    }
+
+    @Test
+    public void testPartialCompilation() throws ParseException {
+        // The tensor function cannot be compiled, but the embraced subexpressions around it can
+        RankingExpression expression = new RankingExpression("(a * b) + reduce(tensor(x[2])(x + 1), sum) + (c * 2)");
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression, true);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        OptimizationReport report = optimizer.optimize(expression, context);
+        assertEquals(2, report.getMetric("Compiled expressions"));
+        context.put("a", 2);
+        context.put("b", 3);
+        context.put("c", 4);
+        assertEquals(17.0, expression.evaluate(context).asDouble(), 0.000001);
+    }
+
+    @Test
+    public void testVariablesNotKnownToBeDoublesAreNotCompiled() throws ParseException {
+        RankingExpression expression = new RankingExpression("(a * b) + reduce(tensor0, sum) + (c * 2)");
+        ArrayContext context = new ArrayContext(expression, true);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        optimizer.optimize(expression, context);
+        assertTrue(((CompositeNode)expression.getRoot()).children().stream().noneMatch(child -> child instanceof CompiledNode));
+        context.put("a", 2);
+        context.put("b", 3);
+        context.put("c", 4);
+        context.put("tensor0", new TensorValue(Tensor.from("tensor(x[2]):{{x:0}:1.0,{x:1}:2.0}")));
+        assertEquals(17.0, expression.evaluate(context).asDouble(), 0.000001);
+    }
+
+    @Test
+    public void testCompiledNodeHasTheTypeOfTheOriginal() throws ParseException {
+        RankingExpression expression = new RankingExpression("a * b + c");
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        optimizer.optimize(expression, new DoubleOnlyArrayContext(expression));
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+
+        MapTypeContext types = new MapTypeContext();
+        types.setType(new Reference("a", new Arguments(), null), TensorType.fromSpec("tensor(x[3])"));
+        types.setType(new Reference("b", new Arguments(), null), TensorType.empty);
+        types.setType(new Reference("c", new Arguments(), null), TensorType.empty);
+        assertEquals(TensorType.fromSpec("tensor(x[3])"), expression.type(types));
+    }
+
+    @Test
+    public void testLargeForestIsSplit() throws ParseException {
+        StringBuilder gbdt = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            if (i > 0) gbdt.append(" + ");
+            gbdt.append("if (a < ").append(i % 7).append(", if (b < ").append(i % 5).append(", ").append(i)
+                .append(", 0.5), if (c == ").append(i % 3).append(", -1, ").append(i % 11).append("))");
+        }
+        OptimizationReport report = assertCompiled(gbdt.toString());
+        assertEquals(1, report.getMetric("Compiled expressions"));
+    }
+
+    @Test
+    public void testFallbackToInterpretation() throws ParseException {
+        RankingExpression expression = new RankingExpression("a * b + c");
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        optimizer.optimize(expression, new DoubleOnlyArrayContext(expression));
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+        assertEquals("a * b + c", expression.toString());
+
+        MapContext context = new MapContext();
+        context.put("a", 2);
+        context.put("b", 3);
+        context.put("c", 4);
+        assertEquals(10.0, expression.evaluate(context).asDouble(), 0.000001);
+    }
+
+    @Test
+    public void testDisabledByDefault() throws ParseException {
+        RankingExpression expression = new RankingExpression("a * b + c");
+        new ExpressionOptimizer().optimize(expression, new ArrayContext(expression));
+        assertTrue( ! (expression.getRoot() instanceof CompiledNode));
+    }
+
+    /** Asserts that the given expression is compiled and evaluates to the same values as when interpreted */
+    private OptimizationReport assertCompiled(String expressionString) throws ParseException {
+        RankingExpression interpreted = new RankingExpression(expressionString);
+        RankingExpression compiled = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(compiled, true);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        OptimizationReport report = optimizer.optimize(compiled, context);
+        assertTrue("Compiled " + expressionString, compiled.getRoot() instanceof CompiledNode);
+
+        for (double[] values : argumentValues) {
+            MapContext arguments = new MapContext();
+            arguments.put("a", values[0]);
+            arguments.put("b", values[1]);
+            arguments.put("c", values[2]);
+            context.put("a", values[0]);
+            context.put("b", values[1]);
+            context.put("c", values[2]);
+            assertEquals(expressionString + " with a=" + values[0] + ", b=" + values[1] + ", c=" + values[2],
+                         interpreted.evaluate(arguments).asDouble(), compiled.evaluate(context).asDouble(),
+                         0.000001);
+        }
+        return report;
+    }
+
+}
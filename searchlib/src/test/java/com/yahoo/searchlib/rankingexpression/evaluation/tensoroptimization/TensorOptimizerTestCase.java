@@ -15,6 +15,7 @@ import com.yahoo.tensor.functions.ReduceJoin;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author lesters
@@ -53,6 +54,31 @@ public class TensorOptimizerTestCase {
         assertCantOptimize("d0[1],d1[2],d2[3]", "d0[1],d1[2],d2[3]", "d1,d2");  // reducing on less then joining on
     }
 
+    @Test
+    public void testReduceProductOptimization() throws ParseException {
+        assertProductOptimized("d0[3]", "d0[3]", "reduce(a * b, sum)");
+        assertProductOptimized("d0[3]", "d0[3],d1[2]", "reduce(a * b, sum, d0)");
+        assertProductOptimized("d0[2],d1[3]", "d1[3],d2[4]", "reduce(a * b, sum, d1)");
+        assertProductOptimized("d0[3]", "d0[3]", "reduce(a * a, sum)");
+        assertProductOptimized("d0[3]", "d0[3]", "reduce(join(a, b, f(x,y)((x - y) * (x - y))), sum)");
+    }
+
+    private void assertProductOptimized(String aType, String bType, String expressionString) throws ParseException {
+        Tensor a = generateRandomTensor(aType);
+        Tensor b = generateRandomTensor(bType);
+        RankingExpression expression = new RankingExpression(expressionString);
+        ArrayContext context = new ArrayContext(expression, true);
+        context.put("a", new TensorValue(a));
+        context.put("b", new TensorValue(b));
+        Tensor result = expression.evaluate(context).asTensor();
+
+        OptimizationReport report = new ExpressionOptimizer().optimize(expression, context);
+        assertEquals(1, report.getMetric("Replaced reduce->join"));
+        ReduceJoin reduceJoin = (ReduceJoin)((TensorFunctionNode)expression.getRoot()).function();
+        assertTrue(reduceJoin.canOptimize(a, b));
+        assertEquals(result, expression.evaluate(context).asTensor());
+    }
+
     private void assertWillOptimize(String aType, String bType) throws ParseException {
         assertWillOptimize(aType, bType, "", "sum");
     }
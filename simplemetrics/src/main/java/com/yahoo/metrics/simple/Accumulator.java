@@ -0,0 +1,88 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The values recorded at the default position of a counter or gauge. These are accumulated in striped
+ * primitives, so recording a value allocates nothing and looks nothing up, and the values are drained
+ * into an {@link UntypedMetric} once for each bucket.
+ * <p>
+ * Draining is not atomic with respect to recording, so a value recorded while draining may be
+ * reported in the next bucket. This is multithread safe.
+ *
+ * @author agent
+ */
+abstract class Accumulator {
+
+    private final Identifier identifier;
+
+    Accumulator(Identifier identifier) {
+        this.identifier = identifier;
+    }
+
+    Identifier identifier() { return identifier; }
+
+    /** Returns the values recorded since the last drain and resets this, or null if nothing was recorded */
+    abstract UntypedMetric drain();
+
+    static final class Counting extends Accumulator {
+
+        private final LongAdder count = new LongAdder();
+
+        Counting(Identifier identifier) {
+            super(identifier);
+        }
+
+        void add(long n) {
+            count.add(n);
+        }
+
+        @Override
+        UntypedMetric drain() {
+            long n = count.sumThenReset();
+            return n == 0 ? null : UntypedMetric.counter(n);
+        }
+
+    }
+
+    static final class Sampling extends Accumulator {
+
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+        private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+        private volatile double last;
+
+        Sampling(Identifier identifier) {
+            super(identifier);
+        }
+
+        void sample(double x) {
+            last = x;
+            min.accumulate(x);
+            max.accumulate(x);
+            sum.add(x);
+            count.increment(); // last, so a counted sample has its value recorded when this is drained
+        }
+
+        @Override
+        UntypedMetric drain() {
+            long n = count.sumThenReset();
+            if (n == 0) return null;
+
+            double last = this.last;
+            double min = this.min.getThenReset();
+            double max = this.max.getThenReset();
+            if (min > max) { // the values of these samples were drained with the previous ones
+                min = last;
+                max = last;
+            }
+            return UntypedMetric.gauge(n, last, min, max, sum.sumThenReset());
+        }
+
+    }
+
+}
@@ -44,6 +44,16 @@ public class Bucket {
         this.toMillis = toMillis;
     }
 
+    void setTimeStamps(long fromMillis, long toMillis) {
+        this.gotTimeStamps = true;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    int size() {
+        return values.size();
+    }
+
     public Set<Map.Entry<Identifier, UntypedMetric>> entrySet() {
         return values.entrySet();
     }
@@ -88,6 +98,20 @@ public class Bucket {
         }
     }
 
+    /** Merges a value which is newer than the values in this into the value at the given identifier */
+    void merge(Identifier id, UntypedMetric value) {
+        UntypedMetric existing = values.get(id);
+        if (existing == null) {
+            values.put(id, value);
+            return;
+        }
+        try {
+            existing.merge(value, true);
+        } catch (IllegalArgumentException e) {
+            log.log(LogLevel.WARNING, "Problems merging metric " + id.getName() + ", possibly ignoring data.");
+        }
+    }
+
     void merge(Bucket other) {
         boolean otherIsNewer = resolveTimeStamps(other);
         merge(other, otherIsNewer);
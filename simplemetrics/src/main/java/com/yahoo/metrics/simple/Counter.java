@@ -16,11 +16,14 @@ public class Counter {
     private final Point defaultPosition;
     private final String name;
     private final MetricReceiver metricReceiver;
+    /** Accumulates the values added at the default position, or null to add them as samples */
+    private final Accumulator.Counting defaultAccumulator;
 
     Counter(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
         this.metricReceiver = receiver;
+        this.defaultAccumulator = receiver == null ? null : receiver.counterAccumulator(new Identifier(name, defaultPosition));
     }
 
     /**
@@ -57,7 +60,10 @@ public class Counter {
      *            the point in the metric space at which to add to the metric
      */
     public void add(long n, Point p) {
-        metricReceiver.update(new Sample(new Measurement(Long.valueOf(n)), new Identifier(name, p), AssumedType.COUNTER));
+        if (p == defaultPosition && defaultAccumulator != null)
+            defaultAccumulator.add(n);
+        else
+            metricReceiver.update(new Sample(new Measurement(Long.valueOf(n)), new Identifier(name, p), AssumedType.COUNTER));
     }
 
     /**
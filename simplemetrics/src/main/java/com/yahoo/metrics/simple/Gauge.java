@@ -19,11 +19,16 @@ public class Gauge {
     private final Point defaultPosition;
     private final String name;
     private final MetricReceiver receiver;
+    /** Accumulates the samples at the default position, or null to record them as samples */
+    private final Accumulator.Sampling defaultAccumulator;
 
     Gauge(String name, Point defaultPosition, MetricReceiver receiver) {
         this.name = name;
         this.defaultPosition = defaultPosition;
         this.receiver = receiver;
+        this.defaultAccumulator = receiver == null || isHistogram(receiver.getMetricDefinition(name))
+                                  ? null // histograms need each sample
+                                  : receiver.gaugeAccumulator(new Identifier(name, defaultPosition));
     }
 
     /**
@@ -45,7 +50,14 @@ public class Gauge {
      *            position/dimension values for the sample
      */
     public void sample(double x, Point p) {
-        receiver.update(new Sample(new Measurement(Double.valueOf(x)), new Identifier(name, p), AssumedType.GAUGE));
+        if (p == defaultPosition && defaultAccumulator != null)
+            defaultAccumulator.sample(x);
+        else
+            receiver.update(new Sample(new Measurement(Double.valueOf(x)), new Identifier(name, p), AssumedType.GAUGE));
+    }
+
+    private static boolean isHistogram(MetricSettings settings) {
+        return settings != null && settings.isHistogram();
     }
 
     /**
@@ -4,6 +4,7 @@ package com.yahoo.metrics.simple;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.annotations.Beta;
@@ -28,6 +29,9 @@ public class MetricReceiver {
     private final Object histogramDefinitionsLock = new Object();
     private volatile Map<String, MetricSettings> metricSettings;
 
+    /** The accumulators of the default positions of the declared counters and gauges */
+    private final Map<Identifier, Accumulator> accumulators = new ConcurrentHashMap<>();
+
     private static final class NullCounter extends Counter {
         NullCounter() {
             super(null, null, null);
@@ -89,6 +93,7 @@ public class MetricReceiver {
             for (Bucket b : collection.fetch()) {
                 merged.merge(b, true);
             }
+            drainAccumulators(merged);
             return merged;
         }
         /** utility method for testing */
@@ -280,6 +285,31 @@ public class MetricReceiver {
         return currentSnapshot.get();
     }
 
+    /**
+     * Returns the accumulator of counts at the given identifier, or null if it is already accumulated as a gauge.
+     */
+    Accumulator.Counting counterAccumulator(Identifier id) {
+        Accumulator accumulator = accumulators.computeIfAbsent(id, Accumulator.Counting::new);
+        return accumulator instanceof Accumulator.Counting ? (Accumulator.Counting) accumulator : null;
+    }
+
+    /**
+     * Returns the accumulator of samples at the given identifier, or null if it is already accumulated as a counter.
+     */
+    Accumulator.Sampling gaugeAccumulator(Identifier id) {
+        Accumulator accumulator = accumulators.computeIfAbsent(id, Accumulator.Sampling::new);
+        return accumulator instanceof Accumulator.Sampling ? (Accumulator.Sampling) accumulator : null;
+    }
+
+    /** Moves the values accumulated since the last call to this into the given bucket */
+    void drainAccumulators(Bucket bucket) {
+        for (Accumulator accumulator : accumulators.values()) {
+            UntypedMetric value = accumulator.drain();
+            if (value != null)
+                bucket.merge(accumulator.identifier(), value);
+        }
+    }
+
     /**
      * Add how to build a histogram for a given metric.
      *
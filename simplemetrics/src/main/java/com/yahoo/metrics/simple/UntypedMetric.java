@@ -37,6 +37,26 @@ public class UntypedMetric {
         }
     }
 
+    /** Returns a counter of the given count */
+    static UntypedMetric counter(long count) {
+        UntypedMetric counter = new UntypedMetric(null);
+        counter.outputFormat = AssumedType.COUNTER;
+        counter.count = count;
+        return counter;
+    }
+
+    /** Returns a gauge of the given number of samples, without a histogram */
+    static UntypedMetric gauge(long count, double last, double min, double max, double sum) {
+        UntypedMetric gauge = new UntypedMetric(null);
+        gauge.outputFormat = AssumedType.GAUGE;
+        gauge.count = count;
+        gauge.current = last;
+        gauge.min = min;
+        gauge.max = max;
+        gauge.sum = sum;
+        return gauge;
+    }
+
     void add(Number x) {
         outputFormat = AssumedType.COUNTER;
         count += x.longValue();
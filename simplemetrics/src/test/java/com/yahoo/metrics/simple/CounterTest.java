@@ -3,6 +3,7 @@ package com.yahoo.metrics.simple;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -77,6 +78,19 @@ public class CounterTest {
         assertEquals(1, x.get(0).getValue().getCount());
         }
 
+    @Test
+    public final void testAddAtDefaultAndEqualPointIsAggregatedTogether() {
+        final String metricName = "unitTestCounter";
+        Point p = receiver.pointBuilder().set("x", 2L).set("z", "5").build();
+        Counter c = receiver.declareCounter(metricName, p);
+        c.add();
+        c.add(3L, receiver.pointBuilder().set("x", 2L).set("z", "5").build());
+        c.add(receiver.pointBuilder().set("x", 3L).set("z", "5").build());
+        Map<Point, UntypedMetric> values = receiver.getSnapshot().getMapForMetric(metricName);
+        assertEquals(2, values.size());
+        assertEquals(4L, values.get(p).getCount());
+    }
+
     @Test
     public final void testAddLongPoint() throws InterruptedException {
         final String metricName = "unitTestCounter";
@@ -108,4 +122,17 @@ public class CounterTest {
         assertEquals(twoToThePowerOfFourtyeight, x.get(0).getValue().getCount());
     }
 
+    @Test
+    public final void testConcurrentAddsAreAllCounted() throws InterruptedException {
+        final String metricName = "unitTestCounter";
+        Counter c = receiver.declareCounter(metricName);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            threads.add(new Thread(() -> { for (int j = 0; j < 10000; j++) c.add(); }));
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(40000L, receiver.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint()).getCount());
+    }
+
 }
@@ -8,6 +8,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
@@ -80,4 +81,34 @@ public class GaugeTest {
         assertEquals(Math.E, x.get(0).getValue().getLast(), 1e-15);
     }
 
+    @Test
+    public final void testSamplesAtTheDefaultPositionAreSummarized() {
+        final String metricName = "unitTestGauge";
+        Gauge g = receiver.declareGauge(metricName);
+        g.sample(1.0d);
+        g.sample(3.0d);
+        g.sample(2.0d);
+        UntypedMetric value = receiver.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint());
+        assertEquals(3L, value.getCount());
+        assertEquals(2.0d, value.getLast(), 0.0d);
+        assertEquals(1.0d, value.getMin(), 0.0d);
+        assertEquals(3.0d, value.getMax(), 0.0d);
+        assertEquals(6.0d, value.getSum(), 0.0d);
+        assertNull(value.getHistogram());
+
+        assertTrue(receiver.getSnapshot().getMapForMetric(metricName).isEmpty());
+    }
+
+    @Test
+    public final void testHistogramGaugesRecordEverySample() {
+        final String metricName = "unitTestGauge";
+        Gauge g = receiver.declareGauge(metricName, Optional.empty(), new MetricSettings.Builder().histogram(true).build());
+        for (int i = 1; i <= 100; i++)
+            g.sample(i);
+        UntypedMetric value = receiver.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint());
+        assertEquals(100L, value.getCount());
+        assertEquals(100L, value.getHistogram().getTotalCount());
+        assertEquals(95.0d, value.getHistogram().getValueAtPercentile(95.0d), 1.0d);
+    }
+
 }
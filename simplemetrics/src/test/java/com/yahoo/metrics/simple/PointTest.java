@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.HashMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 /**
  * @author bratseth
@@ -20,5 +21,18 @@ public class PointTest {
         assertEquals(a.hashCode(), b.hashCode());
         assertEquals(a, b);
     }
+
+    @Test
+    public void testPointInequality() {
+        Point a = new PointBuilder().set("x", 1L).set("y", "a").build();
+        Point b = new PointBuilder().set("x", 1L).set("y", "b").build();
+        Point c = new PointBuilder().set("y", "a").set("x", 1L).build();
+        assertNotEquals(a, b);
+        assertEquals(a, c);
+        assertEquals(a.hashCode(), c.hashCode());
+        assertNotEquals(new Identifier("m", a), new Identifier("m", b));
+        assertEquals(new Identifier("m", a), new Identifier("m", c));
+        assertEquals(new Identifier("m", a).hashCode(), new Identifier("m", c).hashCode());
+    }
     
 }
@@ -49,6 +49,7 @@ public final class ConnectionParams {
         private int traceLevel = 0;
         private int traceEveryXOperation = 0;
         private boolean printTraceToStdErr = true;
+        private boolean useAsyncTransport = false;
 
         /**
          * Sets the SSLContext for the connection to the gateway when SSL is enabled for Endpoint.
@@ -223,6 +224,20 @@ public final class ConnectionParams {
             return this;
         }
 
+        /**
+         * Set whether to feed each endpoint using asynchronous HTTP/1.1 requests, rather than over one blocking
+         * connection per thread. When enabled, all endpoints in a cluster are served by a couple of threads,
+         * and the number of persistent connections per endpoint instead sets the max number of concurrent
+         * requests to each endpoint. The hostname verifier is not used by this transport. Default is false.
+         *
+         * @param useAsyncTransport true to use the asynchronous transport.
+         * @return pointer to builder.
+         */
+        public Builder setUseAsyncTransport(boolean useAsyncTransport) {
+            this.useAsyncTransport = useAsyncTransport;
+            return this;
+        }
+
 
         public ConnectionParams build() {
             return new ConnectionParams(
@@ -240,7 +255,8 @@ public final class ConnectionParams {
                     dryRun,
                     traceLevel,
                     traceEveryXOperation,
-                    printTraceToStdErr);
+                    printTraceToStdErr,
+                    useAsyncTransport);
         }
 
         public int getNumPersistentConnectionsPerEndpoint() {
@@ -269,6 +285,10 @@ public final class ConnectionParams {
             return printTraceToStdErr;
         }
 
+        public boolean getUseAsyncTransport() {
+            return useAsyncTransport;
+        }
+
         public int getProxyPort() {
             return proxyPort;
         }
@@ -296,6 +316,7 @@ public final class ConnectionParams {
     private final int traceLevel;
     private final int traceEveryXOperation;
     private final boolean printTraceToStdErr;
+    private final boolean useAsyncTransport;
 
     private ConnectionParams(
             SSLContext sslContext,
@@ -312,7 +333,8 @@ public final class ConnectionParams {
             boolean dryRun,
             int traceLevel,
             int traceEveryXOperation,
-            boolean printTraceToStdErr) {
+            boolean printTraceToStdErr,
+            boolean useAsyncTransport) {
         this.sslContext = sslContext;
         this.hostnameVerifier = hostnameVerifier;
         this.connectionTimeout = connectionTimeout;
@@ -328,6 +350,7 @@ public final class ConnectionParams {
         this.traceLevel = traceLevel;
         this.traceEveryXOperation = traceEveryXOperation;
         this.printTraceToStdErr = printTraceToStdErr;
+        this.useAsyncTransport = useAsyncTransport;
     }
 
     @JsonIgnore
@@ -388,6 +411,10 @@ public final class ConnectionParams {
         return printTraceToStdErr;
     }
 
+    public boolean getUseAsyncTransport() {
+        return useAsyncTransport;
+    }
+
     /**
      * A header provider that provides a header value. {@link #getHeaderValue()} is called each time a new HTTP request
      * is constructed by {@link com.yahoo.vespa.http.client.FeedClient}.
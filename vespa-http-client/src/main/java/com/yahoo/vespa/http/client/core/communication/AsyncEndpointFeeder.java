@@ -0,0 +1,340 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.FeedConnectException;
+import com.yahoo.vespa.http.client.FeedProtocolException;
+import com.yahoo.vespa.http.client.Result;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.EndpointResult;
+import com.yahoo.vespa.http.client.core.Exceptions;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+import com.yahoo.vespa.http.client.core.operationProcessor.EndPointResultFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds documents to an endpoint without blocking any thread: Chunks of documents are sent as concurrent
+ * requests over an {@link AsyncGatewayConnection}, and the responses are processed as they arrive.
+ * All the work of this is done in a single event loop thread, which may be shared by many feeders.
+ * <p>
+ * The number of concurrent requests is limited by a window which is halved whenever the gateway
+ * reports transient errors, such as when it is throttling, and grown by one for each successful response,
+ * up to the max number of concurrent requests.
+ *
+ * @author agent
+ */
+class AsyncEndpointFeeder implements EndpointFeeder {
+
+    private static final Logger log = Logger.getLogger(AsyncEndpointFeeder.class.getName());
+
+    /** The interval at which to check for results, timed out documents and the end of back off periods */
+    private static final long tickIntervalMillis = 100;
+
+    private final AsyncGatewayConnection connection;
+    private final Endpoint endpoint;
+    private final DocumentQueue documentQueue;
+    private final EndpointResultQueue resultQueue;
+    private final ScheduledExecutorService eventLoop;
+    private final ThreadGroup ioThreadGroup;
+    private final int clusterId;
+    private final int maxChunkSizeBytes;
+    private final int maxInFlightRequests;
+    private final int maxConcurrentRequests;
+    private final long localQueueTimeOut;
+    private final long drainTimeoutMillis;
+    private final GatewayThrottler gatewayThrottler;
+    private final ScheduledFuture<?> ticker;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean pumpScheduled = new AtomicBoolean(false);
+
+    // State accessed by the event loop thread only
+    private boolean synced = false;
+    private boolean handshaking = false;
+    private int concurrentRequests = 0;
+    private int requestWindow;
+    private long pausedUntilMillis = 0;
+
+    private final AtomicInteger problemStatusCodeFromServerCounter = new AtomicInteger(0);
+    private final AtomicInteger executeProblemsCounter = new AtomicInteger(0);
+    private final AtomicInteger docsReceivedCounter = new AtomicInteger(0);
+    private final AtomicInteger statusReceivedCounter = new AtomicInteger(0);
+    private final AtomicInteger pendingDocumentStatusCount = new AtomicInteger(0);
+    private final AtomicInteger successfullHandshakes = new AtomicInteger(0);
+    private final AtomicInteger lastGatewayProcessTimeMillis = new AtomicInteger(0);
+
+    AsyncEndpointFeeder(ThreadGroup ioThreadGroup,
+                        EndpointResultQueue endpointResultQueue,
+                        AsyncGatewayConnection connection,
+                        ScheduledExecutorService eventLoop,
+                        int clusterId,
+                        int maxChunkSizeBytes,
+                        int maxInFlightRequests,
+                        int maxConcurrentRequests,
+                        long localQueueTimeOut,
+                        DocumentQueue documentQueue,
+                        long maxSleepTimeMs,
+                        long drainTimeoutMillis) {
+        this.ioThreadGroup = ioThreadGroup;
+        this.resultQueue = endpointResultQueue;
+        this.connection = connection;
+        this.endpoint = connection.getEndpoint();
+        this.eventLoop = eventLoop;
+        this.clusterId = clusterId;
+        this.maxChunkSizeBytes = maxChunkSizeBytes;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.requestWindow = this.maxConcurrentRequests;
+        this.localQueueTimeOut = localQueueTimeOut;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.documentQueue = documentQueue;
+        this.gatewayThrottler = new GatewayThrottler(maxSleepTimeMs);
+        this.ticker = eventLoop.scheduleWithFixedDelay(this::pump, 0, tickIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Endpoint getEndpoint() { return endpoint; }
+
+    @Override
+    public void post(Document document) throws InterruptedException {
+        documentQueue.put(document, Thread.currentThread().getThreadGroup() == ioThreadGroup);
+        if (pumpScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(() -> {
+                pumpScheduled.set(false);
+                pump();
+            });
+        }
+    }
+
+    @Override
+    public IOThread.ConnectionStats getConnectionStats() {
+        return new IOThread.ConnectionStats(0,
+                                            0,
+                                            problemStatusCodeFromServerCounter.get(),
+                                            executeProblemsCounter.get(),
+                                            docsReceivedCounter.get(),
+                                            statusReceivedCounter.get(),
+                                            pendingDocumentStatusCount.get(),
+                                            successfullHandshakes.get(),
+                                            lastGatewayProcessTimeMillis.get());
+    }
+
+    /** Sends as much as the window, the max in flight operations and any back off allows */
+    private void pump() {
+        try {
+            drainFirstDocumentsInQueueIfOld();
+            if (closed.get()) return;
+            if (System.currentTimeMillis() < pausedUntilMillis) return;
+            if ( ! synced) {
+                handshake();
+                return;
+            }
+
+            while (concurrentRequests < requestWindow) {
+                int pending = resultQueue.getPendingSize();
+                pendingDocumentStatusCount.set(pending);
+                List<Document> docs = getNextDocsForFeeding(pending);
+                if (docs.isEmpty()) {
+                    if (pending > 0 && concurrentRequests == 0)
+                        send(docs); // Ask for the results of the pending operations
+                    return;
+                }
+                send(docs);
+            }
+        }
+        catch (RuntimeException e) { // Do not let exceptions cancel the ticker
+            log.log(Level.WARNING, "Unexpected exception while feeding to " + endpoint, e);
+        }
+    }
+
+    private List<Document> getNextDocsForFeeding(int pending) {
+        List<Document> docs = new ArrayList<>();
+        int chunkSizeBytes = 0;
+        while (chunkSizeBytes < maxChunkSizeBytes && pending + docs.size() < maxInFlightRequests) {
+            Document document = documentQueue.poll();
+            if (document == null) break;
+            docs.add(document);
+            chunkSizeBytes += document.size();
+        }
+        docsReceivedCounter.addAndGet(docs.size());
+        return docs;
+    }
+
+    private void send(List<Document> docs) {
+        for (Document doc : docs)
+            resultQueue.operationSent(doc.getOperationId());
+        concurrentRequests++;
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<InputStream> futureResponse;
+        try {
+            futureResponse = connection.writeOperations(docs);
+        }
+        catch (RuntimeException e) { // Nothing was sent: Fail the operations, which also ends their timeouts
+            concurrentRequests--;
+            onFailure(docs, e);
+            return;
+        }
+        futureResponse.whenCompleteAsync((response, exception) -> {
+            concurrentRequests--;
+            lastGatewayProcessTimeMillis.set((int) (System.currentTimeMillis() - startTime));
+            if (exception == null)
+                onResponse(response);
+            else
+                onFailure(docs, unwrap(exception));
+            pump();
+        }, eventLoop);
+    }
+
+    private void onResponse(InputStream response) {
+        try {
+            adjustWindow(processResponse(response));
+        }
+        catch (IOException e) {
+            executeProblemsCounter.incrementAndGet();
+            log.info("Could not read the response from " + endpoint + ": " + Exceptions.toMessageString(e));
+        }
+    }
+
+    private void onFailure(List<Document> docs, Throwable exception) {
+        ServerResponseException serverException = exception instanceof ServerResponseException
+                                                  ? (ServerResponseException)exception
+                                                  : new ServerResponseException(Exceptions.toMessageString(exception));
+        for (Document doc : docs) {
+            resultQueue.failOperation(EndPointResultFactory.createTransientError(endpoint, doc.getOperationId(), serverException),
+                                      clusterId);
+        }
+        log.info("Problems while handing data over to gateway " + endpoint + ": " + Exceptions.toMessageString(exception));
+        if (exception instanceof ServerResponseException) {
+            problemStatusCodeFromServerCounter.incrementAndGet();
+            if (serverException.getResponseCode() != 429) // Throttling only needs backing off, otherwise sync again
+                synced = false;
+        }
+        else {
+            executeProblemsCounter.incrementAndGet();
+            synced = false;
+        }
+        adjustWindow(Math.max(1, docs.size()));
+    }
+
+    private void adjustWindow(int transientErrors) {
+        pausedUntilMillis = System.currentTimeMillis() + gatewayThrottler.updateBackOffTime(transientErrors);
+        if (transientErrors > 0)
+            requestWindow = Math.max(1, requestWindow / 2);
+        else if (requestWindow < maxConcurrentRequests)
+            requestWindow++;
+    }
+
+    private void handshake() {
+        if (handshaking) return;
+        handshaking = true;
+        connection.handshake().whenCompleteAsync((response, exception) -> {
+            handshaking = false;
+            if (exception == null) {
+                synced = true;
+                successfullHandshakes.incrementAndGet();
+                pump();
+                return;
+            }
+
+            executeProblemsCounter.incrementAndGet();
+            Throwable cause = unwrap(exception);
+            if (cause instanceof ServerResponseException) {
+                ServerResponseException serverException = (ServerResponseException)cause;
+                log.info("Handshake did not work out " + endpoint + ": " + Exceptions.toMessageString(serverException));
+                resultQueue.onEndpointError(new FeedProtocolException(serverException.getResponseCode(),
+                                                                      serverException.getResponseString(),
+                                                                      serverException,
+                                                                      endpoint));
+            }
+            else {
+                log.info("Problem with Handshake " + endpoint + ": " + Exceptions.toMessageString(cause));
+                resultQueue.onEndpointError(new FeedConnectException(cause, endpoint));
+            }
+            // Take it easy, we have problems getting a synced connection up
+            pausedUntilMillis = System.currentTimeMillis() + gatewayThrottler.distribute(3000);
+        }, eventLoop);
+    }
+
+    /** Passes the results in the given response on to the result queue and returns the number of transient errors */
+    private int processResponse(InputStream serverResponse) throws IOException {
+        Collection<EndpointResult> endpointResults = EndPointResultFactory.createResult(endpoint, serverResponse);
+        statusReceivedCounter.addAndGet(endpointResults.size());
+        int transientErrors = 0;
+        for (EndpointResult endpointResult : endpointResults) {
+            if (endpointResult.getDetail().getResultType() == Result.ResultType.TRANSITIVE_ERROR) {
+                transientErrors++;
+            }
+            resultQueue.resultReceived(endpointResult, clusterId);
+        }
+        return transientErrors;
+    }
+
+    private static Throwable unwrap(Throwable exception) {
+        while (exception instanceof CompletionException && exception.getCause() != null)
+            exception = exception.getCause();
+        return exception;
+    }
+
+    @Override
+    public void close() {
+        documentQueue.close();
+        if (closed.getAndSet(true)) return;
+        ticker.cancel(false);
+
+        // Make a last attempt to get results from previous operations
+        int size = resultQueue.getPendingSize();
+        if (size > 0) {
+            log.info("We have outstanding operations (" + size + ") , trying to fetch responses.");
+            try {
+                processResponse(connection.drain().get(drainTimeoutMillis, TimeUnit.MILLISECONDS));
+            } catch (Throwable e) {
+                log.log(Level.SEVERE, "Some failures while trying to get latest responses from vespa.", unwrap(e));
+            }
+        }
+        // If there are still documents in the queue, fail them
+        drainDocumentQueueWhenFailingPermanently(new Exception(
+                "Closed call, did not manage to process everything so failing this document."));
+        log.fine("Session to " + endpoint + " closed.");
+    }
+
+    @Override
+    public String toString() {
+        return "Async feeder (for " + endpoint + ")";
+    }
+
+    private void drainFirstDocumentsInQueueIfOld() {
+        while (true) {
+            Optional<Document> document = documentQueue.pollDocumentIfTimedoutInQueue(localQueueTimeOut);
+            if ( ! document.isPresent()) return;
+
+            EndpointResult endpointResult = EndPointResultFactory.createTransientError(
+                    endpoint, document.get().getOperationId(),
+                    new Exception("Not sending document operation, timed out in queue after "
+                                  + document.get().timeInQueueMillis() + " ms."));
+            resultQueue.failOperation(endpointResult, clusterId);
+        }
+    }
+
+    private void drainDocumentQueueWhenFailingPermanently(Exception exception) {
+        resultQueue.failPending(exception);
+        for (Document document : documentQueue.removeAllDocuments()) {
+            EndpointResult endpointResult = EndPointResultFactory.createError(endpoint, document.getOperationId(), exception);
+            resultQueue.failOperation(endpointResult, clusterId);
+        }
+    }
+
+}
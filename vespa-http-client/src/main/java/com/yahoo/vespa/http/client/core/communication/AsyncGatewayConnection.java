@@ -0,0 +1,262 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.component.Vtag;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.Encoder;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A connection to a gateway which sends each request as a non-blocking HTTP/1.1 request, such that
+ * many requests may be in flight concurrently, each over its own connection from the pool of the HTTP client.
+ * This speaks the same (version 3) protocol as {@link ApacheGatewayConnection}.
+ *
+ * @author agent
+ */
+class AsyncGatewayConnection {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String PATH = "/reserved-for-internal-use/feedapi?";
+    private static final int PROTOCOL_VERSION = 3;
+    private static final byte[] START_OF_FEED_XML = "<vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_XML = "\n</vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] START_OF_FEED_JSON = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_JSON = "]".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpClient httpClient;
+    private final Endpoint endpoint;
+    private final FeedParams feedParams;
+    private final ConnectionParams connectionParams;
+    private final String clientId;
+    private final URI uri;
+    private final byte[] startOfFeed;
+    private final byte[] endOfFeed;
+    private final String shardingKey = UUID.randomUUID().toString().substring(0, 5);
+
+    AsyncGatewayConnection(HttpClient httpClient,
+                           Endpoint endpoint,
+                           FeedParams feedParams,
+                           ConnectionParams connectionParams,
+                           String clientId) {
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+        this.feedParams = feedParams;
+        this.connectionParams = connectionParams;
+        this.clientId = Objects.requireNonNull(clientId, "Got no client Id.");
+        this.uri = URI.create((endpoint.isUseSsl() ? "https://" : "http://") +
+                              endpoint.getHostname() + ":" + endpoint.getPort() + PATH + feedParams.toUriParameters());
+        boolean isJson = feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8;
+        this.startOfFeed = isJson ? START_OF_FEED_JSON : START_OF_FEED_XML;
+        this.endOfFeed = isJson ? END_OF_FEED_JSON : END_OF_FEED_XML;
+    }
+
+    Endpoint getEndpoint() { return endpoint; }
+
+    /**
+     * Sends the given operations, and returns a future which completes with the results of any operations
+     * of this client which are completed by the gateway, which are not necessarily those sent in this request.
+     * The future completes exceptionally with a {@link ServerResponseException} if the gateway responds with
+     * an error, and an {@link IOException} on communication errors.
+     */
+    CompletableFuture<InputStream> writeOperations(List<Document> docs) {
+        return post(createRequest(false, connectionParams.getUseCompression(), false, docs));
+    }
+
+    /** Requests the results of all operations which are completed by the gateway, without sending new operations */
+    CompletableFuture<InputStream> drain() {
+        return post(createRequest(true, false, false, Collections.emptyList()));
+    }
+
+    /** Performs the handshake which must complete before operations are written */
+    CompletableFuture<InputStream> handshake() {
+        return post(createRequest(false, false, true, Collections.emptyList()));
+    }
+
+    private CompletableFuture<InputStream> post(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                         .thenApply(this::verifyResponse);
+    }
+
+    private HttpRequest createRequest(boolean drain, boolean useCompression, boolean isHandshake, List<Document> docs) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        request.timeout(Duration.ofMillis(feedParams.getServerTimeout(TimeUnit.MILLISECONDS) +
+                                          feedParams.getClientTimeout(TimeUnit.MILLISECONDS)));
+        request.header(Headers.VERSION, String.valueOf(PROTOCOL_VERSION));
+        request.header(Headers.CLIENT_ID, clientId);
+        request.header(Headers.CLIENT_VERSION, Vtag.currentVersion.toFullString());
+        request.header("User-Agent", String.format("vespa-http-client (%s)", Vtag.currentVersion.toFullString()));
+        request.header(Headers.SHARDING_KEY, shardingKey);
+        request.header(Headers.DRAIN, drain ? "true" : "false");
+        if (feedParams.getRoute() != null) {
+            request.header(Headers.ROUTE, feedParams.getRoute());
+        }
+        if ( ! isHandshake) {
+            request.header(Headers.DATA_FORMAT, feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8
+                                                ? FeedParams.DataFormat.JSON_UTF8.name()
+                                                : FeedParams.DataFormat.XML_UTF8.name());
+            if (feedParams.getPriority() != null) {
+                request.header(Headers.PRIORITY, feedParams.getPriority());
+            }
+            if (connectionParams.getTraceLevel() != 0) {
+                request.header(Headers.TRACE_LEVEL, String.valueOf(connectionParams.getTraceLevel()));
+            }
+            if (feedParams.getDenyIfBusyV3()) {
+                request.header(Headers.DENY_IF_BUSY, "true");
+            }
+        }
+        if (feedParams.getSilentUpgrade()) {
+            request.header(Headers.SILENTUPGRADE, "true");
+        }
+        request.header(Headers.TIMEOUT, "" + feedParams.getServerTimeout(TimeUnit.SECONDS));
+
+        for (Map.Entry<String, String> extraHeader : connectionParams.getHeaders()) {
+            request.header(extraHeader.getKey(), extraHeader.getValue());
+        }
+        connectionParams.getDynamicHeaders().forEach((headerName, provider) -> {
+            String headerValue = Objects.requireNonNull(
+                    provider.getHeaderValue(),
+                    provider.getClass().getName() + ".getHeader() returned null as header value!");
+            request.header(headerName, headerValue);
+        });
+
+        byte[] body = encode(docs);
+        if (useCompression) {
+            request.header("Content-Encoding", "gzip");
+            body = gzip(body);
+        }
+        return request.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private byte[] encode(List<Document> docs) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (Document doc : docs) {
+            int operationSize = doc.size() + startOfFeed.length + endOfFeed.length;
+            StringBuilder envelope = new StringBuilder();
+            Encoder.encode(doc.getOperationId(), envelope);
+            envelope.append(' ');
+            envelope.append(Integer.toHexString(operationSize));
+            envelope.append('\n');
+            data.writeBytes(envelope.toString().getBytes(StandardCharsets.US_ASCII));
+            data.writeBytes(startOfFeed);
+            ByteBuffer operation = doc.getData();
+            byte[] operationBytes = new byte[operation.remaining()];
+            operation.get(operationBytes);
+            data.writeBytes(operationBytes);
+            data.writeBytes(endOfFeed);
+        }
+        return data.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(zipped)) {
+            gzip.write(data);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return zipped.toByteArray();
+    }
+
+    private InputStream verifyResponse(HttpResponse<byte[]> response) {
+        try {
+            verifyResponseCode(response);
+            verifyServerVersion(response.headers().firstValue(Headers.VERSION));
+            verifySessionHeader(response.headers().firstValue(Headers.SESSION_ID));
+            return new ByteArrayInputStream(response.body());
+        }
+        catch (ServerResponseException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void verifyResponseCode(HttpResponse<byte[]> response) throws ServerResponseException {
+        // As with the blocking connection, 261-299 are used to report transient errors internal to the gateway
+        int statusCode = response.statusCode();
+        if (statusCode > 199 && statusCode < 260) return;
+        if (statusCode == 299) throw new ServerResponseException(429, "Too  many requests.");
+
+        String message = tryGetDetailedErrorMessage(response).orElse("Response code " + statusCode);
+        throw new ServerResponseException(statusCode, message);
+    }
+
+    private static Optional<String> tryGetDetailedErrorMessage(HttpResponse<byte[]> response) {
+        Optional<String> contentType = response.headers().firstValue("Content-Type");
+        if ( ! contentType.isPresent() || ! contentType.get().equalsIgnoreCase("application/json")) return Optional.empty();
+        try {
+            JsonNode message = mapper.readTree(response.body()).get("message");
+            if (message == null || message.textValue() == null) return Optional.empty();
+            return Optional.of(message.textValue());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void verifyServerVersion(Optional<String> serverVersion) throws ServerResponseException {
+        if ( ! serverVersion.isPresent())
+            throw new ServerResponseException("Got bad protocol version from server.");
+        if ( ! serverVersion.get().trim().equals(String.valueOf(PROTOCOL_VERSION)))
+            throw new ServerResponseException("Unsupported version: " + serverVersion.get() +
+                                              ". Supported versions: [" + PROTOCOL_VERSION + "]");
+    }
+
+    private void verifySessionHeader(Optional<String> sessionId) throws ServerResponseException {
+        if ( ! sessionId.isPresent())
+            throw new ServerResponseException("Got no session ID from server.");
+        if ( ! clientId.equals(sessionId.get().trim()))
+            throw new ServerResponseException("Running using v3. However, server responds with different session " +
+                                              "than client has set; " + sessionId.get() + " vs client code " + clientId);
+    }
+
+    /**
+     * Creates a client which sends HTTP/1.1 requests over a pool of persistent connections to each endpoint,
+     * and runs all its tasks, including completion of responses, in the given executor.
+     */
+    static HttpClient createClient(ConnectionParams connectionParams, Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                                               .version(HttpClient.Version.HTTP_1_1)
+                                               .followRedirects(HttpClient.Redirect.NEVER)
+                                               .executor(executor);
+        if (connectionParams.getSslContext() != null) {
+            builder.sslContext(connectionParams.getSslContext());
+        }
+        if (connectionParams.getProxyHost() != null) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(connectionParams.getProxyHost(),
+                                                                 connectionParams.getProxyPort())));
+        }
+        return builder.build();
+    }
+
+}
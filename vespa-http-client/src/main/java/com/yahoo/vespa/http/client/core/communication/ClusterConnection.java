@@ -15,8 +15,11 @@ import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.net.http.HttpClient;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -26,7 +29,9 @@ import java.util.concurrent.TimeUnit;
 public class ClusterConnection implements AutoCloseable {
 
     private final OperationProcessor operationProcessor;
-    private final List<IOThread> ioThreads = new ArrayList<>();
+    private final List<EndpointFeeder> feeders = new ArrayList<>();
+    /** The thread running all async feeders of this, or null if this uses blocking I/O threads */
+    private final ScheduledExecutorService eventLoop;
     private final int clusterId;
     private final SessionParams.ErrorReporter errorReporter;
     private static JsonFactory jsonFactory = new JsonFactory();
@@ -47,6 +52,12 @@ public class ClusterConnection implements AutoCloseable {
         }
         this.operationProcessor = operationProcessor;
         this.clusterId = clusterId;
+        if (connectionParams.getUseAsyncTransport() && ! connectionParams.isDryRun()) {
+            this.eventLoop = createEventLoop(operationProcessor.getIoThreadGroup(), clusterId);
+            createAsyncFeeders(feedParams, connectionParams, cluster, clientQueueSizePerCluster, timeoutExecutor);
+            return;
+        }
+        this.eventLoop = null;
         final int totalNumberOfEndpointsInThisCluster = cluster.getEndpoints().size()
                 * connectionParams.getNumPersistentConnectionsPerEndpoint();
         if (totalNumberOfEndpointsInThisCluster == 0) {
@@ -92,11 +103,64 @@ public class ClusterConnection implements AutoCloseable {
                         feedParams.getLocalQueueTimeOut(),
                         documentQueue,
                         feedParams.getMaxSleepTimeMs());
-                ioThreads.add(ioThread);
+                feeders.add(ioThread);
             }
         }
     }
 
+    /**
+     * Creates one feeder per endpoint, each sending concurrent requests through an HTTP client shared by
+     * all the feeders, and all run by the event loop.
+     */
+    private void createAsyncFeeders(FeedParams feedParams,
+                                    ConnectionParams connectionParams,
+                                    Cluster cluster,
+                                    int clientQueueSizePerCluster,
+                                    ScheduledThreadPoolExecutor timeoutExecutor) {
+        if (cluster.getEndpoints().isEmpty()) return;
+
+        HttpClient httpClient = AsyncGatewayConnection.createClient(connectionParams, eventLoop);
+        int maxInFlightPerEndpoint = Math.max(1, feedParams.getMaxInFlightRequests() / cluster.getEndpoints().size());
+        DocumentQueue documentQueue = new DocumentQueue(clientQueueSizePerCluster);
+        for (Endpoint endpoint : cluster.getEndpoints()) {
+            EndpointResultQueue endpointResultQueue = new EndpointResultQueue(
+                    operationProcessor,
+                    endpoint,
+                    clusterId,
+                    timeoutExecutor,
+                    feedParams.getServerTimeout(TimeUnit.MILLISECONDS)
+                            + feedParams.getClientTimeout(TimeUnit.MILLISECONDS));
+            AsyncGatewayConnection connection = new AsyncGatewayConnection(
+                    httpClient,
+                    endpoint,
+                    feedParams,
+                    connectionParams,
+                    operationProcessor.getClientId());
+            feeders.add(new AsyncEndpointFeeder(
+                    operationProcessor.getIoThreadGroup(),
+                    endpointResultQueue,
+                    connection,
+                    eventLoop,
+                    clusterId,
+                    feedParams.getMaxChunkSizeBytes(),
+                    maxInFlightPerEndpoint,
+                    connectionParams.getNumPersistentConnectionsPerEndpoint(),
+                    feedParams.getLocalQueueTimeOut(),
+                    documentQueue,
+                    feedParams.getMaxSleepTimeMs(),
+                    feedParams.getServerTimeout(TimeUnit.MILLISECONDS)
+                            + feedParams.getClientTimeout(TimeUnit.MILLISECONDS)));
+        }
+    }
+
+    private static ScheduledExecutorService createEventLoop(ThreadGroup ioThreadGroup, int clusterId) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(ioThreadGroup, runnable, "Feed event loop for cluster " + clusterId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     public int getClusterId() {
         return clusterId;
     }
@@ -106,11 +170,11 @@ public class ClusterConnection implements AutoCloseable {
         //the same document ID must always go to the same destination
         // In noHandshakeMode this has no effect as the documentQueue is shared between the IOThreads.
         int hash = documentIdStr.hashCode() & 0x7FFFFFFF;  //strip sign bit
-        IOThread ioThread = ioThreads.get(hash % ioThreads.size());
+        EndpointFeeder feeder = feeders.get(hash % feeders.size());
         try {
-            ioThread.post(document);
+            feeder.post(document);
         } catch (Throwable t) {
-            throw new EndpointIOException(ioThread.getEndpoint(), "While sending", t);
+            throw new EndpointIOException(feeder.getEndpoint(), "While sending", t);
         }
     }
 
@@ -118,13 +182,16 @@ public class ClusterConnection implements AutoCloseable {
     @Override
     public void close() {
         List<Exception> exceptions = new ArrayList<>();
-        for (IOThread ioThread : ioThreads) {
+        for (EndpointFeeder feeder : feeders) {
             try {
-                ioThread.close();
+                feeder.close();
             } catch (Exception e) {
                 exceptions.add(e);
             }
         }
+        if (eventLoop != null) {
+            eventLoop.shutdown();
+        }
         if (exceptions.isEmpty()) {
             return;
         }
@@ -152,14 +219,14 @@ public class ClusterConnection implements AutoCloseable {
         JsonGenerator jsonGenerator = jsonFactory.createGenerator(stringWriter);
         jsonGenerator.writeStartObject();
         jsonGenerator.writeArrayFieldStart("session");
-        for (IOThread ioThread : ioThreads) {
+        for (EndpointFeeder feeder : feeders) {
             jsonGenerator.writeStartObject();
             jsonGenerator.writeObjectFieldStart("endpoint");
-            jsonGenerator.writeStringField("host", ioThread.getEndpoint().getHostname());
-            jsonGenerator.writeNumberField("port", ioThread.getEndpoint().getPort());
+            jsonGenerator.writeStringField("host", feeder.getEndpoint().getHostname());
+            jsonGenerator.writeNumberField("port", feeder.getEndpoint().getPort());
             jsonGenerator.writeEndObject();
             jsonGenerator.writeFieldName("stats");
-            IOThread.ConnectionStats connectionStats = ioThread.getConnectionStats();
+            IOThread.ConnectionStats connectionStats = feeder.getConnectionStats();
             objectMapper.writeValue(jsonGenerator, connectionStats);
             jsonGenerator.writeEndObject();
         }
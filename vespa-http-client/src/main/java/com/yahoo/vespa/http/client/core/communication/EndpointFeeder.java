@@ -0,0 +1,26 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.core.Document;
+
+/**
+ * Feeds documents to an endpoint and passes the results on to an endpoint result queue.
+ *
+ * @author agent
+ */
+interface EndpointFeeder extends AutoCloseable {
+
+    Endpoint getEndpoint();
+
+    /** Queues a document for feeding, blocking if the queue is full */
+    void post(Document document) throws InterruptedException;
+
+    /** Returns a snapshot of the counters of this. Threadsafe. */
+    IOThread.ConnectionStats getConnectionStats();
+
+    /** Fails any documents not yet fed and releases the resources of this */
+    @Override
+    void close();
+
+}
@@ -19,12 +19,21 @@ public class GatewayThrottler {
     }
 
     public void handleCall(int transientErrors) {
+        sleepMs(updateBackOffTime(transientErrors));
+    }
+
+    /**
+     * Updates the back off time given the number of transient errors in the last call, without sleeping.
+     *
+     * @return the time to wait before making the next call
+     */
+    public long updateBackOffTime(int transientErrors) {
         if (transientErrors > 0) {
             backOffTimeMs = Math.min(maxSleepTimeMs, backOffTimeMs + distribute(100));
         } else {
             backOffTimeMs = Math.max(0, backOffTimeMs - distribute(10));
         }
-        sleepMs(backOffTimeMs);
+        return backOffTimeMs;
     }
 
     protected void sleepMs(long sleepTime) {
@@ -28,7 +28,7 @@ import java.util.logging.Logger;
  * 
  * @author Einar M R Rosenvinge
  */
-class IOThread implements Runnable, AutoCloseable {
+class IOThread implements Runnable, EndpointFeeder {
 
     private static Logger log = Logger.getLogger(IOThread.class.getName());
     private final Endpoint endpoint;
@@ -110,6 +110,30 @@ public class V3HttpAPITest extends TestOnCiBuildingSystemOnly {
         }
     }
 
+    @Test
+    public void requireThatSingleDestinationWorksWithTheAsyncClient() throws Exception {
+        try (Server server = new Server(new V3MockParsingRequestHandler(), 0);
+             Session session = SessionFactory.create(
+                     new SessionParams.Builder()
+                             .setConnectionParams(new ConnectionParams.Builder().setUseAsyncTransport(true).build())
+                             .addCluster(new Cluster.Builder()
+                                                 .addEndpoint(Endpoint.create("localhost", server.getPort(), false))
+                                                 .build())
+                             .build())) {
+
+            writeDocuments(session);
+            Map<String, Result> results = getResults(session, documents.size());
+            assertThat(results.size(), is(documents.size()));
+
+            for (TestDocument document : documents) {
+                Result r = results.remove(document.getDocumentId());
+                assertThat(r, not(nullValue()));
+                assertThat(r.getDetails().toString(), r.isSuccess(), is(true));
+            }
+            assertThat(results.isEmpty(), is(true));
+        }
+    }
+
     @Test
     public void requireThatBadResponseCodeFails() throws Exception {
         testServerWithMock(new V3MockParsingRequestHandler(401/*Unauthorized*/), true, false);
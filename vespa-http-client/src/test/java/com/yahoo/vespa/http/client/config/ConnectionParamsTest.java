@@ -27,6 +27,7 @@ public class ConnectionParamsTest {
         assertThat(params.getHeaders().isEmpty(), is(true));
         assertThat(params.getNumPersistentConnectionsPerEndpoint(), is(8));
         assertThat(params.getSslContext(), nullValue());
+        assertThat(params.getUseAsyncTransport(), is(false));
     }
 
     @Test
@@ -37,9 +38,11 @@ public class ConnectionParamsTest {
                 .addHeader("Banana", "Apple")
                 .setNumPersistentConnectionsPerEndpoint(2)
                 .setSslContext(SSLContext.getDefault())
+                .setUseAsyncTransport(true)
                 .build();
 
         assertThat(params.getNumPersistentConnectionsPerEndpoint(), is(2));
+        assertThat(params.getUseAsyncTransport(), is(true));
 
         assertThat(params.getHeaders().isEmpty(), is(false));
         assertThat(params.getHeaders().size(), is(3));
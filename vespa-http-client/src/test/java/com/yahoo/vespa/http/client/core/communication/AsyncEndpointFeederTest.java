@@ -0,0 +1,358 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.FeedEndpointException;
+import com.yahoo.vespa.http.client.FeedProtocolException;
+import com.yahoo.vespa.http.client.Result;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.EndpointResult;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+import com.yahoo.vespa.http.client.core.operationProcessor.EndPointResultFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the async feeder against a mock gateway whose responses are completed by the tests.
+ *
+ * @author agent
+ */
+public class AsyncEndpointFeederTest {
+
+    private static final Endpoint ENDPOINT = Endpoint.create("myhost");
+    private static final long maxWaitMillis = 60_000;
+
+    private final ScheduledExecutorService eventLoop = Executors.newSingleThreadScheduledExecutor();
+    private final MockGateway gateway = new MockGateway();
+    private final MockResultQueue resultQueue = new MockResultQueue();
+    private final DocumentQueue documentQueue = new DocumentQueue(100);
+    private AsyncEndpointFeeder feeder;
+
+    @After
+    public void tearDown() {
+        if (feeder != null) feeder.close();
+        eventLoop.shutdownNow();
+    }
+
+    @Test
+    public void requireThatConcurrentRequestsAreBoundedByTheWindow() throws Exception {
+        feeder = createFeeder(3, 0);
+        postDocuments(5);
+        awaitRequests(3);
+        assertRequestsAfterEventLoopIsIdle(3);
+        assertEquals(1, gateway.handshakes.get());
+
+        gateway.requests.get(0).respondOk();
+        awaitRequests(4);
+        assertRequestsAfterEventLoopIsIdle(4);
+        assertEquals(List.of("op0"), resultQueue.receivedIds());
+        assertEquals(Result.ResultType.OPERATION_EXECUTED, resultQueue.received.get(0).getDetail().getResultType());
+    }
+
+    @Test
+    public void requireThatThrottlingHalvesTheWindowWhichThenRegrows() throws Exception {
+        feeder = createFeeder(4, 0);
+        postDocuments(8);
+        awaitRequests(4);
+
+        // The gateway reports throttling as 299, which the connection turns into 429
+        gateway.requests.get(0).respond(new ServerResponseException(429, "Too  many requests."));
+        awaitCondition(() -> resultQueue.failed.size() == 1);
+        assertRequestsAfterEventLoopIsIdle(4); // 3 in flight is above the window of 2
+        assertEquals(Result.ResultType.TRANSITIVE_ERROR, resultQueue.failed.get(0).getDetail().getResultType());
+        assertEquals(1, gateway.handshakes.get()); // Throttling does not need a new handshake
+
+        gateway.requests.get(1).respondOk(); // Window grows to 3, with 2 in flight
+        awaitRequests(5);
+        assertRequestsAfterEventLoopIsIdle(5);
+
+        gateway.requests.get(2).respondOk(); // Window grows to 4, with 2 in flight
+        awaitRequests(7);
+        assertRequestsAfterEventLoopIsIdle(7);
+    }
+
+    @Test
+    public void requireThatServerErrorsFailTheOperationsAndCauseResync() throws Exception {
+        feeder = createFeeder(2, 0);
+        postDocuments(4);
+        awaitRequests(2);
+        assertEquals(1, gateway.handshakes.get());
+
+        gateway.requests.get(0).respond(new ServerResponseException(500, "Internal server error"));
+        awaitCondition(() -> gateway.handshakes.get() == 2);
+        assertEquals(List.of("op0"), resultQueue.failedIds());
+        assertEquals(Result.ResultType.TRANSITIVE_ERROR, resultQueue.failed.get(0).getDetail().getResultType());
+        assertThat(resultQueue.failed.get(0).getDetail().getException().getMessage(), containsString("Internal server error"));
+
+        // The window is halved to 1, so nothing more is sent until the request in flight completes
+        assertRequestsAfterEventLoopIsIdle(2);
+        gateway.requests.get(1).respondOk(); // Window grows to 2, with none in flight
+        awaitRequests(4);
+        assertRequestsAfterEventLoopIsIdle(4);
+    }
+
+    @Test
+    public void requireThatCommunicationErrorsFailTheOperationsAndCauseResync() throws Exception {
+        feeder = createFeeder(1, 0);
+        postDocuments(2);
+        awaitRequests(1);
+
+        gateway.requests.get(0).respond(new IOException("Connection reset"));
+        awaitRequests(2);
+        assertEquals(2, gateway.handshakes.get());
+        assertEquals(List.of("op0"), resultQueue.failedIds());
+        assertEquals(Result.ResultType.TRANSITIVE_ERROR, resultQueue.failed.get(0).getDetail().getResultType());
+        assertEquals(1, feeder.getConnectionStats().executeProblemsCounter);
+    }
+
+    @Test
+    public void requireThatFailedHandshakesAreReportedAndRetried() throws Exception {
+        gateway.handshakeResponses.add(failed(new ServerResponseException(403, "Not authorized")));
+        feeder = createFeeder(1, 0);
+        postDocuments(1);
+
+        awaitCondition(() -> resultQueue.endpointErrors.size() == 1);
+        FeedEndpointException error = resultQueue.endpointErrors.get(0);
+        assertTrue(error instanceof FeedProtocolException);
+        assertEquals(403, ((FeedProtocolException)error).getHttpStatusCode());
+        assertEquals(ENDPOINT, error.getEndpoint());
+        assertRequestsAfterEventLoopIsIdle(0);
+
+        // The handshake is retried after a pause, and feeding then starts
+        awaitRequests(1);
+        assertEquals(2, gateway.handshakes.get());
+        assertEquals(1, feeder.getConnectionStats().successfullHandshakes);
+    }
+
+    @Test
+    public void requireThatTransientErrorsCauseBackOffBeforeSendingAgain() throws Exception {
+        feeder = createFeeder(1, 10_000);
+        postDocuments(2);
+        awaitRequests(1);
+
+        long failureTime = System.nanoTime();
+        gateway.requests.get(0).respond(new ServerResponseException(429, "Too  many requests."));
+        awaitRequests(2);
+        // The first back off is at least 50 ms, less the granularity of the clock
+        long backOffMillis = TimeUnit.NANOSECONDS.toMillis(gateway.requests.get(1).sentAtNanos - failureTime);
+        assertTrue("Backed off for " + backOffMillis + " ms", backOffMillis >= 45);
+
+        // The failed operation is reported as a transient error, such that it is retried by the operation processor
+        assertEquals(List.of("op0"), resultQueue.failedIds());
+        assertEquals(Result.ResultType.TRANSITIVE_ERROR, resultQueue.failed.get(0).getDetail().getResultType());
+    }
+
+    @Test
+    public void requireThatCloseFetchesResultsOfOperationsInFlightAndFailsTheRest() throws Exception {
+        feeder = createFeeder(1, 0);
+        postDocuments(3);
+        awaitRequests(1);
+        assertRequestsAfterEventLoopIsIdle(1);
+
+        gateway.drainResponse.complete(response("op0 OK Doc{20}fed"));
+        feeder.close();
+        assertEquals(1, gateway.drains.get());
+        assertEquals(List.of("op0"), resultQueue.receivedIds());
+        assertEquals(List.of("op1", "op2"), resultQueue.failedIds());
+        for (EndpointResult result : resultQueue.failed) {
+            assertEquals(Result.ResultType.FATAL_ERROR, result.getDetail().getResultType());
+            assertThat(result.getDetail().getException().getMessage(), containsString("Closed call"));
+        }
+        assertThat(documentQueue.removeAllDocuments().isEmpty(), is(true));
+    }
+
+    @Test
+    public void requireThatCloseDoesNotWaitForeverForResultsOfOperationsInFlight() throws Exception {
+        feeder = createFeeder(2, 0);
+        postDocuments(2);
+        awaitRequests(2);
+
+        feeder.close(); // The drain request never completes
+        assertEquals(1, gateway.drains.get());
+        assertEquals(List.of("op0", "op1"), resultQueue.failedIds());
+        for (EndpointResult result : resultQueue.failed)
+            assertEquals(Result.ResultType.FATAL_ERROR, result.getDetail().getResultType());
+    }
+
+    private AsyncEndpointFeeder createFeeder(int maxConcurrentRequests, long maxSleepTimeMs) {
+        return new AsyncEndpointFeeder(null,
+                                       resultQueue,
+                                       gateway,
+                                       eventLoop,
+                                       0,
+                                       1, // One document per request
+                                       1000,
+                                       maxConcurrentRequests,
+                                       10_000,
+                                       documentQueue,
+                                       maxSleepTimeMs,
+                                       100);
+    }
+
+    private void postDocuments(int count) throws InterruptedException {
+        for (int i = 0; i < count; i++)
+            feeder.post(new Document("id:test:test::" + i, "op" + i, "data" + i, null));
+    }
+
+    /** Waits until the given number of requests are sent */
+    private void awaitRequests(int count) throws InterruptedException {
+        awaitCondition(() -> gateway.requests.size() >= count);
+        assertEquals(count, gateway.requests.size());
+    }
+
+    /** Lets the event loop run a few rounds, including a tick, and asserts the number of requests sent */
+    private void assertRequestsAfterEventLoopIsIdle(int count) throws Exception {
+        Thread.sleep(250);
+        eventLoop.submit(() -> {}).get();
+        assertEquals(count, gateway.requests.size());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long endTime = System.currentTimeMillis() + maxWaitMillis;
+        while ( ! condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > endTime)
+                fail("Condition not met within " + maxWaitMillis + " ms");
+            Thread.sleep(1);
+        }
+    }
+
+    private static InputStream response(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static CompletableFuture<InputStream> failed(Throwable exception) {
+        CompletableFuture<InputStream> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    private static class Request {
+
+        final List<Document> documents;
+        final CompletableFuture<InputStream> response = new CompletableFuture<>();
+        final long sentAtNanos = System.nanoTime();
+
+        Request(List<Document> documents) {
+            this.documents = documents;
+        }
+
+        void respondOk() {
+            response.complete(response(documents.stream()
+                                                .map(document -> document.getOperationId() + " OK Doc{20}fed")
+                                                .collect(Collectors.joining("\n"))));
+        }
+
+        void respond(Throwable exception) {
+            response.completeExceptionally(exception);
+        }
+
+    }
+
+    /** A gateway which records requests, and lets the test complete them */
+    private static class MockGateway extends AsyncGatewayConnection {
+
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+        final AtomicInteger handshakes = new AtomicInteger();
+        final AtomicInteger drains = new AtomicInteger();
+        final Queue<CompletableFuture<InputStream>> handshakeResponses = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<InputStream> drainResponse = new CompletableFuture<>();
+
+        MockGateway() {
+            super(null, ENDPOINT, new FeedParams.Builder().build(), new ConnectionParams.Builder().build(), "client");
+        }
+
+        @Override
+        CompletableFuture<InputStream> writeOperations(List<Document> docs) {
+            Request request = new Request(docs);
+            requests.add(request);
+            return request.response;
+        }
+
+        @Override
+        CompletableFuture<InputStream> drain() {
+            drains.incrementAndGet();
+            return drainResponse;
+        }
+
+        @Override
+        CompletableFuture<InputStream> handshake() {
+            handshakes.incrementAndGet();
+            CompletableFuture<InputStream> response = handshakeResponses.poll();
+            return response != null ? response : CompletableFuture.completedFuture(response(""));
+        }
+
+    }
+
+    /** A result queue which records results, and keeps the sent operations which have no result as pending */
+    private static class MockResultQueue extends EndpointResultQueue {
+
+        final List<EndpointResult> received = new CopyOnWriteArrayList<>();
+        final List<EndpointResult> failed = new CopyOnWriteArrayList<>();
+        final List<FeedEndpointException> endpointErrors = new CopyOnWriteArrayList<>();
+        final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        MockResultQueue() {
+            super(null, ENDPOINT, 0, null, 0);
+        }
+
+        List<String> receivedIds() { return received.stream().map(EndpointResult::getOperationId).collect(Collectors.toList()); }
+        List<String> failedIds() { return failed.stream().map(EndpointResult::getOperationId).collect(Collectors.toList()); }
+
+        @Override
+        public void operationSent(String operationId) { pending.add(operationId); }
+
+        @Override
+        public void failOperation(EndpointResult result, int clusterId) {
+            failed.add(result);
+            pending.remove(result.getOperationId());
+        }
+
+        @Override
+        public void resultReceived(EndpointResult result, int clusterId) {
+            received.add(result);
+            pending.remove(result.getOperationId());
+        }
+
+        @Override
+        void onEndpointError(FeedEndpointException e) { endpointErrors.add(e); }
+
+        @Override
+        public int getPendingSize() { return pending.size(); }
+
+        @Override
+        public void failPending(Exception exception) {
+            for (String operationId : pending.stream().sorted().collect(Collectors.toList()))
+                failed.add(EndPointResultFactory.createError(ENDPOINT, operationId, exception));
+            pending.clear();
+        }
+
+    }
+
+}
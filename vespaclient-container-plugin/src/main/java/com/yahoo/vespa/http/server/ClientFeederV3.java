@@ -28,12 +28,11 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
-import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
-
 /**
  * An instance of this class handles all requests from one client using VespaHttpClient.
  *
@@ -59,6 +58,10 @@ class ClientFeederV3 {
     private final Object monitor = new Object();
     private final StreamReaderV3 streamReaderV3;
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
+    // Messages of this client waiting for the messagebus throttle window. Operations beyond the max are failed
+    // with a transient error, such that the client backs off, rather than blocking the handler thread.
+    private final AtomicInteger queuedOperations = new AtomicInteger(0);
+    private final int maxQueuedOperations = 100;
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
 
@@ -200,27 +203,6 @@ class ClientFeederV3 {
         }
     }
 
-    private Result sendMessage(
-            FeederSettings settings,
-            DocumentOperationMessageV3 msg,
-            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
-        Result result = null;
-        while (result == null || result.getError().getCode() == SEND_QUEUE_FULL) {
-            msg.getMessage().pushHandler(feedReplyHandler);
-
-            if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
-                return sourceSession.getResource().sendMessage(msg.getMessage());
-            } else {
-                result = sourceSession.getResource().sendMessageBlocking(msg.getMessage());
-            }
-            if (result.isAccepted()) {
-                return result;
-            }
-            Thread.sleep(100);
-        }
-        return result;
-    }
-
     private void feed(
             FeederSettings settings,
             InputStream requestInputStream,
@@ -234,34 +216,70 @@ class ClientFeederV3 {
                 break;
             }
             setMessageParameters(msg.get(), settings);
+            msg.get().getMessage().pushHandler(feedReplyHandler);
 
-            Result result;
             try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
-
+                if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
+                    Result result = sourceSession.getResource().sendMessage(msg.get().getMessage());
+                    if (result.isAccepted()) {
+                        outstandingOperations.incrementAndGet();
+                        operationAccepted(msg.get());
+                    } else {
+                        repliesFromOldMessages.add(createOperationStatus(msg.get(), result));
+                    }
+                }
+                else {
+                    sendWhenReady(msg.get(), repliesFromOldMessages);
+                }
             } catch  (RuntimeException e) {
                 repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), Exceptions.toMessageString(e),
                         ErrorCode.ERROR, false, msg.get().getMessage()));
-                continue;
             }
+        }
+    }
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
-            }
+    /**
+     * Sends the given message as soon as the messagebus throttle window opens, without waiting for it,
+     * such that the feed thread can continue parsing while a limited number of messages are queued.
+     * Messages which are not accepted when dequeued are reported as replies to a later request from this client.
+     * If too many messages from this client are queued already, the message is failed with a transient error
+     * in the replies to this request instead.
+     */
+    private void sendWhenReady(DocumentOperationMessageV3 msg, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        if (queuedOperations.incrementAndGet() > maxQueuedOperations) {
+            queuedOperations.decrementAndGet();
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(),
+                                                             "Too many operations from this client are waiting to be sent",
+                                                             ErrorCode.TRANSIENT_ERROR, false, msg.getMessage()));
+            return;
         }
+        CompletableFuture<Result> result = sourceSession.getResource().sendMessageWhenReady(msg.getMessage());
+        outstandingOperations.incrementAndGet();
+        // This is usually completed by a messagebus thread, so only cheap bookkeeping is done here
+        result.thenAccept(r -> {
+            queuedOperations.decrementAndGet();
+            if (r.isAccepted())
+                operationAccepted(msg);
+            else if (r.getError().getCode() != com.yahoo.messagebus.ErrorCode.TIMEOUT) // timeouts produce a reply
+                feedReplies.add(createOperationStatus(msg, r));
+        });
+    }
+
+    private void operationAccepted(DocumentOperationMessageV3 msg) {
+        updateOpsPerSec();
+        log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+    }
+
+    private OperationStatus createOperationStatus(DocumentOperationMessageV3 msg, Result result) {
+        if ( ! result.getError().isFatal())
+            return createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                                         ErrorCode.TRANSIENT_ERROR, false, msg.getMessage());
+
+        // should probably not happen, but everybody knows stuff that
+        // shouldn't happen, happens all the time
+        boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+        return createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                                     ErrorCode.ERROR, isConditionNotMet, msg.getMessage());
     }
 
     private OperationStatus createOperationStatus(String id, String message,
@@ -29,6 +29,7 @@ import com.yahoo.container.jdisc.HttpRequest;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -111,19 +112,15 @@ public class FeedTesterV3 {
                     SessionCache sessionCache, SourceSessionParams sessionParams)  {
                 SharedSourceSession sharedSourceSession = mock(SharedSourceSession.class);
 
-                try {
-                    Mockito.stub(sharedSourceSession.sendMessageBlocking(anyObject())).toAnswer((Answer) invocation -> {
-                        Object[] args = invocation.getArguments();
-                        PutDocumentMessage putDocumentMessage = (PutDocumentMessage) args[0];
-                        ReplyContext replyContext = (ReplyContext)putDocumentMessage.getContext();
-                        replyContext.feedReplies.add(new OperationStatus("message", replyContext.docId, ErrorCode.OK, false, "trace"));
-                        Result result = mock(Result.class);
-                        when(result.isAccepted()).thenReturn(true);
-                        return result;
-                    });
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                Mockito.stub(sharedSourceSession.sendMessageWhenReady(anyObject())).toAnswer((Answer) invocation -> {
+                    Object[] args = invocation.getArguments();
+                    PutDocumentMessage putDocumentMessage = (PutDocumentMessage) args[0];
+                    ReplyContext replyContext = (ReplyContext)putDocumentMessage.getContext();
+                    replyContext.feedReplies.add(new OperationStatus("message", replyContext.docId, ErrorCode.OK, false, "trace"));
+                    Result result = mock(Result.class);
+                    when(result.isAccepted()).thenReturn(true);
+                    return CompletableFuture.completedFuture(result);
+                });
 
                 Result result = mock(Result.class);
                 when(result.isAccepted()).thenReturn(true);
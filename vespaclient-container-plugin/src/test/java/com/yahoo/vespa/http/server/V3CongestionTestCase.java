@@ -27,7 +27,12 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStream;
 
-
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertTrue;
@@ -67,6 +72,7 @@ public class V3CongestionTestCase {
 
     ClientFeederV3 clientFeederV3;
     HttpRequest request;
+    MockSharedSession session;
 
     @Before
     public void setup() {
@@ -94,8 +100,14 @@ public class V3CongestionTestCase {
 
     // A mock for message bus that can simulate blocking requests.
     private static class MockSharedSession extends SharedSourceSession {
-        boolean queuFull = true;
+        volatile boolean queuFull = true;
         AtomicInteger requests;
+        private final ScheduledExecutorService sendQueue = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mock-send-queue");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final List<CompletableFuture<Result>> sent = new CopyOnWriteArrayList<>();
 
         public MockSharedSession(SourceSessionParams params, AtomicInteger requests) {
             super(new SharedMessageBus(new MessageBus(new MockNetwork(),
@@ -108,9 +120,30 @@ public class V3CongestionTestCase {
             return sendMessage(msg);
         }
 
+        @Override
+        public CompletableFuture<Result> sendMessageWhenReady(Message msg) {
+            // Simulates a send queue which keeps retrying in another thread until the message is accepted
+            CompletableFuture<Result> result = new CompletableFuture<>();
+            sent.add(result);
+            sendQueue.execute(() -> sendWhenReady(msg, result));
+            return result;
+        }
+
+        private void sendWhenReady(Message msg, CompletableFuture<Result> result) {
+            Result attempt = sendMessage(msg);
+            if ( ! attempt.isAccepted() && attempt.getError().getCode() == ErrorCode.SEND_QUEUE_FULL)
+                sendQueue.schedule(() -> sendWhenReady(msg, result), 1, TimeUnit.MILLISECONDS);
+            else
+                result.complete(attempt);
+        }
+
+        /** Waits for all messages sent when ready to be completed */
+        void awaitSent() throws Exception {
+            CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        }
+
         @Override
         public Result sendMessage(Message msg) {
-            ReplyHandler handler = msg.popHandler();
             if (queuFull) {
                 requests.incrementAndGet();
                 // Disable queue full after some attempts
@@ -121,7 +154,7 @@ public class V3CongestionTestCase {
                 return r;
             }
 
-            handler.handleReply(new MockReply(msg.getContext()));
+            msg.popHandler().handleReply(new MockReply(msg.getContext()));
             return Result.ACCEPTED;
         }
     }
@@ -129,16 +162,17 @@ public class V3CongestionTestCase {
     ReferencedResource<SharedSourceSession> retainMockSession(
             SourceSessionParams sessionParams,
             AtomicInteger requests) {
-        final SharedSourceSession session = new MockSharedSession(sessionParams, requests);
+        session = new MockSharedSession(sessionParams, requests);
         return new ReferencedResource<>(session, References.fromResource(session));
     }
 
     @Test
-    public void testRetriesWhenThreadsAvailable() throws IOException {
+    public void testRetriesWhenThreadsAvailable() throws Exception {
         request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "true");
         threadsAvail.set(10);
 
         clientFeederV3.handleRequest(request);
+        session.awaitSent();
         assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
     }
 
@@ -152,11 +186,12 @@ public class V3CongestionTestCase {
     }
 
     @Test
-    public void testRetriesWhenNoThreadsAvailableButNoDenyIfBusy() throws IOException {
+    public void testRetriesWhenNoThreadsAvailableButNoDenyIfBusy() throws Exception {
         request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "false");
         threadsAvail.set(0);
 
         clientFeederV3.handleRequest(request);
+        session.awaitSent();
         assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
     }
 }
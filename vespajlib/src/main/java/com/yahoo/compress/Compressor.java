@@ -67,7 +67,8 @@ public class Compressor {
      * @param data the data to compress. This array is only read by this method.
      * @param uncompressedSize uncompressedSize the size in bytes of the data array. If this is not present, it is
      *                         assumed that the size is the same as the data array size, i.e that it is completely
-     *                         filled with uncompressed data.
+     *                         filled with uncompressed data. If it is present, only this many bytes of the
+     *                         array will be part of the returned data, also when it is not compressed.
      * @return the compression result
      * @throws IllegalArgumentException if the compression type is not supported
      */
@@ -78,16 +79,22 @@ public class Compressor {
                 return new Compression(CompressionType.NONE, data.length, data);
             case LZ4:
                 int dataSize = uncompressedSize.isPresent() ? uncompressedSize.get() : data.length;
-                if (dataSize < compressMinSizeBytes) return new Compression(CompressionType.INCOMPRESSIBLE, dataSize, data);
+                if (dataSize < compressMinSizeBytes) return incompressible(data, dataSize);
                 LZ4Compressor compressor = level < 7 ? factory.fastCompressor() : factory.highCompressor();
                 byte[] compressedData = compressor.compress(data, 0, dataSize);
                 if (compressedData.length + 8 >= dataSize * compressionThresholdFactor)
-                    return new Compression(CompressionType.INCOMPRESSIBLE, dataSize, data);
+                    return incompressible(data, dataSize);
                 return new Compression(CompressionType.LZ4, dataSize, compressedData);
             default:
                 throw new IllegalArgumentException(requestedCompression + " is not supported");
         }
     }
+
+    /** Returns the given data uncompressed, copying it only if the array holds more than the given size */
+    private static Compression incompressible(byte[] data, int size) {
+        return new Compression(CompressionType.INCOMPRESSIBLE, size, data.length == size ? data : Arrays.copyOf(data, size));
+    }
+
     /** Compresses some data using the compression type of this compressor */
     public Compression compress(CompressionType requestedCompression, byte[] data) { return compress(type, data, Optional.empty()); }
     /** Compresses some data using the compression type of this compressor */
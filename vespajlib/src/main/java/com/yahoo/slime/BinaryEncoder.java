@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.compress.Compressor;
+
 import static com.yahoo.slime.BinaryFormat.*;
 
 final class BinaryEncoder implements
@@ -17,10 +19,19 @@ ArrayTraverser, ObjectSymbolTraverser
     }
 
     public byte[] encode(Slime slime) {
+        encodeToBuffer(slime);
+        return out.toArray();
+    }
+
+    public Compressor.Compression encodeAndCompress(Slime slime, Compressor compressor) {
+        encodeToBuffer(slime);
+        return out.compress(compressor);
+    }
+
+    private void encodeToBuffer(Slime slime) {
         out.reset();
         encodeSymbolTable(slime);
         encodeValue(slime.get());
-        return out.toArray();
     }
 
     void encode_cmpr_long(long value) {
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.compress.Compressor;
+
 /**
  * Class for serializing Slime data into binary format, or deserializing
  * the binary format into a Slime object.
@@ -44,6 +46,23 @@ public class BinaryFormat {
         return encoder.encode(slime);
     }
 
+    /**
+     * Take a Slime object, serialize it into binary format and compress it.
+     * This is cheaper than compressing the result of the @ref encode() method,
+     * as the serialized data is compressed without being copied out first.
+     *
+     * @param slime the object which is to be serialized.
+     * @param compressor the compressor to use.
+     * @param sizeHint the expected size of the serialized object in bytes.
+     *        The serialization buffer is allocated with this size up front
+     *        to avoid having to grow it.
+     * @return the compressed serialized slime.
+     **/
+    public static Compressor.Compression encode_and_compress(Slime slime, Compressor compressor, int sizeHint) {
+        BinaryEncoder encoder = new BinaryEncoder(sizeHint);
+        return encoder.encodeAndCompress(slime, compressor);
+    }
+
     /**
      * Take binary data and deserialize it into a Slime object.
      * The data is assumed to be the binary representation
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.compress.Compressor;
+
 final class BufferedOutput {
 
     private byte[] buf;
@@ -44,9 +46,13 @@ final class BufferedOutput {
 
     final void put(byte[] bytes) {
         reserve(bytes.length);
-        for (byte b : bytes) {
-            buf[pos++] = b;
-        }
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    /** Compresses the content of this directly from the internal buffer, without copying it out first */
+    public Compressor.Compression compress(Compressor compressor) {
+        return compressor.compress(buf, pos);
     }
 
     public byte[] toArray() {
@@ -0,0 +1,139 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+
+/**
+ * The cell values of an indexed tensor, stored in an array of the smallest primitive type
+ * which can hold values of the value type of the tensor.
+ *
+ * @author agent
+ */
+abstract class CellValues {
+
+    /** Returns a new instance holding the given number of values of the given type, all 0 */
+    static CellValues of(TensorType.Value valueType, int size) {
+        switch (valueType) {
+            case DOUBLE: return new DoubleValues(new double[size]);
+            case FLOAT: return new FloatValues(new float[size]);
+            case BFLOAT16: return new BFloat16Values(new short[size]);
+            case INT8: return new Int8Values(new byte[size]);
+            default: throw new IllegalArgumentException("Unknown value type " + valueType);
+        }
+    }
+
+    /** Returns an instance holding the given values without copying them */
+    static CellValues of(double[] values) {
+        return new DoubleValues(values);
+    }
+
+    abstract TensorType.Value valueType();
+
+    abstract int size();
+
+    abstract double get(int index);
+
+    /** Sets the value at the given index, converted to the value type of this */
+    abstract void set(int index, double value);
+
+    /** Returns the array holding these values if they are stored as doubles, or null otherwise. Do not modify. */
+    double[] doubleArray() { return null; }
+
+    /** Returns the hash code of these values, which is the same as for the same values in other value types */
+    int valuesHashCode() {
+        int result = 1;
+        for (int i = 0; i < size(); i++) {
+            long bits = Double.doubleToLongBits(get(i));
+            result = 31 * result + (int)(bits ^ (bits >>> 32));
+        }
+        return result;
+    }
+
+    private static final class DoubleValues extends CellValues {
+
+        private final double[] values;
+
+        DoubleValues(double[] values) { this.values = values; }
+
+        @Override
+        TensorType.Value valueType() { return TensorType.Value.DOUBLE; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        double get(int index) { return values[index]; }
+
+        @Override
+        void set(int index, double value) { values[index] = value; }
+
+        @Override
+        int valuesHashCode() { return Arrays.hashCode(values); }
+
+        @Override
+        double[] doubleArray() { return values; }
+
+    }
+
+    private static final class FloatValues extends CellValues {
+
+        private final float[] values;
+
+        FloatValues(float[] values) { this.values = values; }
+
+        @Override
+        TensorType.Value valueType() { return TensorType.Value.FLOAT; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        double get(int index) { return values[index]; }
+
+        @Override
+        void set(int index, double value) { values[index] = (float)value; }
+
+    }
+
+    private static final class BFloat16Values extends CellValues {
+
+        /** The upper 16 bits of the float representation of each value */
+        private final short[] values;
+
+        BFloat16Values(short[] values) { this.values = values; }
+
+        @Override
+        TensorType.Value valueType() { return TensorType.Value.BFLOAT16; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        double get(int index) { return TensorType.Value.floatFromBFloat16Bits(values[index]); }
+
+        @Override
+        void set(int index, double value) { values[index] = TensorType.Value.bFloat16BitsFrom(value); }
+
+    }
+
+    private static final class Int8Values extends CellValues {
+
+        private final byte[] values;
+
+        Int8Values(byte[] values) { this.values = values; }
+
+        @Override
+        TensorType.Value valueType() { return TensorType.Value.INT8; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        double get(int index) { return values[index]; }
+
+        @Override
+        void set(int index, double value) { values[index] = (byte)TensorType.Value.INT8.round(value); }
+
+    }
+
+}
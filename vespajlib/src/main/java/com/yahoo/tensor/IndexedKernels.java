@@ -0,0 +1,95 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * Primitive loops over ranges of cells of indexed tensors, used by tensor functions to evaluate
+ * common combinations of joins and reductions without per-cell lambda invocations, aggregator objects
+ * or addresses.
+ * <p>
+ * Ranges are given as direct (value) indexes. The cells are visited in order, such that results
+ * are the same as those produced by the general join and reduce implementations.
+ *
+ * @author agent
+ */
+public final class IndexedKernels {
+
+    private IndexedKernels() {}
+
+    /**
+     * Returns the sum of the products of the cells in the given ranges.
+     *
+     * @param a the first tensor
+     * @param aStart the direct index of the first cell of the range in a
+     * @param aStride the distance between consecutive cells of the range in a
+     * @param b the second tensor
+     * @param bStart the direct index of the first cell of the range in b
+     * @param bStride the distance between consecutive cells of the range in b
+     * @param length the number of cells in each range
+     */
+    public static double dotProduct(IndexedTensor a, long aStart, long aStride,
+                                    IndexedTensor b, long bStart, long bStride,
+                                    long length) {
+        double[] aValues = a.cellValues().doubleArray();
+        double[] bValues = b.cellValues().doubleArray();
+        double sum = 0;
+        if (aValues != null && bValues != null && aStride == 1 && bStride == 1) {
+            int aIndex = (int)aStart, bIndex = (int)bStart;
+            for (int i = 0; i < length; i++)
+                sum += aValues[aIndex + i] * bValues[bIndex + i];
+        }
+        else {
+            CellValues aCells = a.cellValues(), bCells = b.cellValues();
+            for (long i = 0; i < length; i++)
+                sum += aCells.get((int)(aStart + i * aStride)) * bCells.get((int)(bStart + i * bStride));
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the squared differences of the cells in the given ranges,
+     * i.e the square of the euclidean distance between them.
+     *
+     * @param a the first tensor
+     * @param aStart the direct index of the first cell of the range in a
+     * @param aStride the distance between consecutive cells of the range in a
+     * @param b the second tensor
+     * @param bStart the direct index of the first cell of the range in b
+     * @param bStride the distance between consecutive cells of the range in b
+     * @param length the number of cells in each range
+     */
+    public static double squaredDistance(IndexedTensor a, long aStart, long aStride,
+                                         IndexedTensor b, long bStart, long bStride,
+                                         long length) {
+        double[] aValues = a.cellValues().doubleArray();
+        double[] bValues = b.cellValues().doubleArray();
+        double sum = 0;
+        if (aValues != null && bValues != null && aStride == 1 && bStride == 1) {
+            int aIndex = (int)aStart, bIndex = (int)bStart;
+            for (int i = 0; i < length; i++) {
+                double difference = aValues[aIndex + i] - bValues[bIndex + i];
+                sum += difference * difference;
+            }
+        }
+        else {
+            CellValues aCells = a.cellValues(), bCells = b.cellValues();
+            for (long i = 0; i < length; i++) {
+                double difference = aCells.get((int)(aStart + i * aStride)) - bCells.get((int)(bStart + i * bStride));
+                sum += difference * difference;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the squares of the cells in the given range.
+     *
+     * @param a the tensor
+     * @param start the direct index of the first cell of the range
+     * @param stride the distance between consecutive cells of the range
+     * @param length the number of cells in the range
+     */
+    public static double sumOfSquares(IndexedTensor a, long start, long stride, long length) {
+        return dotProduct(a, start, stride, a, start, stride, length);
+    }
+
+}
@@ -16,7 +16,8 @@ import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
- * An indexed (dense) tensor backed by a double array.
+ * An indexed (dense) tensor backed by an array of the primitive type matching its value type:
+ * double, float, short (the upper bits of the float representation of bfloat16) or byte (int8).
  *
  * @author bratseth
  */
@@ -28,9 +29,9 @@ public class IndexedTensor implements Tensor {
     /** The sizes of the dimensions of this in the order of the dimensions of the type */
     private final DimensionSizes dimensionSizes;
 
-    private final double[] values;
+    private final CellValues values;
 
-    private IndexedTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+    private IndexedTensor(TensorType type, DimensionSizes dimensionSizes, CellValues values) {
         this.type = type;
         this.dimensionSizes = dimensionSizes;
         this.values = values;
@@ -38,7 +39,7 @@ public class IndexedTensor implements Tensor {
 
     @Override
     public long size() {
-        return values.length;
+        return values.size();
     }
 
     /**
@@ -102,7 +103,7 @@ public class IndexedTensor implements Tensor {
      * @throws IndexOutOfBoundsException if any of the indexes are out of bound or a wrong number of indexes are given
      */
     public double get(long ... indexes) {
-        return values[(int)toValueIndex(indexes, dimensionSizes)];
+        return values.get((int)toValueIndex(indexes, dimensionSizes));
     }
 
     /** Returns the value at this address, or NaN if there is no value at this address */
@@ -110,7 +111,7 @@ public class IndexedTensor implements Tensor {
     public double get(TensorAddress address) {
         // optimize for fast lookup within bounds:
         try {
-            return values[(int)toValueIndex(address, dimensionSizes)];
+            return values.get((int)toValueIndex(address, dimensionSizes));
         }
         catch (IndexOutOfBoundsException e) {
             return Double.NaN;
@@ -124,7 +125,10 @@ public class IndexedTensor implements Tensor {
      * @param valueIndex the direct index into the underlying data.
      * @throws IndexOutOfBoundsException if index is out of bounds
      */
-    public double get(long valueIndex) { return values[(int)valueIndex]; }
+    public double get(long valueIndex) { return values.get((int)valueIndex); }
+
+    /** Returns the values of this in direct index order. Do not modify. */
+    CellValues cellValues() { return values; }
 
     private static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
@@ -179,13 +183,13 @@ public class IndexedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         if (dimensionSizes.dimensions() == 0)
-            return Collections.singletonMap(TensorAddress.of(), values[0]);
+            return Collections.singletonMap(TensorAddress.of(), values.get(0));
 
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
-        for (long i = 0; i < values.length; i++) {
+        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.size());
+        for (long i = 0; i < values.size(); i++) {
             indexes.next();
-            builder.put(indexes.toAddress(), values[(int)i]);
+            builder.put(indexes.toAddress(), values.get((int)i));
         }
         return builder.build();
     }
@@ -201,7 +205,7 @@ public class IndexedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return Arrays.hashCode(values); }
+    public int hashCode() { return values.valuesHashCode(); }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -258,11 +262,11 @@ public class IndexedTensor implements Tensor {
 
     }
 
-    /** A bound builder can create the double array directly */
+    /** A bound builder can create the value array directly */
     public static class BoundBuilder extends Builder {
 
         private DimensionSizes sizes;
-        private double[] values;
+        private CellValues values;
 
         private BoundBuilder(TensorType type) {
             this(type, dimensionSizesOf(type));
@@ -280,12 +284,12 @@ public class IndexedTensor implements Tensor {
             if ( sizes.dimensions() != type.dimensions().size())
                 throw new IllegalArgumentException("Must have a dimension size entry for each dimension in " + type);
             this.sizes = sizes;
-            values = new double[(int)sizes.totalSize()];
+            values = CellValues.of(type.valueType(), (int)sizes.totalSize());
         }
 
         @Override
         public BoundBuilder cell(double value, long ... indexes) {
-            values[(int)toValueIndex(indexes, sizes)] = value;
+            values.set((int)toValueIndex(indexes, sizes), value);
             return this;
         }
 
@@ -296,7 +300,7 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            values[(int)toValueIndex(address, sizes)] = value;
+            values.set((int)toValueIndex(address, sizes), value);
             return this;
         }
 
@@ -313,7 +317,7 @@ public class IndexedTensor implements Tensor {
         public Builder cell(Cell cell, double value) {
             long directIndex = cell.getDirectIndex();
             if (directIndex >= 0) // optimization
-                values[(int)directIndex] = value;
+                values.set((int)directIndex, value);
             else
                 super.cell(cell, value);
             return this;
@@ -325,7 +329,7 @@ public class IndexedTensor implements Tensor {
          * probably not be used (but when it can be used it is fast).
          */
         public void cellByDirectIndex(long index, double value) {
-            values[(int)index] = value;
+            values.set((int)index, value);
         }
 
     }
@@ -348,10 +352,10 @@ public class IndexedTensor implements Tensor {
             if (firstDimension == null) throw new IllegalArgumentException("Tensor of type " + type() + " has no values");
 
             if (type.dimensions().isEmpty()) // single number
-                return new IndexedTensor(type, new DimensionSizes.Builder(type.dimensions().size()).build(), new double[] {(Double) firstDimension.get(0) });
+                return new IndexedTensor(type, new DimensionSizes.Builder(type.dimensions().size()).build(), CellValues.of(new double[] {(Double) firstDimension.get(0) }));
 
             DimensionSizes dimensionSizes = findDimensionSizes(firstDimension);
-            double[] values = new double[(int)dimensionSizes.totalSize()];
+            CellValues values = CellValues.of(type.valueType(), (int)dimensionSizes.totalSize());
             fillValues(0, 0, firstDimension, dimensionSizes, values);
             return new IndexedTensor(type, dimensionSizes, values);
         }
@@ -382,7 +386,7 @@ public class IndexedTensor implements Tensor {
 
         @SuppressWarnings("unchecked")
         private void fillValues(int currentDimensionIndex, long offset, List<Object> currentDimension,
-                                DimensionSizes sizes, double[] values) {
+                                DimensionSizes sizes, CellValues values) {
             if (currentDimensionIndex < sizes.dimensions() - 1) { // recurse to next dimension
                 for (long i = 0; i < currentDimension.size(); i++)
                     fillValues(currentDimensionIndex + 1,
@@ -390,7 +394,7 @@ public class IndexedTensor implements Tensor {
                                (List<Object>) currentDimension.get((int)i), sizes, values);
             } else { // last dimension - fill values
                 for (long i = 0; i < currentDimension.size(); i++) {
-                    values[(int)(offset + i)] = nullAsZero((Double)currentDimension.get((int)i)); // fill missing values as zero
+                    values.set((int)(offset + i), nullAsZero((Double)currentDimension.get((int)i))); // fill missing values as zero
                 }
             }
         }
@@ -460,7 +464,7 @@ public class IndexedTensor implements Tensor {
     private final class CellIterator implements Iterator<Cell> {
 
         private long count = 0;
-        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
+        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.size());
         private final LazyCell reusedCell = new LazyCell(indexes, Double.NaN);
 
         @Override
@@ -485,13 +489,13 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public boolean hasNext() {
-            return count < values.length;
+            return count < values.size();
         }
 
         @Override
         public Double next() {
             try {
-                return values[(int)count++];
+                return values.get((int)count++);
             }
             catch (IndexOutOfBoundsException e) {
                 throw new NoSuchElementException("No element at position " + count);
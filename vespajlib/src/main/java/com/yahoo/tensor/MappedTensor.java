@@ -1,15 +1,18 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableMap;
-
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor backed by a compact index of cell addresses
+ * and an array of values.
  *
  * @author bratseth
  */
@@ -17,31 +20,40 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The addresses of the cells of this, whose ordinals are the indexes of their values */
+    private final SparseIndex index;
+
+    /** The cell values, of which the first index.size() are used */
+    private final double[] values;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, SparseIndex index, double[] values) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.index = index;
+        this.values = values;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return index.size(); }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        int ordinal = index.ordinalOf(address);
+        return ordinal < 0 ? Double.NaN : values[ordinal];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return new ValueIterator(); }
 
+    /** Returns an unmodifiable map view of the cells of this */
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() { return new CellMap(); }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -49,7 +61,7 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, index, values);
     }
 
     @Override
@@ -58,13 +70,14 @@ public class MappedTensor implements Tensor {
         // currently, underlying implementation disallows multiple entries with the same key
 
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Map.Entry<TensorAddress, Double> cell  : cells.entrySet()) {
+        for (Iterator<Tensor.Cell> i = cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
             TensorAddress address = cell.getKey();
             double value = cell.getValue();
             builder.cell(address, addCells.containsKey(address) ? op.applyAsDouble(value, addCells.get(address)) : value);
         }
         for (Map.Entry<TensorAddress, Double> addCell : addCells.entrySet()) {
-            if ( ! cells.containsKey(addCell.getKey())) {
+            if (index.ordinalOf(addCell.getKey()) < 0) {
                 builder.cell(addCell.getKey(), addCell.getValue());
             }
         }
@@ -85,7 +98,7 @@ public class MappedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() { return cells().hashCode(); }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -96,15 +109,24 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    /**
+     * A builder of mapped tensors. Adding a cell with an address which is already present
+     * replaces the value of that cell.
+     */
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private SparseIndex index;
+        private double[] values = new double[16];
+
+        /** Whether the index and values of this are also used by a tensor built by this */
+        private boolean built = false;
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.index = new SparseIndex(type.rank(), 16);
         }
 
         public CellBuilder cell() {
@@ -116,38 +138,95 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            if (built) {
+                index = index.copy();
+                values = Arrays.copyOf(values, values.length);
+                built = false;
+            }
+            int ordinal = index.add(address);
+            if (ordinal == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[ordinal] = type.valueType().round(value);
             return this;
         }
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
-            return this;
+            return cell(TensorAddress.of(labels), value);
         }
 
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            built = true;
+            return new MappedTensor(type, index, values);
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+    private class CellIterator implements Iterator<Cell> {
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
+        private int ordinal = 0;
 
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
+        @Override
+        public boolean hasNext() { return ordinal < index.size(); }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(index.address(ordinal), values[ordinal]);
+            ordinal++;
+            return cell;
         }
 
+    }
+
+    private class ValueIterator implements Iterator<Double> {
+
+        private int ordinal = 0;
+
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return ordinal < index.size(); }
 
         @Override
-        public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+        public Double next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            return values[ordinal++];
+        }
+
+    }
+
+    /** A map view of the cells of this tensor */
+    private class CellMap extends AbstractMap<TensorAddress, Double> {
+
+        @Override
+        public int size() { return index.size(); }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof TensorAddress && index.ordinalOf((TensorAddress)key) >= 0;
+        }
+
+        @Override
+        public Double get(Object key) {
+            if ( ! (key instanceof TensorAddress)) return null;
+            int ordinal = index.ordinalOf((TensorAddress)key);
+            return ordinal < 0 ? null : values[ordinal];
+        }
+
+        @Override
+        public Set<Entry<TensorAddress, Double>> entrySet() {
+            return new AbstractSet<Entry<TensorAddress, Double>>() {
+
+                @Override
+                public int size() { return index.size(); }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public Iterator<Entry<TensorAddress, Double>> iterator() {
+                    return (Iterator<Entry<TensorAddress, Double>>)(Iterator<?>)cellIterator();
+                }
+
+            };
         }
 
     }
@@ -2,13 +2,14 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -29,15 +30,15 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The cell values, dense subspace by dense subspace in the order of the sparse index */
+    private final double[] values;
 
-    /** An index structure over the cell list */
+    /** An index structure over the cell values */
     private final Index index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    private MixedTensor(TensorType type, double[] values, Index index) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.values = values;
         this.index = index;
     }
 
@@ -47,17 +48,12 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     /** Returns the value at the given address */
     @Override
     public double get(TensorAddress address) {
-        long cellIndex = index.indexOf(address);
-        Cell cell = cells.get((int)cellIndex);
-        if (!address.equals(cell.getKey())) {
-            throw new IllegalStateException("Unable to find correct cell by direct index.");
-        }
-        return cell.getValue();
+        return values[(int)index.indexOf(address)];
     }
 
     /**
@@ -69,7 +65,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
+        return new CellIterator();
     }
 
     private Iterable<Cell> cellIterable() {
@@ -83,14 +79,15 @@ public class MixedTensor implements Tensor {
     @Override
     public Iterator<Double> valueIterator() {
         return new Iterator<>() {
-            Iterator<Cell> cellIterator = cellIterator();
+            int cellIndex = 0;
             @Override
             public boolean hasNext() {
-                return cellIterator.hasNext();
+                return cellIndex < values.length;
             }
             @Override
             public Double next() {
-                return cellIterator.next().getValue();
+                if ( ! hasNext()) throw new NoSuchElementException();
+                return values[cellIndex++];
             }
         };
     }
@@ -98,7 +95,7 @@ public class MixedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
+        for (Cell cell : cellIterable()) {
             builder.put(cell.getKey(), cell.getValue());
         }
         return builder.build();
@@ -110,7 +107,7 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, values, index);
     }
 
     @Override
@@ -132,13 +129,12 @@ public class MixedTensor implements Tensor {
         Tensor.Builder builder = Tensor.Builder.of(type());
 
         // iterate through all sparse addresses referencing a dense subspace
-        for (Map.Entry<TensorAddress, Long> entry : index.sparseMap.entrySet()) {
-            TensorAddress sparsePartialAddress = entry.getKey();
+        for (int ordinal = 0; ordinal < index.sparseIndex.size(); ordinal++) {
+            TensorAddress sparsePartialAddress = index.sparseIndex.address(ordinal);
             if ( ! addresses.contains(sparsePartialAddress)) {  // assumption: addresses only contain the sparse part
-                long offset = entry.getValue();
-                for (int i = 0; i < index.denseSubspaceSize; ++i) {
-                    Cell cell = cells.get((int)offset + i);
-                    builder.cell(cell.getKey(), cell.getValue());
+                long offset = ordinal * index.denseSubspaceSize();
+                for (int i = 0; i < index.denseSubspaceSize(); ++i) {
+                    builder.cell(index.addressOf(sparsePartialAddress, i), values[(int)offset + i]);
                 }
             }
         }
@@ -146,7 +142,12 @@ public class MixedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 1;
+        for (Cell cell : cellIterable())
+            hashCode = 31 * hashCode + cell.hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -213,30 +214,29 @@ public class MixedTensor implements Tensor {
      */
     public static class BoundBuilder extends Builder {
 
-        /** For each sparse partial address, hold a dense subspace */
-        final private Map<TensorAddress, double[]> denseSubspaceMap = new HashMap<>();
+        /** For each sparse partial address, by its ordinal in the sparse index, hold a dense subspace */
+        final private List<double[]> denseSubspaces = new ArrayList<>();
         final private Index.Builder indexBuilder;
-        final private Index index;
 
         private BoundBuilder(TensorType type) {
             super(type);
             indexBuilder = new Index.Builder(type);
-            index = indexBuilder.index();
         }
 
         public long denseSubspaceSize() {
-            return index.denseSubspaceSize();
+            return indexBuilder.index().denseSubspaceSize();
         }
 
         private double[] denseSubspace(TensorAddress sparsePartial) {
-            if (!denseSubspaceMap.containsKey(sparsePartial)) {
-                denseSubspaceMap.put(sparsePartial, new double[(int)denseSubspaceSize()]);
-            }
-            return denseSubspaceMap.get(sparsePartial);
+            int ordinal = indexBuilder.add(sparsePartial);
+            if (ordinal == denseSubspaces.size())
+                denseSubspaces.add(new double[(int)denseSubspaceSize()]);
+            return denseSubspaces.get(ordinal);
         }
 
         @Override
         public Tensor.Builder cell(TensorAddress address, double value) {
+            Index index = indexBuilder.index();
             TensorAddress sparsePart = index.sparsePartialAddress(address);
             long denseOffset = index.denseOffset(address);
             double[] denseSubspace = denseSubspace(sparsePart);
@@ -252,22 +252,14 @@ public class MixedTensor implements Tensor {
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
-
-            for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
-                TensorAddress sparsePart = entry.getKey();
-                indexBuilder.put(sparsePart, count);
-
-                double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
+            int denseSubspaceSize = (int)denseSubspaceSize();
+            double[] values = new double[denseSubspaces.size() * denseSubspaceSize];
+            for (int ordinal = 0; ordinal < denseSubspaces.size(); ordinal++) {
+                double[] denseSubspace = denseSubspaces.get(ordinal);
+                for (int offset = 0; offset < denseSubspaceSize; ++offset)
+                    values[ordinal * denseSubspaceSize + offset] = type.valueType().round(denseSubspace[offset]);
             }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            return new MixedTensor(type, values, indexBuilder.build());
         }
 
     }
@@ -319,7 +311,7 @@ public class MixedTensor implements Tensor {
         }
 
         public TensorType createBoundType() {
-            TensorType.Builder typeBuilder = new TensorType.Builder();
+            TensorType.Builder typeBuilder = new TensorType.Builder(type.valueType());
             for (int i = 0; i < type.dimensions().size(); ++i) {
                 TensorType.Dimension dimension = type.dimensions().get(i);
                 if (!dimension.isIndexed()) {
@@ -334,8 +326,31 @@ public class MixedTensor implements Tensor {
 
     }
 
+    /** Iterates over the cells of this, dense subspace by dense subspace */
+    private class CellIterator implements Iterator<Cell> {
+
+        private final long denseSubspaceSize = index.denseSubspaceSize();
+        private int cellIndex = 0;
+        private TensorAddress sparsePart = null;
+
+        @Override
+        public boolean hasNext() { return cellIndex < values.length; }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            long denseOffset = cellIndex % denseSubspaceSize;
+            if (denseOffset == 0)
+                sparsePart = index.sparseIndex.address((int)(cellIndex / denseSubspaceSize));
+            Cell cell = new Cell(index.addressOf(sparsePart, denseOffset), values[cellIndex]);
+            cellIndex++;
+            return cell;
+        }
+
+    }
+
     /**
-     * An immutable index into a list of cells.
+     * An immutable index into the cell values.
      * Contains additional information required
      * for handling mixed tensor addresses.
      * Assumes indexed dimensions are bound.
@@ -348,7 +363,8 @@ public class MixedTensor implements Tensor {
         private final List<TensorType.Dimension> mappedDimensions;
         private final List<TensorType.Dimension> indexedDimensions;
 
-        private ImmutableMap<TensorAddress, Long> sparseMap;
+        /** The sparse partial addresses of the dense subspaces, whose ordinals are their positions */
+        private final SparseIndex sparseIndex;
         private long denseSubspaceSize = -1;
 
         private Index(TensorType type) {
@@ -357,34 +373,52 @@ public class MixedTensor implements Tensor {
             this.indexedDimensions = type.dimensions().stream().filter(d -> d.isIndexed()).collect(Collectors.toList());
             this.sparseType = createPartialType(mappedDimensions);
             this.denseType = createPartialType(indexedDimensions);
+            this.sparseIndex = new SparseIndex(mappedDimensions.size(), 16);
+        }
+
+        private Index(Index other) {
+            this.type = other.type;
+            this.mappedDimensions = other.mappedDimensions;
+            this.indexedDimensions = other.indexedDimensions;
+            this.sparseType = other.sparseType;
+            this.denseType = other.denseType;
+            this.sparseIndex = other.sparseIndex.copy();
+            this.denseSubspaceSize = other.denseSubspaceSize;
         }
 
         public long indexOf(TensorAddress address) {
             TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart)) {
+            int ordinal = sparseIndex.ordinalOf(sparsePart);
+            if (ordinal < 0) {
                 throw new IllegalArgumentException("Address not found");
             }
-            long base = sparseMap.get(sparsePart);
+            long base = ordinal * denseSubspaceSize();
             long offset = denseOffset(address);
             return base + offset;
         }
 
         public static class Builder {
 
-            private final Index index;
-            private final ImmutableMap.Builder<TensorAddress, Long> builder;
+            private Index index;
+
+            /** Whether the index of this is also used by a tensor built by this */
+            private boolean built = false;
 
             public Builder(TensorType type) {
                 index = new Index(type);
-                builder = new ImmutableMap.Builder<>();
             }
 
-            public void put(TensorAddress address, long index) {
-                builder.put(address, index);
+            /** Adds a sparse partial address if not already present and returns its ordinal */
+            public int add(TensorAddress sparsePart) {
+                if (built) {
+                    index = new Index(index);
+                    built = false;
+                }
+                return index.sparseIndex.add(sparsePart);
             }
 
             public Index build() {
-                index.sparseMap = builder.build();
+                built = true;
                 return index;
             }
 
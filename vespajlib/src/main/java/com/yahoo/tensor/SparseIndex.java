@@ -0,0 +1,192 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact map from addresses of a fixed number of mapped dimensions to consecutive ordinals,
+ * assigned in the order the addresses are added.
+ * <p>
+ * Each distinct label of a dimension is stored once and given an id, addresses are stored as
+ * the label ids of each dimension packed into one int array, and ordinals are looked up by
+ * an open addressing hash table. This avoids an address object, a label array and a map entry
+ * per address, which dominates the memory used by large sparse tensors.
+ * <p>
+ * This is not multithread safe while being modified, but is safe to read from multiple threads
+ * once no more addresses are added.
+ *
+ * @author agent
+ */
+final class SparseIndex {
+
+    private static final int noOrdinal = -1;
+
+    private final int rank;
+
+    /** The labels of each dimension, indexed by label id */
+    private final String[][] labels;
+
+    /** The number of labels in each dimension */
+    private final int[] labelCounts;
+
+    /** The label id of each label, per dimension */
+    private final Map<String, Integer>[] labelIds;
+
+    /** The label ids of the address at each ordinal, at ordinal * rank + dimension */
+    private int[] addresses;
+
+    /** Ordinal + 1 of the address in each slot, or 0 if the slot is empty */
+    private int[] slots;
+
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    SparseIndex(int rank, int expectedSize) {
+        this.rank = rank;
+        this.labels = new String[rank][];
+        this.labelCounts = new int[rank];
+        this.labelIds = new Map[rank];
+        for (int i = 0; i < rank; i++) {
+            labels[i] = new String[16];
+            labelIds[i] = new HashMap<>();
+        }
+        this.addresses = new int[Math.max(1, expectedSize * rank)];
+        this.slots = new int[slotCountFor(expectedSize)];
+    }
+
+    private SparseIndex(SparseIndex other) {
+        this.rank = other.rank;
+        this.labels = new String[rank][];
+        this.labelCounts = Arrays.copyOf(other.labelCounts, rank);
+        this.labelIds = Arrays.copyOf(other.labelIds, rank);
+        for (int i = 0; i < rank; i++) {
+            labels[i] = Arrays.copyOf(other.labels[i], other.labels[i].length);
+            labelIds[i] = new HashMap<>(other.labelIds[i]);
+        }
+        this.addresses = Arrays.copyOf(other.addresses, other.addresses.length);
+        this.slots = Arrays.copyOf(other.slots, other.slots.length);
+        this.size = other.size;
+    }
+
+    /** Returns the number of addresses in this */
+    int size() { return size; }
+
+    /** Returns the number of dimensions of the addresses in this */
+    int rank() { return rank; }
+
+    /**
+     * Adds the given address if it is not already present and returns its ordinal.
+     *
+     * @param address an address having the same number of labels as the rank of this
+     */
+    int add(TensorAddress address) {
+        int[] ids = new int[rank];
+        for (int i = 0; i < rank; i++)
+            ids[i] = addLabel(i, address.label(i));
+        int ordinal = find(ids);
+        if (ordinal != noOrdinal) return ordinal;
+
+        if ((size + 1) * 2 > slots.length)
+            rehash(slots.length * 2);
+        if ((size + 1) * rank > addresses.length)
+            addresses = Arrays.copyOf(addresses, Math.max((size + 1) * rank, addresses.length * 2));
+        System.arraycopy(ids, 0, addresses, size * rank, rank);
+        ordinal = size++;
+        slots[freeSlot(hash(ids))] = ordinal + 1;
+        return ordinal;
+    }
+
+    /** Returns the ordinal of the given address, or -1 if it is not present */
+    int ordinalOf(TensorAddress address) {
+        if (address.size() != rank) return noOrdinal;
+        int[] ids = new int[rank];
+        for (int i = 0; i < rank; i++) {
+            Integer id = labelIds[i].get(address.label(i));
+            if (id == null) return noOrdinal;
+            ids[i] = id;
+        }
+        return find(ids);
+    }
+
+    /** Returns the label of the given dimension in the address at the given ordinal */
+    String label(int ordinal, int dimension) {
+        return labels[dimension][addresses[ordinal * rank + dimension]];
+    }
+
+    /** Returns the address at the given ordinal */
+    TensorAddress address(int ordinal) {
+        String[] addressLabels = new String[rank];
+        for (int i = 0; i < rank; i++)
+            addressLabels[i] = label(ordinal, i);
+        return TensorAddress.of(addressLabels);
+    }
+
+    /** Returns a copy of this which can be modified independently of it */
+    SparseIndex copy() {
+        return new SparseIndex(this);
+    }
+
+    private int addLabel(int dimension, String label) {
+        Integer id = labelIds[dimension].get(label);
+        if (id != null) return id;
+
+        id = labelCounts[dimension]++;
+        if (id == labels[dimension].length)
+            labels[dimension] = Arrays.copyOf(labels[dimension], id * 2);
+        labels[dimension][id] = label;
+        labelIds[dimension].put(label, id);
+        return id;
+    }
+
+    private int find(int[] ids) {
+        int mask = slots.length - 1;
+        for (int slot = hash(ids) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = slots[slot] - 1;
+            if (hasIds(ordinal, ids)) return ordinal;
+        }
+        return noOrdinal;
+    }
+
+    private boolean hasIds(int ordinal, int[] ids) {
+        int base = ordinal * rank;
+        for (int i = 0; i < rank; i++)
+            if (addresses[base + i] != ids[i]) return false;
+        return true;
+    }
+
+    private int freeSlot(int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash(int slotCount) {
+        slots = new int[slotCount];
+        int[] ids = new int[rank];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            System.arraycopy(addresses, ordinal * rank, ids, 0, rank);
+            slots[freeSlot(hash(ids))] = ordinal + 1;
+        }
+    }
+
+    private static int hash(int[] ids) {
+        int hash = 1;
+        for (int id : ids)
+            hash = 31 * hash + id;
+        hash *= 0x9E3779B9; // spread consecutive ids over the table
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Returns a power of two number of slots which keeps the table at most half full */
+    private static int slotCountFor(int size) {
+        int slotCount = 16;
+        while (slotCount < size * 2)
+            slotCount *= 2;
+        return slotCount;
+    }
+
+}
@@ -4,6 +4,7 @@ package com.yahoo.tensor;
 import com.google.common.collect.ImmutableList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -15,31 +16,106 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * A tensor type with its dimensions. This is immutable.
+ * A tensor type with its dimensions and the type of its cell values. This is immutable.
  * <p>
  * A dimension can be indexed (bound or unbound) or mapped.
+ * The cell values of a tensor type are doubles unless another value type is specified.
+ * Types without dimensions always have double values.
  *
  * @author geirst
  * @author bratseth
  */
 public class TensorType {
 
+    /** The types of the cell values of a tensor, in order of decreasing precision */
+    public enum Value {
+
+        DOUBLE("double"), FLOAT("float"), BFLOAT16("bfloat16"), INT8("int8");
+
+        private final String id;
+
+        Value(String id) { this.id = id; }
+
+        /** Returns the name of this value type as used in tensor type specs */
+        public String id() { return id; }
+
+        /** Returns whether this can represent all the values of the given type */
+        public boolean isAtLeastAsPreciseAs(Value other) { return this.ordinal() <= other.ordinal(); }
+
+        /** Returns the most precise of the two given value types */
+        public static Value largestOf(Value a, Value b) {
+            return a.isAtLeastAsPreciseAs(b) ? a : b;
+        }
+
+        /**
+         * Returns the given value converted to the nearest value representable by this type.
+         * Values outside the range of int8 are clamped to it, and int8 values are truncated towards zero.
+         */
+        public double round(double value) {
+            switch (this) {
+                case DOUBLE: return value;
+                case FLOAT: return (float)value;
+                case BFLOAT16: return floatFromBFloat16Bits(bFloat16BitsFrom(value));
+                case INT8:
+                    if (Double.isNaN(value)) return 0;
+                    return (long)Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, value));
+                default: throw new IllegalStateException("Unknown value type " + this);
+            }
+        }
+
+        /** Returns the bfloat16 nearest to the given value, as the upper 16 bits of its float representation */
+        public static short bFloat16BitsFrom(double value) {
+            float floatValue = (float)value;
+            int bits = Float.floatToRawIntBits(floatValue);
+            if (Float.isNaN(floatValue)) return (short)((bits >>> 16) | 0x0040); // keep it a NaN
+            int roundingBias = 0x7FFF + ((bits >>> 16) & 1); // round to nearest, ties to even
+            return (short)((bits + roundingBias) >>> 16);
+        }
+
+        /** Returns the float value of a bfloat16 given as the upper 16 bits of its float representation */
+        public static float floatFromBFloat16Bits(short bits) {
+            return Float.intBitsToFloat((bits & 0xFFFF) << 16);
+        }
+
+        /**
+         * Returns the value type having the given id
+         *
+         * @throws IllegalArgumentException if there is no value type with this id
+         */
+        public static Value fromId(String id) {
+            for (Value value : values())
+                if (value.id.equals(id)) return value;
+            throw new IllegalArgumentException("Unknown tensor value type '" + id + "'. Known value types are " +
+                                               Arrays.stream(values()).map(Value::id).collect(Collectors.joining(", ")));
+        }
+
+        @Override
+        public String toString() { return id; }
+
+    }
+
     /** The empty tensor type - which is the same as a double */
-    public static final TensorType empty = new TensorType(Collections.emptyList());
+    public static final TensorType empty = new TensorType(Value.DOUBLE, Collections.emptyList());
+
+    /** The type of the cell values of this */
+    private final Value valueType;
 
     /** Sorted list of the dimensions of this */
     private final ImmutableList<Dimension> dimensions;
 
-    private TensorType(Collection<Dimension> dimensions) {
+    private TensorType(Value valueType, Collection<Dimension> dimensions) {
         List<Dimension> dimensionList = new ArrayList<>(dimensions);
         Collections.sort(dimensionList);
         this.dimensions = ImmutableList.copyOf(dimensionList);
+        this.valueType = this.dimensions.isEmpty() ? Value.DOUBLE : valueType;
     }
 
     /**
      * Returns a tensor type instance from a string on the format
-     * <code>tensor(dimension1, dimension2, ...)</code>
-     * where each dimension is either
+     * <code>tensor&lt;value-type&gt;(dimension1, dimension2, ...)</code>
+     * where the value type is one of <code>double</code>, <code>float</code>, <code>bfloat16</code> and
+     * <code>int8</code>, and may be omitted together with the angle brackets to get double values,
+     * and each dimension is either
      * <ul>
      *     <li><code>dimension-name[]</code> - an unbound indexed dimension
      *     <li><code>dimension-name[int]</code> - an bound indexed dimension
@@ -51,6 +127,25 @@ public class TensorType {
         return TensorTypeParser.fromSpec(specString);
     }
 
+    /** Returns the type of the cell values of this */
+    public Value valueType() { return valueType; }
+
+    /**
+     * Returns the cell value type of the result of an operation combining tensors of the given types:
+     * The most precise value type of the types which have dimensions, but at least float,
+     * as results of computations on bfloat16 and int8 values cannot in general be represented by these types.
+     * Scalars do not contribute, such that e.g multiplying a float tensor by a scalar produces a float tensor.
+     */
+    public static Value combinedValueType(TensorType ... types) {
+        Value combined = null;
+        for (TensorType type : types) {
+            if (type.rank() == 0) continue;
+            combined = combined == null ? type.valueType() : Value.largestOf(combined, type.valueType());
+        }
+        if (combined == null) return Value.DOUBLE;
+        return Value.largestOf(combined, Value.FLOAT);
+    }
+
     /** Returns the number of dimensions of this: dimensions().size() */
     public int rank() { return dimensions.size(); }
 
@@ -85,6 +180,7 @@ public class TensorType {
     /**
      * Returns whether this type can be assigned to the given type,
      * i.e if the given type is a generalization of this type.
+     * Cell values can be assigned to a type with the same or a more precise value type.
      */
     public boolean isAssignableTo(TensorType generalization) {
         return isConvertibleOrAssignableTo(generalization, false, true);
@@ -111,6 +207,7 @@ public class TensorType {
     }
 
     private boolean isConvertibleOrAssignableTo(TensorType generalization, boolean convertible, boolean considerName) {
+        if ( ! generalization.valueType().isAtLeastAsPreciseAs(this.valueType())) return false;
         if (generalization.dimensions().size() != this.dimensions().size()) return false;
         for (int i = 0; i < generalization.dimensions().size(); i++) {
             Dimension thisDimension = this.dimensions().get(i);
@@ -132,14 +229,16 @@ public class TensorType {
 
     @Override
     public String toString() {
-        return "tensor(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
+        return "tensor" + (valueType == Value.DOUBLE ? "" : "<" + valueType.id() + ">") +
+               "(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
     }
 
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
-        return dimensions.equals(((TensorType)other).dimensions);
+        TensorType otherType = (TensorType)other;
+        return valueType == otherType.valueType && dimensions.equals(otherType.dimensions);
     }
 
     /** Returns whether the given type has the same dimension names as this */
@@ -155,12 +254,13 @@ public class TensorType {
      * A dimensionwise generalization exists if the two tensors share the same dimensions, and each dimension
      * is compatible.
      * For example, the dimensionwise generalization of tensor(x[],y[5]) and tensor(x[5],y[]) is tensor(x[],y[])
+     * The value type of the generalization is the most precise of the two value types.
      */
     public Optional<TensorType> dimensionwiseGeneralizationWith(TensorType other) {
         if (this.equals(other)) return Optional.of(this); // shortcut
         if (this.dimensions.size() != other.dimensions.size()) return Optional.empty();
 
-        Builder b = new Builder();
+        Builder b = new Builder(Value.largestOf(this.valueType, other.valueType));
         for (int i = 0; i < dimensions.size(); i++) {
             Dimension thisDim = this.dimensions().get(i);
             Dimension otherDim = other.dimensions().get(i);
@@ -193,7 +293,7 @@ public class TensorType {
 
     @Override
     public int hashCode() {
-        return dimensions.hashCode();
+        return 31 * dimensions.hashCode() + valueType.hashCode();
     }
 
     /**
@@ -373,8 +473,16 @@ public class TensorType {
 
         private final Map<String, Dimension> dimensions = new LinkedHashMap<>();
 
-        /** Creates an empty builder */
+        private final Value valueType;
+
+        /** Creates an empty builder of a type with double values */
         public Builder() {
+            this(Value.DOUBLE);
+        }
+
+        /** Creates an empty builder of a type with the given value type */
+        public Builder(Value valueType) {
+            this.valueType = valueType;
         }
 
         /**
@@ -383,16 +491,26 @@ public class TensorType {
          * If the same dimension is indexed with different size restrictions the largest size will be used.
          * If it is size restricted in one argument but not the other it will not be size restricted.
          * If it is indexed in one and mapped in the other it will become mapped.
+         * The value type is given by {@link TensorType#combinedValueType}.
          */
         public Builder(TensorType ... types) {
+            this.valueType = combinedValueType(types);
             for (TensorType type : types)
                 addDimensionsOf(type);
         }
 
         /**
-         * Creates a builder from the given dimensions.
+         * Creates a builder of a type with double values from the given dimensions.
          */
         public Builder(Iterable<Dimension> dimensions) {
+            this(Value.DOUBLE, dimensions);
+        }
+
+        /**
+         * Creates a builder of a type with the given value type from the given dimensions.
+         */
+        public Builder(Value valueType, Iterable<Dimension> dimensions) {
+            this.valueType = valueType;
             for (TensorType.Dimension dimension : dimensions) {
                 dimension(dimension);
             }
@@ -425,6 +543,9 @@ public class TensorType {
         /** Returns the current number of dimensions in this */
         public int rank() { return dimensions.size(); }
 
+        /** Returns the value type of the type built by this */
+        public Value valueType() { return valueType; }
+
         /**
          * Adds a new dimension to this
          *
@@ -491,7 +612,7 @@ public class TensorType {
         }
 
         public TensorType build() {
-            return new TensorType(dimensions.values());
+            return new TensorType(valueType, dimensions.values());
         }
 
     }
@@ -17,19 +17,23 @@ public class TensorTypeParser {
     private final static String START_STRING = "tensor(";
     private final static String END_STRING = ")";
 
+    private static final Pattern startPattern = Pattern.compile("tensor(<(\\w+)>)?\\(");
     private static final Pattern indexedPattern = Pattern.compile("(\\w+)\\[(\\d*)\\]");
     private static final Pattern mappedPattern = Pattern.compile("(\\w+)\\{\\}");
 
     public static TensorType fromSpec(String specString) {
-        return new TensorType.Builder(dimensionsFromSpec(specString)).build();
+        return new TensorType.Builder(valueTypeFromSpec(specString), dimensionsFromSpec(specString)).build();
+    }
+
+    /** Returns the value type given in a type spec, or double if none is given */
+    public static TensorType.Value valueTypeFromSpec(String specString) {
+        String valueType = start(specString).group(2);
+        return valueType == null ? TensorType.Value.DOUBLE : TensorType.Value.fromId(valueType);
     }
 
     public static List<TensorType.Dimension> dimensionsFromSpec(String specString) {
-        if ( ! specString.startsWith(START_STRING) || !specString.endsWith(END_STRING)) {
-            throw new IllegalArgumentException("Tensor type spec must start with '" + START_STRING + "'" +
-                                               " and end with '" + END_STRING + "', but was '" + specString + "'");
-        }
-        String dimensionsSpec = specString.substring(START_STRING.length(), specString.length() - END_STRING.length());
+        Matcher start = start(specString);
+        String dimensionsSpec = specString.substring(start.end(), specString.length() - END_STRING.length());
         if (dimensionsSpec.isEmpty()) return Collections.emptyList();
 
         List<TensorType.Dimension> dimensions = new ArrayList<>();
@@ -44,6 +48,15 @@ public class TensorTypeParser {
         return dimensions;
     }
 
+    private static Matcher start(String specString) {
+        Matcher start = startPattern.matcher(specString);
+        if ( ! start.lookingAt() || ! specString.endsWith(END_STRING)) {
+            throw new IllegalArgumentException("Tensor type spec must start with '" + START_STRING + "'" +
+                                               " and end with '" + END_STRING + "', but was '" + specString + "'");
+        }
+        return start;
+    }
+
     private static boolean tryParseIndexedDimension(String element, List<TensorType.Dimension> dimensions) {
         Matcher matcher = indexedPattern.matcher(element);
         if (matcher.matches()) {
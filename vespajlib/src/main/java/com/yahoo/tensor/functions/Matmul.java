@@ -2,7 +2,10 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.List;
 
@@ -43,6 +46,13 @@ public class Matmul extends CompositeTensorFunction {
                           dimension);
     }
 
+    /** Evaluates this as a fused reduce-join rather than through the primitive functions */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        return new ReduceJoin(argument1, argument2, ScalarFunctions.multiply(), Reduce.Aggregator.sum,
+                              ImmutableList.of(dimension)).evaluate(context);
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "matmul(" + argument1.toString(context) + ", " + argument2.toString(context) + ", " + dimension + ")";
@@ -62,7 +62,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     public static TensorType outputType(TensorType inputType, List<String> reduceDimensions) {
         if (reduceDimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder b = new TensorType.Builder();
+        TensorType.Builder b = new TensorType.Builder(TensorType.combinedValueType(inputType));
         for (TensorType.Dimension dimension : inputType.dimensions()) {
             if ( ! reduceDimensions.contains(dimension.name()))
                 b.dimension(dimension);
@@ -110,7 +110,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     private static TensorType type(TensorType argumentType, List<String> dimensions) {
         if (dimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(TensorType.combinedValueType(argumentType));
         for (TensorType.Dimension dimension : argumentType.dimensions())
             if ( ! dimensions.contains(dimension.name())) // keep
                 builder.dimension(dimension);
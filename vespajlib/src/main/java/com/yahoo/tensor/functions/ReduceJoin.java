@@ -3,6 +3,7 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
 import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedKernels;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
@@ -24,6 +25,11 @@ import java.util.stream.Collectors;
  * is one common dimension that is joined and reduced on, which is a common
  * case as it covers vector and matrix like multiplications.
  *
+ * When the join multiplies (or takes the squared difference of) cells and
+ * the reduce sums them, i.e for dot products, matrix products, sums of squares
+ * and squared euclidean distances, the inner loops are executed by
+ * {@link IndexedKernels} over the cell arrays of the tensors.
+ *
  * @author lesters
  */
 public class ReduceJoin extends CompositeTensorFunction {
@@ -33,6 +39,9 @@ public class ReduceJoin extends CompositeTensorFunction {
     private final Reduce.Aggregator aggregator;
     private final List<String> dimensions;
 
+    /** The primitive loop implementing the combinator and aggregator of this, or null if none */
+    private final Kernel kernel;
+
     public ReduceJoin(Reduce reduce, Join join) {
         this(join.arguments().get(0), join.arguments().get(1), join.combinator(), reduce.aggregator(), reduce.dimensions());
     }
@@ -47,6 +56,14 @@ public class ReduceJoin extends CompositeTensorFunction {
         this.combinator = combinator;
         this.aggregator = aggregator;
         this.dimensions = ImmutableList.copyOf(dimensions);
+        this.kernel = kernelFor(combinator, aggregator);
+    }
+
+    private static Kernel kernelFor(DoubleBinaryOperator combinator, Reduce.Aggregator aggregator) {
+        if (aggregator != Reduce.Aggregator.sum) return null;
+        if (combinator instanceof ScalarFunctions.Multiply) return IndexedKernels::dotProduct;
+        if (combinator instanceof ScalarFunctions.SquaredDifference) return IndexedKernels::squaredDistance;
+        return null;
     }
 
     @Override
@@ -146,6 +163,11 @@ public class ReduceJoin extends CompositeTensorFunction {
         IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         long commonSize = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
 
+        if (kernel != null) {
+            builder.cellByDirectIndex(0, kernel.apply(a, 0, 1, b, 0, 1, commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ic = 0; ic < commonSize; ++ic) {
             double va = a.get(ic);
@@ -164,6 +186,13 @@ public class ReduceJoin extends CompositeTensorFunction {
         DimensionSizes sizesA = a.dimensionSizes();
         DimensionSizes sizesB = b.dimensionSizes();
 
+        if (kernel != null) { // the kernels are commutative, so swapping does not matter
+            long commonSize = Math.min(sizesA.size(0), sizesB.size(1));
+            for (int ib = 0; ib < sizesB.size(0); ++ib)
+                builder.cellByDirectIndex(ib, kernel.apply(a, 0, 1, b, ib * sizesB.size(1), 1, commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ib = 0; ib < sizesB.size(0); ++ib) {
             agg.reset();
@@ -190,6 +219,15 @@ public class ReduceJoin extends CompositeTensorFunction {
         long strideA = iaToReduced < ibToReduced ? sizesB.size(0) : 1;
         long strideB = ibToReduced < iaToReduced ? sizesA.size(0) : 1;
 
+        if (kernel != null) {
+            long commonSize = Math.min(sizesA.size(1), sizesB.size(1));
+            for (int ia = 0; ia < sizesA.size(0); ++ia)
+                for (int ib = 0; ib < sizesB.size(0); ++ib)
+                    builder.cellByDirectIndex(ia * strideA + ib * strideB,
+                                              kernel.apply(a, ia * sizesA.size(1), 1, b, ib * sizesB.size(1), 1, commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ia = 0; ia < sizesA.size(0); ++ia) {
             for (int ib = 0; ib < sizesB.size(0); ++ib) {
@@ -227,6 +265,22 @@ public class ReduceJoin extends CompositeTensorFunction {
         // TODO: refactor with code in IndexedTensor and Join
 
         MultiDimensionIterator ic = new MultiDimensionIterator(common);
+
+        if (kernel != null && common.dimensions().size() == 1) {
+            long commonSize = common.dimensions().get(0).size().get();
+            long commonStrideA = stridesA[mapCommonToA[0]];
+            long commonStrideB = stridesB[mapCommonToB[0]];
+            for (MultiDimensionIterator ia = new MultiDimensionIterator(onlyInA); ia.hasNext(); ia.next()) {
+                long startA = toDirectIndex(ia, ic, stridesA, mapOnlyAToA, mapCommonToA);
+                for (MultiDimensionIterator ib = new MultiDimensionIterator(onlyInB); ib.hasNext(); ib.next()) {
+                    long startB = toDirectIndex(ib, ic, stridesB, mapOnlyBToB, mapCommonToB);
+                    builder.cellByDirectIndex(toDirectIndex(ia, ib, stridesResult, mapOnlyAToResult, mapOnlyBToResult),
+                                              kernel.apply(a, startA, commonStrideA, b, startB, commonStrideB, commonSize));
+                }
+            }
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (MultiDimensionIterator ia = new MultiDimensionIterator(onlyInA); ia.hasNext(); ia.next()) {
             for (MultiDimensionIterator ib = new MultiDimensionIterator(onlyInB); ib.hasNext(); ib.next()) {
@@ -322,6 +376,14 @@ public class ReduceJoin extends CompositeTensorFunction {
                                 Reduce.commaSeparated(dimensions) + ")";
     }
 
+    /** A primitive loop combining and aggregating two ranges of cells, see IndexedKernels */
+    @FunctionalInterface
+    private interface Kernel {
+
+        double apply(IndexedTensor a, long aStart, long aStride, IndexedTensor b, long bStart, long bStride, long length);
+
+    }
+
     private static class MultiDimensionIterator {
 
         private long[] bounds;
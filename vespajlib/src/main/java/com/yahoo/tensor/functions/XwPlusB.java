@@ -2,6 +2,9 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.List;
 
@@ -42,6 +45,14 @@ public class XwPlusB extends CompositeTensorFunction {
                         ScalarFunctions.add());
     }
 
+    /** Evaluates this using a fused reduce-join for the xw product rather than through the primitive functions */
+    @Override
+    public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        return new Join(new ReduceJoin(x, w, ScalarFunctions.multiply(), Reduce.Aggregator.sum, ImmutableList.of(dimension)),
+                        b,
+                        ScalarFunctions.add()).evaluate(context);
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "xw_plus_b(" + x.toString(context) + ", " +
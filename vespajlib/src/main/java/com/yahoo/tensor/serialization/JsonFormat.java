@@ -28,11 +28,21 @@ public class JsonFormat {
             Tensor.Cell cell = i.next();
             Cursor cellObject = cellsArray.addObject();
             encodeAddress(tensor.type(), cell.getKey(), cellObject.setObject("address"));
-            cellObject.setDouble("value", cell.getValue());
+            cellObject.setDouble("value", jsonValue(cell.getValue(), tensor.type().valueType()));
         }
         return com.yahoo.slime.JsonFormat.toJsonBytes(slime);
     }
 
+    /**
+     * Returns the value to write for a cell of the given type. Values of types less precise than double
+     * are written with the digits needed to represent the value at float precision, such that e.g
+     * 0.1 written from a float tensor becomes 0.1 and not 0.10000000149011612.
+     */
+    private static double jsonValue(double value, TensorType.Value valueType) {
+        if (valueType == TensorType.Value.DOUBLE) return value;
+        return Double.parseDouble(Float.toString((float)value));
+    }
+
     private static void encodeAddress(TensorType type, TensorAddress address, Cursor addressObject) {
         for (int i = 0; i < address.size(); i++)
             addressObject.setString(type.dimensions().get(i).name(), address.label(i));
@@ -17,6 +17,7 @@ import java.util.Optional;
  * Sorted dimensions = num_dimensions [dimension_str_len dimension_str_bytes]*
  * Cells = num_cells [label_1_str_len label_1_str_bytes ... label_N_str_len label_N_str_bytes cell_value]*
  *
+ * Cell values are encoded using the encoding of the value type given to this (double unless specified).
  * Note that the dimensions are sorted and the tensor address labels are given in the same sorted order.
  * Unspecified labels are encoded as the empty string "".
  *
@@ -24,6 +25,16 @@ import java.util.Optional;
  */
 class SparseBinaryFormat implements BinaryFormat {
 
+    private final TensorType.Value serializationValueType;
+
+    SparseBinaryFormat() {
+        this(TensorType.Value.DOUBLE);
+    }
+
+    SparseBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         encodeDimensions(buffer, tensor.type().dimensions());
@@ -42,7 +53,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Map.Entry<TensorAddress, Double> cell = i.next();
             encodeAddress(buffer, cell.getKey());
-            buffer.putDouble(cell.getValue());
+            TypedBinaryFormat.encodeValue(buffer, cell.getValue(), serializationValueType);
         }
     }
 
@@ -71,7 +82,7 @@ class SparseBinaryFormat implements BinaryFormat {
 
     private TensorType decodeType(GrowableByteBuffer buffer) {
         int numDimensions = buffer.getInt1_4Bytes();
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         for (int i = 0; i < numDimensions; ++i)
             builder.mapped(buffer.getUtf8String());
         return builder.build();
@@ -82,7 +93,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (long i = 0; i < numCells; ++i) {
             Tensor.Builder.CellBuilder cellBuilder = builder.cell();
             decodeAddress(buffer, cellBuilder, type);
-            cellBuilder.value(buffer.getDouble());
+            cellBuilder.value(TypedBinaryFormat.decodeValue(buffer, serializationValueType));
         }
     }
 
@@ -16,6 +16,11 @@ import java.util.Optional;
  * The actual binary format used is not a concern for the client and
  * is hidden in this class and in the binary data.
  *
+ * Tensors with double values are encoded without a cell value type, as before cell value types existed.
+ * Other tensors are encoded with format type 4 + the format type for double values, followed by
+ * the cell value type: 1 for float, 2 for bfloat16 and 3 for int8 (0 is double).
+ * Cell values are then encoded as 4 byte floats, 2 byte bfloat16s or 1 byte integers respectively.
+ *
  * @author geirst
  */
 public class TypedBinaryFormat {
@@ -24,19 +29,28 @@ public class TypedBinaryFormat {
     private static final int DENSE_BINARY_FORMAT_TYPE = 2;
     private static final int MIXED_BINARY_FORMAT_TYPE = 3;
 
+    /** Added to the format type when the cell value type is encoded */
+    private static final int WITH_CELL_VALUE_TYPE = 4;
+
+    private static final int DOUBLE_VALUE_TYPE = 0;
+    private static final int FLOAT_VALUE_TYPE = 1;
+    private static final int BFLOAT16_VALUE_TYPE = 2;
+    private static final int INT8_VALUE_TYPE = 3;
+
     public static byte[] encode(Tensor tensor) {
         GrowableByteBuffer buffer = new GrowableByteBuffer();
+        TensorType.Value valueType = tensor.type().valueType();
         if (tensor instanceof MixedTensor) {
-            buffer.putInt1_4Bytes(MIXED_BINARY_FORMAT_TYPE);
-            new MixedBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, MIXED_BINARY_FORMAT_TYPE, valueType);
+            new MixedBinaryFormat(valueType).encode(buffer, tensor);
         }
         else if (tensor instanceof IndexedTensor) {
-            buffer.putInt1_4Bytes(DENSE_BINARY_FORMAT_TYPE);
-            new DenseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, DENSE_BINARY_FORMAT_TYPE, valueType);
+            new DenseBinaryFormat(valueType).encode(buffer, tensor);
         }
         else {
-            buffer.putInt1_4Bytes(SPARSE_BINARY_FORMAT_TYPE);
-            new SparseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, SPARSE_BINARY_FORMAT_TYPE, valueType);
+            new SparseBinaryFormat(valueType).encode(buffer, tensor);
         }
         buffer.flip();
         byte[] result = new byte[buffer.remaining()];
@@ -54,12 +68,69 @@ public class TypedBinaryFormat {
      */
     public static Tensor decode(Optional<TensorType> type, GrowableByteBuffer buffer) {
         int formatType = buffer.getInt1_4Bytes();
+        TensorType.Value valueType = TensorType.Value.DOUBLE;
+        if (formatType > WITH_CELL_VALUE_TYPE) {
+            formatType -= WITH_CELL_VALUE_TYPE;
+            valueType = decodeValueType(buffer.getInt1_4Bytes());
+        }
         switch (formatType) {
-            case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat().decode(type, buffer);
-            case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat().decode(type, buffer);
-            case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat().decode(type, buffer);
+            case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat(valueType).decode(type, buffer);
+            case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat(valueType).decode(type, buffer);
+            case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat(valueType).decode(type, buffer);
             default: throw new IllegalArgumentException("Binary format type " + formatType + " is unknown");
         }
     }
 
+    private static void encodeFormatType(GrowableByteBuffer buffer, int formatType, TensorType.Value valueType) {
+        if (valueType == TensorType.Value.DOUBLE) {
+            buffer.putInt1_4Bytes(formatType);
+        }
+        else {
+            buffer.putInt1_4Bytes(formatType + WITH_CELL_VALUE_TYPE);
+            buffer.putInt1_4Bytes(encodeValueType(valueType));
+        }
+    }
+
+    private static int encodeValueType(TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return DOUBLE_VALUE_TYPE;
+            case FLOAT: return FLOAT_VALUE_TYPE;
+            case BFLOAT16: return BFLOAT16_VALUE_TYPE;
+            case INT8: return INT8_VALUE_TYPE;
+            default: throw new IllegalArgumentException("Unknown value type " + valueType);
+        }
+    }
+
+    private static TensorType.Value decodeValueType(int valueType) {
+        switch (valueType) {
+            case DOUBLE_VALUE_TYPE: return TensorType.Value.DOUBLE;
+            case FLOAT_VALUE_TYPE: return TensorType.Value.FLOAT;
+            case BFLOAT16_VALUE_TYPE: return TensorType.Value.BFLOAT16;
+            case INT8_VALUE_TYPE: return TensorType.Value.INT8;
+            default: throw new IllegalArgumentException("Cell value type " + valueType + " is unknown");
+        }
+    }
+
+    /** Writes a cell value in the encoding of the given value type */
+    static void encodeValue(GrowableByteBuffer buffer, double value, TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: buffer.putDouble(value); break;
+            case FLOAT: buffer.putFloat((float)value); break;
+            case BFLOAT16: buffer.putShort(TensorType.Value.bFloat16BitsFrom(value)); break;
+            case INT8: buffer.put((byte)TensorType.Value.INT8.round(value)); break;
+            default: throw new IllegalArgumentException("Unknown value type " + valueType);
+        }
+    }
+
+    /** Reads a cell value in the encoding of the given value type */
+    static double decodeValue(GrowableByteBuffer buffer, TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return buffer.getDouble();
+            case FLOAT: return buffer.getFloat();
+            case BFLOAT16: return TensorType.Value.floatFromBFloat16Bits(buffer.getShort());
+            case INT8: return buffer.get();
+            default: throw new IllegalArgumentException("Unknown value type " + valueType);
+        }
+    }
+
 }
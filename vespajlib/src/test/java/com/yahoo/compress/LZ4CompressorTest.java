@@ -22,4 +22,15 @@ public class LZ4CompressorTest {
         assertTrue(Arrays.equals(decompressed, Arrays.copyOf(toCompress, compressBytes)));
     }
 
+    @Test
+    public void uncompressed_partial_buffer_range_contains_only_the_range() {
+        byte[] toCompress = "abcdefghijklmnopqrstuvwxyz".getBytes();
+        Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+        Compressor.Compression compressed = compressor.compress(toCompress, 10);
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressed.type());
+        assertEquals(10, compressed.uncompressedSize());
+        assertTrue(Arrays.equals(Arrays.copyOf(toCompress, 10), compressed.data()));
+        assertTrue(Arrays.equals(Arrays.copyOf(toCompress, 10), compressor.decompress(compressed)));
+    }
+
 }
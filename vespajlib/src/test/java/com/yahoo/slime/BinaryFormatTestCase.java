@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
 import org.junit.Test;
 
 import static org.junit.Assert.assertTrue;
@@ -564,4 +566,23 @@ public class BinaryFormatTestCase {
         assertThat(c.field("f").asData(), is(expd));
         assertThat(c.entry(5).valid(), is(false)); // not ARRAY
     }
+
+    @Test
+    public void testEncodeAndCompress() {
+        Slime slime = new Slime();
+        Cursor c = slime.setObject();
+        c.setString("name", "compressible");
+        c.setData("payload", new byte[5000]);
+        byte[] expect = BinaryFormat.encode(slime);
+        Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+
+        Compressor.Compression compressed = BinaryFormat.encode_and_compress(slime, compressor, 64);
+        assertThat(compressed.type(), is(CompressionType.LZ4));
+        assertThat(compressed.uncompressedSize(), is(expect.length));
+        assertThat(compressor.decompress(compressed), is(expect));
+
+        Compressor.Compression uncompressed = BinaryFormat.encode_and_compress(slime, new Compressor(CompressionType.LZ4, 3, 0.90, 10000), 64 * 1024);
+        assertThat(uncompressed.type(), is(CompressionType.INCOMPRESSIBLE));
+        assertThat(uncompressed.data(), is(expect));
+    }
 }
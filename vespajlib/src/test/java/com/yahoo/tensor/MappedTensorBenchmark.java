@@ -0,0 +1,102 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Microbenchmark of building, looking up cells in, and joining (by hash join) sparse tensors.
+ *
+ * @author agent
+ */
+public class MappedTensorBenchmark {
+
+    private static final int cellCount = 100_000;
+
+    private final Random random = new Random(1);
+    private final TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+    private final TensorType joinType = new TensorType.Builder().mapped("y").mapped("z").build();
+
+    public void run() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        List<TensorAddress> addresses = addresses(cellCount);
+        double sum = 0;
+
+        out("Warming up...");
+        for (int i = 0; i < 20; i++) {
+            Tensor tensor = build(addresses);
+            sum += lookupAll(tensor, addresses);
+            sum += join(tensor).size();
+        }
+
+        System.gc();
+        long startHeap = usedHeap();
+        long startBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long startTime = System.nanoTime();
+        Tensor tensor = build(addresses);
+        long buildTime = System.nanoTime() - startTime;
+        long buildBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        System.gc();
+        long retainedBytes = usedHeap() - startHeap;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < 10; i++)
+            sum += lookupAll(tensor, addresses);
+        long lookupTime = (System.nanoTime() - startTime) / 10;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < 10; i++)
+            sum += join(tensor).size();
+        long joinTime = (System.nanoTime() - startTime) / 10;
+
+        out("Tensor with " + cellCount + " cells in two mapped dimensions:");
+        out("  Build:    " + (buildTime / 1000_000) + " ms, " + (buildBytes / cellCount) + " bytes allocated per cell");
+        out("  Retained: approximately " + (retainedBytes / cellCount) + " bytes per cell");
+        out("  Lookup:   " + (lookupTime / cellCount) + " ns per cell");
+        out("  Join:     " + (joinTime / 1000_000) + " ms to hash join with a tensor of " + cellCount / 100 + " cells");
+        out("(ignore: " + sum + ", " + tensor.size() + ")");
+    }
+
+    private List<TensorAddress> addresses(int count) {
+        List<TensorAddress> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            addresses.add(TensorAddress.of(new String[] { "x" + (i / 100), "y" + (i % 100) }));
+        return addresses;
+    }
+
+    private Tensor build(List<TensorAddress> addresses) {
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (TensorAddress address : addresses)
+            builder.cell(address, random.nextDouble());
+        return builder.build();
+    }
+
+    private double lookupAll(Tensor tensor, List<TensorAddress> addresses) {
+        double sum = 0;
+        for (TensorAddress address : addresses)
+            sum += tensor.get(address);
+        return sum;
+    }
+
+    private Tensor join(Tensor tensor) {
+        Tensor.Builder builder = Tensor.Builder.of(joinType);
+        for (int i = 0; i < cellCount / 100; i++)
+            builder.cell(TensorAddress.of(new String[] { "y" + (i % 100), "z" + (i / 100) }), random.nextDouble());
+        return tensor.multiply(builder.build());
+    }
+
+    private long usedHeap() {
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private void out(String string) {
+        System.out.println(string);
+    }
+
+    public static void main(String[] args) {
+        new MappedTensorBenchmark().run();
+    }
+
+}
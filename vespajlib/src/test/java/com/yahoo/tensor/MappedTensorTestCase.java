@@ -4,7 +4,11 @@ package com.yahoo.tensor;
 import com.google.common.collect.Sets;
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -48,4 +52,52 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testManyCells() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int x = 0; x < 100; x++)
+            for (int y = 0; y < 100; y++)
+                builder.cell().label("x", "x" + x).label("y", "y" + y).value(x * 100 + y);
+        Tensor tensor = builder.build();
+        assertEquals(10000, tensor.size());
+        for (int x = 0; x < 100; x++)
+            for (int y = 0; y < 100; y++)
+                assertEquals(x * 100 + y, tensor.get(TensorAddress.of(new String[] { "x" + x, "y" + y })), 0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "x0", "y100" }))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "x100", "y0" }))));
+    }
+
+    @Test
+    public void testCellReplacementAndBuilderReuse() {
+        TensorType type = new TensorType.Builder().mapped("x").build();
+        MappedTensor.Builder builder = MappedTensor.Builder.of(type);
+        builder.cell().label("x", "a").value(1);
+        builder.cell().label("x", "b").value(2);
+        builder.cell().label("x", "a").value(3);
+        Tensor first = builder.build();
+        assertEquals("tensor(x{}):{{x:a}:3.0,{x:b}:2.0}", first.toString());
+
+        builder.cell().label("x", "c").value(4);
+        builder.cell().label("x", "b").value(5);
+        assertEquals("tensor(x{}):{{x:a}:3.0,{x:b}:5.0,{x:c}:4.0}", builder.build().toString());
+        assertEquals("Built tensors are not changed by the builder",
+                     "tensor(x{}):{{x:a}:3.0,{x:b}:2.0}", first.toString());
+    }
+
+    @Test
+    public void testCellMap() {
+        Tensor tensor = Tensor.from("tensor(x{},y{}):{{x:a,y:b}:1.0,{x:c,y:d}:2.0}");
+        Map<TensorAddress, Double> cells = tensor.cells();
+        assertEquals(2, cells.size());
+        assertEquals(2.0, cells.get(TensorAddress.of(new String[] { "c", "d" })), 0);
+        assertNull(cells.get(TensorAddress.of(new String[] { "a", "d" })));
+        assertTrue(cells.containsKey(TensorAddress.of(new String[] { "a", "b" })));
+        assertFalse(cells.containsKey(TensorAddress.of(new String[] { "a" })));
+        assertEquals(Map.of(TensorAddress.of(new String[] { "a", "b" }), 1.0,
+                            TensorAddress.of(new String[] { "c", "d" }), 2.0),
+                     cells);
+        assertEquals(Tensor.from("tensor(x{},y{}):{{x:c,y:d}:2.0,{x:a,y:b}:1.0}").hashCode(), tensor.hashCode());
+    }
+
 }
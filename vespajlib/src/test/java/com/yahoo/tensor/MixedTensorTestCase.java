@@ -45,6 +45,18 @@ public class MixedTensorTestCase {
                 tensor.toString());
     }
 
+    @Test
+    public void testBuildingIsIndependentOfLaterChangesToTheBuilder() {
+        TensorType type = new TensorType.Builder().mapped("x").indexed("y", 2).build();
+        MixedTensor.BoundBuilder builder = (MixedTensor.BoundBuilder)MixedTensor.Builder.of(type);
+        builder.cell().label("x", "a").label("y", 0).value(1);
+        Tensor first = builder.build();
+        builder.cell().label("x", "b").label("y", 1).value(2);
+        Tensor second = builder.build();
+        assertEquals("tensor(x{},y[2]):{{x:a,y:0}:1.0,{x:a,y:1}:0.0}", first.toString());
+        assertEquals("tensor(x{},y[2]):{{x:a,y:0}:1.0,{x:a,y:1}:0.0,{x:b,y:0}:0.0,{x:b,y:1}:2.0}", second.toString());
+    }
+
     @Test
     public void testTwoIndexedBuilding() {
         TensorType type = new TensorType.Builder().indexed("x").indexed("y", 3).build();
@@ -45,6 +45,28 @@ public class TensorTypeTestCase {
         assertTensorType("tensor(baR_09{})");
     }
 
+    @Test
+    public void requireThatValueTypesCanBeSpecified() {
+        assertTensorType("tensor(x[5])", "tensor<double>(x[5])");
+        assertTensorType("tensor<float>(x[5])");
+        assertTensorType("tensor<bfloat16>(x{},y[3])");
+        assertTensorType("tensor<int8>(x[])");
+        assertTensorType("tensor()", "tensor<float>()"); // scalars are always double
+        assertEquals(TensorType.Value.FLOAT, TensorType.fromSpec("tensor<float>(x[5])").valueType());
+        assertIllegalTensorType("tensor<int4>(x[5])", "Unknown tensor value type 'int4'");
+    }
+
+    @Test
+    public void testValueTypeRounding() {
+        assertEquals(0.1f, TensorType.Value.FLOAT.round(0.1), 0);
+        assertEquals(1.0, TensorType.Value.BFLOAT16.round(1.0), 0);
+        assertEquals(3.140625, TensorType.Value.BFLOAT16.round(3.14159), 0);
+        assertEquals(127, TensorType.Value.INT8.round(300.5), 0);
+        assertEquals(-128, TensorType.Value.INT8.round(-300.5), 0);
+        assertEquals(-3, TensorType.Value.INT8.round(-3.7), 0);
+        assertTrue(Double.isNaN(TensorType.Value.BFLOAT16.round(Double.NaN)));
+    }
+
     @Test
     public void requireThatIndexedBoundDimensionMustHaveNonZeroSize() {
         assertIllegalTensorType("tensor(x[0])", "Size of bound dimension 'x' must be at least 1");
@@ -74,6 +96,9 @@ public class TensorTypeTestCase {
         assertUnassignableTo("tensor(x[5])", "tensor(x[10])");
         assertUnassignableTo("tensor(x{})", "tensor(x[])");
         assertIsAssignableTo("tensor(x{},y[10])", "tensor(x{},y[])");
+        assertIsAssignableTo("tensor<float>(x[10])", "tensor(x[10])");
+        assertUnassignableTo("tensor(x[10])", "tensor<float>(x[10])");
+        assertUnassignableTo("tensor<float>(x[10])", "tensor<int8>(x[10])");
     }
 
     @Test
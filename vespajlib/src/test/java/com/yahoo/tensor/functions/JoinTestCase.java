@@ -35,6 +35,21 @@ public class JoinTestCase {
                      t2.divide(t1));
     }
 
+    @Test
+    public void testJoinValueTypes() {
+        Tensor floats = Tensor.from("tensor<float>(x[3]):{{x:0}:1.5,{x:1}:2.5,{x:2}:3.5}");
+        Tensor int8s = Tensor.from("tensor<int8>(x[3]):{{x:0}:1,{x:1}:2,{x:2}:3}");
+        Tensor doubles = Tensor.from("tensor(x[3]):{{x:0}:1,{x:1}:2,{x:2}:3}");
+        assertEquals("tensor<float>(x[3])", floats.multiply(floats).type().toString());
+        assertEquals("tensor<float>(x[3])", floats.multiply(int8s).type().toString());
+        assertEquals("tensor<float>(x[3])", int8s.multiply(int8s).type().toString()); // at least float
+        assertEquals("tensor(x[3])", floats.multiply(doubles).type().toString());
+        assertEquals("tensor<float>(x[3])", floats.multiply(Tensor.from("{2.0}")).type().toString());
+        assertEquals(Tensor.from("tensor<float>(x[3]):{{x:0}:1.5,{x:1}:5,{x:2}:10.5}"), floats.multiply(int8s));
+        assertEquals("tensor<float>(y[2])",
+                     Tensor.from("tensor<float>(x[2],y[2]):{{x:0,y:0}:1,{x:0,y:1}:2,{x:1,y:0}:3,{x:1,y:1}:4}").sum("x").type().toString());
+    }
+
     @Test
     public void testGeneralJoin() {
         assertEquals(Tensor.from("tensor(x[],y[]):{ {x:0,y:0}:1, {x:1,y:0}:2, {x:2,y:0}:3 }"),
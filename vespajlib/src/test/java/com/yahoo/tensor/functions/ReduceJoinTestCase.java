@@ -0,0 +1,104 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.IndexedKernels;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that reduce-joins evaluated by fused kernels produce the same result as
+ * evaluating the reduce and join separately.
+ *
+ * @author agent
+ */
+public class ReduceJoinTestCase {
+
+    @Test
+    public void testDotProduct() {
+        assertReduceJoin("tensor(x[5])", "tensor(x[5])", ScalarFunctions.multiply());
+        assertReduceJoin("tensor<float>(x[5])", "tensor(x[5])", ScalarFunctions.multiply());
+        assertReduceJoin("tensor<float>(x[7])", "tensor<float>(x[7])", ScalarFunctions.multiply());
+        assertReduceJoin("tensor(x[3])", "tensor(x[5])", ScalarFunctions.multiply()); // unequal lengths
+    }
+
+    @Test
+    public void testSquaredDistance() {
+        assertReduceJoin("tensor(x[5])", "tensor(x[5])", ScalarFunctions.squareddifference());
+        assertReduceJoin("tensor<float>(x[5])", "tensor<float>(x[5])", ScalarFunctions.squareddifference());
+    }
+
+    @Test
+    public void testVectorMatrixProduct() {
+        assertReduceJoin("tensor(x[3])", "tensor(x[3],y[4])", ScalarFunctions.multiply(), "x");
+        assertReduceJoin("tensor(y[4])", "tensor(x[3],y[4])", ScalarFunctions.multiply(), "y");
+        assertReduceJoin("tensor(x[3],y[4])", "tensor(y[4])", ScalarFunctions.multiply(), "y");
+        assertReduceJoin("tensor<float>(y[4])", "tensor(x[3],y[4])", ScalarFunctions.squareddifference(), "y");
+    }
+
+    @Test
+    public void testMatrixMatrixProduct() {
+        assertReduceJoin("tensor(x[2],y[3])", "tensor(y[3],z[4])", ScalarFunctions.multiply(), "y");
+        assertReduceJoin("tensor(x[2],y[3])", "tensor(x[2],z[4])", ScalarFunctions.multiply(), "x");
+        assertReduceJoin("tensor<float>(x[2],y[3])", "tensor<float>(y[3],z[4])", ScalarFunctions.multiply(), "y");
+        assertReduceJoin("tensor(x[2],y[3],z[2])", "tensor(y[3],w[4])", ScalarFunctions.multiply(), "y");
+    }
+
+    @Test
+    public void testMatmulAndXwPlusB() {
+        Tensor x = Tensor.random(TensorType.fromSpec("tensor(d0[2],d1[3])"));
+        Tensor w = Tensor.random(TensorType.fromSpec("tensor(d1[3],d2[4])"));
+        Tensor b = Tensor.random(TensorType.fromSpec("tensor(d2[4])"));
+        MapEvaluationContext context = new MapEvaluationContext();
+        context.put("x", x);
+        context.put("w", w);
+        context.put("b", b);
+        VariableTensor xVariable = new VariableTensor("x");
+        VariableTensor wVariable = new VariableTensor("w");
+        VariableTensor bVariable = new VariableTensor("b");
+
+        Matmul matmul = new Matmul(xVariable, wVariable, "d1");
+        assertEquals(matmul.toPrimitive().evaluate(context), matmul.evaluate(context));
+
+        XwPlusB xwPlusB = new XwPlusB(xVariable, wVariable, bVariable, "d1");
+        assertEquals(xwPlusB.toPrimitive().evaluate(context), xwPlusB.evaluate(context));
+    }
+
+    @Test
+    public void testKernels() {
+        IndexedTensor a = (IndexedTensor)Tensor.from("tensor(x[4]):{{x:0}:1,{x:1}:2,{x:2}:3,{x:3}:4}");
+        IndexedTensor b = (IndexedTensor)Tensor.from("tensor<float>(x[4]):{{x:0}:5,{x:1}:6,{x:2}:7,{x:3}:8}");
+        assertEquals(70.0, IndexedKernels.dotProduct(a, 0, 1, b, 0, 1, 4), 0.0);
+        assertEquals(64.0, IndexedKernels.squaredDistance(a, 0, 1, b, 0, 1, 4), 0.0);
+        assertEquals(30.0, IndexedKernels.sumOfSquares(a, 0, 1, 4), 0.0);
+        assertEquals(1 * 5 + 3 * 7, IndexedKernels.dotProduct(a, 0, 2, b, 0, 2, 2), 0.0);
+        assertEquals(2 * 2 + 4 * 4, IndexedKernels.sumOfSquares(a, 1, 2, 2), 0.0);
+    }
+
+    private void assertReduceJoin(String aType, String bType, DoubleBinaryOperator combinator, String ... dimensions) {
+        Tensor a = Tensor.random(TensorType.fromSpec(aType));
+        Tensor b = Tensor.random(TensorType.fromSpec(bType));
+        List<String> reduceDimensions = dimensions.length == 0 ? Collections.emptyList() : ImmutableList.copyOf(dimensions);
+        MapEvaluationContext context = new MapEvaluationContext();
+        context.put("a", a);
+        context.put("b", b);
+
+        VariableTensor aVariable = new VariableTensor("a");
+        VariableTensor bVariable = new VariableTensor("b");
+        Tensor expected = new Reduce(new Join(aVariable, bVariable, combinator), Reduce.Aggregator.sum, reduceDimensions)
+                                  .evaluate(context);
+        ReduceJoin reduceJoin = new ReduceJoin(aVariable, bVariable, combinator, Reduce.Aggregator.sum, reduceDimensions);
+        assertEquals(aType + " and " + bType, expected, reduceJoin.evaluate(context));
+    }
+
+}
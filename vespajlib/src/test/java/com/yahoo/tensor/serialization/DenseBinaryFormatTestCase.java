@@ -3,6 +3,7 @@ package com.yahoo.tensor.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
@@ -40,6 +41,47 @@ public class DenseBinaryFormatTestCase {
         }
     }
 
+    @Test
+    public void testSerializationOfValueTypes() {
+        assertSerialization("tensor<float>(x[],y[]):{{x:0,y:0}:2.5, {x:0,y:1}:-3.0, {x:1,y:0}:0.1, {x:1,y:1}:5.0}");
+        assertSerialization("tensor<bfloat16>(x[3]):{{x:0}:2.0, {x:1}:-3.0, {x:2}:0.5}");
+        assertSerialization("tensor<int8>(x[3]):{{x:0}:2, {x:1}:-128, {x:2}:127}");
+        assertSerialization("tensor<float>(x{},y[2]):{{x:a,y:0}:2.5, {x:a,y:1}:-3.0}");
+        assertSerialization("tensor<int8>(x{}):{{x:a}:2, {x:b}:-3}");
+
+        Tensor floats = Tensor.from("tensor<float>(x[4]):{{x:0}:0.1, {x:1}:0.2, {x:2}:0.3, {x:3}:0.4}");
+        Tensor decoded = TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(TypedBinaryFormat.encode(floats)));
+        assertEquals(floats.type(), decoded.type());
+        assertEquals(0.1f, decoded.get(TensorAddress.of(0)), 0);
+    }
+
+    @Test
+    public void requireThatValueTypesAreSerializedCompactly() {
+        byte[] encodedTensor = new byte[]{6, // binary format type: dense with value type
+                                          1, // value type: float
+                                          1, // dimension count
+                                          1, (byte) 'x', 2, // dimension x with size
+                                          64, 0, 0, 0, // value 1
+                                          64, 64, 0, 0  // value 2
+        };
+        assertEquals(Arrays.toString(encodedTensor),
+                     Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:3.0}"))));
+        encodedTensor = new byte[]{6, // binary format type: dense with value type
+                                   3, // value type: int8
+                                   1, // dimension count
+                                   1, (byte) 'x', 2, // dimension x with size
+                                   2, // value 1
+                                   -3  // value 2
+        };
+        assertEquals(Arrays.toString(encodedTensor),
+                     Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor<int8>(x[2]):{{x:0}:2.0,{x:1}:-3.0}"))));
+    }
+
+    @Test
+    public void testDeserializationToWiderValueType() {
+        assertSerialization(Tensor.from("tensor<float>(x[2]):{{x:0}:2.0,{x:1}:3.0}"), TensorType.fromSpec("tensor(x[2])"));
+    }
+
     @Test
     public void requireThatSerializationFormatDoNotChange() {
         byte[] encodedTensor = new byte[]{2, // binary format type